@@ -25,10 +25,22 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Map;
-
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
@@ -58,11 +70,14 @@ import org.apache.logging.log4j.core.LoggerContext;
 import org.apache.turbine.modules.PageLoader;
 import org.apache.turbine.pipeline.Pipeline;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.PipelineRoute;
 import org.apache.turbine.pipeline.TurbinePipeline;
 import org.apache.turbine.services.Initable;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.ServiceManager;
 import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.apache.turbine.services.assemblerbroker.ModuleWarmup;
 import org.apache.turbine.services.rundata.RunDataService;
 import org.apache.turbine.services.template.TemplateService;
 import org.apache.turbine.util.LocaleUtils;
@@ -70,6 +85,7 @@ import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.ServerData;
 import org.apache.turbine.util.TurbineConfig;
 import org.apache.turbine.util.TurbineException;
+import org.apache.turbine.util.VirtualThreads;
 import org.apache.turbine.util.uri.URIConstants;
 
 /**
@@ -111,7 +127,7 @@ import org.apache.turbine.util.uri.URIConstants;
  * @author <a href="mailto:tv@apache.org">Thomas Vandahl</a>
  * @version $Id$
  */
-@WebServlet(name = "Turbine", urlPatterns = { "/app" }, loadOnStartup = 1, initParams = {
+@WebServlet(name = "Turbine", urlPatterns = { "/app" }, loadOnStartup = 1, asyncSupported = true, initParams = {
         @WebInitParam(name = TurbineConstants.APPLICATION_ROOT_KEY, value = TurbineConstants.APPLICATION_ROOT_DEFAULT),
         @WebInitParam(name = TurbineConfig.PROPERTIES_PATH_KEY, value = TurbineConfig.PROPERTIES_PATH_DEFAULT) })
 @MultipartConfig
@@ -147,6 +163,32 @@ public class Turbine extends HttpServlet
      */
     private static Pipeline pipeline = null;
 
+    /**
+     * The route-specific pipelines, checked in configuration order.
+     */
+    private static List<PipelineRoute> pipelineRoutes = new ArrayList<>();
+
+    /**
+     * Whether any route is selected by screen name.
+     */
+    private static boolean screenRoutes = false;
+
+    /**
+     * Whether requests are processed in async mode.
+     */
+    private static boolean asyncMode = false;
+
+    /**
+     * The timeout of async requests in milliseconds, negative for the
+     * container default.
+     */
+    private static long asyncTimeout = -1;
+
+    /**
+     * The executor running the pipeline on virtual threads, if enabled.
+     */
+    private static ExecutorService virtualThreadExecutor = null;
+
     /** Whether init succeeded or not. */
     private static Throwable initFailure = null;
 
@@ -227,6 +269,14 @@ public class Turbine extends HttpServlet
                 {
                     throw new TurbineException("No RunData Service configured!");
                 }
+
+                templateService.loadMappingSnapshot();
+
+                if (configuration.getBoolean(TurbineConstants.MODULE_WARMUP_KEY,
+                        TurbineConstants.MODULE_WARMUP_DEFAULT))
+                {
+                    warmupModules(templateService);
+                }
             }
             catch (Throwable e)
             {
@@ -240,6 +290,43 @@ public class Turbine extends HttpServlet
         }
     }
 
+    /**
+     * Load the modules and resolve the templates configured for the
+     * warm-up. Failed tasks are logged or, if configured, fail the
+     * startup.
+     *
+     * @param templateService
+     *            the template service
+     * @throws TurbineException
+     *             if a task failed and failures are configured to be fatal
+     */
+    private void warmupModules(TemplateService templateService)
+            throws TurbineException
+    {
+        if (!configuration.getBoolean(TurbineConstants.MODULE_CACHE_KEY,
+                TurbineConstants.MODULE_CACHE_DEFAULT))
+        {
+            log.warn("Module warm-up skipped, {} is false and the loaded modules would not be kept",
+                    TurbineConstants.MODULE_CACHE_KEY);
+            return;
+        }
+
+        AssemblerBrokerService assemblerBroker = (AssemblerBrokerService)
+                getServiceManager().getService(AssemblerBrokerService.SERVICE_NAME);
+        int failed = new ModuleWarmup(assemblerBroker, templateService, configuration).run();
+
+        if (failed > 0)
+        {
+            if (configuration.getBoolean(TurbineConstants.MODULE_WARMUP_FAIL_KEY,
+                    TurbineConstants.MODULE_WARMUP_FAIL_DEFAULT))
+            {
+                throw new TurbineException("Module warm-up: " + failed + " tasks failed");
+            }
+
+            log.warn("Module warm-up: {} tasks failed, they are loaded on first use", failed);
+        }
+    }
+
     /**
      * Read the master configuration file in, configure logging and start up any
      * early services.
@@ -337,9 +424,82 @@ public class Turbine extends HttpServlet
         // Retrieve the pipeline class and then initialize it. The pipeline
         // handles the processing of a webrequest/response cycle.
         String descriptorPath = configuration.getString(
-                "pipeline.default.descriptor",
+                TurbineConstants.PIPELINE_DEFAULT_DESCRIPTOR_KEY,
                 TurbinePipeline.CLASSIC_PIPELINE);
 
+        pipeline = loadPipeline(context, descriptorPath);
+
+        log.debug("Initializing pipeline");
+
+        pipeline.initialize();
+
+        // Load and initialize the route-specific pipelines
+        List<PipelineRoute> routes = new ArrayList<>();
+        boolean byScreen = false;
+
+        for (String routeName : configuration.getStringArray(TurbineConstants.PIPELINE_ROUTES_KEY))
+        {
+            String prefix = TurbineConstants.PIPELINE_ROUTE_PREFIX + "." + routeName + ".";
+            String routeDescriptor = configuration.getString(prefix + "descriptor");
+
+            if (StringUtils.isEmpty(routeDescriptor))
+            {
+                throw new TurbineException("No pipeline descriptor configured for route " + routeName);
+            }
+
+            Pipeline routePipeline = loadPipeline(context, routeDescriptor);
+
+            // Route pipelines are known by their route name
+            if (routePipeline instanceof TurbinePipeline)
+            {
+                ((TurbinePipeline) routePipeline).setName(routeName);
+            }
+
+            log.debug("Initializing pipeline for route {}", routeName);
+
+            routePipeline.initialize();
+
+            PipelineRoute route = new PipelineRoute(routeName, routePipeline,
+                    configuration.getStringArray(prefix + "path"),
+                    configuration.getStringArray(prefix + "screen"));
+            byScreen |= route.hasScreens();
+            routes.add(route);
+        }
+
+        pipelineRoutes = routes;
+        screenRoutes = byScreen;
+
+        asyncMode = configuration.getBoolean(TurbineConstants.PIPELINE_ASYNC_KEY,
+                TurbineConstants.PIPELINE_ASYNC_DEFAULT);
+        asyncTimeout = configuration.getLong(TurbineConstants.PIPELINE_ASYNC_TIMEOUT_KEY, -1);
+
+        // Virtual threads are handed the request through an AsyncContext
+        if (configuration.getBoolean(TurbineConstants.PIPELINE_VIRTUAL_THREADS_KEY,
+                TurbineConstants.PIPELINE_VIRTUAL_THREADS_DEFAULT))
+        {
+            virtualThreadExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+            asyncMode = true;
+            log.info("Processing requests on virtual threads");
+        }
+    }
+
+    /**
+     * Load a pipeline from its descriptor
+     *
+     * @param context
+     *            The Servlet Context supplied by the container
+     * @param descriptor
+     *            the context resource path of the pipeline descriptor
+     * @return the pipeline, not initialized
+     *
+     * @throws Exception
+     *             if the descriptor could not be read
+     */
+    private Pipeline loadPipeline(ServletContext context, String descriptor)
+            throws Exception
+    {
+        String descriptorPath = descriptor;
+
         log.debug("Using descriptor path: {}", descriptorPath);
 
         // context resource path has to begin with slash, cft.
@@ -353,12 +513,71 @@ public class Turbine extends HttpServlet
         {
             JAXBContext jaxb = JAXBContext.newInstance(TurbinePipeline.class);
             Unmarshaller unmarshaller = jaxb.createUnmarshaller();
-            pipeline = (Pipeline) unmarshaller.unmarshal(reader);
+            return (Pipeline) unmarshaller.unmarshal(reader);
         }
+    }
 
-        log.debug("Initializing pipeline");
+    /**
+     * Select the pipeline processing the given request. The first route
+     * whose path prefix matches the path info or whose screen names contain
+     * the requested screen wins. Otherwise the default pipeline is used.
+     *
+     * @param req
+     *            Servlet request.
+     * @param pipelineData
+     *            the pipeline data of the request
+     * @return the pipeline to use
+     */
+    protected Pipeline selectPipeline(HttpServletRequest req, PipelineData pipelineData)
+    {
+        if (pipelineRoutes.isEmpty())
+        {
+            return pipeline;
+        }
 
-        pipeline.initialize();
+        String pathInfo = req.getPathInfo();
+        String screen = screenRoutes ? getScreen(req, pathInfo) : null;
+
+        for (PipelineRoute route : pipelineRoutes)
+        {
+            if (route.matchesPath(pathInfo) || route.matchesScreen(screen))
+            {
+                return route.getPipeline();
+            }
+        }
+
+        return pipeline;
+    }
+
+    /**
+     * Get the requested screen for routing from the raw request, so the
+     * request parameters need not be parsed before the pipeline runs. The
+     * screen is either a query parameter or a name/value pair in the path
+     * info.
+     *
+     * @param req
+     *            Servlet request.
+     * @param pathInfo
+     *            the path info of the request, may be null
+     * @return the screen or null if none was requested
+     */
+    private static String getScreen(HttpServletRequest req, String pathInfo)
+    {
+        String screen = req.getParameter(URIConstants.CGI_SCREEN_PARAM);
+
+        if (screen == null && pathInfo != null)
+        {
+            String[] parts = StringUtils.split(pathInfo, '/');
+            for (int i = 0; i + 1 < parts.length; i += 2)
+            {
+                if (URIConstants.CGI_SCREEN_PARAM.equals(parts[i]))
+                {
+                    return parts[i + 1];
+                }
+            }
+        }
+
+        return screen;
     }
 
     /**
@@ -727,6 +946,23 @@ public class Turbine extends HttpServlet
     @Override
     public void destroy()
     {
+        // Release the pipelines
+        if (pipeline != null)
+        {
+            pipeline.dispose();
+        }
+
+        for (PipelineRoute route : pipelineRoutes)
+        {
+            route.getPipeline().dispose();
+        }
+
+        if (virtualThreadExecutor != null)
+        {
+            virtualThreadExecutor.shutdown();
+            virtualThreadExecutor = null;
+        }
+
         // Shut down all Turbine Services.
         getServiceManager().shutdownServices();
 
@@ -758,29 +994,23 @@ public class Turbine extends HttpServlet
             return;
         }
 
+        if (asyncMode && req.isAsyncSupported())
+        {
+            doGetAsync(req, res);
+            return;
+        }
+
         // Get general PipelineData here...
         try (PipelineData pipelineData = getRunDataService().getRunData(req, res, getServletConfig()))
         {
             try
             {
-                // Perform turbine specific initialization below.
-                Map<Class<?>, Object> runDataMap = new HashMap<>();
-                runDataMap.put(RunData.class, pipelineData);
-                // put the data into the pipeline
-                pipelineData.put(RunData.class, runDataMap);
-
-                // If this is the first invocation, perform some
-                // initialization. Certain services need RunData to initialize
-                // themselves.
-                if (firstDoGet)
-                {
-                    init(pipelineData);
-                }
+                preparePipelineData(pipelineData);
 
                 // Stages of Pipeline implementation execution
                 // configurable via attached Valve implementations in a
                 // XML properties file.
-                pipeline.invoke(pipelineData);
+                selectPipeline(req, pipelineData).invoke(pipelineData);
             }
             catch (Throwable t)
             {
@@ -794,6 +1024,287 @@ public class Turbine extends HttpServlet
         }
     }
 
+    /**
+     * Process the request in async mode. The container thread is released
+     * while an {@link org.apache.turbine.pipeline.AsyncValve} is pending,
+     * or immediately if the pipeline runs on virtual threads.
+     * The async context is completed when the pipeline has finished or
+     * the request has timed out. The pipeline data is recycled when the
+     * pipeline no longer uses it.
+     *
+     * @param req
+     *            Servlet request.
+     * @param res
+     *            Servlet response.
+     */
+    protected void doGetAsync(HttpServletRequest req, HttpServletResponse res)
+    {
+        PipelineData pipelineData;
+
+        try
+        {
+            pipelineData = getRunDataService().getRunData(req, res, getServletConfig());
+        }
+        catch (Throwable t)
+        {
+            handleHorribleException(res, t);
+            return;
+        }
+
+        AsyncContext asyncContext = req.startAsync(req, res);
+        if (asyncTimeout >= 0)
+        {
+            asyncContext.setTimeout(asyncTimeout);
+        }
+
+        AsyncRequest request = new AsyncRequest(pipelineData, asyncContext, res);
+        asyncContext.addListener(request);
+
+        // Resume on a container thread or a new virtual thread when a
+        // valve completes
+        Executor executor = virtualThreadExecutor != null
+                ? virtualThreadExecutor : asyncContext::start;
+
+        Runnable task = () ->
+        {
+            CompletionStage<Void> stage;
+            CompletionStage<Void> released;
+
+            try
+            {
+                preparePipelineData(pipelineData);
+                Pipeline pipeline = selectPipeline(req, pipelineData);
+                stage = pipeline.invokeAsync(pipelineData, executor);
+                released = pipeline.whenReleased(stage);
+            }
+            catch (Throwable t)
+            {
+                stage = CompletableFuture.failedFuture(t);
+                released = CompletableFuture.completedFuture(null);
+            }
+
+            request.run(stage, released);
+        };
+
+        if (virtualThreadExecutor != null)
+        {
+            try
+            {
+                virtualThreadExecutor.execute(task);
+            }
+            catch (RejectedExecutionException e)
+            {
+                request.run(CompletableFuture.failedFuture(e), CompletableFuture.completedFuture(null));
+            }
+        }
+        else
+        {
+            task.run();
+        }
+    }
+
+    /**
+     * The state of a request processed in async mode. Finishes the request
+     * when the pipeline completes, or stops the pipeline and produces the
+     * error response when the container reports a timeout or an error.
+     * The pipeline data is recycled once both the response has been
+     * finished and the pipeline has released the data, as a valve may
+     * still be using it after a timeout.
+     */
+    private final class AsyncRequest implements AsyncListener
+    {
+        /** The pipeline data of the request */
+        private final PipelineData pipelineData;
+
+        /** The async context of the request */
+        private final AsyncContext asyncContext;
+
+        /** The servlet response */
+        private final HttpServletResponse res;
+
+        /** Whether the response has been finished */
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        /** The response and the pipeline, which both use the pipeline data */
+        private final AtomicInteger users = new AtomicInteger(2);
+
+        /** The stage of the running pipeline */
+        private volatile CompletableFuture<Void> stage;
+
+        /**
+         * @param pipelineData the pipeline data of the request
+         * @param asyncContext the async context of the request
+         * @param res Servlet response.
+         */
+        AsyncRequest(PipelineData pipelineData, AsyncContext asyncContext,
+                HttpServletResponse res)
+        {
+            this.pipelineData = pipelineData;
+            this.asyncContext = asyncContext;
+            this.res = res;
+        }
+
+        /**
+         * Finish the request when the pipeline completes and recycle the
+         * pipeline data when the pipeline has released it.
+         *
+         * @param pipeline the stage of the running pipeline
+         * @param released the stage completing when the pipeline has
+         * released the pipeline data
+         */
+        void run(CompletionStage<Void> pipeline, CompletionStage<Void> released)
+        {
+            CompletableFuture<Void> future = pipeline.toCompletableFuture();
+            stage = future;
+
+            released.whenComplete((value, error) -> release());
+
+            if (finished.get())
+            {
+                // timed out before the pipeline started
+                future.cancel(false);
+            }
+
+            future.whenComplete((value, error) -> finish(error));
+        }
+
+        /**
+         * Produce the error response and stop the pipeline.
+         *
+         * @param error the cause
+         */
+        private void abort(Throwable error)
+        {
+            // The response is finished first, so the cancellation
+            // below does not report itself as the error
+            finish(error);
+
+            CompletableFuture<Void> future = stage;
+            if (future != null)
+            {
+                future.cancel(false);
+            }
+        }
+
+        /**
+         * Finish the response. Handles a pipeline error and completes the
+         * async context. Only the first call has an effect.
+         *
+         * @param error the pipeline error or null
+         */
+        void finish(Throwable error)
+        {
+            if (!finished.compareAndSet(false, true))
+            {
+                return;
+            }
+
+            try
+            {
+                if (error != null)
+                {
+                    Throwable t = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    handleException(pipelineData, res, t);
+                }
+            }
+            catch (Throwable t)
+            {
+                handleHorribleException(res, t);
+            }
+            finally
+            {
+                try
+                {
+                    asyncContext.complete();
+                }
+                catch (IllegalStateException e)
+                {
+                    log.warn("Async request already completed: {}", e.getMessage());
+                }
+
+                release();
+            }
+        }
+
+        /**
+         * Release the pipeline data for the response or the pipeline. The
+         * data is put back for recycling when both have released it.
+         */
+        private void release()
+        {
+            if (users.decrementAndGet() == 0)
+            {
+                try
+                {
+                    pipelineData.close();
+                }
+                catch (Exception e)
+                {
+                    log.error("Could not recycle pipeline data", e);
+                }
+            }
+        }
+
+        /**
+         * @see javax.servlet.AsyncListener#onTimeout(javax.servlet.AsyncEvent)
+         */
+        @Override
+        public void onTimeout(AsyncEvent event)
+        {
+            abort(new TimeoutException("Async request timed out after "
+                    + asyncContext.getTimeout() + " ms"));
+        }
+
+        /**
+         * @see javax.servlet.AsyncListener#onError(javax.servlet.AsyncEvent)
+         */
+        @Override
+        public void onError(AsyncEvent event)
+        {
+            abort(event.getThrowable());
+        }
+
+        /**
+         * @see javax.servlet.AsyncListener#onComplete(javax.servlet.AsyncEvent)
+         */
+        @Override
+        public void onComplete(AsyncEvent event)
+        {
+            // nothing to do
+        }
+
+        /**
+         * @see javax.servlet.AsyncListener#onStartAsync(javax.servlet.AsyncEvent)
+         */
+        @Override
+        public void onStartAsync(AsyncEvent event)
+        {
+            // nothing to do
+        }
+    }
+
+    /**
+     * Perform turbine specific initialization of the pipeline data
+     *
+     * @param pipelineData
+     *            the pipeline data of the request
+     */
+    private void preparePipelineData(PipelineData pipelineData)
+    {
+        // Perform turbine specific initialization below.
+        // put the data into the pipeline
+        pipelineData.set(RunData.RUNDATA_KEY, pipelineData.getRunData());
+
+        // If this is the first invocation, perform some
+        // initialization. Certain services need RunData to initialize
+        // themselves.
+        if (firstDoGet)
+        {
+            init(pipelineData);
+        }
+    }
+
     /**
      * In this application doGet and doPost are the same thing.
      *
@@ -916,7 +1427,7 @@ public class Turbine extends HttpServlet
      * @param data
      *            Turbine request data
      */
-    public static synchronized void saveServletInfo(PipelineData data)
+    public static void saveServletInfo(PipelineData data)
     {
         // Store the context path for tools like ContentURI and
         // the UIManager that use webapp context path information
@@ -925,7 +1436,7 @@ public class Turbine extends HttpServlet
         //
         // Bundle all the information above up into a convenient structure
         //
-        ServerData requestServerData = data.get(Turbine.class, ServerData.class);
+        ServerData requestServerData = data.get(RunData.SERVER_DATA_KEY);
         serverData = (ServerData) requestServerData.clone();
     }
 
@@ -76,12 +76,60 @@ public interface TurbineConstants
 	/** Default value of the Turbine Module Caching */
 	boolean MODULE_CACHE_DEFAULT = true;
 
-    /** Property that controls the module cache size. */
+    /** Property that controls the initial capacity of the module cache. */
     String MODULE_CACHE_SIZE_KEY = "module.cache.size";
 
     /** Default value of the Turbine Module Cache Size */
     int MODULE_CACHE_SIZE_DEFAULT = 128;
 
+    /** Property that controls the maximum number of cached modules per type, 0 for no limit. */
+    String MODULE_CACHE_MAX_SIZE_KEY = "module.cache.max.size";
+
+    /** Default maximum number of cached modules per type, no limit */
+    int MODULE_CACHE_MAX_SIZE_DEFAULT = 0;
+
+    /** Property that controls the size of the cache of module classes not found. */
+    String MODULE_NEGATIVE_CACHE_SIZE_KEY = "module.cache.negative.size";
+
+    /** Default size of the cache of module classes not found */
+    int MODULE_NEGATIVE_CACHE_SIZE_DEFAULT = 1024;
+
+    /** Property that controls the use of the build-time module index. */
+    String MODULE_INDEX_KEY = "module.index";
+
+    /** Default value of the use of the build-time module index */
+    boolean MODULE_INDEX_DEFAULT = false;
+
+    /** Property that controls loading the modules at startup. */
+    String MODULE_WARMUP_KEY = "module.warmup";
+
+    /** Default value of loading the modules at startup */
+    boolean MODULE_WARMUP_DEFAULT = false;
+
+    /** Number of threads loading the modules at startup, 0 for the number of processors. */
+    String MODULE_WARMUP_PARALLELISM_KEY = "module.warmup.parallelism";
+
+    /** Default number of threads loading the modules at startup */
+    int MODULE_WARMUP_PARALLELISM_DEFAULT = 0;
+
+    /** Modules to load at startup in addition to the module index, as type:name, e.g. screen:Index */
+    String MODULE_WARMUP_MODULES_KEY = "module.warmup.modules";
+
+    /** Templates whose module and template mappings are resolved at startup */
+    String MODULE_WARMUP_TEMPLATES_KEY = "module.warmup.templates";
+
+    /** Property that controls whether failures of the module warm-up fail the startup. */
+    String MODULE_WARMUP_FAIL_KEY = "module.warmup.fail";
+
+    /** Default value of failing the startup on module warm-up failures */
+    boolean MODULE_WARMUP_FAIL_DEFAULT = false;
+
+    /** Property that controls the maximum number of bytes of cached screen and layout output. */
+    String OUTPUT_CACHE_SIZE_KEY = "output.cache.size";
+
+    /** Default maximum number of bytes of cached screen and layout output */
+    int OUTPUT_CACHE_SIZE_DEFAULT = 16 * 1024 * 1024;
+
 	/** The packages where Turbine will look for modules. */
 	String MODULE_PACKAGES = "module.packages";
 
@@ -157,6 +205,12 @@ public interface TurbineConstants
 	/** Default layout. */
 	String LAYOUT_DEFAULT = "layout.default";
 
+	/** Select whether the VelocityOnlyLayout streams the screen into the layout output. */
+	String LAYOUT_STREAMING_KEY = "layout.streaming";
+
+	/** Default value for layout.streaming */
+	boolean LAYOUT_STREAMING_DEFAULT = false;
+
 	/** Default page. */
 	String PAGE_DEFAULT_KEY = "page.default";
 
@@ -317,4 +371,41 @@ public interface TurbineConstants
 	 * {@link org.apache.turbine.Turbine} servlet.
 	 */
 	String STANDARD_PIPELINE = TurbinePipeline.class.getName();
+
+	/** The key for the descriptor of the default pipeline */
+	String PIPELINE_DEFAULT_DESCRIPTOR_KEY = "pipeline.default.descriptor";
+
+	/** The key for the list of names of route-specific pipelines */
+	String PIPELINE_ROUTES_KEY = "pipeline.routes";
+
+	/**
+	 * The prefix of the configuration of a route-specific pipeline, followed
+	 * by the route name and one of <code>descriptor</code>, <code>path</code>
+	 * or <code>screen</code>.
+	 */
+	String PIPELINE_ROUTE_PREFIX = "pipeline.route";
+
+	/** The key to enable async processing of requests */
+	String PIPELINE_ASYNC_KEY = "pipeline.async";
+
+	/** Async processing is off by default */
+	boolean PIPELINE_ASYNC_DEFAULT = false;
+
+	/** The key for the timeout of async requests in milliseconds */
+	String PIPELINE_ASYNC_TIMEOUT_KEY = "pipeline.async.timeout";
+
+	/**
+	 * The key to run the pipeline on virtual threads (Java 21 or later).
+	 * Implies async processing.
+	 */
+	String PIPELINE_VIRTUAL_THREADS_KEY = "pipeline.virtualthreads";
+
+	/** Virtual threads are off by default */
+	boolean PIPELINE_VIRTUAL_THREADS_DEFAULT = false;
+
+	/** The configuration prefix of the concurrency limit valve */
+	String PIPELINE_LIMITER_KEY = "pipeline.limiter";
+
+	/** The logger receiving traces of slow requests */
+	String TRACE_LOG_NAME = "org.apache.turbine.trace";
 }
@@ -20,13 +20,19 @@ package org.apache.turbine.annotation;
  */
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
@@ -38,7 +44,6 @@ import org.apache.logging.log4j.Logger;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.Service;
-import org.apache.turbine.services.ServiceManager;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
 import org.apache.turbine.util.TurbineException;
@@ -56,7 +61,10 @@ public class AnnotationProcessor
     private static Logger log = LogManager.getLogger(AnnotationProcessor.class);
 
     /** Annotation cache */
-    private static ConcurrentMap<String, Annotation[]> annotationCache = new ConcurrentHashMap<>();
+    private static ConcurrentMap<AccessibleObject, Annotation[]> annotationCache = new ConcurrentHashMap<>();
+
+    /** Compiled authorization predicates */
+    private static ConcurrentMap<AccessibleObject, Authorization> authorizationCache = new ConcurrentHashMap<>();
 
     /**
      * Get cached annotations for field, class or method
@@ -67,12 +75,11 @@ public class AnnotationProcessor
      */
     public static Annotation[] getAnnotations(AccessibleObject object)
     {
-        String key = object.getClass() + object.toString();
-        Annotation[] annotations = annotationCache.get(key);
+        Annotation[] annotations = annotationCache.get(object);
         if (annotations == null)
         {
             Annotation[] newAnnotations = object.getDeclaredAnnotations();
-            annotations = annotationCache.putIfAbsent(key, newAnnotations);
+            annotations = annotationCache.putIfAbsent(object, newAnnotations);
             if (annotations == null)
             {
                 annotations = newAnnotations;
@@ -116,111 +123,128 @@ public class AnnotationProcessor
      */
     public static <A extends TurbineAccessControlList<?>> boolean isAuthorized(AccessibleObject object, A acl, ConditionType conditonType)
     {
-        Annotation[] annotations = getAnnotations(object);
+        Authorization authorization = authorizationCache.get(object);
 
-        for (Annotation annotation : annotations)
+        if (authorization == null)
         {
-            if (annotation instanceof TurbineRequiredRole)
+            Authorization newAuthorization = new Authorization(getAnnotations(object));
+            authorization = authorizationCache.putIfAbsent(object, newAuthorization);
+            if (authorization == null)
             {
-                TurbineRequiredRole trr = (TurbineRequiredRole) annotation;
-                String[] roleNames = trr.value();
-                String group = trr.group();
+                authorization = newAuthorization;
+            }
+        }
+
+        return conditonType == ConditionType.ANY
+                ? authorization.any.test(acl)
+                : authorization.compound.test(acl);
+    }
+
+    /**
+     * Checks a single role or permission against an access control list
+     */
+    @FunctionalInterface
+    private interface AccessCheck
+    {
+        boolean test(TurbineAccessControlList<?> acl, String name);
+    }
+
+    /**
+     * The authorization predicates of an annotated object, compiled once
+     * from its {@link TurbineRequiredRole} and {@link TurbineRequiredPermission}
+     * annotations for both condition types.
+     */
+    private static final class Authorization
+    {
+        /** All required roles and permissions must be granted */
+        final Predicate<TurbineAccessControlList<?>> compound;
 
-                if (StringUtils.isEmpty(group)) // global group
+        /** One of the roles or permissions of an annotation must be granted */
+        final Predicate<TurbineAccessControlList<?>> any;
+
+        Authorization(Annotation[] annotations)
+        {
+            Predicate<TurbineAccessControlList<?>> compoundChain = acl -> true;
+            Predicate<TurbineAccessControlList<?>> anyChain = acl -> true;
+
+            // Build the chains from the last annotation to the first,
+            // so that they are evaluated in declaration order
+            for (int i = annotations.length - 1; i >= 0; i--)
+            {
+                Annotation annotation = annotations[i];
+                final String[] names;
+                final AccessCheck check;
+                final boolean denyIfNoneGranted;
+
+                if (annotation instanceof TurbineRequiredRole)
                 {
-                    for (String roleName : roleNames)
+                    TurbineRequiredRole trr = (TurbineRequiredRole) annotation;
+                    String group = trr.group();
+                    names = trr.value().clone();
+
+                    if (StringUtils.isEmpty(group)) // global group
                     {
-                        switch ( conditonType ) {
-                            case COMPOUND: default:
-                                if (!acl.hasRole(roleName))
-                                {
-                                    return false;
-                                }
-                                break;
-                            case ANY:
-                                if (acl.hasRole(roleName))
-                                {
-                                    return true;
-                                }
-                                break;
-                        }
+                        check = (acl, name) -> acl.hasRole(name);
+                        // no matching global role is final for ANY
+                        denyIfNoneGranted = true;
                     }
-                    if (conditonType == ConditionType.ANY) { // nothing matched
-                        return false;
+                    else
+                    {
+                        check = (acl, name) -> acl.hasRole(name, group);
+                        denyIfNoneGranted = false;
                     }
                 }
-                else
+                else if (annotation instanceof TurbineRequiredPermission)
                 {
-                    for (String roleName : roleNames)
+                    TurbineRequiredPermission trp = (TurbineRequiredPermission) annotation;
+                    String group = trp.group();
+                    names = trp.value().clone();
+
+                    if (StringUtils.isEmpty(group)) // global group
                     {
-                        switch ( conditonType ) {
-                            case COMPOUND: default:
-                                if (!acl.hasRole(roleName, group))
-                                {
-                                    return false;
-                                }
-                                break;
-                            case ANY:
-                                if (acl.hasRole(roleName, group))
-                                {
-                                    return true;
-                                }
-                                break;
-                        }
+                        check = (acl, name) -> acl.hasPermission(name);
+                    }
+                    else
+                    {
+                        check = (acl, name) -> acl.hasPermission(name, group);
                     }
+                    denyIfNoneGranted = false;
+                }
+                else
+                {
+                    continue;
                 }
-            }
-            else if (annotation instanceof TurbineRequiredPermission)
-            {
-                TurbineRequiredPermission trp = (TurbineRequiredPermission) annotation;
-                String[] permissionNames = trp.value();
-                String group = trp.group();
 
-                if (StringUtils.isEmpty(group)) // global group
+                Predicate<TurbineAccessControlList<?>> nextCompound = compoundChain;
+                compoundChain = acl ->
                 {
-                    for (String permissionName : permissionNames)
+                    for (String name : names)
                     {
-                        switch ( conditonType ) {
-                            case COMPOUND: default:
-                                if (!acl.hasPermission(permissionName))
-                                {
-                                    return false;
-                                }
-                                break;
-                            case ANY:
-                                if (acl.hasPermission(permissionName))
-                                {
-                                    return true;
-                                }
-                                break;
+                        if (!check.test(acl, name))
+                        {
+                            return false;
                         }
                     }
-                }
-                else
+                    return nextCompound.test(acl);
+                };
+
+                Predicate<TurbineAccessControlList<?>> nextAny = anyChain;
+                anyChain = acl ->
                 {
-                    for (String permissionName : permissionNames)
+                    for (String name : names)
                     {
-                        switch ( conditonType ) {
-                            case COMPOUND: default:
-                                if (!acl.hasPermission(permissionName, group))
-                                {
-                                    return false;
-                                }
-                                break;
-                            case ANY:
-                                if (acl.hasPermission(permissionName, group))
-                                {
-                                    return true;
-                                }
-                                break;
+                        if (check.test(acl, name))
+                        {
+                            return true;
                         }
-
                     }
-                }
+                    return !denyIfNoneGranted && nextAny.test(acl);
+                };
             }
-        }
 
-        return true;
+            compound = compoundChain;
+            any = anyChain;
+        }
     }
 
     /**
@@ -245,333 +269,437 @@ public class AnnotationProcessor
      */
     public static void process(Object object, Boolean hasTurbineServicesInMethodFields) throws TurbineException
     {
-        ServiceManager manager = null;
-        Configuration config = null;
-        AssemblerBrokerService assembler = null;
-        PoolService pool= null;
-        Class<?> clazz = object.getClass();
-        
-        boolean isTurbineService = false;
-        if ( clazz.isAnnotationPresent(TurbineService.class)) {
-            TurbineService service = clazz.getAnnotation(TurbineService.class);
-            log.debug("retrieved class annotation: "+ service);
-            isTurbineService = true;
-        } 
-
-        while (clazz != null)
-        {
-            Field[] fields = clazz.getDeclaredFields();
-
-            for (Field field : fields)
+        InjectionPlan plan = injectionPlans.get(object.getClass());
+
+        for (Injector injector : plan.fieldInjectors)
+        {
+            injector.inject(object);
+        }
+
+        if (hasTurbineServicesInMethodFields)
+        {
+            for (Injector injector : plan.methodInjectors)
             {
-                Annotation[] annotations = getAnnotations(field);
+                injector.inject(object);
+            }
+        }
+    }
 
-                for (Annotation a : annotations)
+    /**
+     * Injects one annotated field or method of an object
+     */
+    @FunctionalInterface
+    private interface Injector
+    {
+        /**
+         * Inject the value into the object
+         *
+         * @param object the object to process
+         * @throws TurbineException if the value could not be injected
+         */
+        void inject(Object object) throws TurbineException;
+    }
+
+    /**
+     * The injections for the instances of a class, resolved once from the
+     * annotations of the class and its super classes
+     */
+    private static final class InjectionPlan
+    {
+        /** Injections into annotated fields */
+        final Injector[] fieldInjectors;
+
+        /** Injections through annotated public methods */
+        final Injector[] methodInjectors;
+
+        InjectionPlan(Class<?> type)
+        {
+            boolean isTurbineService = type.isAnnotationPresent(TurbineService.class);
+            if (isTurbineService)
+            {
+                log.debug("retrieved class annotation: {}", type.getAnnotation(TurbineService.class));
+            }
+
+            List<Injector> injectors = new ArrayList<>();
+
+            for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass())
+            {
+                for (Field field : clazz.getDeclaredFields())
                 {
-                    if (a instanceof TurbineService)
+                    for (Annotation a : getAnnotations(field))
                     {
-                        if (manager == null)
+                        if (a instanceof TurbineService)
                         {
-                            manager = TurbineServices.getInstance();
+                            injectors.add(turbineServiceInjector(field, (TurbineService) a));
                         }
-                        injectTurbineService(object, manager, field, (TurbineService) a);
-                    }
-                    else if (a instanceof TurbineConfiguration)
-                    {
-                        if (config == null)
+                        else if (a instanceof TurbineConfiguration)
                         {
-                            config = Turbine.getConfiguration();
+                            injectors.add(turbineConfigurationInjector(field, (TurbineConfiguration) a));
                         }
-                        injectTurbineConfiguration(object, config, field, (TurbineConfiguration) a);
-                    }
-                    else if (a instanceof TurbineLoader)
-                    {
-                        if (assembler == null)
+                        else if (a instanceof TurbineLoader)
                         {
-                            assembler = (AssemblerBrokerService) TurbineServices.getInstance().
-                                getService(AssemblerBrokerService.SERVICE_NAME);
+                            injectors.add(turbineLoaderInjector(field, (TurbineLoader) a));
                         }
-                        injectTurbineLoader(object, assembler, field, (TurbineLoader) a);
-                    }
-                    else if (a instanceof TurbineTool)
-                    {
-                        if (pool == null)
+                        else if (a instanceof TurbineTool)
                         {
-                            pool = (PoolService)TurbineServices.getInstance()
-                                    .getService(PoolService.ROLE);
+                            injectors.add(turbineToolInjector(field, (TurbineTool) a));
                         }
-                        injectTurbineTool(object, pool, field, (TurbineTool) a);
+                    }
+
+                    if (isTurbineService && field.getType().isAnnotationPresent(TurbineService.class))
+                    {
+                        TurbineService service = field.getType().getAnnotation(TurbineService.class);
+                        log.debug("retrieved implicit class annotation: {}", service);
+                        injectors.add(turbineServiceInjector(field, service));
+                    }
+                }
+            }
+
+            fieldInjectors = injectors.toArray(new Injector[0]);
+            injectors.clear();
+
+            for (Method method : type.getMethods())
+            {
+                for (Annotation a : getAnnotations(method))
+                {
+                    if (a instanceof TurbineService)
+                    {
+                        injectors.add(turbineServiceInjector(method, (TurbineService) a));
                     }
                 }
+
                 if (isTurbineService)
                 {
-                    if (field.getType().isAnnotationPresent(TurbineService.class)) {
-                        TurbineService service = field.getType().getAnnotation(TurbineService.class);
-                        log.debug("retrieved implicit class annotation: "+ service);
-                        if (manager == null)
+                    for (Class<?> c : method.getParameterTypes())
+                    {
+                        if (c.isAnnotationPresent(TurbineService.class))
                         {
-                            manager = TurbineServices.getInstance();
+                            TurbineService service = c.getAnnotation(TurbineService.class);
+                            log.debug("retrieved implicit service in Turbine service: {}", service);
+                            injectors.add(turbineServiceInjector(method, service));
                         }
-                        injectTurbineService(object, manager, field, service);
-                    }    
+                    }
                 }
             }
 
-            if (hasTurbineServicesInMethodFields) {
-                manager = processMethods(object, manager, clazz, isTurbineService);
-            }
+            methodInjectors = injectors.toArray(new Injector[0]);
+        }
+    }
+
+    /** The injection plans, built once per class */
+    private static final ClassValue<InjectionPlan> injectionPlans = new ClassValue<InjectionPlan>()
+    {
+        @Override
+        protected InjectionPlan computeValue(Class<?> type)
+        {
+            return new InjectionPlan(type);
+        }
+    };
+
+    /**
+     * Create a method handle of type (Object, Object)void which sets the field
+     *
+     * @param field the field
+     * @return the setter
+     * @throws IllegalAccessException if the field is not accessible or
+     *         is static final and thus cannot be written at all
+     */
+    private static MethodHandle setter(Field field) throws IllegalAccessException
+    {
+        if (Modifier.isStatic(field.getModifiers())
+                && Modifier.isFinal(field.getModifiers()))
+        {
+            throw new IllegalAccessException("Cannot inject into static final field "
+                    + field.getDeclaringClass().getName() + "." + field.getName());
+        }
+
+        field.setAccessible(true);
+        MethodHandle setter = MethodHandles.lookup().unreflectSetter(field);
 
-            clazz = clazz.getSuperclass();
+        if (Modifier.isStatic(field.getModifiers()))
+        {
+            setter = MethodHandles.dropArguments(setter, 0, Object.class);
         }
+
+        return setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
     }
 
-    private static ServiceManager processMethods(Object object, ServiceManager manager, Class<?> clazz, boolean isTurbineService) throws TurbineException {
-        Method[] methods = clazz.getMethods();
+    /**
+     * Create a method handle of type (Object, Object)void which calls the
+     * method with one parameter
+     *
+     * @param method the method
+     * @return the invoker
+     * @throws IllegalAccessException if the method is not accessible
+     */
+    private static MethodHandle invoker(Method method) throws IllegalAccessException
+    {
+        if (method.getParameterCount() != 1)
+        {
+            throw new IllegalArgumentException("Method " + method + " must have exactly one parameter");
+        }
+
+        method.setAccessible(true);
+        MethodHandle invoker = MethodHandles.lookup().unreflect(method);
 
-        for (Method method : methods)
+        if (Modifier.isStatic(method.getModifiers()))
         {
-            Annotation[] annotations = getAnnotations(method);
-            for (Annotation a : annotations)
-            {
-                if (a instanceof TurbineService)
-                {
+            invoker = MethodHandles.dropArguments(invoker, 0, Object.class);
+        }
 
-                    if (manager == null)
-                    {
-                        manager = TurbineServices.getInstance();
-                    }
-                    injectTurbineService(object, manager, method, (TurbineService) a);
-                }
-            }
-            if (isTurbineService)
-            {
-                if (manager == null)
-                {
-                    manager = TurbineServices.getInstance();
-                }
-                Class<?>[] classes = method.getParameterTypes();
-                for (Class<?> c : classes)
-                {
-                    if ( c.isAnnotationPresent(TurbineService.class)) {
-                        TurbineService service = c.getAnnotation(TurbineService.class);
-                        log.debug("retrieved implicit service in Turbien service: "+ service);
-                        injectTurbineService(object, manager, method, service);
-                    } 
-                    
-                }
-            }
+        return invoker.asType(MethodType.methodType(void.class, Object.class, Object.class));
+    }
+
+    /**
+     * Set a value through a setter or invoker handle
+     *
+     * @param handle the handle of type (Object, Object)void
+     * @param object the object to process
+     * @param value the value to inject
+     * @param description the description of the value for the error message
+     * @throws TurbineException if the value could not be injected
+     */
+    private static void inject(MethodHandle handle, Object object, Object value, String description)
+            throws TurbineException
+    {
+        try
+        {
+            handle.invokeExact(object, value);
+        }
+        catch (Error e)
+        {
+            throw e;
+        }
+        catch (Throwable t)
+        {
+            throw new TurbineException("Could not inject " + description
+                    + " into object " + object, t);
         }
-        return manager;
+    }
+
+    /**
+     * Create an injector which fails because the target is not accessible
+     *
+     * @param description the description of the value for the error message
+     * @param e the cause
+     * @return the injector
+     */
+    private static Injector failure(String description, Exception e)
+    {
+        return object ->
+        {
+            throw new TurbineException("Could not inject " + description
+                    + " into object " + object, e);
+        };
     }
 
     /**
      * Inject Turbine loader into field of object
      *
-     * @param object the object to process
-     * @param assembler AssemblerBrokerService, provides the loader
      * @param field the field
      * @param annotation the value of the annotation
      *
-     * @throws TurbineException if loader cannot be set
+     * @return the injector
      */
-    private static void injectTurbineLoader(Object object, AssemblerBrokerService assembler, Field field, TurbineLoader annotation) throws TurbineException
+    private static Injector turbineLoaderInjector(Field field, TurbineLoader annotation)
     {
-        Loader<?> loader = assembler.getLoader(annotation.value());
-        field.setAccessible(true);
-
+        MethodHandle setter;
         try
         {
-            log.debug("Injection of {} into object {}", loader, object);
-
-            field.set(object, loader);
+            setter = setter(field);
         }
-        catch (IllegalArgumentException | IllegalAccessException e)
+        catch (IllegalAccessException | RuntimeException e)
         {
-            throw new TurbineException("Could not inject loader "
-                    + loader + " into object " + object, e);
+            return failure("loader " + annotation.value(), e);
         }
+
+        return object ->
+        {
+            AssemblerBrokerService assembler = (AssemblerBrokerService) TurbineServices.getInstance()
+                    .getService(AssemblerBrokerService.SERVICE_NAME);
+            Loader<?> loader = assembler.getLoader(annotation.value());
+
+            log.debug("Injection of {} into object {}", loader, object);
+            inject(setter, object, loader, "loader " + loader);
+        };
     }
-    
+
     /**
-     * Inject Turbine tool into field of object and 
+     * Inject Turbine tool into field of object and
      * injects annotations provided in the tool.
      *
-     * @param object the object to process
-     * @param pool PoolService, provides the pool
      * @param field the field
      * @param annotation the value of the annotation
      *
-     * @throws TurbineException if loader cannot be set
+     * @return the injector
      */
-    private static void injectTurbineTool(Object object, PoolService pool, Field field, TurbineTool annotation) throws TurbineException
+    private static Injector turbineToolInjector(Field field, TurbineTool annotation)
     {
-        Object tool = null;
+        MethodHandle setter;
         try
         {
-            tool = pool.getInstance(annotation.value());
+            setter = setter(field);
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            return failure("tool " + annotation.value(), e);
+        }
+
+        return object ->
+        {
+            Object tool = null;
+            try
+            {
+                PoolService pool = (PoolService) TurbineServices.getInstance()
+                        .getService(PoolService.ROLE);
+                tool = pool.getInstance(annotation.value());
+            }
+            catch (PoolException e)
+            {
+                throw new TurbineException("Could not inject tool "
+                        + tool + " into object " + object, e);
+            }
+
             // inject annotations in tool
             process(tool);
 
-            field.setAccessible(true);
             log.debug("Injection of {} into object {}", tool, object);
-
-            field.set(object, tool);
-        }
-        catch (PoolException | IllegalArgumentException | IllegalAccessException e)
-        {
-            throw new TurbineException("Could not inject tool "
-                    + tool + " into object " + object, e);
-        } 
+            inject(setter, object, tool, "tool " + tool);
+        };
     }
 
     /**
      * Inject Turbine configuration into field of object
      *
-     * @param object the object to process
-     * @param conf the configuration to use
      * @param field the field
      * @param annotation the value of the annotation
      *
-     * @throws TurbineException if configuration cannot be set
+     * @return the injector
      */
-    @SuppressWarnings("boxing")
-    private static void injectTurbineConfiguration(Object object, Configuration conf, Field field, TurbineConfiguration annotation) throws TurbineException
+    private static Injector turbineConfigurationInjector(Field field, TurbineConfiguration annotation)
     {
         Class<?> type = field.getType();
         String key = annotation.value();
+        MethodHandle setter;
 
         try
         {
-            if (Configuration.class.isAssignableFrom(type))
-            {
-                final Configuration injectConfiguration;
-                // Check for annotation value
-                if (StringUtils.isNotEmpty(key))
-                {
-                    injectConfiguration = conf.subset(key);
-                }
-                else
-                {
-                    injectConfiguration = conf;
-                }
+            setter = setter(field);
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            return failure("configuration " + key, e);
+        }
 
-                log.debug("Injection of {} into object {}", injectConfiguration, object);
+        if (Configuration.class.isAssignableFrom(type))
+        {
+            // Check for annotation value
+            boolean subset = StringUtils.isNotEmpty(key);
 
-                field.setAccessible(true);
-                field.set(object, injectConfiguration);
-            }
-            else if (conf.containsKey(key))
+            return object ->
             {
-                if ( String.class.isAssignableFrom( type ) )
-                {
-                    String value = conf.getString(key);
-                    log.debug("Injection of key {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.set(object, value);
-                }
-                else if ( Boolean.TYPE.isAssignableFrom( type ) )
-                {
-                    boolean value = conf.getBoolean(key);
-                    log.debug("Injection of key {} into object {}", value, object);
+                Configuration conf = Turbine.getConfiguration();
+                Configuration injectConfiguration = subset ? conf.subset(key) : conf;
 
-                    field.setAccessible(true);
-                    field.setBoolean(object, value);
-                }
-                else if ( Integer.TYPE.isAssignableFrom( type ) )
-                {
-                    int value = conf.getInt(key);
-                    log.debug("Injection of key {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setInt(object, value);
-                }
-                else if ( Long.TYPE.isAssignableFrom( type ) )
-                {
-                    long value = conf.getLong(key);
-                    log.debug("Injection of key {} into object {}", value, object);
+                log.debug("Injection of {} into object {}", injectConfiguration, object);
+                inject(setter, object, injectConfiguration, "configuration " + conf);
+            };
+        }
 
-                    field.setAccessible(true);
-                    field.setLong(object, value);
-                }
-                else if ( Short.TYPE.isAssignableFrom( type ) )
-                {
-                    short value = conf.getShort(key);
-                    log.debug("Injection of key {} into object {}", value, object);
+        BiFunction<Configuration, String, Object> reader = getConfigurationReader(type);
 
-                    field.setAccessible(true);
-                    field.setShort(object, value);
-                }
-                else if ( Long.TYPE.isAssignableFrom( type ) )
-                {
-                    long value = conf.getLong(key);
-                    log.debug("Injection of key {} into object {}", value, object);
+        return object ->
+        {
+            Configuration conf = Turbine.getConfiguration();
 
-                    field.setAccessible(true);
-                    field.setLong(object, value);
-                }
-                else if ( Float.TYPE.isAssignableFrom( type ) )
+            if (conf.containsKey(key))
+            {
+                if (reader == null)
                 {
-                    float value = conf.getFloat(key);
-                    log.debug("Injection of key {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setFloat(object, value);
+                    throw new TurbineException("Could not inject type " +
+                      type + " into object " + object + ". Type "+ type + " not assignable in configuration "
+                      + conf + " (allowed: String, Boolean, List, Number Types, "+ Configuration.class.getName() + ").");
                 }
-                else if ( Double.TYPE.isAssignableFrom( type ) )
-                {
-                    double value = conf.getDouble(key);
-                    log.debug("Injection of key {} into object {}", value, object);
 
-                    field.setAccessible(true);
-                    field.setDouble(object, value);
-                }
-                else if ( Byte.TYPE.isAssignableFrom( type ) )
+                Object value = reader.apply(conf, key);
+                log.debug("Injection of key {} into object {}", value, object);
+                inject(setter, object, value, "configuration " + conf);
+            }
+            else
+            {
+                try
                 {
-                    byte value = conf.getByte(key);
-                    log.debug("Injection of key {} into object {}", value, object);
-
-                    field.setAccessible(true);
-                    field.setByte(object, value);
+                    Object defaultValue = field.get(object);
+                    // this should not throw an error as it might be set later from container  e. g. session.timeout
+                    // we might check field.get<Type> to show the default value of the field, but this is only a guess, it might be set even later..
+                    log.info("No key {} of type {} injected into object {}. Field {} is set to default {}.", key, type, object, field.getName(), defaultValue);
                 }
-                else if ( List.class.isAssignableFrom( type ) )
+                catch (IllegalArgumentException | IllegalAccessException e)
                 {
-                    List<Object> values = conf.getList(key);
-                    log.debug("Injection of key {} into object {}", values, object);
-
-                    field.setAccessible(true);
-                    field.set(object, values);
-                } else {
-                    throw new TurbineException("Could not inject type " + 
-                      type + " into object " + object + ". Type "+ type + " not assignable in configuration "
-                      + conf + " (allowed: String, Boolean, List, Number Types, "+ Configuration.class.getName() + ").");
+                    throw new TurbineException("Could not inject configuration "
+                            + conf + " into object " + object, e);
                 }
-            } else {
-                field.setAccessible(true);
-                Object defaultValue = field.get(object);
-                // this should not throw an error as it might be set later from container  e. g. session.timeout 
-                // we might check field.get<Type> to show the default value of the field, but this is only a guess, it might be set even later..
-                log.info("No key {} of type {} injected into object {}. Field {} is set to default {}.", key, type, object, field.getName(), defaultValue);
             }
+        };
+    }
+
+    /**
+     * Get the function which reads a configuration value of the given type
+     *
+     * @param type the type of the field
+     * @return the reader or null if the type is not supported
+     */
+    private static BiFunction<Configuration, String, Object> getConfigurationReader(Class<?> type)
+    {
+        if (String.class.isAssignableFrom(type))
+        {
+            return (conf, key) -> conf.getString(key);
         }
-        catch (IllegalArgumentException | IllegalAccessException e)
+        else if (Boolean.TYPE.isAssignableFrom(type))
         {
-            throw new TurbineException("Could not inject configuration "
-                    + conf + " into object " + object, e);
+            return (conf, key) -> Boolean.valueOf(conf.getBoolean(key));
         }
+        else if (Integer.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Integer.valueOf(conf.getInt(key));
+        }
+        else if (Long.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Long.valueOf(conf.getLong(key));
+        }
+        else if (Short.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Short.valueOf(conf.getShort(key));
+        }
+        else if (Float.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Float.valueOf(conf.getFloat(key));
+        }
+        else if (Double.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Double.valueOf(conf.getDouble(key));
+        }
+        else if (Byte.TYPE.isAssignableFrom(type))
+        {
+            return (conf, key) -> Byte.valueOf(conf.getByte(key));
+        }
+        else if (List.class.isAssignableFrom(type))
+        {
+            return (conf, key) -> conf.getList(key);
+        }
+
+        return null;
     }
 
     /**
      * Inject Turbine service into field of object
      *
-     * @param object the object to process
-     * @param manager the service manager
      * @param field the field
      * @param annotation the value of the annotation
      *
-     * @throws TurbineException if service is not available
+     * @return the injector
      */
-    private static void injectTurbineService(Object object, ServiceManager manager, Field field, TurbineService annotation) throws TurbineException
+    private static Injector turbineServiceInjector(Field field, TurbineService annotation)
     {
         String serviceName = null;
         // Check for annotation value
@@ -581,7 +709,7 @@ public class AnnotationProcessor
         }
         // Check for fields SERVICE_NAME and ROLE
         else
-        { 
+        {
             // check field level annotation
             Field[] typeFields = field.getType().getFields();
             serviceName = checkServiceOrRoleInField(serviceName, typeFields);
@@ -589,9 +717,9 @@ public class AnnotationProcessor
             if ( (serviceName == null || serviceName.equals(Service.SERVICE_NAME)) &&
                     field.getType().isAnnotationPresent(TurbineService.class)) {
                 TurbineService service = field.getType().getAnnotation(TurbineService.class);
-                log.debug("retrieved class annotation: "+ service);
+                log.debug("retrieved class annotation: {}", service);
                 serviceName = service.value();
-            } 
+            }
         }
 
         if (StringUtils.isEmpty(serviceName))
@@ -600,34 +728,18 @@ public class AnnotationProcessor
             serviceName = field.getType().getName();
         }
 
-        log.debug("Looking up service for injection: {} for object {}", serviceName, object);
-
-        Object service = manager.getService(serviceName); // throws Exception on unknown service
-        field.setAccessible(true);
-
-        try
-        {
-            log.debug("Injection of {} into object {}", serviceName, object);
-
-            field.set(object, service);
-        }
-        catch (IllegalArgumentException | IllegalAccessException e)
-        {
-            throw new TurbineException("Could not inject service "
-                    + serviceName + " into object " + object, e);
-        }
+        return turbineServiceInjector(serviceName, () -> setter(field));
     }
 
     /**
-     * Injects Turbine service into method fields 
-     * 
-     * @param object the object to process
-     * @param manager the service manager
+     * Injects Turbine service into method fields
+     *
      * @param method The method
      * @param annotation the value of the annotation
-     * @throws TurbineException - If service could not be injected.
+     *
+     * @return the injector
      */
-    private static void injectTurbineService(Object object, ServiceManager manager, Method method, TurbineService annotation) throws TurbineException
+    private static Injector turbineServiceInjector(Method method, TurbineService annotation)
     {
         String serviceName = null;
         // Check for annotation value
@@ -643,40 +755,64 @@ public class AnnotationProcessor
                 Field[] fields = c.getFields();
                 // Check for fields SERVICE_NAME and ROLE
                 serviceName = checkServiceOrRoleInField(serviceName, fields);
-                
+
                 if ( (serviceName == null || serviceName.equals(Service.SERVICE_NAME)) &&
                         c.isAnnotationPresent(TurbineService.class)) {
                     TurbineService service = c.getAnnotation(TurbineService.class);
-                    log.debug("retrieved class annotation: "+ service);
+                    log.debug("retrieved class annotation: {}", service);
                     serviceName = service.value();
-                } 
-                
+                }
             }
         }
 
-        log.debug("Looking up service for injection: {} for object {}", serviceName, object);
         if (StringUtils.isEmpty(serviceName))
         {
             // Try interface class name
             serviceName = method.getName();
         }
 
-        Object service = manager.getService(serviceName); // throws Exception on unknown service
-        method.setAccessible(true);
+        return turbineServiceInjector(serviceName, () -> invoker(method));
+    }
+
+    /**
+     * Supplies the handle for an injection
+     */
+    @FunctionalInterface
+    private interface HandleFactory
+    {
+        MethodHandle create() throws IllegalAccessException;
+    }
+
+    /**
+     * Create an injector which looks up a service and injects it
+     *
+     * @param serviceName the name of the service
+     * @param handleFactory creates the setter or invoker handle
+     *
+     * @return the injector
+     */
+    private static Injector turbineServiceInjector(String serviceName, HandleFactory handleFactory)
+    {
+        MethodHandle handle;
 
         try
         {
-            log.debug("Injection of {} into object {}", serviceName, object);
-
-            Object[] paramValues = new Object[1];
-            paramValues[0] = service;
-            method.invoke(object, paramValues);
+            handle = handleFactory.create();
         }
-        catch (IllegalArgumentException | IllegalAccessException | InvocationTargetException e)
+        catch (IllegalAccessException | RuntimeException e)
         {
-            throw new TurbineException("Could not inject service "
-                    + serviceName + " into object " + object, e);
+            return failure("service " + serviceName, e);
         }
+
+        return object ->
+        {
+            log.debug("Looking up service for injection: {} for object {}", serviceName, object);
+
+            Object service = TurbineServices.getInstance().getService(serviceName); // throws Exception on unknown service
+
+            log.debug("Injection of {} into object {}", serviceName, object);
+            inject(handle, object, service, "service " + serviceName);
+        };
     }
 
     private static String checkServiceOrRoleInField(String serviceName, Field[] fields) {
@@ -0,0 +1,95 @@
+package org.apache.turbine.annotation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Annotation to mark screens and layouts whose rendered output is cached,
+ * see {@link org.apache.turbine.modules.screens.VelocityCachedScreen} and
+ * {@link org.apache.turbine.modules.layouts.VelocityCachedLayout}.
+ * The output is cached per template and the declared vary inputs.
+ */
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+@Inherited
+public @interface TurbineOutputCache
+{
+    /**
+     * Time to live of the cached output in seconds
+     *
+     * @return the time to live
+     */
+    int ttl() default 60;
+
+    /**
+     * Names of the request parameters the output depends on
+     *
+     * @return the parameter names
+     */
+    String[] parameters() default {};
+
+    /**
+     * Whether the output depends on the locale of the request
+     *
+     * @return true if the output is cached per locale
+     */
+    boolean locale() default false;
+
+    /**
+     * Whether the output depends on the skin of the user
+     *
+     * @return true if the output is cached per skin
+     */
+    boolean skin() default false;
+
+    /**
+     * Whether the output depends on the roles of the user
+     *
+     * @return true if the output is cached per set of roles
+     */
+    boolean roles() default false;
+
+    /**
+     * Tags of the cached output, which allow to invalidate all output
+     * depending on e.g. the same data at once
+     *
+     * @return the tags
+     */
+    String[] tags() default {};
+
+    /**
+     * Whether a layout is cached even if its screen checks the
+     * authorization of the user, e.g. a
+     * {@link org.apache.turbine.modules.screens.VelocitySecureScreen}.
+     * The screen is not executed on a cache hit, so the check is skipped
+     * then. Only set this if every user getting the same key may see the
+     * cached page, e.g. together with {@link #roles()}. Screens always
+     * run their checks.
+     *
+     * @return true if pages of secure screens are cached
+     */
+    boolean secure() default false;
+}
@@ -0,0 +1,46 @@
+package org.apache.turbine.annotation;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to mark request tools which are thread-safe and keep no state
+ * of their own between requests. The pull service creates such a tool once
+ * and puts it into the context of every request instead of taking an
+ * instance from the pool and initializing it.
+ * <p>
+ * The tool is initialized like a global tool, with a null parameter. If
+ * it needs request data, it implements
+ * {@link org.apache.turbine.services.pull.SharedApplicationTool}.
+ * <p>
+ * The annotation is not inherited, as subclasses may keep request state.
+ */
+@Documented
+@Retention( RetentionPolicy.RUNTIME )
+@Target( ElementType.TYPE )
+public @interface TurbineSharedTool
+{
+    // marker annotation
+}
@@ -19,25 +19,31 @@ package org.apache.turbine.modules;
  * under the License.
  */
 
-import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.fulcrum.parser.ValueParser.URLCaseFolding;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
-import org.apache.turbine.annotation.AnnotationProcessor;
 import org.apache.turbine.annotation.TurbineActionEvent;
 import org.apache.turbine.annotation.TurbineConfiguration;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.util.RunData;
 
 /**
  * <p>
@@ -118,68 +124,232 @@ public abstract class ActionEvent implements Action
 	protected boolean bubbleUpException = TurbineConstants.ACTION_EVENT_BUBBLE_EXCEPTION_UP_DEFAULT;
 
 	/**
-	 * Cache for the methods to invoke
+	 * The event dispatch tables, built once per action class
 	 */
-	private ConcurrentMap<String, Method> methodCache = new ConcurrentHashMap<>();
+	private static final ClassValue<DispatchTable> DISPATCH_TABLES = new ClassValue<DispatchTable>()
+	{
+	    @Override
+	    protected DispatchTable computeValue(Class<?> type)
+	    {
+	        return new DispatchTable(type);
+	    }
+	};
 
 	/**
-	 * Retrieve a method of the given name and signature. The value is cached.
-	 *
-	 * @param name the name of the method
-	 * @param signature an array of classes forming the signature of the method
-	 * @param pp ParameterParser for correct folding
-	 *
-	 * @return the method object
-	 * @throws NoSuchMethodException if the method does not exist
+	 * An event handler method
 	 */
-	protected Method getMethod(String name, Class<?>[] signature, ParameterParser pp) throws NoSuchMethodException
+	private static final class Event
+	{
+	    /** The event name, the annotation value or the method name */
+	    final String name;
+
+	    /** The method */
+	    final Method method;
+
+	    /** The method handle of type (Object, Object[])void */
+	    final MethodHandle invoker;
+
+	    Event(String name, Method method, MethodHandle invoker)
+	    {
+	        this.name = name;
+	        this.method = method;
+	        this.invoker = invoker;
+	    }
+	}
+
+	/**
+	 * The key of a resolved event
+	 */
+	private static final class EventKey
 	{
-	    String cacheKey =
-				Arrays.stream(signature)
-						.map(clazz -> ':' + clazz.getCanonicalName())
-						.collect(Collectors.joining("", name, ""));
+	    final String name;
+	    final URLCaseFolding folding;
+	    final Class<?>[] signature;
 
-		Method method = this.methodCache.get(cacheKey);
+	    EventKey(String name, URLCaseFolding folding, Class<?>[] signature)
+	    {
+	        this.name = name;
+	        this.folding = folding;
+	        this.signature = signature;
+	    }
+
+	    @Override
+	    public int hashCode()
+	    {
+	        return (name.hashCode() * 31 + Objects.hashCode(folding)) * 31 + Arrays.hashCode(signature);
+	    }
+
+	    @Override
+	    public boolean equals(Object obj)
+	    {
+	        if (!(obj instanceof EventKey))
+	        {
+	            return false;
+	        }
+
+	        EventKey other = (EventKey) obj;
+	        return name.equals(other.name) && folding == other.folding
+	                && Arrays.equals(signature, other.signature);
+	    }
+	}
+
+	/**
+	 * The event handlers of an action class. The handlers are collected
+	 * once, lookups by button name and signature are cached.
+	 */
+	private static final class DispatchTable
+	{
+	    /** Methods annotated with {@link TurbineActionEvent} */
+	    private final List<Event> annotated = new ArrayList<>();
+
+	    /** Public methods named do&lt;Xxx&gt;, keyed by name */
+	    private final Map<String, List<Event>> legacy = new HashMap<>();
 
-	    if (method == null)
+	    /** Resolved events */
+	    private final ConcurrentMap<EventKey, Event> resolved = new ConcurrentHashMap<>();
+
+	    DispatchTable(Class<?> type)
 	    {
-	        // Try annotations of public methods
-	        Method[] methods = getClass().getMethods();
+	        MethodHandles.Lookup lookup = MethodHandles.lookup();
 
-        methodLoop:
-	        for (Method m : methods)
+	        for (Method m : type.getMethods())
 	        {
-	            Annotation[] annotations = AnnotationProcessor.getAnnotations(m);
-	            for (Annotation a : annotations)
+	            TurbineActionEvent tae = m.getAnnotation(TurbineActionEvent.class);
+	            String name = m.getName();
+	            boolean isLegacy = name.length() > METHOD_NAME_LENGTH
+	                    && name.startsWith(METHOD_NAME_PREFIX)
+	                    && name.equals(METHOD_NAME_PREFIX
+	                            + StringUtils.capitalize(name.substring(METHOD_NAME_LENGTH).toLowerCase()));
+
+	            if (tae == null && !isLegacy)
 	            {
-    	            if (a instanceof TurbineActionEvent)
-    	            {
-    	                TurbineActionEvent tae = (TurbineActionEvent) a;
-    	                if (name.equals(pp.convert(tae.value()))
-                            && Arrays.equals(signature, m.getParameterTypes()))
-    	                {
-    	                    method = m;
-    	                    break methodLoop;
-    	                }
-    	            }
+	                continue;
+	            }
+
+	            MethodHandle invoker = unreflect(lookup, m);
+
+	            if (tae != null)
+	            {
+	                annotated.add(new Event(tae.value(), m, invoker));
+	            }
+
+	            if (isLegacy)
+	            {
+	                legacy.computeIfAbsent(name, k -> new ArrayList<>())
+	                    .add(new Event(name, m, invoker));
 	            }
 	        }
+	    }
 
-	        // Try legacy mode
-	        if (method == null)
+	    /**
+	     * Create the generic invoker for a method
+	     *
+	     * @param lookup the lookup
+	     * @param m the method
+	     * @return the method handle of type (Object, Object[])void
+	     */
+	    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Method m)
+	    {
+	        MethodHandle handle;
+
+	        try
+	        {
+	            handle = lookup.unreflect(m);
+	        }
+	        catch (IllegalAccessException e)
 	        {
-                String tmp = name.toLowerCase().substring(METHOD_NAME_LENGTH);
-	            method = getClass().getMethod(METHOD_NAME_PREFIX + StringUtils.capitalize(tmp), signature);
+	            // public method of a non-public class
+	            m.setAccessible(true);
+	            try
+	            {
+	                handle = lookup.unreflect(m);
+	            }
+	            catch (IllegalAccessException e1)
+	            {
+	                throw new IllegalStateException("Cannot access " + m, e1);
+	            }
 	        }
 
-	        Method oldMethod = this.methodCache.putIfAbsent(cacheKey, method);
-	        if (oldMethod != null)
+	        int count = m.getParameterCount();
+	        return handle.asType(MethodType.genericMethodType(count + 1).changeReturnType(void.class))
+	            .asSpreader(Object[].class, count);
+	    }
+
+	    /**
+	     * Resolve an event by name and signature
+	     *
+	     * @param name the event name from the button, after the prefix
+	     * @param signature the method signature
+	     * @param pp the parameter parser for correct folding
+	     * @return the event
+	     * @throws NoSuchMethodException if no event matches
+	     */
+	    Event resolve(String name, Class<?>[] signature, ParameterParser pp) throws NoSuchMethodException
+	    {
+	        EventKey key = new EventKey(name, pp.getUrlFolding(), signature);
+	        Event event = resolved.get(key);
+
+	        if (event == null)
 	        {
-	            method = oldMethod;
+	            // Try annotations of public methods
+	            for (Event e : annotated)
+	            {
+	                if (name.equals(pp.convert(e.name))
+	                    && Arrays.equals(signature, e.method.getParameterTypes()))
+	                {
+	                    event = e;
+	                    break;
+	                }
+	            }
+
+	            // Try legacy mode
+	            if (event == null && name.length() >= METHOD_NAME_LENGTH)
+	            {
+	                String tmp = name.toLowerCase().substring(METHOD_NAME_LENGTH);
+	                String methodName = METHOD_NAME_PREFIX + StringUtils.capitalize(tmp);
+
+	                for (Event e : legacy.getOrDefault(methodName, Collections.emptyList()))
+	                {
+	                    if (Arrays.equals(signature, e.method.getParameterTypes()))
+	                    {
+	                        event = e;
+	                        break;
+	                    }
+	                }
+
+	                if (event == null)
+	                {
+	                    throw new NoSuchMethodException(methodName);
+	                }
+	            }
+
+	            if (event == null)
+	            {
+	                throw new NoSuchMethodException(name);
+	            }
+
+	            // Only found events are cached, so the names sent by
+	            // clients cannot grow the cache
+	            resolved.putIfAbsent(key, event);
 	        }
+
+	        return event;
 	    }
+	}
 
-	    return method;
+	/**
+	 * Retrieve a method of the given name and signature. The value is cached.
+	 *
+	 * @param name the name of the method
+	 * @param signature an array of classes forming the signature of the method
+	 * @param pp ParameterParser for correct folding
+	 *
+	 * @return the method object
+	 * @throws NoSuchMethodException if the method does not exist
+	 */
+	protected Method getMethod(String name, Class<?>[] signature, ParameterParser pp) throws NoSuchMethodException
+	{
+	    return DISPATCH_TABLES.get(getClass()).resolve(name, signature, pp).method;
 	}
 
 	/**
@@ -194,7 +364,7 @@ public abstract class ActionEvent implements Action
     public void doPerform(PipelineData pipelineData)
 			throws Exception
 	{
-	    ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+	    ParameterParser pp = pipelineData.get(RunData.PARAMETER_PARSER_KEY);
 		executeEvents(pp, new Class<?>[]{ PipelineData.class }, new Object[]{ pipelineData });
 	}
 
@@ -210,6 +380,8 @@ public abstract class ActionEvent implements Action
 	protected void executeEvents(ParameterParser pp, Class<?>[] signature, Object[] parameters)
 			throws Exception
 	{
+		DispatchTable table = DISPATCH_TABLES.get(getClass());
+
 		// Name of the button.
 		String theButton = null;
 
@@ -237,15 +409,15 @@ public abstract class ActionEvent implements Action
 		}
 
 		theButton = formatString(theButton, pp);
-		Method method = null;
+		Event event = null;
 
         try
         {
-            method = getMethod(theButton, signature, pp);
+            event = table.resolve(theButton, signature, pp);
         }
         catch (NoSuchMethodException e)
         {
-            method = getMethod(DEFAULT_METHOD, signature, pp);
+            event = table.resolve(DEFAULT_METHOD, signature, pp);
         }
         finally
         {
@@ -257,13 +429,12 @@ public abstract class ActionEvent implements Action
 
 		try
 		{
-			log.debug("Invoking {}", method);
+			log.debug("Invoking {}", event.method);
 
-			method.invoke(this, parameters);
+			event.invoker.invokeExact((Object) this, parameters);
 		}
-		catch (InvocationTargetException ite)
+		catch (Throwable t)
 		{
-			Throwable t = ite.getTargetException();
 			if (bubbleUpException)
 			{
                 if (t instanceof Exception)
@@ -272,12 +443,12 @@ public abstract class ActionEvent implements Action
                 }
                 else
                 {
-                    throw ite;
+                    throw new InvocationTargetException(t);
                 }
 			}
 			else
 			{
-			    log.error("Invokation of {}", method, t);
+			    log.error("Invokation of {}", event.method, t);
 			}
 		}
 	}
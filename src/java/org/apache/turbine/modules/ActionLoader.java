@@ -19,8 +19,12 @@ package org.apache.turbine.modules;
  * under the License.
  */
 
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.TraceSpan;
 
 /**
  * The purpose of this class is to allow one to load and execute
@@ -59,7 +63,40 @@ public final class ActionLoader
     public void exec(PipelineData pipelineData, String name)
     		throws Exception
     {
-        getAssembler(name).perform(pipelineData);
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            getAssembler(name).perform(pipelineData);
+        }
+    }
+
+    /**
+     * Attempts to load and execute the external action, handing back the
+     * pending stage of an {@link AsyncAction} instead of waiting for it.
+     * The action is executed through {@link Action#perform(PipelineData)}
+     * like in {@link #exec(PipelineData, String)}.
+     *
+     * @param pipelineData Turbine information.
+     * @param name Name of object that will execute the action.
+     * @return the pending stage of the action or <code>null</code> if the
+     * action completed synchronously.
+     * @throws Exception a generic exception.
+     */
+    public CompletionStage<?> execAsync(PipelineData pipelineData, String name)
+            throws Exception
+    {
+        AtomicReference<CompletionStage<?>> pending = new AtomicReference<>();
+        pipelineData.set(AsyncAction.PENDING_STAGE_KEY, pending);
+
+        try
+        {
+            exec(pipelineData, name);
+        }
+        finally
+        {
+            pipelineData.set(AsyncAction.PENDING_STAGE_KEY, null);
+        }
+
+        return pending.get();
     }
 
     /**
@@ -0,0 +1,103 @@
+package org.apache.turbine.modules;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.PipelineData.Key;
+
+/**
+ * An {@link Action} which may complete its work asynchronously, e.g.
+ * while waiting for a remote call.
+ *
+ * <p>If the pipeline contains the
+ * {@link org.apache.turbine.pipeline.ExecuteAsyncActionValve} and Turbine
+ * runs in async mode, the request thread is released while the returned
+ * stage is pending. Otherwise the action is executed synchronously by the
+ * page as usual.</p>
+ *
+ * <p>In both cases the action is executed through {@link #perform(PipelineData)},
+ * so security checks of secure actions apply. The stage is only handed
+ * back if {@link #perform(PipelineData)} reaches the
+ * {@link #doPerform(PipelineData)} of this interface; actions which
+ * override it, e.g. event based actions, are executed synchronously.</p>
+ */
+@FunctionalInterface
+public interface AsyncAction extends Action
+{
+    /**
+     * A subclass must implement this method to perform itself.
+     *
+     * @param pipelineData Turbine information.
+     * @return a stage completing when the action is done, or
+     * <code>null</code> if the action completed synchronously.
+     * @throws Exception a generic exception.
+     */
+    CompletionStage<?> doPerformAsync(PipelineData pipelineData) throws Exception;
+
+    /**
+     * Key of the holder receiving the pending stage while the action is
+     * executed by {@link ActionLoader#execAsync(PipelineData, String)}
+     */
+    Key<AtomicReference<CompletionStage<?>>> PENDING_STAGE_KEY =
+            Key.of(AsyncAction.class, AtomicReference.class);
+
+    /**
+     * Synchronous execution. Waits for the stage returned by
+     * {@link #doPerformAsync(PipelineData)}, unless the action is executed
+     * asynchronously and the stage is handed to the caller.
+     *
+     * @param pipelineData Turbine information.
+     * @throws Exception a generic exception.
+     */
+    @Override
+    default void doPerform(PipelineData pipelineData) throws Exception
+    {
+        CompletionStage<?> stage = doPerformAsync(pipelineData);
+        AtomicReference<CompletionStage<?>> pending = pipelineData.get(PENDING_STAGE_KEY);
+
+        if (stage != null && pending != null)
+        {
+            pending.set(stage);
+        }
+        else if (stage != null)
+        {
+            try
+            {
+                stage.toCompletableFuture().get();
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception)
+                {
+                    throw (Exception) cause;
+                }
+
+                throw e;
+            }
+        }
+    }
+}
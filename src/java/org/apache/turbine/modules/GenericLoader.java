@@ -26,8 +26,11 @@ import java.util.stream.Collectors;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.RequestTrace;
+import org.apache.turbine.pipeline.TraceSpan;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.apache.turbine.util.TurbineException;
 
 /**
  * This is the base class for the loaders. It contains code that is
@@ -84,6 +87,19 @@ public abstract class GenericLoader<T extends Assembler> implements Loader<T>
     public abstract void exec(PipelineData pipelineData, String name)
             throws Exception;
 
+    /**
+     * Open a trace span for the execution of an assembler. The span is
+     * named after the assembler type and the module name.
+     *
+     * @param pipelineData the Turbine request
+     * @param name the name of the assembler module
+     * @return the span to close when the execution ends
+     */
+    protected TraceSpan trace(PipelineData pipelineData, String name)
+    {
+        return RequestTrace.open(pipelineData, assemblerClass.getSimpleName(), name);
+    }
+
     /**
      * Returns whether or not this external action is reload itself.
      * This is in cases where the Next button would be clicked, but
@@ -175,6 +191,47 @@ public abstract class GenericLoader<T extends Assembler> implements Loader<T>
      */
     protected T getAssembler(Class<T> type, String name)
         throws Exception
+    {
+        T asm = findAssembler(type, name);
+
+        if (asm == null)
+        {
+            // If we did not find a screen we should try and give
+            // the user a reason for that...
+            // FIX ME: The AssemblerFactories should each add it's
+            // own string here...
+            List<String> packages = GenericLoader.getPackages();
+
+            throw new ClassNotFoundException(
+                    "\n\n\tRequested " + type + " not found: " + name +
+                    "\n\tTurbine looked in the following " +
+                    "modules.packages path: \n\t" + packages.toString() + "\n");
+        }
+
+        return asm;
+    }
+
+    /**
+     * @see org.apache.turbine.modules.Loader#findAssembler(String)
+     */
+    @Override
+    public T findAssembler(String name)
+        throws Exception
+    {
+        return findAssembler(assemblerClass, name);
+    }
+
+    /**
+     * Find an instance of the object by name without failing if it
+     * does not exist.
+     *
+     * @param type Type of the assembler.
+     * @param name Name of object instance.
+     * @return An assembler with the specified name, or null.
+     * @throws TurbineException if the assembler could not be loaded
+     */
+    protected T findAssembler(Class<T> type, String name)
+        throws TurbineException
     {
         T asm = null;
 
@@ -194,20 +251,6 @@ public abstract class GenericLoader<T extends Assembler> implements Loader<T>
             asm = null;
         }
 
-        if (asm == null)
-        {
-            // If we did not find a screen we should try and give
-            // the user a reason for that...
-            // FIX ME: The AssemblerFactories should each add it's
-            // own string here...
-            List<String> packages = GenericLoader.getPackages();
-
-            throw new ClassNotFoundException(
-                    "\n\n\tRequested " + type + " not found: " + name +
-                    "\n\tTurbine looked in the following " +
-                    "modules.packages path: \n\t" + packages.toString() + "\n");
-        }
-
         return asm;
     }
 
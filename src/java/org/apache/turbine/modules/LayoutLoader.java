@@ -21,6 +21,7 @@ package org.apache.turbine.modules;
 
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.TraceSpan;
 
 /**
  * The purpose of this class is to allow one to load and execute
@@ -59,7 +60,10 @@ public final class LayoutLoader
     public void exec(PipelineData pipelineData, String name)
     		throws Exception
     {
-        getAssembler(name).build(pipelineData);
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            getAssembler(name).build(pipelineData);
+        }
     }
 
     /**
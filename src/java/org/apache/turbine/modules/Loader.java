@@ -36,6 +36,26 @@ public interface Loader<T extends Assembler>
      */
     T getAssembler(String name) throws Exception;
 
+    /**
+     * Find an Assembler. Unlike {@link #getAssembler(String)}, a missing
+     * Assembler is not an error, so probing for several names is cheap.
+     *
+     * @param name name of the requested Assembler
+     * @return an Assembler or null if none exists with this name
+     * @throws Exception if the Assembler exists but could not be loaded
+     */
+    default T findAssembler(String name) throws Exception
+    {
+        try
+        {
+            return getAssembler(name);
+        }
+        catch (ClassNotFoundException e)
+        {
+            return null;
+        }
+    }
+
     /**
      * Get the size of a possibly configured cache
      *
@@ -21,6 +21,7 @@ package org.apache.turbine.modules;
 
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.TraceSpan;
 
 /**
  * The purpose of this class is to allow one to load and execute
@@ -64,7 +65,10 @@ public final class NavigationLoader
             throws Exception
     {
         // Execute Navigation
-        return getAssembler(name).build(pipelineData);
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            return getAssembler(name).build(pipelineData);
+        }
     }
 
     /**
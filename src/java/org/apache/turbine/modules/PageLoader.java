@@ -21,6 +21,7 @@ package org.apache.turbine.modules;
 
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.TraceSpan;
 
 /**
  * The purpose of this class is to allow one to load and execute Page
@@ -60,7 +61,10 @@ public final class PageLoader
             throws Exception
     {
         // Execute page
-        getAssembler(name).build(pipelineData);
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            getAssembler(name).build(pipelineData);
+        }
     }
 
     /**
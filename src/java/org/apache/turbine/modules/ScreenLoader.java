@@ -21,8 +21,12 @@ package org.apache.turbine.modules;
  */
 
 
+import java.io.Writer;
+
 import org.apache.turbine.Turbine;
+import org.apache.turbine.modules.screens.TemplateScreen;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.TraceSpan;
 
 /**
  * The purpose of this class is to allow one to load and execute
@@ -39,6 +43,48 @@ public final class ScreenLoader
     /** The single instance of this class. */
     private static ScreenLoader instance = new ScreenLoader();
 
+    /**
+     * Template screens can render directly into a writer unless they
+     * override the build steps, which the direct rendering would skip.
+     * The same holds if a subclass overrides buildTemplate(PipelineData)
+     * below the class which implements buildTemplate(PipelineData, Writer),
+     * as e.g. {@link org.apache.turbine.modules.screens.VelocityCachedScreen}
+     * does.
+     */
+    private static final ClassValue<Boolean> STREAMABLE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            if (!TemplateScreen.class.isAssignableFrom(type))
+            {
+                return Boolean.FALSE;
+            }
+
+            try
+            {
+                if (type.getMethod("doBuild", PipelineData.class).getDeclaringClass() != TemplateScreen.class
+                    || type.getMethod("build", PipelineData.class).getDeclaringClass() != Screen.class)
+                {
+                    return Boolean.FALSE;
+                }
+
+                // The default implementation copies buildTemplate(PipelineData)
+                Class<?> writing = type.getMethod("buildTemplate", PipelineData.class, Writer.class)
+                        .getDeclaringClass();
+                Class<?> building = type.getMethod("buildTemplate", PipelineData.class)
+                        .getDeclaringClass();
+
+                return Boolean.valueOf(writing == TemplateScreen.class
+                        || building.isAssignableFrom(writing));
+            }
+            catch (NoSuchMethodException e)
+            {
+                return Boolean.FALSE;
+            }
+        }
+    };
+
     /**
      * These ctor's are private to force clients to use getInstance()
      * to access this class.
@@ -66,7 +112,45 @@ public final class ScreenLoader
             throws Exception
     {
         // Execute screen
-        return getAssembler(name).build(pipelineData);
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            return getAssembler(name).build(pipelineData);
+        }
+    }
+
+    /**
+     * Attempts to load and execute the external Screen and writes its
+     * output to the given writer. Template screens render their
+     * template directly into the writer, so the output is never held
+     * in memory as a whole. Other screens are built as usual and their
+     * result is copied.
+     *
+     * @param pipelineData Turbine information.
+     * @param name Name of object that will execute the screen.
+     * @param writer the writer to render the screen to
+     * @throws Exception a generic exception.
+     */
+    public void eval(PipelineData pipelineData, String name, Writer writer)
+            throws Exception
+    {
+        try (TraceSpan span = trace(pipelineData, name))
+        {
+            Screen screen = getAssembler(name);
+
+            if (STREAMABLE.get(screen.getClass()).booleanValue())
+            {
+                ((TemplateScreen) screen).doBuild(pipelineData, writer);
+            }
+            else
+            {
+                String results = screen.build(pipelineData);
+
+                if (results != null)
+                {
+                    writer.write(results);
+                }
+            }
+        }
     }
 
     /**
@@ -1,7 +1,6 @@
 package org.apache.turbine.modules.actions;
 
 import org.apache.fulcrum.security.acl.AccessControlList;
-import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.fulcrum.security.util.FulcrumSecurityException;
 import org.apache.logging.log4j.LogManager;
 
@@ -25,7 +24,6 @@ import org.apache.logging.log4j.LogManager;
  */
 
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.annotation.TurbineService;
 import org.apache.turbine.modules.Action;
@@ -114,6 +112,6 @@ public class AccessController implements Action
         }
 
         // Comply with Turbine 4.0 standards
-        pipelineData.get(Turbine.class).put(TurbineAccessControlList.class, data.getACL());
+        pipelineData.set(RunData.ACL_KEY, data.getACL());
     }
 }
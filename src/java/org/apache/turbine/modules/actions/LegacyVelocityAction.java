@@ -20,7 +20,6 @@ package org.apache.turbine.modules.actions;
  */
 
 import org.apache.fulcrum.parser.ParameterParser;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.util.RunData;
 import org.apache.velocity.context.Context;
@@ -77,7 +76,7 @@ public abstract class LegacyVelocityAction extends VelocityAction
         }
 
         RunData data = pipelineData.getRunData();
-        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+        ParameterParser pp = pipelineData.get(RunData.PARAMETER_PARSER_KEY);
         Context context = velocity.getContext(pipelineData);
         executeEvents(pp, new Class<?>[]{ RunData.class, Context.class },
                 new Object[]{ data, context });
@@ -22,7 +22,6 @@ package org.apache.turbine.modules.actions.sessionvalidator;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.annotation.TurbineConfiguration;
 import org.apache.turbine.om.security.User;
@@ -124,6 +123,6 @@ public class DefaultSessionValidator
         handleFormCounterToken(data,true);
 
         // Comply with Turbine 4.0 standards
-        pipelineData.get(Turbine.class).put(User.class, data.getUser());
+        pipelineData.set(RunData.USER_KEY, data.getUser());
     }
 }
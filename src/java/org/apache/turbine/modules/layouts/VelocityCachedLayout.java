@@ -19,9 +19,17 @@ package org.apache.turbine.modules.layouts;
  * under the License.
  */
 
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.turbine.annotation.TurbineLoader;
+import org.apache.turbine.annotation.TurbineOutputCache;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.modules.ScreenLoader;
 import org.apache.turbine.modules.pages.DefaultPage;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.template.OutputCache;
 import org.apache.velocity.context.Context;
 
 /**
@@ -32,6 +40,15 @@ import org.apache.velocity.context.Context;
  * the HTTP servlet response will be flushed and set the committed flag. This means of course
  * no change to the HTTP response header will be possible afterwards. By setting the {@link RunData#setAction(String)} in the request
  * (not only the model, but also) additional response headers could be set, cft. {@link DefaultPage#doBuild(PipelineData)}.
+ * <p>
+ * Subclasses annotated with {@link TurbineOutputCache} cache the whole
+ * rendered page, including the screen, per layout and screen template in
+ * the {@link OutputCache}. The screen is not executed when the page is
+ * cached, so output which depends on the permissions of the user must
+ * declare {@link TurbineOutputCache#roles()}. Pages with a screen which
+ * checks the authorization of the user, e.g. a
+ * {@link org.apache.turbine.modules.screens.VelocitySecureScreen}, are
+ * not cached unless {@link TurbineOutputCache#secure()} is set.
  *
  * @author <a href="mailto:raphael@apache.org">Raphaël Luta</a>
  * @author <a href="mailto:john.mcnally@clearink.com">John D. McNally</a>
@@ -41,6 +58,36 @@ import org.apache.velocity.context.Context;
  */
 public class VelocityCachedLayout extends VelocityDirectLayout
 {
+    /**
+     * Screens which check the authorization of the user, i.e. which
+     * declare an isAuthorized(PipelineData) method
+     */
+    private static final ClassValue<Boolean> SECURE = new ClassValue<Boolean>()
+    {
+        @Override
+        protected Boolean computeValue(Class<?> type)
+        {
+            for (Class<?> c = type; c != null; c = c.getSuperclass())
+            {
+                try
+                {
+                    c.getDeclaredMethod("isAuthorized", PipelineData.class);
+                    return Boolean.TRUE;
+                }
+                catch (NoSuchMethodException e)
+                {
+                    // check the superclass
+                }
+            }
+
+            return Boolean.FALSE;
+        }
+    };
+
+    /** Injected loader instance */
+    @TurbineLoader( Screen.class )
+    private ScreenLoader screenLoader;
+
     /**
      * Render layout
      *
@@ -54,9 +101,56 @@ public class VelocityCachedLayout extends VelocityDirectLayout
     protected void render(PipelineData pipelineData, Context context, String templateName)
         throws Exception
     {
-        velocityService.handleRequest(context,
-                prefix + templateName,
-                pipelineData.getRunData().getOut());
+        RunData data = pipelineData.getRunData();
+        TurbineOutputCache outputCache = getClass().getAnnotation(TurbineOutputCache.class);
+
+        if (outputCache == null || !outputCache.secure() && isSecure(data.getScreen()))
+        {
+            velocityService.handleRequest(context,
+                    prefix + templateName,
+                    data.getOut());
+        }
+        else
+        {
+            String key = OutputCache.getKey(NAME, outputCache, pipelineData,
+                    templateName, data.getTemplateInfo().getScreenTemplate());
+            byte[] content = OutputCache.getInstance().getOrRender(key, outputCache, () ->
+            {
+                StringWriter writer = new StringWriter();
+                velocityService.handleRequest(context, prefix + templateName, writer);
+                return writer.toString().getBytes(StandardCharsets.UTF_8);
+            });
+
+            data.getOut().write(new String(content, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Check if a screen checks the authorization of the user. Its output
+     * must not be cached, because the check is skipped on a cache hit.
+     *
+     * @param screenName the name of the screen
+     * @return true if the screen is secure or cannot be loaded
+     */
+    private boolean isSecure(String screenName)
+    {
+        try
+        {
+            Screen screen = screenLoader.getAssembler(screenName);
+
+            if (SECURE.get(screen.getClass()).booleanValue())
+            {
+                log.debug("Not caching layout of secure screen {}", screenName);
+                return true;
+            }
+
+            return false;
+        }
+        catch (Exception e)
+        {
+            // rendering will report the error
+            return true;
+        }
     }
 }
 
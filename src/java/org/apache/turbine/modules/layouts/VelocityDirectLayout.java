@@ -31,6 +31,14 @@ import org.apache.velocity.context.Context;
  * the layout and navigation templates to the output writer without
  * using a screen. Use this if you have a large page to output
  * and won't buffer it in the memory.
+ * <p>
+ * The screen is executed when the layout template references
+ * <code>$screen_placeholder</code> and template screens render straight
+ * into the output of the layout, so the screen is never held in memory
+ * as a String. As the part of the layout before the screen has already
+ * been written at that point, changes the screen makes to e.g. the
+ * <code>$page</code> tool only show in the rest of the layout. Use
+ * {@link VelocityOnlyLayout} if the screen must be rendered first.
  *
  * @author <a href="mailto:raphael@apache.org">Raphaël Luta</a>
  * @author <a href="mailto:john.mcnally@clearink.com">John D. McNally</a>
@@ -1,7 +1,6 @@
 package org.apache.turbine.modules.layouts;
 
 
-import javax.servlet.http.HttpServletResponse;
 
 import org.apache.logging.log4j.LogManager;
 
@@ -26,7 +25,6 @@ import org.apache.logging.log4j.LogManager;
 
 
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.annotation.TurbineService;
 import org.apache.turbine.modules.Layout;
 import org.apache.turbine.pipeline.PipelineData;
@@ -110,7 +108,7 @@ public abstract class VelocityLayout implements Layout
     {
         velocityService.handleRequest(context,
                 prefix + templateName,
-                pipelineData.get(Turbine.class, HttpServletResponse.class)
+                pipelineData.get(RunData.RESPONSE_KEY)
                     .getOutputStream());
     }
 }
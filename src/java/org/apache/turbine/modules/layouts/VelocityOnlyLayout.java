@@ -23,11 +23,13 @@ package org.apache.turbine.modules.layouts;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineConfiguration;
 import org.apache.turbine.annotation.TurbineLoader;
 import org.apache.turbine.modules.Screen;
 import org.apache.turbine.modules.ScreenLoader;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.util.template.TemplateNavigation;
+import org.apache.turbine.util.template.TemplateScreen;
 import org.apache.velocity.context.Context;
 
 /**
@@ -55,6 +57,13 @@ import org.apache.velocity.context.Context;
  * can of course, add information to the $page tool in your screen template.
  * This will be added correctly to the &lt;head&gt;...&lt;/head&gt; and
  * &lt;body&gt; tags.
+ * <p>
+ * The screen output is buffered as a String for this. Large pages
+ * which do not need this can set <code>layout.streaming=true</code>.
+ * The layout is then rendered first and the screen is streamed into
+ * the output where the layout references <code>$screen_placeholder</code>,
+ * like with {@link VelocityDirectLayout}. Changes the screen makes to
+ * the <code>$page</code> tool only show in the rest of the layout then.
  *
  * @author <a href="mailto:john.mcnally@clearink.com">John D. McNally</a>
  * @author <a href="mailto:mbryson@mont.mindspring.com">Dave Bryson</a>
@@ -68,23 +77,36 @@ public class VelocityOnlyLayout extends VelocityLayout
     @TurbineLoader( Screen.class )
     private ScreenLoader screenLoader;
 
+    /** Whether the screen is streamed into the layout output */
+    @TurbineConfiguration( TurbineConstants.LAYOUT_STREAMING_KEY )
+    private boolean streaming = TurbineConstants.LAYOUT_STREAMING_DEFAULT;
+
     /**
      * @see org.apache.turbine.modules.layouts.VelocityLayout#populateContext(org.apache.turbine.pipeline.PipelineData, org.apache.velocity.context.Context)
      */
     @Override
     protected void populateContext(PipelineData pipelineData, Context context) throws Exception
     {
-        String screenName = pipelineData.getRunData().getScreen();
+        if (streaming)
+        {
+            // The screen is rendered when the layout template references it
+            context.put(TurbineConstants.SCREEN_PLACEHOLDER,
+                        new TemplateScreen(pipelineData));
+        }
+        else
+        {
+            String screenName = pipelineData.getRunData().getScreen();
 
-        log.debug("Loading Screen {}", screenName);
+            log.debug("Loading Screen {}", screenName);
 
-        // First, generate the screen and put it in the context so
-        // we can grab it the layout template.
-        String results = screenLoader.eval(pipelineData, screenName);
-        String returnValue = StringUtils.defaultIfEmpty(results, StringUtils.EMPTY);
+            // First, generate the screen and put it in the context so
+            // we can grab it the layout template.
+            String results = screenLoader.eval(pipelineData, screenName);
+            String returnValue = StringUtils.defaultIfEmpty(results, StringUtils.EMPTY);
 
-        // variable for the screen in the layout template
-        context.put(TurbineConstants.SCREEN_PLACEHOLDER, returnValue);
+            // variable for the screen in the layout template
+            context.put(TurbineConstants.SCREEN_PLACEHOLDER, returnValue);
+        }
 
         // variable to reference the navigation screen in the layout template
         context.put(TurbineConstants.NAVIGATION_PLACEHOLDER,
@@ -21,18 +21,22 @@ package org.apache.turbine.modules.pages;
  */
 
 
+import java.util.concurrent.CompletionStage;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.annotation.TurbineLoader;
 import org.apache.turbine.modules.Action;
 import org.apache.turbine.modules.ActionLoader;
+import org.apache.turbine.modules.AsyncAction;
 import org.apache.turbine.modules.Layout;
 import org.apache.turbine.modules.LayoutLoader;
 import org.apache.turbine.modules.Page;
 import org.apache.turbine.modules.Screen;
 import org.apache.turbine.modules.ScreenLoader;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.PipelineData.Key;
 import org.apache.turbine.util.RunData;
 
 /**
@@ -94,6 +98,9 @@ public class DefaultPage implements Page
     /** Logging */
     protected final Logger log = LogManager.getLogger(this.getClass());
 
+    /** Key marking that doBuildBeforeAction() has been executed */
+    private static final Key<Boolean> BEFORE_ACTION_KEY = Key.of(DefaultPage.class, Boolean.class);
+
     /** Injected loader instance */
     @TurbineLoader( Action.class )
     protected ActionLoader actionLoader;
@@ -119,7 +126,10 @@ public class DefaultPage implements Page
         RunData data = pipelineData.getRunData();
         // Template pages can use this to set up the context, so it is
         // available to the Action and Screen.  It does nothing here.
-        doBuildBeforeAction(pipelineData);
+        if (pipelineData.get(BEFORE_ACTION_KEY) == null)
+        {
+            doBuildBeforeAction(pipelineData);
+        }
 
         // If an action has been defined, execute it here.  Actions
         // can re-define the template definition.
@@ -165,6 +175,37 @@ public class DefaultPage implements Page
         doPostBuild(pipelineData);
     }
 
+    /**
+     * Executes the requested action ahead of {@link #doBuild(PipelineData)}
+     * if it is an {@link AsyncAction}. Like in doBuild(),
+     * doBuildBeforeAction() is called first and the action is executed
+     * through the action loader. The action is then removed from RunData,
+     * so doBuild() does not execute it again.
+     *
+     * @param pipelineData Turbine information.
+     * @return the pending stage of the action or <code>null</code>
+     * @throws Exception a generic exception.
+     */
+    public CompletionStage<?> doBuildAsyncAction(PipelineData pipelineData)
+            throws Exception
+    {
+        RunData data = pipelineData.getRunData();
+
+        if (!data.hasAction()
+                || !(actionLoader.getAssembler(data.getAction()) instanceof AsyncAction))
+        {
+            return null;
+        }
+
+        doBuildBeforeAction(pipelineData);
+        pipelineData.set(BEFORE_ACTION_KEY, Boolean.TRUE);
+
+        String action = data.getAction();
+        data.setAction(null);
+
+        return actionLoader.execAsync(pipelineData, action);
+    }
+
     /**
      * Can be used by template Pages to stuff the Context into the
      * PipelineData so that it is available to the Action module and the
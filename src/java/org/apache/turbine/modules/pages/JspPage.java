@@ -23,10 +23,10 @@ package org.apache.turbine.modules.pages;
 
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.turbine.Turbine;
 import org.apache.turbine.annotation.TurbineService;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.jsp.JspService;
+import org.apache.turbine.util.RunData;
 
 /**
  * Extends TemplatePage to add some convenience objects to the request.
@@ -55,7 +55,7 @@ public class JspPage
 
         try
         {
-            HttpServletResponse response = pipelineData.get(Turbine.class, HttpServletResponse.class);
+            HttpServletResponse response = pipelineData.get(RunData.RESPONSE_KEY);
             //We try to set the buffer size from defaults
             response.setBufferSize(jspService.getDefaultBufferSize());
         }
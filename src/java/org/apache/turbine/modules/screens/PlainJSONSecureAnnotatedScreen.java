@@ -21,6 +21,7 @@ package org.apache.turbine.modules.screens;
 
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Optional;
 
 import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.turbine.annotation.AnnotationProcessor;
@@ -31,6 +32,17 @@ import org.apache.turbine.util.RunData;
 
 public class PlainJSONSecureAnnotatedScreen extends PlainJSONScreen
 {
+    /** The public doOutput method of each screen class, looked up once */
+    private static final ClassValue<Optional<Method>> DO_OUTPUT = new ClassValue<Optional<Method>>()
+    {
+        @Override
+        protected Optional<Method> computeValue(Class<?> type)
+        {
+            return Arrays.stream(type.getMethods())
+                    .filter(m -> m.getName().equals("doOutput"))
+                    .findFirst();
+        }
+    };
 
     /**
      * This method overrides the method in JSONScreen to perform a security
@@ -59,15 +71,17 @@ public class PlainJSONSecureAnnotatedScreen extends PlainJSONScreen
      */
     protected boolean isAuthorized(PipelineData pipelineData) throws Exception {
         RunData data = pipelineData.getRunData();
-        Method[] methods = getClass().getMethods();
+        Object acl = data.getACL();
+
+        if (acl == null)
+        {
+            return false;
+        }
+
         // if the method passes the filter, it is authorized
-        return Arrays.stream(methods).filter(m ->
-                        m.getName().equals("doOutput"))
-                .takeWhile(m ->
-                        data.getACL() != null)
-                .findFirst()
+        return DO_OUTPUT.get(getClass())
                 .filter(m ->
-                        AnnotationProcessor.isAuthorized(m, (TurbineAccessControlList<?>) data.getACL(), ConditionType.ANY))
+                        AnnotationProcessor.isAuthorized(m, (TurbineAccessControlList<?>) acl, ConditionType.ANY))
                 .isPresent();
     }
 }
@@ -21,6 +21,8 @@ import org.apache.logging.log4j.LogManager;
  * under the License.
  */
 
+import java.io.Writer;
+
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.annotation.TurbineLoader;
 import org.apache.turbine.annotation.TurbineService;
@@ -82,6 +84,27 @@ public abstract class TemplateScreen implements Screen
     public abstract String buildTemplate(PipelineData pipelineData)
             throws Exception;
 
+    /**
+     * Build the template and write it to the writer instead of returning
+     * it. Base template classes which can render their template into a
+     * writer should override this method; by default the result of
+     * {@link #buildTemplate(PipelineData)} is copied.
+     *
+     * @param pipelineData Turbine information.
+     * @param writer the writer to render the screen to
+     * @throws Exception A generic exception.
+     */
+    public void buildTemplate(PipelineData pipelineData, Writer writer)
+            throws Exception
+    {
+        String out = buildTemplate(pipelineData);
+
+        if (out != null)
+        {
+            writer.write(out);
+        }
+    }
+
     /**
      * This method can be overridden to write code that executes when
      * the template has been built (called from a finally clause, so
@@ -121,6 +144,29 @@ public abstract class TemplateScreen implements Screen
         return out;
     }
 
+    /**
+     * This method is called by the Screenloader to render the Screen
+     * directly into a writer, e.g. the output of a streaming layout.
+     * It runs the same steps as {@link #doBuild(PipelineData)}.
+     *
+     * @param pipelineData Turbine information.
+     * @param writer the writer to render the screen to
+     * @throws Exception A generic exception.
+     */
+    public void doBuild(PipelineData pipelineData, Writer writer)
+            throws Exception
+    {
+        try
+        {
+            doBuildTemplate(pipelineData);
+            buildTemplate(pipelineData, writer);
+        }
+        finally
+        {
+            doPostBuildTemplate(pipelineData);
+        }
+    }
+
     /**
      * This method is used when you want to short circuit a Screen and
      * change the template that will be executed next. <b>Note that the current
@@ -19,11 +19,15 @@ package org.apache.turbine.modules.screens;
  * under the License.
  */
 
-import org.apache.commons.lang3.StringUtils;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineOutputCache;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.template.OutputCache;
 import org.apache.velocity.context.Context;
 
 /**
@@ -32,6 +36,11 @@ import org.apache.velocity.context.Context;
  * It is is a screen class which buffers its output
  * before flushing the output stream. It is used in Jetspeed-1 portal.
  * <p>
+ * Subclasses annotated with {@link TurbineOutputCache} cache the rendered
+ * template in the {@link OutputCache}. The business logic in
+ * doBuildTemplate() runs for every request, so access checks stay in
+ * effect; only the rendering is skipped when the output is cached.
+ * <p>
  * @author <a href="mailto:mbryson@mont.mindspring.com">Dave Bryson</a>
  * @author <a href="mailto:hps@intermeta.de">Henning P. Schmiedehausen</a>
  * @version $Id$
@@ -52,21 +61,27 @@ public class VelocityCachedScreen
     {
         RunData data = pipelineData.getRunData();
         Context context = velocity.getContext(pipelineData);
-
-        String screenTemplate = data.getTemplateInfo().getScreenTemplate();
-        String templateName
-            = templateService.getScreenTemplateName(screenTemplate);
-
-        // The Template Service could not find the Screen
-        if (StringUtils.isEmpty(templateName))
-        {
-            log.error("Screen " + screenTemplate + " not found!");
-            throw new Exception("Could not find screen for " + screenTemplate);
-        }
+        String templateName = getTemplateName(data);
+        TurbineOutputCache outputCache = getClass().getAnnotation(TurbineOutputCache.class);
 
         try
         {
-            velocity.handleRequest(context, prefix + templateName, data.getOut());
+            if (outputCache == null)
+            {
+                velocity.handleRequest(context, prefix + templateName, data.getOut());
+            }
+            else
+            {
+                String key = OutputCache.getKey(NAME, outputCache, pipelineData, templateName);
+                byte[] content = OutputCache.getInstance().getOrRender(key, outputCache, () ->
+                {
+                    StringWriter writer = new StringWriter();
+                    velocity.handleRequest(context, prefix + templateName, writer);
+                    return writer.toString().getBytes(StandardCharsets.UTF_8);
+                });
+
+                data.getOut().write(new String(content, StandardCharsets.UTF_8));
+            }
         }
         catch (Exception e)
         {
@@ -82,5 +97,3 @@ public class VelocityCachedScreen
         return null;
     }
 }
-
-
@@ -19,6 +19,8 @@ package org.apache.turbine.modules.screens;
  * under the License.
  */
 
+import java.io.Writer;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.turbine.TurbineConstants;
@@ -108,17 +110,7 @@ public class VelocityScreen
         String screenData = null;
 
         Context context = velocity.getContext(pipelineData);
-
-        String screenTemplate = data.getTemplateInfo().getScreenTemplate();
-        String templateName
-            = templateService.getScreenTemplateName(screenTemplate);
-
-        // The Template Service could not find the Screen
-        if (StringUtils.isEmpty(templateName))
-        {
-            log.error("Screen " + screenTemplate + " not found!");
-            throw new Exception("Could not find screen for " + screenTemplate);
-        }
+        String templateName = getTemplateName(data);
 
         try
         {
@@ -149,4 +141,58 @@ public class VelocityScreen
 
         return screenData;
     }
+
+    /**
+     * This renders the Velocity template directly into the given writer,
+     * e.g. the output of a streaming layout.
+     *
+     * @param pipelineData Turbine information.
+     * @param writer the writer to render the screen to
+     * @throws Exception a generic exception.
+     */
+    @Override
+    public void buildTemplate(PipelineData pipelineData, Writer writer)
+        throws Exception
+    {
+        Context context = velocity.getContext(pipelineData);
+        String templateName = getTemplateName(pipelineData.getRunData());
+
+        try
+        {
+            velocity.handleRequest(context, prefix + templateName, writer);
+        }
+        catch (Exception e)
+        {
+            // Output already written stays in place, the error
+            // template is appended.
+            context.put (TurbineConstants.PROCESSING_EXCEPTION_PLACEHOLDER, e.toString());
+            context.put (TurbineConstants.STACK_TRACE_PLACEHOLDER, ExceptionUtils.getStackTrace(e));
+
+            velocity.handleRequest(context, prefix + templateError, writer);
+        }
+    }
+
+    /**
+     * Get the name of the screen template to render
+     *
+     * @param data Turbine information.
+     * @return the template name
+     * @throws Exception if the Template Service could not find the Screen
+     */
+    protected String getTemplateName(RunData data)
+        throws Exception
+    {
+        String screenTemplate = data.getTemplateInfo().getScreenTemplate();
+        String templateName
+            = templateService.getScreenTemplateName(screenTemplate);
+
+        // The Template Service could not find the Screen
+        if (StringUtils.isEmpty(templateName))
+        {
+            log.error("Screen " + screenTemplate + " not found!");
+            throw new Exception("Could not find screen for " + screenTemplate);
+        }
+
+        return templateName;
+    }
 }
@@ -0,0 +1,95 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * A {@link Valve} which may complete its work asynchronously.
+ *
+ * <p>When the pipeline is invoked with
+ * {@link Pipeline#invokeAsync(PipelineData, java.util.concurrent.Executor)},
+ * the pipeline suspends after this valve until the returned stage completes
+ * and then resumes with the next valve. Note that valves upstream of a
+ * suspending valve return from their <code>invokeNext()</code> call when
+ * the pipeline suspends, not when it finishes.</p>
+ *
+ * <p>When the pipeline is invoked synchronously, the calling thread waits
+ * for the stage to complete.</p>
+ */
+@FunctionalInterface
+public interface AsyncValve extends Valve
+{
+    /**
+     * Perform request processing as required by this Valve. The next valve
+     * is invoked by the pipeline when the returned stage completes.
+     *
+     * @param pipelineData The run-time information, including the servlet
+     * request and response we are processing.
+     *
+     * @return a stage completing when the work of this valve is done, or
+     * <code>null</code> if the work was done synchronously.
+     *
+     * @throws IOException Thrown by a subsequent Valve.
+     * @throws TurbineException Thrown by a subsequent Valve.
+     */
+    CompletionStage<?> invokeAsync(PipelineData pipelineData)
+        throws IOException, TurbineException;
+
+    /**
+     * Synchronous invocation. Waits for the stage returned by
+     * {@link #invokeAsync(PipelineData)} and passes control to the next
+     * valve.
+     *
+     * @see org.apache.turbine.pipeline.Valve#invoke(PipelineData, ValveContext)
+     */
+    @Override
+    default void invoke(PipelineData pipelineData, ValveContext context)
+        throws IOException, TurbineException
+    {
+        CompletionStage<?> stage = invokeAsync(pipelineData);
+
+        if (stage != null)
+        {
+            try
+            {
+                stage.toCompletableFuture().get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new TurbineException(e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new TurbineException(e.getCause());
+            }
+        }
+
+        // Pass control to the next Valve in the Pipeline
+        context.invokeNext(pipelineData);
+    }
+}
@@ -0,0 +1,58 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Management interface of the {@link ConcurrencyLimitValve}, registered as
+ * <code>org.apache.turbine:type=ConcurrencyLimit,name=&lt;name&gt;</code>.
+ */
+public interface ConcurrencyLimitMXBean
+{
+    /**
+     * @return the current adaptive limit of requests in flight
+     */
+    int getLimit();
+
+    /**
+     * @return the number of requests currently in flight
+     */
+    int getInFlight();
+
+    /**
+     * @return the number of requests currently waiting for admission
+     */
+    int getWaiting();
+
+    /**
+     * @return the number of admitted requests
+     */
+    long getAdmittedCount();
+
+    /**
+     * @return the number of requests which had to wait for admission
+     */
+    long getQueuedCount();
+
+    /**
+     * @return the number of rejected requests
+     */
+    long getShedCount();
+}
@@ -0,0 +1,507 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineConfiguration;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * Limits the number of requests processed concurrently by the downstream
+ * valves. The limit adapts to the observed downstream latency: it grows
+ * while the latency is stable and shrinks when the latency rises. Place
+ * this valve directly before the {@link ExecutePageValve}, after the user
+ * has been determined.
+ *
+ * <p>If a downstream {@link AsyncValve} suspends the pipeline, the request
+ * keeps its slot until the pipeline has finished.</p>
+ *
+ * <p>Requests exceeding the limit wait in a bounded queue. Waiting requests
+ * are admitted by priority: configured screens first, then logged-in users,
+ * then anonymous users. When the queue is full or the wait times out, the
+ * request is rejected with <code>503 Service Unavailable</code> and a
+ * <code>Retry-After</code> header.</p>
+ *
+ * <p>Configuration, all keys prefixed by <code>pipeline.limiter.</code>:</p>
+ * <pre>
+ * name            = default  (JMX name)
+ * limit.initial   = 20
+ * limit.min       = 1
+ * limit.max       = 200
+ * queue.size      = 100
+ * queue.timeout   = 1000     (milliseconds)
+ * retryAfter      = 1        (seconds)
+ * priorityScreens = Status.vm, HealthScreen
+ * </pre>
+ */
+public class ConcurrencyLimitValve
+    implements Valve, ConcurrencyLimitMXBean
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ConcurrencyLimitValve.class);
+
+    /** Priority of configured screens */
+    static final int PRIORITY_SCREEN = 0;
+
+    /** Priority of logged-in users */
+    static final int PRIORITY_USER = 1;
+
+    /** Priority of anonymous users */
+    static final int PRIORITY_ANONYMOUS = 2;
+
+    /** Number of priority classes */
+    private static final int PRIORITIES = 3;
+
+    /** Injected configuration */
+    @TurbineConfiguration( TurbineConstants.PIPELINE_LIMITER_KEY )
+    private Configuration conf;
+
+    /** Guards all admission state */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** One wait condition per priority class */
+    private final Condition[] available = new Condition[PRIORITIES];
+
+    /** Number of waiting requests per priority class */
+    private final int[] waiting = new int[PRIORITIES];
+
+    /** Total number of waiting requests */
+    private int waitingTotal;
+
+    /** Number of requests in flight */
+    private int inFlight;
+
+    /** The adaptive limit */
+    private GradientLimit limit;
+
+    /** Maximum number of waiting requests */
+    private int queueSize = 100;
+
+    /** Maximum time a request waits for admission */
+    private long queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    /** Value of the <code>Retry-After</code> header of rejected requests */
+    private String retryAfter = "1";
+
+    /** Screens and screen templates admitted with the highest priority */
+    private Set<String> priorityScreens = Collections.emptySet();
+
+    /** The name under which this valve is registered with JMX */
+    private ObjectName objectName;
+
+    /** Number of admitted requests */
+    private final LongAdder admitted = new LongAdder();
+
+    /** Number of requests which had to wait for admission */
+    private final LongAdder queued = new LongAdder();
+
+    /** Number of rejected requests */
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * Constructor
+     */
+    public ConcurrencyLimitValve()
+    {
+        for (int i = 0; i < PRIORITIES; i++)
+        {
+            available[i] = lock.newCondition();
+        }
+
+        limit = new GradientLimit(20, 1, 200);
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Valve#initialize()
+     */
+    @Override
+    public void initialize() throws Exception
+    {
+        String name = "default";
+
+        if (conf != null)
+        {
+            name = conf.getString("name", name);
+            limit = new GradientLimit(conf.getInt("limit.initial", 20),
+                    conf.getInt("limit.min", 1),
+                    conf.getInt("limit.max", 200));
+            queueSize = conf.getInt("queue.size", queueSize);
+            queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(conf.getLong("queue.timeout", 1000));
+            retryAfter = conf.getString("retryAfter", retryAfter);
+            priorityScreens = new HashSet<>(conf.getList(String.class, "priorityScreens",
+                    Collections.emptyList()));
+        }
+
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("org.apache.turbine:type=ConcurrencyLimit,name="
+                    + ObjectName.quote(name));
+
+            if (server.isRegistered(on))
+            {
+                server.unregisterMBean(on);
+            }
+
+            server.registerMBean(this, on);
+            objectName = on;
+        }
+        catch (JMException e)
+        {
+            log.warn("Could not register concurrency limit {} with JMX", name, e);
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Valve#dispose()
+     */
+    @Override
+    public void dispose()
+    {
+        if (objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (JMException e)
+            {
+                log.warn("Could not unregister concurrency limit {} from JMX", objectName, e);
+            }
+
+            objectName = null;
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Valve#invoke(PipelineData, ValveContext)
+     */
+    @Override
+    public void invoke(PipelineData pipelineData, ValveContext context)
+        throws IOException, TurbineException
+    {
+        RunData data = pipelineData.getRunData();
+        int startInFlight = acquire(priorityOf(data));
+
+        if (startInFlight < 0)
+        {
+            log.debug("Rejecting request for screen {}", data::getScreen);
+
+            HttpServletResponse response = data.getResponse();
+            response.setHeader("Retry-After", retryAfter);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        boolean suspended = false;
+
+        try
+        {
+            // Pass control to the next Valve in the Pipeline
+            context.invokeNext(pipelineData);
+            failed = false;
+
+            // If a downstream valve suspended the pipeline, the request
+            // keeps its slot until the pipeline has finished
+            suspended = context instanceof ValveChain
+                && ((ValveChain) context).whenFinished(error ->
+                    release(System.nanoTime() - start, startInFlight, error != null));
+        }
+        finally
+        {
+            if (!suspended)
+            {
+                release(System.nanoTime() - start, startInFlight, failed);
+            }
+        }
+    }
+
+    /**
+     * Determine the priority class of a request
+     *
+     * @param data the run data of the request
+     * @return the priority, lower values are admitted first
+     */
+    protected int priorityOf(RunData data)
+    {
+        if (!priorityScreens.isEmpty()
+            && (priorityScreens.contains(data.getScreen())
+                || priorityScreens.contains(data.getScreenTemplate())))
+        {
+            return PRIORITY_SCREEN;
+        }
+
+        User user = data.getUser();
+        if (user != null && user.hasLoggedIn())
+        {
+            return PRIORITY_USER;
+        }
+
+        return PRIORITY_ANONYMOUS;
+    }
+
+    /**
+     * Admit a request, waiting for a free slot if necessary
+     *
+     * @param priority the priority class of the request
+     * @return the number of requests in flight including this one, or -1
+     * if the request was rejected
+     */
+    int acquire(int priority)
+    {
+        lock.lock();
+        try
+        {
+            if (canAdmit(priority, true))
+            {
+                return admit();
+            }
+
+            if (waitingTotal >= queueSize)
+            {
+                shed.increment();
+                return -1;
+            }
+
+            queued.increment();
+            waiting[priority]++;
+            waitingTotal++;
+
+            try
+            {
+                long nanos = queueTimeoutNanos;
+                while (!canAdmit(priority, false))
+                {
+                    if (nanos <= 0)
+                    {
+                        shed.increment();
+                        return -1;
+                    }
+
+                    nanos = available[priority].awaitNanos(nanos);
+                }
+
+                return admit();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                shed.increment();
+                return -1;
+            }
+            finally
+            {
+                waiting[priority]--;
+                waitingTotal--;
+
+                // Leaving the queue, whether admitted or not, may unblock
+                // requests of lower priority or pass on a consumed signal
+                signalWaiting();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release the slot of a finished request, update the limit and wake
+     * up waiting requests by priority
+     *
+     * @param rttNanos the downstream latency of the request
+     * @param startInFlight the number of requests in flight when it started
+     * @param failed true if the request failed
+     */
+    void release(long rttNanos, int startInFlight, boolean failed)
+    {
+        lock.lock();
+        try
+        {
+            inFlight--;
+            limit.onSample(rttNanos, startInFlight, failed);
+            signalWaiting();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wake up as many waiting requests as there are free slots under the
+     * current limit, highest priority first. Must be called with the lock
+     * held whenever a slot is freed, the limit changes or a request leaves
+     * the queue. Requests woken up in excess re-check their admission and
+     * continue to wait.
+     */
+    private void signalWaiting()
+    {
+        int free = limit.getLimit() - inFlight;
+        for (int p = 0; p < PRIORITIES && free > 0; p++)
+        {
+            for (int i = Math.min(free, waiting[p]); i > 0; i--)
+            {
+                available[p].signal();
+                free--;
+            }
+        }
+    }
+
+    /**
+     * Check if a request of the given priority may be admitted now. Must
+     * be called with the lock held.
+     *
+     * @param priority the priority class
+     * @param arriving true for a new request, which must not overtake
+     * requests of the same priority already waiting
+     * @return true if a slot is free and no request of higher priority waits
+     */
+    private boolean canAdmit(int priority, boolean arriving)
+    {
+        if (inFlight >= limit.getLimit())
+        {
+            return false;
+        }
+
+        int last = arriving ? priority : priority - 1;
+        for (int p = 0; p <= last; p++)
+        {
+            if (waiting[p] > 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Take a slot. Must be called with the lock held.
+     *
+     * @return the number of requests in flight including this one
+     */
+    private int admit()
+    {
+        admitted.increment();
+        return ++inFlight;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getLimit()
+     */
+    @Override
+    public int getLimit()
+    {
+        lock.lock();
+        try
+        {
+            return limit.getLimit();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getInFlight()
+     */
+    @Override
+    public int getInFlight()
+    {
+        lock.lock();
+        try
+        {
+            return inFlight;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getWaiting()
+     */
+    @Override
+    public int getWaiting()
+    {
+        lock.lock();
+        try
+        {
+            return waitingTotal;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getAdmittedCount()
+     */
+    @Override
+    public long getAdmittedCount()
+    {
+        return admitted.sum();
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getQueuedCount()
+     */
+    @Override
+    public long getQueuedCount()
+    {
+        return queued.sum();
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ConcurrencyLimitMXBean#getShedCount()
+     */
+    @Override
+    public long getShedCount()
+    {
+        return shed.sum();
+    }
+}
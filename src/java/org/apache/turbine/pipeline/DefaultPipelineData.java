@@ -1,7 +1,11 @@
 package org.apache.turbine.pipeline;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.rundata.RunDataService;
@@ -43,31 +47,59 @@ import org.apache.turbine.util.RunData;
  */
 public class DefaultPipelineData implements PipelineData
 {
-    private final Map<Class<?>, Map<Class<?>, ? super Object>> map =
-        new HashMap<>();
+    /** The values, indexed by {@link PipelineData.Key#getIndex()} */
+    private Object[] slots = new Object[Math.max(16, Key.count())];
+
+    /** The execution state of the pipeline processing this object */
+    private final ValveChain valveChain = new ValveChain();
+
+    /** The trace of the request, if traced */
+    private RequestTrace trace;
 
     /**
-     * Put a configured map of objects into the pipeline data object
+     * Put a configured map of objects into the pipeline data object. The
+     * entries of the map are copied into the pipeline data, later changes
+     * of the map are not reflected.
      *
      * @param key the key class
      * @param value the value map
+     *
+     * @deprecated Use {@link #set(Key, Object)}
      */
     @Override
+    @Deprecated
     public void put(Class<?> key, Map<Class<?>, ? super Object> value)
     {
-        map.put(key, value);
+        for (Key<?> k : Key.ofScope(key))
+        {
+            slots(k)[k.getIndex()] = null;
+        }
+
+        if (value != null)
+        {
+            for (Map.Entry<Class<?>, ? super Object> entry : value.entrySet())
+            {
+                Key<Object> k = Key.of(key, entry.getKey());
+                slots(k)[k.getIndex()] = entry.getValue();
+            }
+        }
     }
 
     /**
-     * Get the configured map of objects for the given key
+     * Get a view of the objects for the given key. Changes of the view
+     * are reflected in the pipeline data and vice versa. Iterating the
+     * view does not create values on demand.
      *
      * @param key the key class
-     * @return the value map or null if no such key exists
+     * @return the value map, never null
+     *
+     * @deprecated Use {@link #get(Key)}
      */
     @Override
+    @Deprecated
     public Map<Class<?>, ? super Object> get(Class<?> key)
     {
-        return map.get(key);
+        return new ScopeMap(key);
     }
 
     /**
@@ -81,12 +113,230 @@ public class DefaultPipelineData implements PipelineData
     @SuppressWarnings("unchecked")
     public <T> T get(Class<?> key, Class<T> innerKey)
     {
-        Map<Class<?>, ? super Object> innerMap = get(key);
-        if (innerMap == null)
+        Key<?> k = Key.find(key, innerKey);
+        return k == null ? null : (T) slot(k);
+    }
+
+    /**
+     * Get a value by its typed key
+     *
+     * @param key the key
+     * @return the value or null if not set
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key)
+    {
+        return (T) slot(key);
+    }
+
+    /**
+     * Set a value by its typed key
+     *
+     * @param key the key
+     * @param value the value, null to remove it
+     */
+    @Override
+    public <T> void set(Key<T> key, T value)
+    {
+        slots(key)[key.getIndex()] = value;
+    }
+
+    /**
+     * Get a value by its typed key without creating it on demand
+     *
+     * @param key the key
+     * @return the value or null if not set
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T getIfPresent(Key<T> key)
+    {
+        return (T) rawSlot(key);
+    }
+
+    /**
+     * Create the value of an unset key on demand. Subclasses override
+     * this method to create expensive values on first access only. The
+     * created value is stored in the pipeline data.
+     *
+     * @param key the key of the unset value
+     * @return the value or null if it cannot be created
+     */
+    protected Object resolve(Key<?> key)
+    {
+        return null;
+    }
+
+    /**
+     * Remove all values
+     */
+    public void clear()
+    {
+        Arrays.fill(slots, null);
+    }
+
+    /**
+     * Read the slot of a key, creating the value on demand
+     *
+     * @param key the key
+     * @return the value or null
+     */
+    private Object slot(Key<?> key)
+    {
+        Object value = rawSlot(key);
+        if (value == null)
         {
-            return null;
+            value = resolve(key);
+            if (value != null)
+            {
+                slots(key)[key.getIndex()] = value;
+            }
         }
-        return (T) innerMap.get(innerKey);
+
+        return value;
+    }
+
+    /**
+     * Read the slot of a key
+     *
+     * @param key the key
+     * @return the value or null
+     */
+    private Object rawSlot(Key<?> key)
+    {
+        int index = key.getIndex();
+        return index < slots.length ? slots[index] : null;
+    }
+
+    /**
+     * Get the slot array, grown to hold the given key
+     *
+     * @param key the key
+     * @return the slot array
+     */
+    private Object[] slots(Key<?> key)
+    {
+        if (key.getIndex() >= slots.length)
+        {
+            // Keys created after this object
+            slots = Arrays.copyOf(slots, Math.max(Key.count(), slots.length * 2));
+        }
+
+        return slots;
+    }
+
+    /**
+     * A map view of the values of one scope
+     */
+    private class ScopeMap extends AbstractMap<Class<?>, Object>
+    {
+        private final Class<?> scope;
+
+        ScopeMap(Class<?> scope)
+        {
+            this.scope = scope;
+        }
+
+        @Override
+        public Object get(Object name)
+        {
+            return name instanceof Class ? DefaultPipelineData.this.get(scope, (Class<?>) name) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object name)
+        {
+            return get(name) != null;
+        }
+
+        @Override
+        public Object put(Class<?> name, Object value)
+        {
+            Key<Object> k = Key.of(scope, name);
+            Object previous = rawSlot(k);
+            slots(k)[k.getIndex()] = value;
+            return previous;
+        }
+
+        @Override
+        public Object remove(Object name)
+        {
+            if (!(name instanceof Class))
+            {
+                return null;
+            }
+
+            Key<?> k = Key.find(scope, (Class<?>) name);
+            if (k == null)
+            {
+                return null;
+            }
+
+            Object previous = rawSlot(k);
+            if (previous != null)
+            {
+                slots[k.getIndex()] = null;
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear()
+        {
+            for (Key<?> k : Key.ofScope(scope))
+            {
+                if (k.getIndex() < slots.length)
+                {
+                    slots[k.getIndex()] = null;
+                }
+            }
+        }
+
+        @Override
+        public Set<Map.Entry<Class<?>, Object>> entrySet()
+        {
+            Map<Class<?>, Object> values = new LinkedHashMap<>();
+            for (Key<?> k : Key.ofScope(scope))
+            {
+                Object value = rawSlot(k);
+                if (value != null)
+                {
+                    values.put(k.getName(), value);
+                }
+            }
+
+            return Collections.unmodifiableMap(values).entrySet();
+        }
+    }
+
+    /**
+     * Get the execution state of the pipeline processing this object
+     *
+     * @return the valve chain state
+     */
+    ValveChain getValveChain()
+    {
+        return valveChain;
+    }
+
+    /**
+     * Get the trace of the request
+     *
+     * @return the trace or null if the request is not traced
+     */
+    RequestTrace getTrace()
+    {
+        return trace;
+    }
+
+    /**
+     * Set the trace of the request
+     *
+     * @param trace the trace or null to stop tracing
+     */
+    void setTrace(RequestTrace trace)
+    {
+        this.trace = trace;
     }
 
     /**
@@ -29,8 +29,8 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.util.LocaleUtils;
+import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -56,7 +56,7 @@ public class DefaultSetEncodingValve
     public void invoke(PipelineData pipelineData, ValveContext context)
         throws IOException, TurbineException
     {
-        HttpServletRequest req = pipelineData.get(Turbine.class, HttpServletRequest.class);
+        HttpServletRequest req = pipelineData.get(RunData.REQUEST_KEY);
 
         // If the servlet container gives us no clear indication about the
         // encoding of the contents, set it to our default value.
@@ -0,0 +1,101 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.IOException;
+import java.util.concurrent.CompletionStage;
+
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineConfiguration;
+import org.apache.turbine.annotation.TurbineLoader;
+import org.apache.turbine.annotation.TurbineService;
+import org.apache.turbine.modules.Page;
+import org.apache.turbine.modules.PageLoader;
+import org.apache.turbine.modules.pages.DefaultPage;
+import org.apache.turbine.services.template.TemplateService;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * Executes the requested action ahead of the page if it is an
+ * {@link org.apache.turbine.modules.AsyncAction}, so the pipeline can
+ * suspend while the action is pending. The action is executed by
+ * {@link DefaultPage#doBuildAsyncAction(PipelineData)} of the page
+ * {@link ExecutePageValve} will execute, so it runs through the same
+ * preparation, security checks and error handling as in the page. All
+ * other actions are left to the page.
+ *
+ * <p>Place this valve directly before the {@link ExecutePageValve}.</p>
+ */
+public class ExecuteAsyncActionValve
+    implements AsyncValve
+{
+    /** Injected service instance */
+    @TurbineService
+    private TemplateService templateService;
+
+    /** Injected loader instance */
+    @TurbineLoader( Page.class )
+    private PageLoader pageLoader;
+
+    @TurbineConfiguration( TurbineConstants.PAGE_DEFAULT_KEY )
+    private String pageDefault = TurbineConstants.PAGE_DEFAULT_DEFAULT;
+
+    /**
+     * @see org.apache.turbine.pipeline.AsyncValve#invokeAsync(PipelineData)
+     */
+    @Override
+    public CompletionStage<?> invokeAsync(PipelineData pipelineData)
+        throws IOException, TurbineException
+    {
+        RunData data = pipelineData.getRunData();
+
+        if (!data.hasAction())
+        {
+            return null;
+        }
+
+        try
+        {
+            // the same page as in ExecutePageValve
+            String pageName = (templateService == null)
+                    ? null : templateService.getDefaultPageName(pipelineData);
+
+            Page page = pageLoader.getAssembler(pageName == null ? pageDefault : pageName);
+
+            if (page instanceof DefaultPage)
+            {
+                return ((DefaultPage) page).doBuildAsyncAction(pipelineData);
+            }
+        }
+        catch (IOException | TurbineException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new TurbineException(e);
+        }
+
+        return null;
+    }
+}
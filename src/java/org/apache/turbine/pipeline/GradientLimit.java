@@ -0,0 +1,123 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * An adaptive concurrency limit following the gradient algorithm: the
+ * limit grows while the short-term latency stays close to the long-term
+ * latency and shrinks when the short-term latency rises, i.e. when
+ * requests start to queue up downstream.
+ *
+ * <p>This class is not thread-safe, the caller must serialize access.</p>
+ */
+final class GradientLimit
+{
+    /** Smoothing factor of the short-term latency average */
+    private static final double SHORT_ALPHA = 2.0 / (1 + 10);
+
+    /** Smoothing factor of the long-term latency average */
+    private static final double LONG_ALPHA = 2.0 / (1 + 600);
+
+    /** Accepted ratio of long-term to short-term latency before shrinking */
+    private static final double TOLERANCE = 1.5;
+
+    /** Weight of a new limit estimate */
+    private static final double SMOOTHING = 0.2;
+
+    /** Factor applied to the limit when a request failed */
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    /**
+     * Constructor
+     *
+     * @param initialLimit the initial limit
+     * @param minLimit the lower bound of the limit
+     * @param maxLimit the upper bound of the limit
+     */
+    GradientLimit(int initialLimit, int minLimit, int maxLimit)
+    {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    /**
+     * @return the current limit
+     */
+    int getLimit()
+    {
+        return (int) limit;
+    }
+
+    /**
+     * Update the limit with a completed request
+     *
+     * @param rttNanos the latency of the request
+     * @param inFlight the number of requests in flight when it started
+     * @param failed true if the request failed
+     */
+    void onSample(long rttNanos, int inFlight, boolean failed)
+    {
+        if (failed)
+        {
+            // multiplicative decrease
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+
+        double rtt = Math.max(1, rttNanos);
+
+        if (longRtt == 0)
+        {
+            shortRtt = rtt;
+            longRtt = rtt;
+            return;
+        }
+
+        shortRtt += SHORT_ALPHA * (rtt - shortRtt);
+        longRtt += LONG_ALPHA * (rtt - longRtt);
+
+        // Let the long-term average recover after a load peak
+        if (longRtt / shortRtt > 2)
+        {
+            longRtt *= 0.95;
+        }
+
+        // Do not grow the limit while it is not used
+        if (inFlight < limit / 2)
+        {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double estimate = limit * gradient + Math.sqrt(limit);
+
+        limit = Math.min(maxLimit, Math.max(minLimit,
+                limit * (1 - SMOOTHING) + estimate * SMOOTHING));
+    }
+}
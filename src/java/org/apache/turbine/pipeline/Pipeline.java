@@ -22,6 +22,9 @@ package org.apache.turbine.pipeline;
 
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 import org.apache.turbine.util.TurbineException;
 
@@ -59,6 +62,15 @@ public interface Pipeline
     void initialize()
         throws Exception;
 
+    /**
+     * Releases any resources held by this instance. Called once by the
+     * Turbine servlet when it is destroyed.
+     */
+    default void dispose()
+    {
+        // empty
+    }
+
     /**
      * <p>Add a new Valve to the end of the pipeline.</p>
      *
@@ -95,6 +107,53 @@ public interface Pipeline
     void invoke(PipelineData pipelineData)
         throws TurbineException, IOException;
 
+    /**
+     * <p>Process the specified request asynchronously. The pipeline
+     * suspends after each {@link AsyncValve} returning a pending stage and
+     * resumes with the next valve on the given executor when the stage
+     * completes.</p>
+     *
+     * <p>If the returned stage is cancelled, processing stops before the
+     * next valve. Valves running at that time are not interrupted.</p>
+     *
+     * <p>The default implementation invokes the pipeline synchronously.</p>
+     *
+     * @param pipelineData The run-time information, including the servlet
+     * request and response we are processing.
+     * @param executor the executor used to resume the pipeline
+     * @return a stage completing when all valves have been processed
+     */
+    default CompletionStage<Void> invokeAsync(PipelineData pipelineData, Executor executor)
+    {
+        try
+        {
+            invoke(pipelineData);
+            return CompletableFuture.completedFuture(null);
+        }
+        catch (TurbineException | IOException | RuntimeException e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * <p>Get a stage completing when an asynchronous invocation no longer
+     * uses its pipeline data, so the data may be recycled. If the stage
+     * returned by {@link #invokeAsync(PipelineData, Executor)} is
+     * cancelled while a valve is running or suspended, this is only the
+     * case when that valve has finished.</p>
+     *
+     * <p>The default implementation completes with the given stage.</p>
+     *
+     * @param result the stage returned by {@link #invokeAsync(PipelineData, Executor)}
+     * @return a stage completing normally when the pipeline data has been
+     * released
+     */
+    default CompletionStage<Void> whenReleased(CompletionStage<Void> result)
+    {
+        return result.handle((value, error) -> null);
+    }
+
     /**
      * Remove the specified Valve from the pipeline, if it is found;
      * otherwise, do nothing.
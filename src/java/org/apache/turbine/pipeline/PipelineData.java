@@ -1,6 +1,11 @@
 package org.apache.turbine.pipeline;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineRuntimeException;
@@ -46,15 +51,24 @@ public interface PipelineData extends AutoCloseable
      *
      * @param name the key class
      * @param value the value map
+     *
+     * @deprecated Use {@link #set(Key, Object)}. The entries of the map
+     * are copied into the pipeline data, so later changes of the map are
+     * no longer reflected.
      */
+    @Deprecated
     void put(Class<?> name, Map<Class<?>, ? super Object> value);
 
     /**
      * Get the configured map of objects for the given key
      *
      * @param name the key class
-     * @return the value map or null if no such key exists
+     * @return the value map
+     *
+     * @deprecated Use {@link #get(Key)}. The map is a view of the values
+     * of the given key class and is never null, even if no value was set.
      */
+    @Deprecated
     Map<Class<?>, ? super Object> get(Class<?> name);
 
     /**
@@ -69,6 +83,49 @@ public interface PipelineData extends AutoCloseable
      */
     <T> T get(Class<?> key, Class<T> innerKey);
 
+    /**
+     * Get a value by its typed key
+     *
+     * @param key the key
+     *
+     * @param <T> the type of the value
+     *
+     * @return the value or null if not set
+     */
+    default <T> T get(Key<T> key)
+    {
+        @SuppressWarnings("unchecked")
+        T value = (T) get(key.getScope(), key.getName());
+        return value;
+    }
+
+    /**
+     * Set a value by its typed key
+     *
+     * @param key the key
+     * @param value the value, null to remove it
+     *
+     * @param <T> the type of the value
+     */
+    default <T> void set(Key<T> key, T value)
+    {
+        Map<Class<?>, ? super Object> map = get(key.getScope());
+        if (map == null)
+        {
+            map = new ConcurrentHashMap<>();
+            put(key.getScope(), map);
+        }
+
+        if (value == null)
+        {
+            map.remove(key.getName());
+        }
+        else
+        {
+            map.put(key.getName(), value);
+        }
+    }
+
     /**
      * Get RunData from PipelineData
      *
@@ -82,4 +139,132 @@ public interface PipelineData extends AutoCloseable
         }
         return (RunData) this;
     }
+
+    /**
+     * A typed key of a value held by the pipeline data. A key is
+     * identified by a scope and a name class, like the keys of
+     * {@link PipelineData#get(Class, Class)}, so both APIs address the
+     * same values. Each key has a fixed index which allows
+     * implementations to store the values in an array.
+     *
+     * <p>Keys are created once and kept in constants:</p>
+     * <pre>
+     * Key&lt;ParameterParser&gt; PARAMETER_PARSER_KEY =
+     *     Key.of(Turbine.class, ParameterParser.class);
+     * </pre>
+     *
+     * @param <T> the type of the value, as given by the declaration of
+     * the key
+     */
+    final class Key<T>
+    {
+        /** All keys by scope and name */
+        private static final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Key<?>>> keys =
+                new ConcurrentHashMap<>();
+
+        /** Index of the next key */
+        private static final AtomicInteger nextIndex = new AtomicInteger();
+
+        private final Class<?> scope;
+        private final Class<?> name;
+        private final int index;
+
+        /**
+         * Constructor
+         *
+         * @param scope the scope class
+         * @param name the name class
+         * @param index the index of this key
+         */
+        private Key(Class<?> scope, Class<?> name, int index)
+        {
+            this.scope = scope;
+            this.name = name;
+            this.index = index;
+        }
+
+        /**
+         * Get the key for a scope and name. Repeated calls return the
+         * same key.
+         *
+         * @param scope the scope class, e.g. <code>Turbine.class</code>
+         * @param name the name class, usually the type of the value
+         *
+         * @param <T> the type of the value
+         *
+         * @return the key
+         */
+        @SuppressWarnings("unchecked")
+        public static <T> Key<T> of(Class<?> scope, Class<?> name)
+        {
+            return (Key<T>) keys.computeIfAbsent(scope, s -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(name, n -> new Key<>(scope, n, nextIndex.getAndIncrement()));
+        }
+
+        /**
+         * Find an existing key
+         *
+         * @param scope the scope class
+         * @param name the name class
+         * @return the key or null if no such key has been created
+         */
+        static Key<?> find(Class<?> scope, Class<?> name)
+        {
+            Map<Class<?>, Key<?>> scoped = keys.get(scope);
+            return scoped == null ? null : scoped.get(name);
+        }
+
+        /**
+         * Get all keys of a scope
+         *
+         * @param scope the scope class
+         * @return the keys created for this scope
+         */
+        static Collection<Key<?>> ofScope(Class<?> scope)
+        {
+            Map<Class<?>, Key<?>> scoped = keys.get(scope);
+            return scoped == null ? Collections.emptyList() : scoped.values();
+        }
+
+        /**
+         * @return the number of keys created so far
+         */
+        static int count()
+        {
+            return nextIndex.get();
+        }
+
+        /**
+         * @return the scope class
+         */
+        public Class<?> getScope()
+        {
+            return scope;
+        }
+
+        /**
+         * @return the name class
+         */
+        public Class<?> getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return the index of this key
+         */
+        int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString()
+        {
+            return scope.getSimpleName() + "/" + name.getSimpleName();
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A named pipeline together with the request criteria selecting it.
+ * A route matches a request if the path info starts with one of the
+ * configured path prefixes or if the requested screen is one of the
+ * configured screen names.
+ *
+ * <p>Routes are configured in TurbineResources.properties:</p>
+ * <pre>
+ * pipeline.routes = json
+ * pipeline.route.json.descriptor = /WEB-INF/conf/turbine-json-pipeline.xml
+ * pipeline.route.json.path = /json
+ * pipeline.route.json.screen = JsonScreen
+ * </pre>
+ */
+public class PipelineRoute
+{
+    /** The name of the route */
+    private final String name;
+
+    /** The pipeline to use for matching requests */
+    private final Pipeline pipeline;
+
+    /** The path prefixes selecting this route */
+    private final String[] pathPrefixes;
+
+    /** The screen names selecting this route */
+    private final Set<String> screens;
+
+    /**
+     * Constructor
+     *
+     * @param name the name of the route
+     * @param pipeline the pipeline to use for matching requests
+     * @param pathPrefixes the path prefixes selecting this route
+     * @param screens the screen names selecting this route
+     */
+    public PipelineRoute(String name, Pipeline pipeline, String[] pathPrefixes, String[] screens)
+    {
+        this.name = name;
+        this.pipeline = pipeline;
+        this.pathPrefixes = pathPrefixes == null ? new String[0] : pathPrefixes.clone();
+        this.screens = screens == null ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(Arrays.asList(screens)));
+    }
+
+    /**
+     * @return the name of the route
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the pipeline to use for matching requests
+     */
+    public Pipeline getPipeline()
+    {
+        return pipeline;
+    }
+
+    /**
+     * @return true if this route is selected by screen names
+     */
+    public boolean hasScreens()
+    {
+        return !screens.isEmpty();
+    }
+
+    /**
+     * Check if the given path info selects this route
+     *
+     * @param pathInfo the path info of the request, may be null
+     * @return true if the path starts with one of the configured prefixes
+     */
+    public boolean matchesPath(String pathInfo)
+    {
+        if (pathInfo != null)
+        {
+            for (String prefix : pathPrefixes)
+            {
+                if (pathInfo.startsWith(prefix))
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check if the given screen name selects this route
+     *
+     * @param screen the requested screen, may be null
+     * @return true if the screen is one of the configured screen names
+     */
+    public boolean matchesScreen(String screen)
+    {
+        return screen != null && screens.contains(screen);
+    }
+}
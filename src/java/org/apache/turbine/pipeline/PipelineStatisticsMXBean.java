@@ -0,0 +1,73 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.List;
+
+/**
+ * Management interface of a pipeline collecting per-valve statistics.
+ * Each pipeline is registered as
+ * <code>org.apache.turbine:type=Pipeline,name=&lt;pipeline name&gt;</code>.
+ */
+public interface PipelineStatisticsMXBean
+{
+    /**
+     * @return the name of the pipeline
+     */
+    String getName();
+
+    /**
+     * @return true if statistics are collected
+     */
+    boolean isStatisticsEnabled();
+
+    /**
+     * Switch statistics collection on or off at runtime
+     *
+     * @param enabled true to collect statistics
+     */
+    void setStatisticsEnabled(boolean enabled);
+
+    /**
+     * @return a snapshot of the statistics of each valve, in pipeline order
+     */
+    List<ValveStatisticsSnapshot> getValveStatistics();
+
+    /**
+     * Reset the statistics of all valves
+     */
+    void resetStatistics();
+
+    /**
+     * @return the duration in milliseconds above which a request trace is
+     * logged, or -1 if tracing is off
+     */
+    long getTraceThreshold();
+
+    /**
+     * Set the duration above which a request trace is logged
+     *
+     * @param millis the threshold in milliseconds, negative to switch
+     * tracing off
+     */
+    void setTraceThreshold(long millis);
+}
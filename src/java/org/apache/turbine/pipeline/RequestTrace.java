@@ -0,0 +1,268 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.util.RunData;
+
+/**
+ * The span tree of a single request. A trace is attached to the
+ * {@link PipelineData} by the {@link TurbinePipeline} processing the
+ * request. Loaders, services and tools add nested spans with
+ * {@link #open(PipelineData, String, String)}. When the request took
+ * longer than the threshold of the pipeline, the trace is written as one
+ * JSON line to the logger {@value TurbineConstants#TRACE_LOG_NAME}.
+ */
+public final class RequestTrace
+{
+    /** Dedicated log of slow requests */
+    private static final Logger traceLog = LogManager.getLogger(TurbineConstants.TRACE_LOG_NAME);
+
+    /** The pipeline data carrying this trace */
+    private final DefaultPipelineData pipelineData;
+
+    /** The request URI, if known */
+    private final String uri;
+
+    /** Threshold for logging in nanoseconds */
+    private final long thresholdNanos;
+
+    /** Wall clock time of the request start */
+    private final long startMillis;
+
+    /** The root span */
+    private final TraceSpan root;
+
+    /** The innermost open span */
+    private TraceSpan current;
+
+    /**
+     * Constructor
+     *
+     * @param pipelineData the pipeline data carrying this trace
+     * @param pipelineName the name of the pipeline opening the root span
+     * @param thresholdNanos the threshold for logging
+     */
+    private RequestTrace(DefaultPipelineData pipelineData, String pipelineName, long thresholdNanos)
+    {
+        this.pipelineData = pipelineData;
+        this.uri = requestUri(pipelineData);
+        this.thresholdNanos = thresholdNanos;
+        this.startMillis = System.currentTimeMillis();
+        this.root = new TraceSpan(this, null, "pipeline", pipelineName);
+        this.current = root;
+    }
+
+    /**
+     * Start tracing a request, or open a nested span if the request is
+     * already traced.
+     *
+     * @param pipelineData the run-time information of the request
+     * @param pipelineName the name of the pipeline
+     * @param thresholdNanos the threshold for logging, negative to disable
+     * tracing
+     * @return the span of the pipeline
+     */
+    static TraceSpan begin(PipelineData pipelineData, String pipelineName, long thresholdNanos)
+    {
+        if (!(pipelineData instanceof DefaultPipelineData))
+        {
+            return TraceSpan.NOOP;
+        }
+
+        DefaultPipelineData data = (DefaultPipelineData) pipelineData;
+        RequestTrace trace = data.getTrace();
+
+        if (trace != null)
+        {
+            return trace.open("pipeline", pipelineName);
+        }
+
+        if (thresholdNanos < 0)
+        {
+            return TraceSpan.NOOP;
+        }
+
+        trace = new RequestTrace(data, pipelineName, thresholdNanos);
+        data.setTrace(trace);
+        return trace.root;
+    }
+
+    /**
+     * Open a span nested in the innermost open span of the request. If
+     * the request is not traced, a span recording nothing is returned.
+     *
+     * @param pipelineData the run-time information of the request, may be null
+     * @param kind the kind of the span, e.g. "screen"
+     * @param name the name of the span, e.g. the module name
+     * @return the span to close when the traced section ends
+     */
+    public static TraceSpan open(PipelineData pipelineData, String kind, String name)
+    {
+        if (pipelineData instanceof DefaultPipelineData)
+        {
+            RequestTrace trace = ((DefaultPipelineData) pipelineData).getTrace();
+            if (trace != null)
+            {
+                return trace.open(kind, name);
+            }
+        }
+
+        return TraceSpan.NOOP;
+    }
+
+    /**
+     * Open a span nested in the innermost open span
+     *
+     * @param kind the kind of the span
+     * @param name the name of the span
+     * @return the new span
+     */
+    private TraceSpan open(String kind, String name)
+    {
+        TraceSpan span = new TraceSpan(this, current, kind, name);
+        current = span;
+        return span;
+    }
+
+    /**
+     * Called when a span of this trace is closed
+     *
+     * @param span the closed span
+     */
+    void spanClosed(TraceSpan span)
+    {
+        if (span != root)
+        {
+            current = span.getParent();
+            return;
+        }
+
+        pipelineData.setTrace(null);
+
+        if (span.getDuration() >= thresholdNanos && traceLog.isInfoEnabled())
+        {
+            traceLog.info(toJson());
+        }
+    }
+
+    /**
+     * @return the root span of this trace
+     */
+    public TraceSpan getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * Format this trace as a single line of JSON
+     *
+     * @return the JSON string
+     */
+    public String toJson()
+    {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"start\":").append(startMillis);
+        if (uri != null)
+        {
+            json.append(",\"uri\":");
+            appendString(json, uri);
+        }
+        json.append(",\"trace\":");
+        root.toJson(json);
+        json.append('}');
+
+        return json.toString();
+    }
+
+    /**
+     * Append a quoted and escaped JSON string
+     *
+     * @param json the buffer to append to
+     * @param value the string value
+     */
+    static void appendString(StringBuilder json, String value)
+    {
+        if (value == null)
+        {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        json.append(String.format("\\u%04x", Integer.valueOf(c)));
+                    }
+                    else
+                    {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Get the URI of the request, if available
+     *
+     * @param pipelineData the pipeline data
+     * @return the request URI or null
+     */
+    private static String requestUri(PipelineData pipelineData)
+    {
+        if (pipelineData instanceof RunData)
+        {
+            HttpServletRequest request = ((RunData) pipelineData).getRequest();
+            if (request != null)
+            {
+                return request.getRequestURI();
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,252 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A timed section of a traced request. Spans form a tree rooted at the
+ * pipeline processing the request. Each span records its wall time and,
+ * where the JVM supports it, the bytes allocated by the current thread.
+ *
+ * <p>Use spans in a try-with-resources block:</p>
+ * <pre>
+ * try (TraceSpan span = RequestTrace.open(pipelineData, "screen", name))
+ * {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class TraceSpan implements AutoCloseable
+{
+    /** A span which records nothing, used when tracing is off */
+    static final TraceSpan NOOP = new TraceSpan(null, null, "", "");
+
+    /** Allocation counter of the JVM, null if unsupported */
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCounter();
+
+    private final RequestTrace trace;
+    private final TraceSpan parent;
+    private final String kind;
+    private final String name;
+    private final long threadId;
+    private final long startNanos;
+    private final long startAllocated;
+
+    private List<TraceSpan> children;
+    private long durationNanos = -1;
+    private long allocatedBytes = -1;
+
+    /**
+     * Constructor
+     *
+     * @param trace the trace this span belongs to
+     * @param parent the enclosing span or null for the root
+     * @param kind the kind of the span, e.g. "screen"
+     * @param name the name of the span, e.g. the module name
+     */
+    TraceSpan(RequestTrace trace, TraceSpan parent, String kind, String name)
+    {
+        this.trace = trace;
+        this.parent = parent;
+        this.kind = kind;
+        this.name = name;
+
+        if (trace == null)
+        {
+            this.threadId = 0;
+            this.startNanos = 0;
+            this.startAllocated = -1;
+        }
+        else
+        {
+            this.threadId = Thread.currentThread().getId();
+            this.startAllocated = allocatedBytes(threadId);
+            this.startNanos = System.nanoTime();
+
+            if (parent != null)
+            {
+                parent.addChild(this);
+            }
+        }
+    }
+
+    /**
+     * Close the span and record wall time and allocation. Closing a span
+     * twice has no effect.
+     */
+    @Override
+    public void close()
+    {
+        if (trace == null || durationNanos >= 0)
+        {
+            return;
+        }
+
+        durationNanos = System.nanoTime() - startNanos;
+
+        long currentThread = Thread.currentThread().getId();
+        if (startAllocated >= 0 && currentThread == threadId)
+        {
+            // Allocation is counted per thread, so only valid if the span
+            // did not move to another thread
+            allocatedBytes = allocatedBytes(currentThread) - startAllocated;
+        }
+
+        trace.spanClosed(this);
+    }
+
+    /**
+     * @return the enclosing span or null for the root
+     */
+    TraceSpan getParent()
+    {
+        return parent;
+    }
+
+    /**
+     * @return the kind of this span
+     */
+    public String getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return the name of this span
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the wall time in nanoseconds or -1 if still open
+     */
+    public long getDuration()
+    {
+        return durationNanos;
+    }
+
+    /**
+     * @return the bytes allocated by the thread while the span was open or
+     * -1 if unknown
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return the nested spans
+     */
+    public List<TraceSpan> getChildren()
+    {
+        return children == null ? Collections.emptyList() : children;
+    }
+
+    /**
+     * Add a nested span
+     *
+     * @param child the nested span
+     */
+    private void addChild(TraceSpan child)
+    {
+        if (children == null)
+        {
+            children = new ArrayList<>();
+        }
+
+        children.add(child);
+    }
+
+    /**
+     * Write this span and its children as JSON
+     *
+     * @param json the buffer to append to
+     */
+    void toJson(StringBuilder json)
+    {
+        json.append("{\"kind\":");
+        RequestTrace.appendString(json, kind);
+        json.append(",\"name\":");
+        RequestTrace.appendString(json, name);
+        json.append(",\"timeUs\":").append(durationNanos / 1000);
+
+        if (allocatedBytes >= 0)
+        {
+            json.append(",\"allocBytes\":").append(allocatedBytes);
+        }
+
+        if (children != null)
+        {
+            json.append(",\"children\":[");
+            for (int i = 0; i < children.size(); i++)
+            {
+                if (i > 0)
+                {
+                    json.append(',');
+                }
+
+                children.get(i).toJson(json);
+            }
+            json.append(']');
+        }
+
+        json.append('}');
+    }
+
+    /**
+     * Get the number of bytes allocated by a thread
+     *
+     * @param threadId the thread id
+     * @return the allocated bytes or -1 if unsupported
+     */
+    private static long allocatedBytes(long threadId)
+    {
+        return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * Find the allocation counter of the JVM
+     *
+     * @return the counter or null if unsupported
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            if (counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled())
+            {
+                return counter;
+            }
+        }
+
+        return null;
+    }
+}
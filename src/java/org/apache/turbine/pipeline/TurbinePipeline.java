@@ -20,9 +20,18 @@ package org.apache.turbine.pipeline;
  */
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Iterator;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
@@ -32,7 +41,10 @@ import jakarta.xml.bind.annotation.XmlElementWrapper;
 import jakarta.xml.bind.annotation.XmlRootElement;
 import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.turbine.annotation.AnnotationProcessor;
+import org.apache.turbine.pipeline.PipelineData.Key;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -46,14 +58,24 @@ import org.apache.turbine.util.TurbineException;
 @XmlRootElement(name="pipeline")
 @XmlAccessorType(XmlAccessType.NONE)
 public class TurbinePipeline
-        implements Pipeline, ValveContext
+        implements Pipeline, ValveContext, PipelineStatisticsMXBean
 {
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(TurbinePipeline.class);
+
     /**
      * The "Turbine Classic" pipeline.
      */
     public static final String CLASSIC_PIPELINE =
             "/WEB-INF/conf/turbine-classic-pipeline.xml";
 
+    /**
+     * The key of the execution state in pipeline data implementations
+     * which cannot carry it themselves.
+     */
+    private static final Key<ValveChain> VALVE_CHAIN_KEY =
+            Key.of(TurbinePipeline.class, ValveChain.class);
+
     /**
      * Name of this pipeline.
      */
@@ -66,9 +88,41 @@ public class TurbinePipeline
     private CopyOnWriteArrayList<Valve> valves = new CopyOnWriteArrayList<>();
 
     /**
-     * The per-thread execution state for processing through this pipeline.
+     * The compiled, immutable valve chain used for processing requests
+     * together with its statistics. Rebuilt whenever the set of valves
+     * changes.
      */
-    private ThreadLocal<Iterator<Valve>> state = new ThreadLocal<>();
+    private volatile CompiledChain compiled = CompiledChain.EMPTY;
+
+    /**
+     * Whether per-valve statistics are collected initially, as configured
+     * in the pipeline descriptor.
+     */
+    @XmlAttribute(name="statistics")
+    private Boolean statisticsConfigured;
+
+    /**
+     * Whether per-valve statistics are collected.
+     */
+    private volatile boolean statisticsEnabled = false;
+
+    /**
+     * The duration in milliseconds above which a request trace is logged,
+     * as configured in the pipeline descriptor.
+     */
+    @XmlAttribute(name="traceThreshold")
+    private Long traceThresholdConfigured;
+
+    /**
+     * The duration in nanoseconds above which a request trace is logged,
+     * negative if requests are not traced.
+     */
+    private volatile long traceThresholdNanos = -1;
+
+    /**
+     * The name under which this pipeline is registered with JMX.
+     */
+    private ObjectName objectName;
 
     /**
      * @see org.apache.turbine.pipeline.Pipeline#initialize()
@@ -86,6 +140,87 @@ public class TurbinePipeline
             AnnotationProcessor.process(v);
             v.initialize();
         }
+
+        if (statisticsConfigured != null)
+        {
+            statisticsEnabled = statisticsConfigured.booleanValue();
+        }
+
+        if (traceThresholdConfigured != null)
+        {
+            setTraceThreshold(traceThresholdConfigured.longValue());
+        }
+
+        compile();
+        registerMBean();
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Pipeline#dispose()
+     */
+    @Override
+    public void dispose()
+    {
+        for (Valve v : valves)
+        {
+            v.dispose();
+        }
+
+        if (objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            }
+            catch (JMException e)
+            {
+                log.warn("Could not unregister pipeline {} from JMX", name, e);
+            }
+
+            objectName = null;
+        }
+    }
+
+    /**
+     * Register this pipeline with the platform MBean server
+     */
+    private void registerMBean()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("org.apache.turbine:type=Pipeline,name="
+                    + ObjectName.quote(name == null ? "default" : name));
+
+            if (server.isRegistered(on))
+            {
+                server.unregisterMBean(on);
+            }
+
+            server.registerMBean(this, on);
+            objectName = on;
+        }
+        catch (JMException e)
+        {
+            log.warn("Could not register pipeline {} with JMX", name, e);
+        }
+    }
+
+    /**
+     * Compile the current set of valves into the array used for
+     * request processing.
+     */
+    private synchronized void compile()
+    {
+        Valve[] chain = valves.toArray(new Valve[0]);
+        ValveStatistics[] stats = new ValveStatistics[chain.length];
+
+        for (int i = 0; i < chain.length; i++)
+        {
+            stats[i] = new ValveStatistics(chain[i]);
+        }
+
+        compiled = new CompiledChain(chain, stats);
     }
 
     /**
@@ -104,11 +239,78 @@ public class TurbinePipeline
      *
      * @return String Name of this pipeline.
      */
+    @Override
     public String getName()
     {
         return name;
     }
 
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#isStatisticsEnabled()
+     */
+    @Override
+    public boolean isStatisticsEnabled()
+    {
+        return statisticsEnabled;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#setStatisticsEnabled(boolean)
+     */
+    @Override
+    public void setStatisticsEnabled(boolean enabled)
+    {
+        this.statisticsEnabled = enabled;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#getValveStatistics()
+     */
+    @Override
+    public List<ValveStatisticsSnapshot> getValveStatistics()
+    {
+        ValveStatistics[] stats = compiled.statistics;
+        List<ValveStatisticsSnapshot> snapshots = new ArrayList<>(stats.length);
+
+        for (ValveStatistics vs : stats)
+        {
+            snapshots.add(vs.snapshot());
+        }
+
+        return snapshots;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#resetStatistics()
+     */
+    @Override
+    public void resetStatistics()
+    {
+        for (ValveStatistics vs : compiled.statistics)
+        {
+            vs.reset();
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#getTraceThreshold()
+     */
+    @Override
+    public long getTraceThreshold()
+    {
+        long nanos = traceThresholdNanos;
+        return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.PipelineStatisticsMXBean#setTraceThreshold(long)
+     */
+    @Override
+    public void setTraceThreshold(long millis)
+    {
+        this.traceThresholdNanos = millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
     /**
      * @see org.apache.turbine.pipeline.Pipeline#addValve(Valve)
      */
@@ -117,6 +319,7 @@ public class TurbinePipeline
     {
         // Add this Valve to the end of the set associated with this Pipeline
         valves.add(valve);
+        compile();
     }
 
     /**
@@ -139,6 +342,7 @@ public class TurbinePipeline
     protected void setValves(Valve[] valves)
     {
         this.valves = new CopyOnWriteArrayList<>(valves);
+        compile();
     }
 
     /**
@@ -148,6 +352,7 @@ public class TurbinePipeline
     public void removeValve(Valve valve)
     {
         valves.remove(valve);
+        compile();
     }
 
     /**
@@ -157,11 +362,181 @@ public class TurbinePipeline
     public void invoke(PipelineData pipelineData)
             throws TurbineException, IOException
     {
-        // Initialize the per-thread state for this thread
-        state.set(Collections.unmodifiableCollection(valves).iterator());
+        ValveChain valveChain = startValveChain(pipelineData, false);
 
-        // Invoke the first Valve in this pipeline for this request
-        invokeNext(pipelineData);
+        try (TraceSpan span = RequestTrace.begin(pipelineData, getName(), traceThresholdNanos))
+        {
+            // Invoke the first Valve in this pipeline for this request
+            valveChain.invokeNext(pipelineData);
+        }
+        finally
+        {
+            valveChain.finish(null);
+        }
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Pipeline#invokeAsync(PipelineData, Executor)
+     */
+    @Override
+    public CompletionStage<Void> invokeAsync(PipelineData pipelineData, Executor executor)
+    {
+        AsyncResult result = new AsyncResult();
+        ValveChain valveChain;
+
+        try
+        {
+            valveChain = startValveChain(pipelineData, true);
+        }
+        catch (RuntimeException e)
+        {
+            result.completeExceptionally(e);
+            result.released.complete(null);
+            return result;
+        }
+
+        TraceSpan span = RequestTrace.begin(pipelineData, getName(), traceThresholdNanos);
+
+        // A cancelled request stops before the next valve and releases
+        // the resources of its valves, even if the valve it is suspended
+        // on never completes
+        result.whenComplete((value, error) ->
+        {
+            if (result.isCancelled())
+            {
+                valveChain.stop();
+                valveChain.runFinishers(error);
+            }
+        });
+
+        resume(valveChain, pipelineData, executor, span, result);
+        return result;
+    }
+
+    /**
+     * Run the valve chain until it finishes or suspends. On suspension,
+     * schedule the resumption when the pending stage completes.
+     *
+     * @param valveChain the execution state of the request
+     * @param pipelineData the run-time information of the request
+     * @param executor the executor used to resume the chain
+     * @param span the trace span of the pipeline
+     * @param result the stage to complete when the chain has finished
+     */
+    private void resume(ValveChain valveChain, PipelineData pipelineData,
+            Executor executor, TraceSpan span, AsyncResult result)
+    {
+        CompletionStage<?> pending;
+
+        try
+        {
+            valveChain.invokeNext(pipelineData);
+            pending = valveChain.takePending();
+        }
+        catch (Throwable t)
+        {
+            finish(valveChain, span, result, t);
+            return;
+        }
+
+        if (pending == null)
+        {
+            finish(valveChain, span, result, null);
+            return;
+        }
+
+        pending.whenComplete((value, error) ->
+        {
+            if (result.isDone())
+            {
+                // cancelled while suspended
+                finish(valveChain, span, result, null);
+                return;
+            }
+
+            if (error != null)
+            {
+                finish(valveChain, span, result, error);
+                return;
+            }
+
+            try
+            {
+                executor.execute(() -> resume(valveChain, pipelineData, executor, span, result));
+            }
+            catch (RuntimeException e)
+            {
+                finish(valveChain, span, result, e);
+            }
+        });
+    }
+
+    /**
+     * Finish an asynchronous invocation. The trace span is closed before
+     * the result is completed, because dependents of the result may
+     * recycle the pipeline data. The pipeline data is released last.
+     *
+     * @param valveChain the execution state of the request
+     * @param span the trace span of the pipeline
+     * @param result the stage to complete
+     * @param error the error or null
+     */
+    private static void finish(ValveChain valveChain, TraceSpan span,
+            AsyncResult result, Throwable error)
+    {
+        valveChain.finish(error);
+        span.close();
+
+        if (error == null)
+        {
+            result.complete(null);
+        }
+        else
+        {
+            result.completeExceptionally(error);
+        }
+
+        result.released.complete(null);
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.Pipeline#whenReleased(CompletionStage)
+     */
+    @Override
+    public CompletionStage<Void> whenReleased(CompletionStage<Void> result)
+    {
+        if (result instanceof AsyncResult)
+        {
+            return ((AsyncResult) result).released;
+        }
+
+        return Pipeline.super.whenReleased(result);
+    }
+
+    /**
+     * Prepare the execution state of the request for processing
+     * through this pipeline.
+     *
+     * @param pipelineData the run-time information of the request
+     * @param async true if asynchronous valves may suspend the chain
+     * @return the execution state
+     */
+    private ValveChain startValveChain(PipelineData pipelineData, boolean async)
+    {
+        // The execution state travels with the request, not the thread
+        ValveChain valveChain = getValveChain(pipelineData);
+        if (valveChain.isActive())
+        {
+            // Nested invocation with the same pipeline data
+            valveChain = new ValveChain();
+        }
+
+        // Valves and statistics are read from the same snapshot
+        CompiledChain snapshot = compiled;
+        ValveStatistics[] stats = statisticsEnabled ? snapshot.statistics : null;
+
+        valveChain.start(snapshot.valves, stats, async);
+        return valveChain;
     }
 
     /**
@@ -171,14 +546,66 @@ public class TurbinePipeline
     public void invokeNext(PipelineData pipelineData)
             throws TurbineException, IOException
     {
-        // Identify the current valve for the current request thread
-        Iterator<Valve> current = state.get();
+        // Continue with the current valve of the given request
+        getValveChain(pipelineData).invokeNext(pipelineData);
+    }
+
+    /**
+     * Get the execution state carried by the pipeline data. Other
+     * implementations than {@link DefaultPipelineData} carry the state
+     * as a value of the pipeline data, created on first use.
+     *
+     * @param pipelineData the run-time information of the request
+     * @return the execution state of the request
+     */
+    private ValveChain getValveChain(PipelineData pipelineData)
+    {
+        if (pipelineData instanceof DefaultPipelineData)
+        {
+            return ((DefaultPipelineData) pipelineData).getValveChain();
+        }
+
+        ValveChain valveChain = pipelineData.get(VALVE_CHAIN_KEY);
+        if (valveChain == null)
+        {
+            valveChain = new ValveChain();
+            pipelineData.set(VALVE_CHAIN_KEY, valveChain);
+        }
+
+        return valveChain;
+    }
+
+    /**
+     * The result of an asynchronous invocation. If it is cancelled while
+     * a valve is running or suspended, the pipeline data is released only
+     * when that valve has finished.
+     */
+    private static final class AsyncResult extends CompletableFuture<Void>
+    {
+        /** Completes when the valve chain no longer uses the pipeline data */
+        final CompletableFuture<Void> released = new CompletableFuture<>();
+    }
+
+    /**
+     * The valves of a pipeline and their statistics, published together
+     * so a request never sees the statistics of another set of valves.
+     */
+    private static final class CompiledChain
+    {
+        /** The chain of a pipeline without valves */
+        static final CompiledChain EMPTY =
+                new CompiledChain(ValveChain.EMPTY, new ValveStatistics[0]);
+
+        /** The valves in invocation order */
+        final Valve[] valves;
+
+        /** The statistics for each valve */
+        final ValveStatistics[] statistics;
 
-        if (current.hasNext())
+        CompiledChain(Valve[] valves, ValveStatistics[] statistics)
         {
-            // Invoke the requested Valve for the current request
-            // thread and increment its thread-local state.
-            current.next().invoke(pipelineData, this);
+            this.valves = valves;
+            this.statistics = statistics;
         }
     }
 }
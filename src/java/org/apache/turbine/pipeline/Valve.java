@@ -101,4 +101,12 @@ public interface Valve
     {
         // empty
     }
+
+    /**
+     * Release any resources held by the valve when its pipeline is disposed.
+     */
+    default void dispose()
+    {
+        // empty
+    }
 }
@@ -0,0 +1,336 @@
+package org.apache.turbine.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.apache.turbine.util.TurbineException;
+
+/**
+ * The per-request execution state of a {@link TurbinePipeline}. It holds
+ * the compiled valve array of the pipeline being processed and the position
+ * of the next valve to invoke.
+ *
+ * <p>An instance is carried by the {@link DefaultPipelineData} of the
+ * request, so the state follows the request rather than the thread it
+ * happens to run on.</p>
+ */
+final class ValveChain
+        implements ValveContext
+{
+    /** An empty chain */
+    static final Valve[] EMPTY = new Valve[0];
+
+    /** The compiled valves of the pipeline currently processed */
+    private Valve[] valves = EMPTY;
+
+    /** The statistics for each valve, or null if not collected */
+    private ValveStatistics[] statistics;
+
+    /** The index of the next valve to invoke */
+    private int position;
+
+    /** The total time of the last completed downstream valve */
+    private long downstreamNanos;
+
+    /** Whether an error has already been attributed to a valve */
+    private boolean errorRecorded;
+
+    /** Whether {@link AsyncValve}s may suspend the chain */
+    private boolean async;
+
+    /** The stage the chain is suspended on, if any */
+    private CompletionStage<?> pending;
+
+    /** Whether the chain has been stopped, e.g. after an async timeout */
+    private volatile boolean stopped;
+
+    /** Guards the finish callbacks, which a cancellation runs concurrently */
+    private final ReentrantLock finishLock = new ReentrantLock();
+
+    /** Callbacks to run when a suspended chain has finished */
+    private List<Consumer<Throwable>> finishers;
+
+    /** Whether the finish callbacks have already run */
+    private boolean finishersRun;
+
+    /**
+     * Start processing the given valves from the beginning
+     *
+     * @param valves the compiled valve array
+     * @param statistics the statistics for each valve or null if
+     *        statistics shall not be collected
+     * @param async true if asynchronous valves may suspend the chain
+     */
+    void start(Valve[] valves, ValveStatistics[] statistics, boolean async)
+    {
+        this.valves = valves;
+        this.statistics = statistics;
+        this.async = async;
+        this.position = 0;
+        this.downstreamNanos = 0;
+        this.errorRecorded = false;
+        this.pending = null;
+        this.stopped = false;
+
+        finishLock.lock();
+        try
+        {
+            this.finishers = null;
+            this.finishersRun = false;
+        }
+        finally
+        {
+            finishLock.unlock();
+        }
+    }
+
+    /**
+     * Stop processing before the next valve
+     */
+    void stop()
+    {
+        this.stopped = true;
+    }
+
+    /**
+     * Finish processing, run the registered callbacks and release the valves
+     *
+     * @param error the error which ended processing or null
+     */
+    void finish(Throwable error)
+    {
+        runFinishers(error);
+
+        this.valves = EMPTY;
+        this.statistics = null;
+        this.async = false;
+        this.position = 0;
+        this.pending = null;
+    }
+
+    /**
+     * Run the registered finish callbacks. Only the first call has an
+     * effect, so a cancelled chain can release its resources before the
+     * valve it is suspended on completes, if ever.
+     *
+     * @param error the error which ended processing or null
+     */
+    void runFinishers(Throwable error)
+    {
+        List<Consumer<Throwable>> callbacks;
+
+        finishLock.lock();
+        try
+        {
+            if (finishersRun)
+            {
+                return;
+            }
+
+            finishersRun = true;
+            callbacks = finishers;
+            finishers = null;
+        }
+        finally
+        {
+            finishLock.unlock();
+        }
+
+        if (callbacks != null)
+        {
+            // Innermost valve first, like the unwinding of a synchronous chain
+            for (int i = callbacks.size() - 1; i >= 0; i--)
+            {
+                callbacks.get(i).accept(error);
+            }
+        }
+    }
+
+    /**
+     * Register a callback to run when the chain has finished, if it has
+     * been suspended by a downstream {@link AsyncValve}. A valve calls this
+     * after its <code>invokeNext()</code> returned to defer work which must
+     * wait for the end of the request.
+     *
+     * @param callback receives the error which ended processing or null
+     * @return true if the chain is suspended and the callback has been
+     * registered, false if the chain has already run to its end or has
+     * been cancelled
+     */
+    boolean whenFinished(Consumer<Throwable> callback)
+    {
+        if (pending == null)
+        {
+            return false;
+        }
+
+        finishLock.lock();
+        try
+        {
+            if (finishersRun)
+            {
+                return false;
+            }
+
+            if (finishers == null)
+            {
+                finishers = new ArrayList<>(2);
+            }
+
+            finishers.add(callback);
+            return true;
+        }
+        finally
+        {
+            finishLock.unlock();
+        }
+    }
+
+    /**
+     * Get and clear the stage the chain has been suspended on
+     *
+     * @return the pending stage or null if the chain is not suspended
+     */
+    CompletionStage<?> takePending()
+    {
+        CompletionStage<?> stage = pending;
+        pending = null;
+        return stage;
+    }
+
+    /**
+     * @return true if this chain is currently processing a pipeline
+     */
+    boolean isActive()
+    {
+        return valves != EMPTY;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.ValveContext#invokeNext(PipelineData)
+     */
+    @Override
+    public void invokeNext(PipelineData pipelineData)
+            throws IOException, TurbineException
+    {
+        if (stopped)
+        {
+            throw new TurbineException("Pipeline processing has been stopped");
+        }
+
+        if (position < valves.length)
+        {
+            if (statistics == null)
+            {
+                // Invoke the next Valve for the current request
+                // and advance the request-local position.
+                invokeValve(position++, pipelineData);
+            }
+            else
+            {
+                invokeMeasured(pipelineData);
+            }
+        }
+    }
+
+    /**
+     * Invoke the next valve and record its self time, i.e. the time
+     * not spent in the valves it invoked downstream.
+     *
+     * @param pipelineData the run-time information of the request
+     *
+     * @throws IOException Thrown by the valve.
+     * @throws TurbineException Thrown by the valve.
+     */
+    private void invokeMeasured(PipelineData pipelineData)
+            throws IOException, TurbineException
+    {
+        int index = position++;
+        boolean failed = true;
+
+        downstreamNanos = 0;
+        long start = System.nanoTime();
+
+        try
+        {
+            invokeValve(index, pipelineData);
+            failed = false;
+        }
+        finally
+        {
+            long total = System.nanoTime() - start;
+
+            // Attribute an exception to the valve which threw it only,
+            // not to every valve it propagates through
+            boolean error = failed && !errorRecorded;
+            if (error)
+            {
+                errorRecorded = true;
+            }
+
+            statistics[index].record(total - downstreamNanos, error);
+            downstreamNanos = total;
+        }
+    }
+
+    /**
+     * Invoke the valve at the given index. In async mode, an
+     * {@link AsyncValve} returning an incomplete stage suspends the chain.
+     *
+     * @param index the index of the valve
+     * @param pipelineData the run-time information of the request
+     *
+     * @throws IOException Thrown by the valve.
+     * @throws TurbineException Thrown by the valve.
+     */
+    private void invokeValve(int index, PipelineData pipelineData)
+            throws IOException, TurbineException
+    {
+        Valve valve = valves[index];
+
+        if (async && valve instanceof AsyncValve)
+        {
+            CompletionStage<?> stage = ((AsyncValve) valve).invokeAsync(pipelineData);
+            CompletableFuture<?> future = stage == null ? null : stage.toCompletableFuture();
+
+            if (future == null || future.isDone() && !future.isCompletedExceptionally())
+            {
+                // Completed synchronously, just continue
+                invokeNext(pipelineData);
+            }
+            else
+            {
+                // Suspend, the pipeline resumes when the stage completes
+                pending = stage;
+            }
+        }
+        else
+        {
+            valve.invoke(pipelineData, this);
+        }
+    }
+}
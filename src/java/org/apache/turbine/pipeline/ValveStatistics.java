@@ -0,0 +1,173 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the invocation count, error count and a latency histogram of
+ * the self time of a single valve. The self time of a valve excludes
+ * the time spent in the valves invoked downstream.
+ *
+ * <p>The histogram uses power-of-two buckets of nanoseconds, so recording
+ * a value is a single bit operation and an uncontended add.</p>
+ */
+final class ValveStatistics
+{
+    /** Number of histogram buckets, one per possible bit length of a long */
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    /** The name of the valve */
+    private final String valveName;
+
+    /** Number of invocations */
+    private final LongAdder invocations = new LongAdder();
+
+    /** Number of invocations which threw an exception */
+    private final LongAdder errors = new LongAdder();
+
+    /** Accumulated self time in nanoseconds */
+    private final LongAdder totalNanos = new LongAdder();
+
+    /** Maximum self time in nanoseconds */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /** Histogram buckets, bucket i counts values in [2^(i-1), 2^i) */
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    /**
+     * Constructor
+     *
+     * @param valve the valve to collect statistics for
+     */
+    ValveStatistics(Valve valve)
+    {
+        this.valveName = valve.getClass().getName();
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a single invocation
+     *
+     * @param selfNanos the self time of the invocation in nanoseconds
+     * @param error true if the invocation threw an exception
+     */
+    void record(long selfNanos, boolean error)
+    {
+        long nanos = Math.max(0, selfNanos);
+
+        invocations.increment();
+        if (error)
+        {
+            errors.increment();
+        }
+
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        histogram[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+    }
+
+    /**
+     * Reset all counters
+     */
+    void reset()
+    {
+        invocations.reset();
+        errors.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+
+        for (LongAdder bucket : histogram)
+        {
+            bucket.reset();
+        }
+    }
+
+    /**
+     * Create a consistent-enough snapshot of the current values
+     *
+     * @return the snapshot
+     */
+    ValveStatisticsSnapshot snapshot()
+    {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            counts[i] = histogram[i].sum();
+            count += counts[i];
+        }
+
+        long total = totalNanos.sum();
+        long max = maxNanos.get();
+
+        return new ValveStatisticsSnapshot(valveName,
+                invocations.sum(),
+                errors.sum(),
+                total,
+                count == 0 ? 0 : total / count,
+                max,
+                percentile(counts, count, 0.5, max),
+                percentile(counts, count, 0.9, max),
+                percentile(counts, count, 0.99, max));
+    }
+
+    /**
+     * Estimate a percentile from the histogram. The result is the upper
+     * bound of the bucket containing the percentile, capped by the maximum.
+     *
+     * @param counts the bucket counts
+     * @param count the total count
+     * @param quantile the quantile, between 0 and 1
+     * @param max the maximum recorded value
+     *
+     * @return the estimated percentile in nanoseconds
+     */
+    private static long percentile(long[] counts, long count, double quantile, long max)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(quantile * count);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            seen += counts[i];
+            if (seen >= target)
+            {
+                long upper = i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+                return Math.min(upper, max);
+            }
+        }
+
+        return max;
+    }
+}
@@ -0,0 +1,144 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.beans.ConstructorParameters;
+
+/**
+ * An immutable snapshot of the statistics of a single valve. All times
+ * are self times in nanoseconds, excluding the valves invoked downstream.
+ * Percentiles are estimated from a power-of-two histogram.
+ */
+public class ValveStatisticsSnapshot
+{
+    private final String valveName;
+    private final long invocationCount;
+    private final long errorCount;
+    private final long totalTime;
+    private final long meanTime;
+    private final long maxTime;
+    private final long p50Time;
+    private final long p90Time;
+    private final long p99Time;
+
+    /**
+     * Constructor
+     *
+     * @param valveName the class name of the valve
+     * @param invocationCount the number of invocations
+     * @param errorCount the number of invocations which threw an exception
+     * @param totalTime the accumulated self time
+     * @param meanTime the mean self time
+     * @param maxTime the maximum self time
+     * @param p50Time the estimated median self time
+     * @param p90Time the estimated 90th percentile of the self time
+     * @param p99Time the estimated 99th percentile of the self time
+     */
+    @ConstructorParameters({"valveName", "invocationCount", "errorCount",
+        "totalTime", "meanTime", "maxTime", "p50Time", "p90Time", "p99Time"})
+    public ValveStatisticsSnapshot(String valveName, long invocationCount,
+            long errorCount, long totalTime, long meanTime, long maxTime,
+            long p50Time, long p90Time, long p99Time)
+    {
+        this.valveName = valveName;
+        this.invocationCount = invocationCount;
+        this.errorCount = errorCount;
+        this.totalTime = totalTime;
+        this.meanTime = meanTime;
+        this.maxTime = maxTime;
+        this.p50Time = p50Time;
+        this.p90Time = p90Time;
+        this.p99Time = p99Time;
+    }
+
+    /**
+     * @return the class name of the valve
+     */
+    public String getValveName()
+    {
+        return valveName;
+    }
+
+    /**
+     * @return the number of invocations
+     */
+    public long getInvocationCount()
+    {
+        return invocationCount;
+    }
+
+    /**
+     * @return the number of invocations which threw an exception
+     */
+    public long getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * @return the accumulated self time in nanoseconds
+     */
+    public long getTotalTime()
+    {
+        return totalTime;
+    }
+
+    /**
+     * @return the mean self time in nanoseconds
+     */
+    public long getMeanTime()
+    {
+        return meanTime;
+    }
+
+    /**
+     * @return the maximum self time in nanoseconds
+     */
+    public long getMaxTime()
+    {
+        return maxTime;
+    }
+
+    /**
+     * @return the estimated median self time in nanoseconds
+     */
+    public long getP50Time()
+    {
+        return p50Time;
+    }
+
+    /**
+     * @return the estimated 90th percentile of the self time in nanoseconds
+     */
+    public long getP90Time()
+    {
+        return p90Time;
+    }
+
+    /**
+     * @return the estimated 99th percentile of the self time in nanoseconds
+     */
+    public long getP99Time()
+    {
+        return p99Time;
+    }
+}
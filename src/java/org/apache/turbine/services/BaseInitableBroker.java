@@ -23,6 +23,9 @@ package org.apache.turbine.services;
 
 import java.util.Hashtable;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -69,6 +72,19 @@ public abstract class BaseInitableBroker
      */
     protected Stack<String> stack = new Stack<>();
 
+    /**
+     * Guards the early initialization and the stack of classes being
+     * initialized. A lock instead of a monitor, so initialization from a
+     * virtual thread does not pin its carrier.
+     */
+    private final ReentrantLock stackLock = new ReentrantLock();
+
+    /**
+     * Guards the late initialization, one lock per Initable class, so
+     * unrelated Initables can be initialized concurrently.
+     */
+    private final ConcurrentMap<String, ReentrantLock> initLocks = new ConcurrentHashMap<>();
+
     /** Logging */
     private final Logger log = LogManager.getLogger(this.getClass());
 
@@ -97,7 +113,8 @@ public abstract class BaseInitableBroker
             throws InitializationException
     {
         // make sure that only one thread calls this method recursively
-        synchronized (stack)
+        stackLock.lock();
+        try
         {
             int pos = stack.search(className);
             if (pos != -1)
@@ -128,6 +145,10 @@ public abstract class BaseInitableBroker
                 stack.pop();
             }
         }
+        finally
+        {
+            stackLock.unlock();
+        }
     }
 
     /**
@@ -182,7 +203,9 @@ public abstract class BaseInitableBroker
             initable = getInitableInstance(className);
             if (!initable.getInit())
             {
-                synchronized (initable.getClass())
+                ReentrantLock initLock = initLocks.computeIfAbsent(className, k -> new ReentrantLock());
+                initLock.lock();
+                try
                 {
                     if (!initable.getInit())
                     {
@@ -200,6 +223,10 @@ public abstract class BaseInitableBroker
                                 + className);
                     }
                 }
+                finally
+                {
+                    initLock.unlock();
+                }
             }
             return initable;
         }
@@ -25,6 +25,7 @@ import org.apache.turbine.modules.Assembler;
 import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.Service;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
+import org.apache.turbine.services.assemblerbroker.util.ModuleIndex;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -75,4 +76,14 @@ public interface AssemblerBrokerService
      * @return A Loader instance for the requested type
      */
     <T extends Assembler> Loader<T> getLoader(Class<T> type);
+
+    /**
+     * Get the index of the module classes known at build time
+     *
+     * @return the module index, empty if no index is used
+     */
+    default ModuleIndex getModuleIndex()
+    {
+        return ModuleIndex.EMPTY;
+    }
 }
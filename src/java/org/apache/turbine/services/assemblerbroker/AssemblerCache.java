@@ -0,0 +1,239 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.turbine.modules.Assembler;
+
+/**
+ * A cache for the assemblers of one type, keyed by name, optionally
+ * bounded.
+ * <p>
+ * Every entry counts its hits. When a bounded cache is full, the entry with the
+ * lowest count is evicted, so that a stream of requests for random names
+ * cannot displace the frequently used assemblers. The counts are halved
+ * after each <code>maximumSize</code> insertions so that assemblers which
+ * are no longer used age out.
+ */
+final class AssemblerCache implements AssemblerCacheMXBean
+{
+    /** Upper bound of the hit count of an entry */
+    private static final int MAX_FREQUENCY = 1 << 24;
+
+    /** A cache entry */
+    private static final class Entry
+    {
+        /** The cached assembler */
+        final Assembler assembler;
+
+        /** The approximate number of hits, updated without synchronization */
+        int frequency = 1;
+
+        Entry(Assembler assembler)
+        {
+            this.assembler = assembler;
+        }
+    }
+
+    /** The cached entries */
+    private final ConcurrentHashMap<String, Entry> entries;
+
+    /** The maximum number of entries, 0 for no limit */
+    private final int maximumSize;
+
+    /** Guards eviction and aging */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /** Insertions since the counts were halved, guarded by evictionLock */
+    private int insertions;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor for a bounded cache
+     *
+     * @param maximumSize the maximum number of cached assemblers
+     */
+    AssemblerCache(int maximumSize)
+    {
+        this(maximumSize, Math.max(1, maximumSize));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity the initial capacity of the cache
+     * @param maximumSize the maximum number of cached assemblers, 0 or
+     * less for no limit
+     */
+    AssemblerCache(int initialCapacity, int maximumSize)
+    {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.entries = new ConcurrentHashMap<>(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * Get a cached assembler
+     *
+     * @param name the name of the assembler
+     *
+     * @return the assembler or null if it is not cached
+     */
+    Assembler get(String name)
+    {
+        Entry entry = entries.get(name);
+
+        if (entry == null)
+        {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+
+        if (entry.frequency < MAX_FREQUENCY)
+        {
+            entry.frequency++;
+        }
+
+        return entry.assembler;
+    }
+
+    /**
+     * Add an assembler to the cache unless another thread was faster,
+     * possibly evicting the least frequently used entry.
+     *
+     * @param name the name of the assembler
+     * @param assembler the assembler
+     *
+     * @return the cached assembler
+     */
+    Assembler putIfAbsent(String name, Assembler assembler)
+    {
+        Entry entry = new Entry(assembler);
+        Entry existing = entries.putIfAbsent(name, entry);
+
+        if (existing != null)
+        {
+            return existing.assembler;
+        }
+
+        if (maximumSize == 0)
+        {
+            return assembler;
+        }
+
+        evictionLock.lock();
+        try
+        {
+            if (++insertions >= maximumSize)
+            {
+                insertions = 0;
+                for (Entry e : entries.values())
+                {
+                    e.frequency >>>= 1;
+                }
+            }
+
+            while (entries.size() > maximumSize)
+            {
+                evictOne(entry);
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+
+        return assembler;
+    }
+
+    /**
+     * Remove the entry with the lowest hit count, except the given one
+     *
+     * @param keep the entry just added
+     */
+    private void evictOne(Entry keep)
+    {
+        Map.Entry<String, Entry> victim = null;
+
+        for (Map.Entry<String, Entry> e : entries.entrySet())
+        {
+            if (e.getValue() != keep
+                && (victim == null || e.getValue().frequency < victim.getValue().frequency))
+            {
+                victim = e;
+            }
+        }
+
+        if (victim == null)
+        {
+            return;
+        }
+
+        if (entries.remove(victim.getKey(), victim.getValue()))
+        {
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public int getSize()
+    {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictions.sum();
+    }
+
+    @Override
+    public void clear()
+    {
+        entries.clear();
+    }
+}
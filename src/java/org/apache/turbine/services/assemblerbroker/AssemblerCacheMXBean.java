@@ -0,0 +1,60 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Management interface of the assembler cache of one assembler type,
+ * registered as
+ * <code>org.apache.turbine:type=AssemblerCache,name=&lt;assembler type&gt;</code>.
+ */
+public interface AssemblerCacheMXBean
+{
+    /**
+     * @return the number of cached assemblers
+     */
+    int getSize();
+
+    /**
+     * @return the maximum number of cached assemblers, 0 if the cache is
+     * not limited
+     */
+    int getMaximumSize();
+
+    /**
+     * @return the number of lookups which found a cached assembler
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of lookups which did not find a cached assembler
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of assemblers removed to keep the cache bounded
+     */
+    long getEvictionCount();
+
+    /**
+     * Remove all cached assemblers
+     */
+    void clear();
+}
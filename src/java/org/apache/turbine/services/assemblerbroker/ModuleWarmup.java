@@ -0,0 +1,327 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.modules.Action;
+import org.apache.turbine.modules.Assembler;
+import org.apache.turbine.modules.Layout;
+import org.apache.turbine.modules.Navigation;
+import org.apache.turbine.modules.Page;
+import org.apache.turbine.modules.ScheduledJob;
+import org.apache.turbine.modules.Screen;
+import org.apache.turbine.services.assemblerbroker.util.ModuleIndex;
+import org.apache.turbine.services.template.TemplateService;
+
+/**
+ * Loads modules and resolves template mappings at startup, so that the
+ * first requests do not pay for class loading, instantiation and
+ * injection.
+ * <p>
+ * The modules are taken from the module index (see
+ * {@link org.apache.turbine.services.assemblerbroker.util.ModuleIndexProcessor})
+ * and from <code>module.warmup.modules</code>, a list of
+ * <code>type:name</code> entries such as <code>screen:Index</code>.
+ * The screen and layout mappings of the templates listed in
+ * <code>module.warmup.templates</code> are resolved as well. All of this
+ * runs in parallel on a fork-join pool.
+ * <p>
+ * Turbine runs the warm-up at the end of its initialization if
+ * <code>module.warmup</code> is true, so the servlet only accepts
+ * requests after the warm-up has finished. Failed tasks are logged, or fail
+ * the initialization if <code>module.warmup.fail</code> is true. The
+ * warm-up is skipped if <code>module.cache</code> is false.
+ */
+public final class ModuleWarmup
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ModuleWarmup.class);
+
+    /** Number of slowest tasks listed in the summary */
+    private static final int SLOWEST = 5;
+
+    /** The module types by configuration name and their package prefixes */
+    private static final Map<String, Class<? extends Assembler>> MODULE_TYPES = new LinkedHashMap<>();
+    private static final Map<Class<? extends Assembler>, String> MODULE_PREFIXES = new LinkedHashMap<>();
+
+    static
+    {
+        addModuleType("screen", Screen.class, Screen.PREFIX);
+        addModuleType("action", Action.class, Action.PREFIX);
+        addModuleType("layout", Layout.class, Layout.PREFIX);
+        addModuleType("navigation", Navigation.class, Navigation.PREFIX);
+        addModuleType("page", Page.class, Page.PREFIX);
+        addModuleType("scheduledjob", ScheduledJob.class, ScheduledJob.PREFIX);
+    }
+
+    /** A completed warm-up task */
+    private static final class Result
+    {
+        final String task;
+        final long nanos;
+        final boolean success;
+
+        Result(String task, long nanos, boolean success)
+        {
+            this.task = task;
+            this.nanos = nanos;
+            this.success = success;
+        }
+    }
+
+    private final AssemblerBrokerService assemblerBroker;
+    private final TemplateService templateService;
+    private final Configuration conf;
+
+    /**
+     * Constructor
+     *
+     * @param assemblerBroker the broker which loads the modules
+     * @param templateService the template service which resolves the templates, may be null
+     * @param conf the Turbine configuration
+     */
+    public ModuleWarmup(AssemblerBrokerService assemblerBroker,
+            TemplateService templateService, Configuration conf)
+    {
+        this.assemblerBroker = assemblerBroker;
+        this.templateService = templateService;
+        this.conf = conf;
+    }
+
+    private static void addModuleType(String name, Class<? extends Assembler> type, String prefix)
+    {
+        MODULE_TYPES.put(name, type);
+        MODULE_PREFIXES.put(type, prefix);
+    }
+
+    /**
+     * Load all modules and resolve all templates, waiting for all tasks
+     * to finish, and log a timing summary.
+     *
+     * @return the number of failed tasks
+     */
+    public int run()
+    {
+        List<Callable<Result>> tasks = new ArrayList<>();
+
+        for (Map.Entry<Class<? extends Assembler>, Set<String>> modules : getModules().entrySet())
+        {
+            Class<? extends Assembler> type = modules.getKey();
+
+            for (String name : modules.getValue())
+            {
+                tasks.add(() -> time(type.getSimpleName() + ' ' + name, () -> assemblerBroker.getAssembler(type, name) != null));
+            }
+        }
+
+        if (templateService != null)
+        {
+            for (String template : conf.getStringArray(TurbineConstants.MODULE_WARMUP_TEMPLATES_KEY))
+            {
+                tasks.add(() -> time("template " + template, () -> resolveTemplate(template)));
+            }
+        }
+
+        if (tasks.isEmpty())
+        {
+            log.info("Module warm-up: nothing to do");
+            return 0;
+        }
+
+        int parallelism = conf.getInt(TurbineConstants.MODULE_WARMUP_PARALLELISM_KEY,
+                TurbineConstants.MODULE_WARMUP_PARALLELISM_DEFAULT);
+        if (parallelism <= 0)
+        {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(parallelism, p ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("turbine-warmup-" + thread.getPoolIndex());
+            thread.setContextClassLoader(classLoader);
+            return thread;
+        }, null, false);
+
+        long start = System.nanoTime();
+        List<Result> results = new ArrayList<>(tasks.size());
+
+        try
+        {
+            for (Future<Result> future : pool.invokeAll(tasks))
+            {
+                results.add(future.get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            log.warn("Module warm-up interrupted");
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            log.warn("Module warm-up failed", e.getCause());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        return summarize(results, System.nanoTime() - start, parallelism);
+    }
+
+    /**
+     * Collect the modules to load from the module index and the configuration
+     *
+     * @return the module names by type
+     */
+    private Map<Class<? extends Assembler>, Set<String>> getModules()
+    {
+        Map<Class<? extends Assembler>, Set<String>> modules = new LinkedHashMap<>();
+        ModuleIndex index = assemblerBroker.getModuleIndex();
+
+        for (Map.Entry<Class<? extends Assembler>, String> type : MODULE_PREFIXES.entrySet())
+        {
+            modules.put(type.getKey(), new LinkedHashSet<>(
+                    index.getModuleNames(type.getKey(), type.getValue())));
+        }
+
+        for (String module : conf.getStringArray(TurbineConstants.MODULE_WARMUP_MODULES_KEY))
+        {
+            Class<? extends Assembler> type = MODULE_TYPES.get(
+                    StringUtils.substringBefore(module, ":").trim().toLowerCase());
+            String name = StringUtils.substringAfter(module, ":").trim();
+
+            if (type == null || name.isEmpty())
+            {
+                log.warn("Ignoring invalid warm-up module {}, expected type:name", module);
+                continue;
+            }
+
+            modules.get(type).add(name);
+        }
+
+        return modules;
+    }
+
+    /**
+     * Resolve the module and template mappings of a template
+     *
+     * @param template the template name
+     *
+     * @return true if a screen template was found
+     *
+     * @throws Exception if the template could not be resolved
+     */
+    private boolean resolveTemplate(String template) throws Exception
+    {
+        templateService.getScreenName(template);
+        templateService.getLayoutName(template);
+        templateService.getLayoutTemplateName(template);
+
+        return templateService.getScreenTemplateName(template) != null;
+    }
+
+    /**
+     * Run a task and measure its duration
+     *
+     * @param task the task description
+     * @param action the task, returning false if the module was not found
+     *
+     * @return the task result
+     */
+    private static Result time(String task, Callable<Boolean> action)
+    {
+        long start = System.nanoTime();
+        boolean success = false;
+
+        try
+        {
+            success = action.call().booleanValue();
+            if (!success)
+            {
+                log.warn("Module warm-up: {} not found", task);
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn("Module warm-up: {} failed", task, e);
+        }
+
+        return new Result(task, System.nanoTime() - start, success);
+    }
+
+    /**
+     * Log the timing summary
+     *
+     * @param results the task results
+     * @param elapsed the total elapsed time in nanoseconds
+     * @param parallelism the number of threads used
+     *
+     * @return the number of failed tasks
+     */
+    private static int summarize(List<Result> results, long elapsed, int parallelism)
+    {
+        long total = 0;
+        int failed = 0;
+
+        for (Result result : results)
+        {
+            total += result.nanos;
+            if (!result.success)
+            {
+                failed++;
+            }
+        }
+
+        log.info("Module warm-up: {} tasks ({} failed) in {} ms on {} threads, {} ms total task time",
+                Integer.valueOf(results.size()), Integer.valueOf(failed),
+                Long.valueOf(TimeUnit.NANOSECONDS.toMillis(elapsed)), Integer.valueOf(parallelism),
+                Long.valueOf(TimeUnit.NANOSECONDS.toMillis(total)));
+
+        results.stream()
+            .sorted(Comparator.comparingLong((Result r) -> r.nanos).reversed())
+            .limit(SLOWEST)
+            .forEach(r -> log.info("Module warm-up: {} took {} ms", r.task,
+                    Long.valueOf(TimeUnit.NANOSECONDS.toMillis(r.nanos))));
+
+        return failed;
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.turbine.services.assemblerbroker;
  */
 
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -29,6 +30,10 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.commons.configuration2.Configuration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -40,6 +45,7 @@ import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineBaseService;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
+import org.apache.turbine.services.assemblerbroker.util.ModuleIndex;
 import org.apache.turbine.util.TurbineException;
 
 /**
@@ -63,8 +69,14 @@ public class TurbineAssemblerBrokerService
     /** A structure that holds the registered AssemblerFactories */
     private Map<Class<?>, List<?>> factories = null;
 
-    /** A cache that holds the generated Assemblers */
-    private ConcurrentMap<String, Assembler> assemblerCache = null;
+    /** The caches that hold the generated Assemblers, one per assembler type */
+    private ConcurrentMap<Class<?>, AssemblerCache> assemblerCaches = null;
+
+    /** The initial capacity of the assembler caches */
+    private int cacheSize;
+
+    /** The maximum number of cached assemblers per type, 0 for no limit */
+    private int cacheMaxSize;
 
     /** A cache that holds the Loaders */
     private ConcurrentMap<Class<?>, Loader<? extends Assembler>> loaderCache = null;
@@ -72,6 +84,9 @@ public class TurbineAssemblerBrokerService
     /** Caching on/off */
     private boolean isCaching;
 
+    /** The index of the module classes known at build time */
+    private ModuleIndex moduleIndex = ModuleIndex.EMPTY;
+
     /**
      * Get a list of AssemblerFactories of a certain type
      *
@@ -141,6 +156,18 @@ public class TurbineAssemblerBrokerService
     {
         factories = new HashMap<>();
 
+        if (Turbine.getConfiguration().getBoolean(TurbineConstants.MODULE_INDEX_KEY,
+                TurbineConstants.MODULE_INDEX_DEFAULT))
+        {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null)
+            {
+                classLoader = getClass().getClassLoader();
+            }
+
+            moduleIndex = ModuleIndex.load(classLoader);
+        }
+
         try
         {
             Configuration conf = getConfiguration();
@@ -167,17 +194,116 @@ public class TurbineAssemblerBrokerService
 
         if (isCaching)
         {
-            int cacheSize = Turbine.getConfiguration()
+            cacheSize = Turbine.getConfiguration()
                 .getInt(TurbineConstants.MODULE_CACHE_SIZE_KEY,
                         TurbineConstants.MODULE_CACHE_SIZE_DEFAULT);
+            cacheMaxSize = Turbine.getConfiguration()
+                .getInt(TurbineConstants.MODULE_CACHE_MAX_SIZE_KEY,
+                        TurbineConstants.MODULE_CACHE_MAX_SIZE_DEFAULT);
 
-            assemblerCache = new ConcurrentHashMap<>(cacheSize);
+            assemblerCaches = new ConcurrentHashMap<>();
             loaderCache = new ConcurrentHashMap<>(cacheSize);
+
+            for (Class<?> type : factories.keySet())
+            {
+                getAssemblerCache(type);
+            }
         }
 
         setInit(true);
     }
 
+    /**
+     * Shuts down the service and unregisters the cache statistics from JMX.
+     */
+    @Override
+    public void shutdown()
+    {
+        if (assemblerCaches != null)
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            for (Class<?> type : assemblerCaches.keySet())
+            {
+                try
+                {
+                    ObjectName on = getObjectName(type);
+                    if (server.isRegistered(on))
+                    {
+                        server.unregisterMBean(on);
+                    }
+                }
+                catch (JMException e)
+                {
+                    log.warn("Could not unregister the {} assembler cache from JMX", type.getSimpleName(), e);
+                }
+            }
+
+            assemblerCaches = null;
+        }
+
+        loaderCache = null;
+        super.shutdown();
+    }
+
+    /**
+     * Get the assembler cache for the given type, creating and registering
+     * it with JMX if necessary.
+     *
+     * @param type type of Assembler
+     *
+     * @return the cache
+     */
+    private AssemblerCache getAssemblerCache(Class<?> type)
+    {
+        AssemblerCache cache = assemblerCaches.get(type);
+
+        if (cache == null)
+        {
+            cache = new AssemblerCache(cacheSize, cacheMaxSize);
+            AssemblerCache oldCache = assemblerCaches.putIfAbsent(type, cache);
+
+            if (oldCache != null)
+            {
+                cache = oldCache;
+            }
+            else
+            {
+                try
+                {
+                    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                    ObjectName on = getObjectName(type);
+
+                    if (server.isRegistered(on))
+                    {
+                        server.unregisterMBean(on);
+                    }
+
+                    server.registerMBean(cache, on);
+                }
+                catch (JMException e)
+                {
+                    log.warn("Could not register the {} assembler cache with JMX", type.getSimpleName(), e);
+                }
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * @param type type of Assembler
+     *
+     * @return the JMX name of the assembler cache for the type
+     *
+     * @throws JMException if the name is invalid
+     */
+    private static ObjectName getObjectName(Class<?> type) throws JMException
+    {
+        return new ObjectName("org.apache.turbine:type=AssemblerCache,name="
+                + ObjectName.quote(type.getSimpleName()));
+    }
+
     /**
      * Register a new AssemblerFactory
      *
@@ -189,6 +315,7 @@ public class TurbineAssemblerBrokerService
     @Override
     public <T extends Assembler> void registerFactory(AssemblerFactory<T> factory)
     {
+        factory.setModuleIndex(moduleIndex);
         getFactoryGroup(factory.getManagedClass()).add(factory);
     }
 
@@ -211,17 +338,22 @@ public class TurbineAssemblerBrokerService
     public <T extends Assembler> T getAssembler(Class<T> type, String name)
         throws TurbineException
     {
-        String key = type + ":" + name;
+        AssemblerCache cache = null;
         T assembler = null;
 
-        if (isCaching && assemblerCache.containsKey(key))
+        if (isCaching && name != null)
         {
-            assembler = (T) assemblerCache.get(key);
-            log.debug("Found {} in the cache!", key);
+            cache = getAssemblerCache(type);
+            assembler = (T) cache.get(name);
+        }
+
+        if (assembler != null)
+        {
+            log.debug("Found {}:{} in the cache!", type, name);
         }
         else
         {
-            log.debug("Loading {}", key);
+            log.debug("Loading {}:{}", type, name);
             List<AssemblerFactory<T>> facs = getFactoryGroup(type);
 
             for (Iterator<AssemblerFactory<T>> it = facs.iterator(); (assembler == null) && it.hasNext();)
@@ -244,13 +376,9 @@ public class TurbineAssemblerBrokerService
                 {
                     AnnotationProcessor.process(assembler);
 
-                    if (isCaching)
+                    if (cache != null)
                     {
-                        T oldAssembler = (T) assemblerCache.putIfAbsent(key, assembler);
-                        if (oldAssembler != null)
-                        {
-                            assembler = oldAssembler;
-                        }
+                        assembler = (T) cache.putIfAbsent(name, assembler);
                     }
                 }
             }
@@ -259,6 +387,15 @@ public class TurbineAssemblerBrokerService
         return assembler;
     }
 
+    /**
+     * @see org.apache.turbine.services.assemblerbroker.AssemblerBrokerService#getModuleIndex()
+     */
+    @Override
+    public ModuleIndex getModuleIndex()
+    {
+        return moduleIndex;
+    }
+
     /**
      * Get a Loader for the given assembler type
      *
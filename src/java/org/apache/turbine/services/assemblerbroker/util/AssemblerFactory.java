@@ -45,4 +45,15 @@ public interface AssemblerFactory<T extends Assembler> extends Loader<T>
      * @return a class
      */
     Class<T> getManagedClass();
+
+    /**
+     * Set the index of the module classes known at build time. Factories
+     * which do not look up classes ignore the index.
+     *
+     * @param index the module index
+     */
+    default void setModuleIndex(ModuleIndex index)
+    {
+        // empty
+    }
 }
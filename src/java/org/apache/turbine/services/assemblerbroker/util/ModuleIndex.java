@@ -0,0 +1,232 @@
+package org.apache.turbine.services.assemblerbroker.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An index of the module classes of an application, generated at build
+ * time by the {@link ModuleIndexProcessor}. The index lists for every
+ * module package root (e.g. <code>com.example.modules</code>) the
+ * concrete assembler classes found there, grouped by assembler type.
+ * <p>
+ * The index allows the assembler factories to decide whether a module
+ * exists without probing the class path with <code>Class.forName()</code>,
+ * which is expensive for names that do not exist. Package roots not
+ * covered by the index are probed as before.
+ * <p>
+ * The index file contains one entry per line, lines starting with
+ * <code>#</code> are comments:
+ * <pre>
+ * root com.example.modules
+ * org.apache.turbine.modules.Screen com.example.modules.screens.Index
+ * </pre>
+ */
+public final class ModuleIndex
+{
+    /** The resource name of the index files */
+    public static final String RESOURCE = "META-INF/turbine/modules.idx";
+
+    /** Keyword of the lines declaring a package root */
+    static final String ROOT = "root";
+
+    /** An index without entries */
+    public static final ModuleIndex EMPTY = new ModuleIndex();
+
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(ModuleIndex.class);
+
+    /** The package roots covered by this index */
+    private final Set<String> roots = new HashSet<>();
+
+    /** The class names of the modules, keyed by assembler type name */
+    private final Map<String, Set<String>> modules = new HashMap<>();
+
+    /**
+     * Private constructor, use {@link #load(ClassLoader)}
+     */
+    private ModuleIndex()
+    {
+        // empty
+    }
+
+    /**
+     * Load and merge all module index resources visible to the given
+     * class loader.
+     *
+     * @param classLoader the class loader to search the resources in
+     *
+     * @return the module index, empty if no resources were found
+     */
+    public static ModuleIndex load(ClassLoader classLoader)
+    {
+        ModuleIndex index = new ModuleIndex();
+
+        try
+        {
+            Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+
+            while (resources.hasMoreElements())
+            {
+                URL url = resources.nextElement();
+                log.debug("Reading module index {}", url);
+
+                try (Reader reader = new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))
+                {
+                    index.read(reader);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.error("Could not read the module index, falling back to class path probing", e);
+            return EMPTY;
+        }
+
+        log.info("Module index covers {} package roots", Integer.valueOf(index.roots.size()));
+
+        return index;
+    }
+
+    /**
+     * Read entries from the given reader and add them to this index.
+     *
+     * @param reader the reader for the index contents
+     *
+     * @throws IOException if the index could not be read
+     */
+    void read(Reader reader) throws IOException
+    {
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+
+        while ((line = in.readLine()) != null)
+        {
+            line = line.trim();
+
+            if (line.isEmpty() || line.charAt(0) == '#')
+            {
+                continue;
+            }
+
+            int space = line.indexOf(' ');
+            if (space < 0)
+            {
+                log.warn("Ignoring malformed module index entry: {}", line);
+                continue;
+            }
+
+            String key = line.substring(0, space);
+            String value = line.substring(space + 1).trim();
+
+            if (ROOT.equals(key))
+            {
+                roots.add(value);
+            }
+            else
+            {
+                modules.computeIfAbsent(key, k -> new HashSet<>()).add(value);
+            }
+        }
+    }
+
+    /**
+     * @return true if this index does not cover any package root
+     */
+    public boolean isEmpty()
+    {
+        return roots.isEmpty();
+    }
+
+    /**
+     * Check if the modules of the given package root are listed in
+     * this index.
+     *
+     * @param packageRoot the module package root, e.g. <code>com.example.modules</code>
+     *
+     * @return true if the index is authoritative for the package root
+     */
+    public boolean covers(String packageRoot)
+    {
+        return roots.contains(packageRoot);
+    }
+
+    /**
+     * Check if the index contains a module class of the given type
+     *
+     * @param type the assembler type, e.g. {@link org.apache.turbine.modules.Screen}
+     * @param className the fully qualified name of the module class
+     *
+     * @return true if the class is listed in the index
+     */
+    public boolean contains(Class<?> type, String className)
+    {
+        Set<String> classNames = modules.get(type.getName());
+        return classNames != null && classNames.contains(className);
+    }
+
+    /**
+     * Get the names of the indexed modules of the given type, as used
+     * when loading them, e.g. <code>admin.Index</code> for the screen
+     * class <code>com.example.modules.screens.admin.Index</code>.
+     *
+     * @param type the assembler type, e.g. {@link org.apache.turbine.modules.Screen}
+     * @param prefix the package prefix of the type, e.g. {@link org.apache.turbine.modules.Screen#PREFIX}
+     *
+     * @return the sorted set of module names, may be empty
+     */
+    public Set<String> getModuleNames(Class<?> type, String prefix)
+    {
+        Set<String> names = new TreeSet<>();
+        Set<String> classNames = modules.get(type.getName());
+
+        if (classNames != null)
+        {
+            for (String className : classNames)
+            {
+                for (String root : roots)
+                {
+                    String packageName = root + '.' + prefix + '.';
+                    if (className.startsWith(packageName))
+                    {
+                        names.add(className.substring(packageName.length()));
+                    }
+                }
+            }
+        }
+
+        return names;
+    }
+}
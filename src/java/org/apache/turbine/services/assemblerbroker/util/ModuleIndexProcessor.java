@@ -0,0 +1,197 @@
+package org.apache.turbine.services.assemblerbroker.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.apache.turbine.modules.Action;
+import org.apache.turbine.modules.Layout;
+import org.apache.turbine.modules.Navigation;
+import org.apache.turbine.modules.Page;
+import org.apache.turbine.modules.ScheduledJob;
+import org.apache.turbine.modules.Screen;
+
+/**
+ * An annotation processor which writes the {@link ModuleIndex} of the
+ * compiled module classes to <code>META-INF/turbine/modules.idx</code>.
+ * <p>
+ * The processor is not registered automatically. Enable it in the
+ * build of the application, e.g. with Maven:
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;artifactId&gt;maven-compiler-plugin&lt;/artifactId&gt;
+ *   &lt;configuration&gt;
+ *     &lt;annotationProcessors&gt;
+ *       &lt;annotationProcessor&gt;org.apache.turbine.services.assemblerbroker.util.ModuleIndexProcessor&lt;/annotationProcessor&gt;
+ *     &lt;/annotationProcessors&gt;
+ *   &lt;/configuration&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ * and set <code>module.index = true</code> in TurbineResources.properties.
+ * The index only lists the classes of one compilation, so incremental
+ * builds must recompile all module classes of an indexed package root.
+ */
+@SupportedAnnotationTypes("*")
+public class ModuleIndexProcessor extends AbstractProcessor
+{
+    /** The module types and their package prefixes */
+    private static final Map<Class<?>, String> MODULE_TYPES = new LinkedHashMap<>();
+
+    static
+    {
+        MODULE_TYPES.put(Action.class, Action.PREFIX);
+        MODULE_TYPES.put(Layout.class, Layout.PREFIX);
+        MODULE_TYPES.put(Navigation.class, Navigation.PREFIX);
+        MODULE_TYPES.put(Page.class, Page.PREFIX);
+        MODULE_TYPES.put(ScheduledJob.class, ScheduledJob.PREFIX);
+        MODULE_TYPES.put(Screen.class, Screen.PREFIX);
+    }
+
+    /** The package roots found */
+    private final SortedSet<String> roots = new TreeSet<>();
+
+    /** The index entries found */
+    private final SortedSet<String> entries = new TreeSet<>();
+
+    /**
+     * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Collect the module classes of the round and write the index after
+     * the last round.
+     *
+     * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set, javax.annotation.processing.RoundEnvironment)
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver())
+        {
+            if (!roots.isEmpty())
+            {
+                writeIndex();
+            }
+        }
+        else
+        {
+            for (TypeElement element : ElementFilter.typesIn(roundEnv.getRootElements()))
+            {
+                addModule(element);
+            }
+        }
+
+        // Do not claim any annotations
+        return false;
+    }
+
+    /**
+     * Add the given class to the index if it is a concrete module class
+     *
+     * @param element the class element
+     */
+    private void addModule(TypeElement element)
+    {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (!element.getKind().isClass()
+            || !modifiers.contains(Modifier.PUBLIC)
+            || modifiers.contains(Modifier.ABSTRACT))
+        {
+            return;
+        }
+
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror type = types.erasure(element.asType());
+        String className = element.getQualifiedName().toString();
+
+        for (Map.Entry<Class<?>, String> moduleType : MODULE_TYPES.entrySet())
+        {
+            TypeElement typeElement = processingEnv.getElementUtils()
+                    .getTypeElement(moduleType.getKey().getName());
+            int pos = className.lastIndexOf('.' + moduleType.getValue() + '.');
+
+            if (typeElement != null && pos > 0
+                && types.isAssignable(type, types.erasure(typeElement.asType())))
+            {
+                roots.add(className.substring(0, pos));
+                entries.add(moduleType.getKey().getName() + ' ' + className);
+            }
+        }
+    }
+
+    /**
+     * Write the collected entries to the class output
+     */
+    private void writeIndex()
+    {
+        try
+        {
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", ModuleIndex.RESOURCE);
+
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8))
+            {
+                writer.write("# Turbine module index, generated by " + getClass().getName() + '\n');
+
+                for (String root : roots)
+                {
+                    writer.write(ModuleIndex.ROOT + ' ' + root + '\n');
+                }
+
+                for (String entry : entries)
+                {
+                    writer.write(entry + '\n');
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "Could not write the module index: " + e.getMessage());
+        }
+    }
+}
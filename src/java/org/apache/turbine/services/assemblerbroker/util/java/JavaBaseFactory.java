@@ -22,16 +22,23 @@ import java.lang.reflect.InvocationTargetException;
  * under the License.
  */
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.modules.Assembler;
 import org.apache.turbine.modules.GenericLoader;
 import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
+import org.apache.turbine.services.assemblerbroker.util.ModuleIndex;
 
 /**
  * A screen factory that attempts to load a java class from
@@ -56,6 +63,56 @@ public abstract class JavaBaseFactory<T extends Assembler>
      */
     private final ConcurrentHashMap<String, Class<T>> classCache = new ConcurrentHashMap<>();
 
+    /**
+     * The names of classes which could not be found, so that a template
+     * mapping walking up the package hierarchy does not repeat the failing
+     * Class.forName() calls. The least recently used names are removed
+     * first. Not used if modules are reloaded.
+     */
+    private final LinkedHashMap<String, Boolean> missingClasses = new LinkedHashMap<String, Boolean>(16, 0.75f, true)
+    {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+        {
+            return size() > missingClassesSize;
+        }
+    };
+
+    /** Guards the missing class names */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Maximum number of missing class names kept, 0 if disabled */
+    private final int missingClassesSize;
+
+    /** The index of the module classes known at build time */
+    private volatile ModuleIndex moduleIndex = ModuleIndex.EMPTY;
+
+    /**
+     * Default constructor
+     */
+    public JavaBaseFactory()
+    {
+        Configuration conf = Turbine.getConfiguration();
+
+        if (conf == null)
+        {
+            missingClassesSize = TurbineConstants.MODULE_NEGATIVE_CACHE_SIZE_DEFAULT;
+        }
+        else if (!conf.getBoolean(TurbineConstants.MODULE_CACHE_KEY,
+                TurbineConstants.MODULE_CACHE_DEFAULT))
+        {
+            // Modules are reloaded, new classes may appear at any time
+            missingClassesSize = 0;
+        }
+        else
+        {
+            missingClassesSize = conf.getInt(TurbineConstants.MODULE_NEGATIVE_CACHE_SIZE_KEY,
+                    TurbineConstants.MODULE_NEGATIVE_CACHE_SIZE_DEFAULT);
+        }
+    }
+
     /**
      * Get an Assembler.
      *
@@ -79,6 +136,18 @@ public abstract class JavaBaseFactory<T extends Assembler>
                 sb.append(p).append('.').append(packageName).append('.').append(name);
                 String className = sb.toString();
 
+                if (isMissingClass(className))
+                {
+                    continue; // for()
+                }
+
+                ModuleIndex index = moduleIndex;
+                if (index.covers(p) && !index.contains(getManagedClass(), className))
+                {
+                    log.debug("{}: Not in module index", className);
+                    continue; // for()
+                }
+
                 log.debug("Trying {}", className);
 
                 try
@@ -100,11 +169,13 @@ public abstract class JavaBaseFactory<T extends Assembler>
                 {
                     // Do this so we loop through all the packages.
                     log.debug("{}: Not found", className);
+                    addMissingClass(className);
                 }
                 catch (NoClassDefFoundError ncdfe)
                 {
                     // Do this so we loop through all the packages.
                     log.debug("{}: No Class Definition found", className);
+                    addMissingClass(className);
                 }
                 // With ClassCastException, InstantiationException we hit big problems
                 catch (ClassCastException | InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e)
@@ -123,6 +194,83 @@ public abstract class JavaBaseFactory<T extends Assembler>
         return assembler;
     }
 
+    /**
+     * Check if a class is known to be missing
+     *
+     * @param className the name of the class
+     * @return true if the class could not be found before
+     */
+    private boolean isMissingClass(String className)
+    {
+        if (missingClassesSize <= 0)
+        {
+            return false;
+        }
+
+        lock.lock();
+        try
+        {
+            // update the access order
+            return missingClasses.get(className) != null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remember a class which could not be found. The least recently used
+     * name is removed if the cache is full.
+     *
+     * @param className the name of the class
+     */
+    private void addMissingClass(String className)
+    {
+        if (missingClassesSize > 0)
+        {
+            lock.lock();
+            try
+            {
+                missingClasses.put(className, Boolean.TRUE);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Set the index of the module classes known at build time. Package
+     * roots covered by the index are not probed for classes which are
+     * not listed.
+     *
+     * @param index the module index
+     */
+    @Override
+    public void setModuleIndex(ModuleIndex index)
+    {
+        moduleIndex = index == null ? ModuleIndex.EMPTY : index;
+    }
+
+    /**
+     * Forget all classes which could not be found, e.g. after new module
+     * classes have been deployed.
+     */
+    public void clearMissingClasses()
+    {
+        lock.lock();
+        try
+        {
+            missingClasses.clear();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
     /**
      * Get the loader for this type of assembler
      *
@@ -22,6 +22,13 @@ package org.apache.turbine.services.assemblerbroker.util.python;
 
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
@@ -32,7 +39,11 @@ import org.apache.turbine.modules.Loader;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
 import org.apache.turbine.services.assemblerbroker.util.AssemblerFactory;
+import org.python.core.CompileMode;
+import org.python.core.CompilerFlags;
 import org.python.core.Py;
+import org.python.core.PyCode;
+import org.python.core.PyObject;
 import org.python.util.PythonInterpreter;
 
 /**
@@ -40,6 +51,11 @@ import org.python.util.PythonInterpreter;
  * JPython interpreter and execute it as a Turbine screen.
  * The JPython script should inherit from Turbine Screen or one
  * of its subclasses.
+ * <p>
+ * The global config file and the scripts are compiled once and
+ * recompiled when the files are modified. Interpreters which have
+ * executed the global config file are kept in a small pool, and every
+ * script runs in a fresh copy of their namespace.
  *
  * @author <a href="mailto:leon@opticode.co.za">Leon Messerschmidt</a>
  * @author <a href="mailto:hps@intermeta.de">Henning P. Schmiedehausen</a>
@@ -51,15 +67,55 @@ public abstract class PythonBaseFactory<T extends Assembler>
     /** Key for the python path */
     public static final String PYTHON_PATH = "python.path";
 
+    /** Key for the number of pooled interpreters */
+    public static final String PYTHON_POOL_SIZE = "python.pool.size";
+
+    /** Default number of pooled interpreters */
+    public static final int PYTHON_POOL_SIZE_DEFAULT = 4;
+
     /** Global config file. This is executed before every screen */
     public static final String PYTHON_CONFIG_FILE = "conf.py";
 
     /** Logging */
     private static Logger log = LogManager.getLogger(PythonBaseFactory.class);
 
+    /** The compiled scripts, keyed by file name */
+    private static final ConcurrentMap<String, CompiledScript> scripts = new ConcurrentHashMap<>();
+
+    /** Interpreters initialized with the global config file */
+    private static volatile BlockingQueue<PooledInterpreter> interpreters;
+
     /** Our configuration */
     private final Configuration conf = TurbineServices.getInstance().getConfiguration(AssemblerBrokerService.SERVICE_NAME);
 
+    /** A compiled script and the modification time of its file */
+    private static final class CompiledScript
+    {
+        final PyCode code;
+        final long lastModified;
+
+        CompiledScript(PyCode code, long lastModified)
+        {
+            this.code = code;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /** An interpreter and its namespace after executing the global config file */
+    private static final class PooledInterpreter
+    {
+        final PythonInterpreter interp;
+        final PyObject locals;
+        final CompiledScript config;
+
+        PooledInterpreter(PythonInterpreter interp, CompiledScript config)
+        {
+            this.interp = interp;
+            this.locals = interp.getLocals();
+            this.config = config;
+        }
+    }
+
     /**
      * Get an Assembler.
      *
@@ -99,27 +155,17 @@ public abstract class PythonBaseFactory<T extends Assembler>
 
         if (f.exists())
         {
-            // We try to open the Py Interpreter
-            try (PythonInterpreter interp = new PythonInterpreter())
+            PooledInterpreter pooled = null;
+
+            try
             {
-                // Make sure the Py Interpreter use the right classloader
-                // This is necessary for servlet engines generally has
-                // their own classloader implementations and servlets aren't
-                // loaded in the system classloader.  The python script will
-                // load java package
-                // org.apache.turbine.services.assemblerbroker.util.python;
-                // the new classes to it as well.
-                Py.getSystemState().setClassLoader(this.getClass().getClassLoader());
-
-                // We import the Python SYS module. Now we don't need to do this
-                // explicitly in the script.  We always use the sys module to
-                // do stuff like loading java package
-                // org.apache.turbine.services.assemblerbroker.util.python;
-                interp.exec("import sys");
-
-                // Now we try to load the script file
-                interp.execfile(confName);
-                interp.execfile(fName.toString());
+                pooled = borrowInterpreter(confName);
+                PythonInterpreter interp = pooled.interp;
+
+                // Run the script in a fresh copy of the namespace prepared
+                // by the global config file
+                interp.setLocals(pooled.locals.invoke("copy"));
+                interp.exec(getScript(f).code);
 
                 try
                 {
@@ -140,8 +186,8 @@ public abstract class PythonBaseFactory<T extends Assembler>
 
                 // Here we convert the python screen instance to a java instance.
                 @SuppressWarnings("unchecked") // Cast from Object necessary
-				T t = (T) interp.get("scr", Assembler.class);
-				assembler = t;
+                T t = (T) interp.get("scr", Assembler.class);
+                assembler = t;
             }
             catch (Exception e)
             {
@@ -151,10 +197,137 @@ public abstract class PythonBaseFactory<T extends Assembler>
                 log.error("PYTHON SCRIPT SCREEN LOADER ERROR:", e);
                 throw e;
             }
+            finally
+            {
+                if (pooled != null)
+                {
+                    returnInterpreter(pooled);
+                }
+            }
         }
         return assembler;
     }
 
+    /**
+     * Get a pooled interpreter which has executed the current version of
+     * the global config file, or create a new one.
+     *
+     * @param confName the file name of the global config file
+     * @return an interpreter
+     * @throws IOException if the config file could not be read
+     */
+    private PooledInterpreter borrowInterpreter(String confName)
+            throws IOException
+    {
+        PooledInterpreter pooled;
+
+        while ((pooled = getInterpreters().poll()) != null)
+        {
+            if (pooled.config.lastModified == new File(confName).lastModified())
+            {
+                return pooled;
+            }
+
+            // The config file has been modified
+            pooled.interp.close();
+        }
+
+        // We try to open the Py Interpreter
+        PythonInterpreter interp = new PythonInterpreter();
+
+        // Make sure the Py Interpreter use the right classloader
+        // This is necessary for servlet engines generally has
+        // their own classloader implementations and servlets aren't
+        // loaded in the system classloader.  The python script will
+        // load java package
+        // org.apache.turbine.services.assemblerbroker.util.python;
+        // the new classes to it as well.
+        Py.getSystemState().setClassLoader(this.getClass().getClassLoader());
+
+        // We import the Python SYS module. Now we don't need to do this
+        // explicitly in the script.  We always use the sys module to
+        // do stuff like loading java package
+        // org.apache.turbine.services.assemblerbroker.util.python;
+        interp.exec("import sys");
+
+        CompiledScript config = getScript(new File(confName));
+        interp.exec(config.code);
+
+        return new PooledInterpreter(interp, config);
+    }
+
+    /**
+     * Return an interpreter to the pool, or close it if the pool is full
+     *
+     * @param pooled the interpreter
+     */
+    private void returnInterpreter(PooledInterpreter pooled)
+    {
+        pooled.interp.setLocals(pooled.locals);
+
+        if (!getInterpreters().offer(pooled))
+        {
+            pooled.interp.close();
+        }
+    }
+
+    /**
+     * @return the interpreter pool, created on first use
+     */
+    private BlockingQueue<PooledInterpreter> getInterpreters()
+    {
+        BlockingQueue<PooledInterpreter> pool = interpreters;
+
+        if (pool == null)
+        {
+            synchronized (PythonBaseFactory.class)
+            {
+                pool = interpreters;
+                if (pool == null)
+                {
+                    pool = new ArrayBlockingQueue<>(Math.max(1,
+                            conf.getInt(PYTHON_POOL_SIZE, PYTHON_POOL_SIZE_DEFAULT)));
+                    interpreters = pool;
+                }
+            }
+        }
+
+        return pool;
+    }
+
+    /**
+     * Get the compiled code of a script, compiling it if it has not been
+     * compiled before or the file has been modified since.
+     *
+     * @param file the script file
+     * @return the compiled script
+     * @throws IOException if the script could not be read
+     */
+    private static CompiledScript getScript(File file)
+            throws IOException
+    {
+        String fileName = file.getPath();
+        long lastModified = file.lastModified();
+        CompiledScript script = scripts.get(fileName);
+
+        if (script == null || script.lastModified != lastModified)
+        {
+            log.debug("Compiling {}", fileName);
+
+            // Compile like PythonInterpreter.execfile(), which honours
+            // the coding declaration of the script
+            try (InputStream in = new FileInputStream(file))
+            {
+                script = new CompiledScript(Py.compile_flags(in, fileName,
+                        CompileMode.exec, new CompilerFlags()), lastModified);
+            }
+
+            scripts.put(fileName, script);
+        }
+
+        return script;
+    }
+
     /**
      * Get the loader for this type of assembler
      *
@@ -38,6 +38,7 @@ import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.pull.ApplicationTool;
 import org.apache.turbine.services.pull.tools.TemplateLink;
 import org.apache.turbine.services.template.BaseTemplateEngineService;
+import org.apache.turbine.services.template.TemplateIndex;
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineException;
 
@@ -63,6 +64,9 @@ public class TurbineJspService
     /** The buffer size for the output stream. */
     private int bufferSize;
 
+    /** The index of the templates on the template paths, if enabled */
+    private TemplateIndex templateIndex;
+
     /** Logging */
     private static Logger log = LogManager.getLogger(TurbineJspService.class);
 
@@ -100,7 +104,7 @@ public class TurbineJspService
     @Override
     public void addDefaultObjects(PipelineData pipelineData)
     {
-        HttpServletRequest req = pipelineData.get(Turbine.class, HttpServletRequest.class);
+        HttpServletRequest req = pipelineData.get(RunData.REQUEST_KEY);
 
         //
         // This is a place where an Application Pull Tool is used
@@ -231,6 +235,34 @@ public class TurbineJspService
 
         bufferSize = config.getInt(JspService.BUFFER_SIZE_KEY,
             JspService.BUFFER_SIZE_DEFAULT);
+
+        if (config.getBoolean(TEMPLATE_INDEX_KEY, false))
+        {
+            templateIndex = new TemplateIndex(templatePaths);
+
+            // JSPs are usually reloaded by the servlet container
+            if (config.getBoolean(TEMPLATE_INDEX_WATCH_KEY, true))
+            {
+                templateIndex.watch();
+            }
+
+            log.debug("Indexed {} template files and directories", Integer.valueOf(templateIndex.size()));
+        }
+    }
+
+    /**
+     * Stop watching the template paths.
+     */
+    @Override
+    public void shutdown()
+    {
+        if (templateIndex != null)
+        {
+            templateIndex.close();
+            templateIndex = null;
+        }
+
+        super.shutdown();
     }
 
     /**
@@ -243,9 +275,24 @@ public class TurbineJspService
     @Override
     public boolean templateExists(String template)
     {
+        TemplateIndex index = templateIndex;
+        if (index != null)
+        {
+            return index.exists(template);
+        }
+
         return Arrays.stream(templatePaths).anyMatch(templatePath -> templateExists(templatePath, template));
     }
 
+    /**
+     * @see org.apache.turbine.services.template.TemplateEngineService#getTemplatePaths
+     */
+    @Override
+    public String[] getTemplatePaths()
+    {
+        return templatePaths.clone();
+    }
+
     /**
      * Determine whether a given template exists on the supplied
      * template path. This service ATM only supports file based
@@ -277,6 +324,13 @@ public class TurbineJspService
         // Find which template path the template is in
         // We have a 1:1 match between relative and absolute
         // pathes so we can use the index for translation.
+        TemplateIndex index = templateIndex;
+        if (index != null)
+        {
+            int i = index.indexOf(relativeTemplate);
+            return (i < 0) ? null : relativeTemplatePaths[i] + "/" + relativeTemplate;
+        }
+
         for (int i = 0; i < templatePaths.length; i++)
         {
             if (templateExists(templatePaths[i], relativeTemplate))
@@ -26,17 +26,23 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.fulcrum.localization.LocalizationService;
 import org.apache.turbine.annotation.TurbineService;
-import org.apache.turbine.services.pull.ApplicationTool;
+import org.apache.turbine.annotation.TurbineSharedTool;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.pull.SharedApplicationTool;
 import org.apache.turbine.util.RunData;
 /**
  * A pull tool which provides lookups for localized text by delegating
  * to the configured Fulcrum <code>LocalizationService</code>.
+ * <p>
+ * As a request tool, it is shared by all requests. Each request gets its
+ * own LocalizationTool with the locale of the request.
  *
  * @author <a href="mailto:epugh@upstate.com">Eric Pugh</a>
  * @author <a href="mailto:dlr@collab.net">Daniel Rall</a>
  * @author <a href="mailto:jon@collab.net">Jon Stevens</a>
  */
-public class LocalizationTool implements ApplicationTool
+@TurbineSharedTool
+public class LocalizationTool implements SharedApplicationTool
 {
     /** Logging */
     private static Logger log = LogManager.getLogger(LocalizationTool.class);
@@ -143,6 +149,23 @@ public class LocalizationTool implements ApplicationTool
         }
     }
 
+    /**
+     * Create a LocalizationTool for a request, sharing the localization
+     * service of this tool.
+     *
+     * @param pipelineData the data of the current request
+     * @return a LocalizationTool with the locale of the request
+     */
+    @Override
+    public Object bind(PipelineData pipelineData)
+    {
+        LocalizationTool tool = new LocalizationTool();
+        tool.localizationService = localizationService;
+        tool.init(pipelineData.getRunData());
+
+        return tool;
+    }
+
     /**
      * No-op.
      */
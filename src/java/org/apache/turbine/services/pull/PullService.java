@@ -24,6 +24,7 @@ package org.apache.turbine.services.pull;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.Service;
 import org.apache.turbine.util.RunData;
+import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
 
 /**
@@ -96,6 +97,15 @@ public interface PullService
     /** Default value for per request tool refreshing */
     boolean TOOLS_PER_REQUEST_REFRESH_DEFAULT = false;
 
+    /**
+     * Property tag for creating request tools on first access instead of
+     * when the context is populated
+     */
+    String TOOLS_REQUEST_LAZY_KEY = "tools.request.lazy";
+
+    /** Default value for lazy request tools */
+    boolean TOOLS_REQUEST_LAZY_DEFAULT = false;
+
     /** prefix for key used in the session to store session scope pull tools */
     String SESSION_TOOLS_ATTRIBUTE_PREFIX = "turbine.sessiontools.";
 
@@ -108,6 +118,17 @@ public interface PullService
      */
     Context getGlobalContext();
 
+    /**
+     * Create a new context for a request, wrapping the global context.
+     * Request tools are added by {@link #populateContext(Context, PipelineData)}.
+     *
+     * @return A new Context object
+     */
+    default Context getRequestContext()
+    {
+        return new VelocityContext(getGlobalContext());
+    }
+
     /**
      * Populate the given context with all request, session, authorized
      * and persistent scope tools (it is assumed that the context
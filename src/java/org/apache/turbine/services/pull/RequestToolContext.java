@@ -0,0 +1,229 @@
+package org.apache.turbine.services.pull;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+
+/**
+ * A request context which creates the request-scope tools on first access
+ * instead of when the context is populated. Only the tools which have been
+ * accessed are released back to the pool at the end of the request.
+ *
+ * @version $Id$
+ */
+class RequestToolContext extends VelocityContext
+{
+    /** Creates a tool from its name and the request data */
+    private final BiFunction<String, Object, Object> toolFactory;
+
+    /** The names of the request tools, shared by all requests */
+    private final Set<String> toolNames;
+
+    /** The RunData or PipelineData the tools are initialized with */
+    private Object data = null;
+
+    /**
+     * The tools which are no longer created on access, by name. The value
+     * is null if the name was put or removed before the tool was created.
+     */
+    private Map<String, Object> resolved = null;
+
+    /**
+     * Create a request context wrapping the global context.
+     *
+     * @param globalContext the context containing the global tools
+     * @param toolFactory creates a tool from its name and the request data
+     * @param toolNames the names of the request tools
+     */
+    RequestToolContext(Context globalContext, BiFunction<String, Object, Object> toolFactory,
+            Set<String> toolNames)
+    {
+        super(globalContext);
+        this.toolFactory = toolFactory;
+        this.toolNames = toolNames;
+    }
+
+    /**
+     * Bind the request data the tools are initialized with. Before, the
+     * context does not contain any request tools.
+     *
+     * @param data a RunData or PipelineData object
+     */
+    void bind(Object data)
+    {
+        this.data = data;
+    }
+
+    /**
+     * Remove the tools which have been created from the context and
+     * unbind the request data.
+     *
+     * @return the tools to release by name
+     */
+    Map<String, Object> unbind()
+    {
+        Map<String, Object> tools = new HashMap<>();
+
+        if (resolved != null)
+        {
+            for (Map.Entry<String, Object> entry : resolved.entrySet())
+            {
+                if (entry.getValue() != null)
+                {
+                    super.internalRemove(entry.getKey());
+                    tools.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        data = null;
+        resolved = null;
+        return tools;
+    }
+
+    /**
+     * Check whether the tool with the given name has yet to be created.
+     *
+     * @param key the name
+     * @return true if the tool is created on access
+     */
+    private boolean isPending(String key)
+    {
+        return data != null
+                && toolNames.contains(key)
+                && (resolved == null || !resolved.containsKey(key));
+    }
+
+    /**
+     * Stop creating the tool with the given name on access.
+     *
+     * @param key the name
+     * @param tool the tool created or null
+     */
+    private void resolve(String key, Object tool)
+    {
+        if (resolved == null)
+        {
+            resolved = new HashMap<>();
+        }
+
+        resolved.put(key, tool);
+    }
+
+    /**
+     * Create the request tool on first access.
+     *
+     * @see org.apache.velocity.VelocityContext#internalGet(java.lang.String)
+     */
+    @Override
+    public Object internalGet(String key)
+    {
+        Object value = super.internalGet(key);
+
+        if (value == null && isPending(key))
+        {
+            value = toolFactory.apply(key, data);
+            resolve(key, value);
+
+            if (value != null)
+            {
+                super.internalPut(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * A value put under the name of a tool replaces it.
+     *
+     * @see org.apache.velocity.VelocityContext#internalPut(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public Object internalPut(String key, Object value)
+    {
+        if (isPending(key))
+        {
+            resolve(key, null);
+        }
+
+        return super.internalPut(key, value);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalContainsKey(java.lang.String)
+     */
+    @Override
+    public boolean internalContainsKey(String key)
+    {
+        return super.internalContainsKey(key) || isPending(key);
+    }
+
+    /**
+     * @see org.apache.velocity.VelocityContext#internalGetKeys()
+     */
+    @Override
+    public String[] internalGetKeys()
+    {
+        String[] keys = super.internalGetKeys();
+
+        if (data == null)
+        {
+            return keys;
+        }
+
+        List<String> all = new ArrayList<>(Arrays.asList(keys));
+        for (String name : toolNames)
+        {
+            if (isPending(name))
+            {
+                all.add(name);
+            }
+        }
+
+        return all.toArray(new String[0]);
+    }
+
+    /**
+     * A tool removed before it was created is not created anymore.
+     *
+     * @see org.apache.velocity.VelocityContext#internalRemove(java.lang.String)
+     */
+    @Override
+    public Object internalRemove(String key)
+    {
+        if (isPending(key))
+        {
+            resolve(key, null);
+            return null;
+        }
+
+        return super.internalRemove(key);
+    }
+}
@@ -0,0 +1,41 @@
+package org.apache.turbine.services.pull;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.turbine.pipeline.PipelineData;
+
+/**
+ * Interface for shared request tools, see
+ * {@link org.apache.turbine.annotation.TurbineSharedTool}, which need
+ * request data. The shared instance is not changed; each request gets a
+ * lightweight accessor bound to its PipelineData.
+ */
+public interface SharedApplicationTool extends ApplicationTool
+{
+    /**
+     * Bind the tool to a request. This is called for every request instead
+     * of taking a tool from the pool and initializing it, so it should be
+     * cheap. It must not change the state of the shared tool.
+     *
+     * @param pipelineData the data of the current request
+     * @return the object to put into the context of the request
+     */
+    Object bind(PipelineData pipelineData);
+}
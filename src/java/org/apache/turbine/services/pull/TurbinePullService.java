@@ -22,8 +22,14 @@ package org.apache.turbine.services.pull;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.fulcrum.pool.PoolService;
@@ -32,13 +38,18 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.annotation.AnnotationProcessor;
+import org.apache.turbine.annotation.TurbineSharedTool;
 import org.apache.turbine.om.security.User;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.RequestTrace;
+import org.apache.turbine.pipeline.TraceSpan;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineBaseService;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.velocity.VelocityService;
 import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.StripedLock;
+import org.apache.velocity.VelocityContext;
 import org.apache.velocity.context.Context;
 
 /**
@@ -110,6 +121,18 @@ import org.apache.velocity.context.Context;
  *
  * Defaults: none
  * </pre>
+ * <p>
+ * If <code>services.PullService.tools.request.lazy</code> is true, the
+ * request scope tools are created when a template accesses them for the
+ * first time, and only those tools are released to the pool at the end
+ * of the request.
+ * </p>
+ * <p>
+ * Request tools annotated with {@link TurbineSharedTool} are created once
+ * and shared by all requests. If they implement
+ * {@link SharedApplicationTool}, each request gets the accessor returned
+ * by {@link SharedApplicationTool#bind(PipelineData)} instead.
+ * </p>
  *
  * @author <a href="mailto:jvanzyl@periapt.com">Jason van Zyl</a>
  * @author <a href="mailto:sean@informage.net">Sean Legassick</a>
@@ -166,6 +189,15 @@ public class TurbinePullService
     /** Internal list of request tools */
     private List<ToolData> requestTools;
 
+    /** The request tools by name */
+    private Map<String, ToolData> requestToolsByName;
+
+    /** The shared request tool instances by name */
+    private Map<String, Object> sharedTools;
+
+    /** The names of the request tools and the shared tools, created on first access */
+    private Set<String> lazyToolNames;
+
     /** Internal list of session tools */
     private List<ToolData> sessionTools;
 
@@ -181,6 +213,16 @@ public class TurbinePullService
     /** Should we refresh the application tools on a per request basis? */
     private boolean refreshToolsPerRequest = false;
 
+    /** Should request tools be created on first access? */
+    private boolean lazyRequestTools = false;
+
+    /**
+     * Locks ensuring that session and persistent tools are created only
+     * once per session or user. Locks instead of monitors, so tool creation
+     * from a virtual thread does not pin its carrier.
+     */
+    private final StripedLock toolLocks = new StripedLock(64);
+
     /**
      * Called the first time the Service is used.
      */
@@ -252,6 +294,16 @@ public class TurbinePullService
         {
             log.info("Pull Model tools will be refreshed on a per request basis.");
         }
+
+        lazyRequestTools =
+            conf.getBoolean(
+                TOOLS_REQUEST_LAZY_KEY,
+                TOOLS_REQUEST_LAZY_DEFAULT);
+
+        if (lazyRequestTools)
+        {
+            log.info("Request tools will be created on first access.");
+        }
     }
 
     /**
@@ -289,6 +341,16 @@ public class TurbinePullService
         globalTools     = getTools(conf.subset(GLOBAL_TOOL));
         log.debug("Request Tools:");
         requestTools    = getTools(conf.subset(REQUEST_TOOL));
+        sharedTools = createSharedTools(requestTools);
+        requestToolsByName = new LinkedHashMap<>();
+        for (ToolData toolData : requestTools)
+        {
+            requestToolsByName.put(toolData.toolName, toolData);
+        }
+        requestToolsByName = Collections.unmodifiableMap(requestToolsByName);
+        Set<String> toolNames = new LinkedHashSet<>(sharedTools.keySet());
+        toolNames.addAll(requestToolsByName.keySet());
+        lazyToolNames = Collections.unmodifiableSet(toolNames);
         log.debug("Session Tools:");
         sessionTools    = getTools(conf.subset(SESSION_TOOL));
         log.debug("Authorized Tools:");
@@ -348,6 +410,48 @@ public class TurbinePullService
         return tools;
     }
 
+    /**
+     * Create the shared request tools and remove them from the given list,
+     * so they are neither pooled nor released.
+     *
+     * @param tools the request tools
+     * @return the shared tool instances by name
+     */
+    private Map<String, Object> createSharedTools(List<ToolData> tools)
+    {
+        Map<String, Object> shared = new LinkedHashMap<>();
+
+        for (Iterator<ToolData> it = tools.iterator(); it.hasNext();)
+        {
+            ToolData toolData = it.next();
+
+            if (!toolData.toolClass.isAnnotationPresent(TurbineSharedTool.class))
+            {
+                continue;
+            }
+
+            it.remove();
+
+            try
+            {
+                Object tool = toolData.toolClass.getDeclaredConstructor().newInstance();
+
+                // shared tools are init'd like global tools
+                initTool(tool, null);
+
+                shared.put(toolData.toolName, tool);
+                log.info("Tool {} is shared by all requests", toolData.toolName);
+            }
+            catch (Exception e)
+            {
+                log.error("Could not instantiate shared tool {} from a {} object",
+                    toolData.toolName, toolData.toolClassName, e);
+            }
+        }
+
+        return shared;
+    }
+
     /**
      * Return the Context which contains all global tools that
      * are to be used in conjunction with the Turbine
@@ -364,6 +468,26 @@ public class TurbinePullService
         return globalContext;
     }
 
+    /**
+     * Create a context for a request which wraps the global context. If
+     * request tools are created lazily, the tools are created when the
+     * context has been populated and a tool is accessed.
+     *
+     * @return a new Context
+     */
+    @Override
+    public Context getRequestContext()
+    {
+        Context global = getGlobalContext();
+
+        if (lazyRequestTools && lazyToolNames != null)
+        {
+            return new RequestToolContext(global, this::createRequestTool, lazyToolNames);
+        }
+
+        return new VelocityContext(global);
+    }
+
     /**
      * Populate the given context with all request, session, authorized
      * and persistent scope tools (it is assumed that the context
@@ -376,36 +500,39 @@ public class TurbinePullService
     @Override
     public void populateContext(Context context, RunData data)
     {
-        populateWithRequestTools(context, data);
-
-        // session tools (whether session-only or persistent are
-        // very similar, so the same method is used - the
-        // boolean parameter indicates whether get/setPerm is to be used
-        // rather than get/setTemp)
-
-        //
-        // Session Tool start right at the session once the user has been set
-        // while persistent and authorized Tools are started when the user has
-        // logged in
-        //
-        User user = data.getUser();
-
-        // Note: Session tools are currently lost after the login action
-        // because the anonymous user is replaced the the real user object.
-        // We should either store the session pull tools in the session or
-        // make Turbine.loginAction() copy the session pull tools into the
-        // new user object.
-        populateWithSessionTools(sessionTools, context, data, user);
-
-        TurbineUserManager userManager =
-        	(TurbineUserManager)TurbineServices
-        		.getInstance()
-        		.getService(TurbineUserManager.ROLE);
-
-        if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
+        try (TraceSpan span = RequestTrace.open(data, "pull", "populateContext"))
         {
-            populateWithSessionTools(authorizedTools, context, data, user);
-            populateWithPermTools(persistentTools, context, data, user);
+            populateWithRequestTools(context, data);
+
+            // session tools (whether session-only or persistent are
+            // very similar, so the same method is used - the
+            // boolean parameter indicates whether get/setPerm is to be used
+            // rather than get/setTemp)
+
+            //
+            // Session Tool start right at the session once the user has been set
+            // while persistent and authorized Tools are started when the user has
+            // logged in
+            //
+            User user = data.getUser();
+
+            // Note: Session tools are currently lost after the login action
+            // because the anonymous user is replaced the the real user object.
+            // We should either store the session pull tools in the session or
+            // make Turbine.loginAction() copy the session pull tools into the
+            // new user object.
+            populateWithSessionTools(sessionTools, context, data, user);
+
+            TurbineUserManager userManager =
+            	(TurbineUserManager)TurbineServices
+            		.getInstance()
+            		.getService(TurbineUserManager.ROLE);
+
+            if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
+            {
+                populateWithSessionTools(authorizedTools, context, data, user);
+                populateWithPermTools(persistentTools, context, data, user);
+            }
         }
     }
 
@@ -421,37 +548,40 @@ public class TurbinePullService
     @Override
     public void populateContext(Context context, PipelineData pipelineData)
     {
-        RunData data = pipelineData.getRunData();
-
-        populateWithRequestTools(context, pipelineData);
-        // session tools (whether session-only or persistent are
-        // very similar, so the same method is used - the
-        // boolean parameter indicates whether get/setPerm is to be used
-        // rather than get/setTemp)
-
-        //
-        // Session Tool start right at the session once the user has been set
-        // while persistent and authorized Tools are started when the user has
-        // logged in
-        //
-        User user = data.getUser();
-
-        // Note: Session tools are currently lost after the login action
-        // because the anonymous user is replaced the the real user object.
-        // We should either store the session pull tools in the session or
-        // make Turbine.loginAction() copy the session pull tools into the
-        // new user object.
-        populateWithSessionTools(sessionTools, context, data, user);
-
-        TurbineUserManager userManager =
-        	(TurbineUserManager)TurbineServices
-        		.getInstance()
-        		.getService(TurbineUserManager.ROLE);
-
-        if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
+        try (TraceSpan span = RequestTrace.open(pipelineData, "pull", "populateContext"))
         {
-            populateWithSessionTools(authorizedTools, context, data, user);
-            populateWithPermTools(persistentTools, context, pipelineData, user);
+            RunData data = pipelineData.getRunData();
+
+            populateWithRequestTools(context, pipelineData);
+            // session tools (whether session-only or persistent are
+            // very similar, so the same method is used - the
+            // boolean parameter indicates whether get/setPerm is to be used
+            // rather than get/setTemp)
+
+            //
+            // Session Tool start right at the session once the user has been set
+            // while persistent and authorized Tools are started when the user has
+            // logged in
+            //
+            User user = data.getUser();
+
+            // Note: Session tools are currently lost after the login action
+            // because the anonymous user is replaced the the real user object.
+            // We should either store the session pull tools in the session or
+            // make Turbine.loginAction() copy the session pull tools into the
+            // new user object.
+            populateWithSessionTools(sessionTools, context, data, user);
+
+            TurbineUserManager userManager =
+            	(TurbineUserManager)TurbineServices
+            		.getInstance()
+            		.getService(TurbineUserManager.ROLE);
+
+            if (!userManager.isAnonymousUser(user) && user.hasLoggedIn())
+            {
+                populateWithSessionTools(authorizedTools, context, data, user);
+                populateWithPermTools(persistentTools, context, pipelineData, user);
+            }
         }
     }
 
@@ -490,6 +620,23 @@ public class TurbinePullService
      */
     private void populateWithRequestTools(Context context, Object data)
     {
+        if (context instanceof RequestToolContext)
+        {
+            // the tools are created or bound on access
+            ((RequestToolContext) context).bind(data);
+            return;
+        }
+
+        for (Map.Entry<String, Object> entry : sharedTools.entrySet())
+        {
+            Object tool = bindSharedTool(entry.getKey(), entry.getValue(), data);
+
+            if (tool != null)
+            {
+                context.put(entry.getKey(), tool);
+            }
+        }
+
         // Iterate the tools
         for (ToolData toolData : requestTools)
         {
@@ -499,7 +646,10 @@ public class TurbinePullService
                 Object tool = pool.getInstance(toolData.toolClass);
 
                 // request tools are init'd with a RunData object
-                initTool(tool, data);
+                try (TraceSpan span = traceTool(data, toolData))
+                {
+                    initTool(tool, data);
+                }
 
                 // put the tool in the context
                 context.put(toolData.toolName, tool);
@@ -512,6 +662,70 @@ public class TurbinePullService
         }
     }
 
+    /**
+     * Create a request-scope tool for a lazy request context.
+     *
+     * @param toolName the name of the tool
+     * @param data a RunData or PipelineData instance
+     * @return the initialized tool or null if it could not be created
+     */
+    private Object createRequestTool(String toolName, Object data)
+    {
+        Object sharedTool = sharedTools.get(toolName);
+        if (sharedTool != null)
+        {
+            return bindSharedTool(toolName, sharedTool, data);
+        }
+
+        ToolData toolData = requestToolsByName.get(toolName);
+
+        try
+        {
+            // Fetch Object through the Pool.
+            Object tool = pool.getInstance(toolData.toolClass);
+
+            // request tools are init'd with a RunData object
+            try (TraceSpan span = traceTool(data, toolData))
+            {
+                initTool(tool, data);
+            }
+
+            return tool;
+        }
+        catch (Exception e)
+        {
+            log.error("Could not instantiate request tool {} from a {} object",
+                    toolData.toolName, toolData.toolClassName, e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the object a shared tool is put into the context of a request as.
+     *
+     * @param toolName the name of the tool
+     * @param tool the shared tool
+     * @param data a RunData or PipelineData instance
+     * @return the tool bound to the request or null if it cannot be bound
+     */
+    private Object bindSharedTool(String toolName, Object tool, Object data)
+    {
+        if (!(tool instanceof SharedApplicationTool))
+        {
+            return tool;
+        }
+
+        if (!(data instanceof PipelineData))
+        {
+            log.error("Cannot bind shared tool {} to a {} object", toolName,
+                    data == null ? null : data.getClass().getName());
+            return null;
+        }
+
+        return ((SharedApplicationTool) tool).bind((PipelineData) data);
+    }
+
     /**
      * Populate the given context with the session-scoped tools.
      *
@@ -530,8 +744,10 @@ public class TurbinePullService
             try
             {
                 // ensure that tool is created only once for a user
-                // by synchronizing against the user object
-                synchronized (data.getSession())
+                // by locking against the session
+                Lock lock = toolLocks.get(data.getSession().getId());
+                lock.lock();
+                try
                 {
                     // first try and fetch the tool from the user's
                     // hashmap
@@ -546,7 +762,10 @@ public class TurbinePullService
                         tool = pool.getInstance(toolData.toolClass);
 
                         // session tools are init'd with the User object
-                        initTool(tool, user);
+                        try (TraceSpan span = traceTool(data, toolData))
+                        {
+                            initTool(tool, user);
+                        }
                     }
 
                     // *NOT* else
@@ -584,6 +803,10 @@ public class TurbinePullService
                         log.info("Tool {} was null, skipping it.", toolData.toolName);
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
             catch (Exception e)
             {
@@ -612,8 +835,10 @@ public class TurbinePullService
             try
             {
                 // ensure that tool is created only once for a user
-                // by synchronizing against the user object
-                synchronized (user)
+                // by locking against the user object
+                Lock lock = toolLocks.get(user);
+                lock.lock();
+                try
                 {
                     // first try and fetch the tool from the user's
                     // hashtable
@@ -626,7 +851,10 @@ public class TurbinePullService
                         tool = pool.getInstance(toolData.toolClass);
 
                         // session tools are init'd with the User object
-                        initTool(tool, user);
+                        try (TraceSpan span = traceTool(data, toolData))
+                        {
+                            initTool(tool, user);
+                        }
 
                         // store the newly created tool in the user's hashtable
                         user.setPerm(toolData.toolClassName, tool);
@@ -663,6 +891,10 @@ public class TurbinePullService
                         log.info("Tool {} was null, skipping it.", toolData.toolName);
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
             catch (Exception e)
             {
@@ -715,6 +947,14 @@ public class TurbinePullService
                 refreshTool(tool, null);
             }
         }
+
+        if (sharedTools != null)
+        {
+            for (Object tool : sharedTools.values())
+            {
+                refreshTool(tool, null);
+            }
+        }
     }
 
     /**
@@ -728,7 +968,21 @@ public class TurbinePullService
     {
         // only the request tools can be released - other scoped
         // tools will have continuing references to them
-        releaseTools(context, requestTools);
+        if (context instanceof RequestToolContext)
+        {
+            // only the tools created on access, shared tools are not pooled
+            for (Map.Entry<String, Object> entry : ((RequestToolContext) context).unbind().entrySet())
+            {
+                if (requestToolsByName.containsKey(entry.getKey()))
+                {
+                    pool.putInstance(entry.getValue());
+                }
+            }
+        }
+        else
+        {
+            releaseTools(context, requestTools);
+        }
     }
 
     /**
@@ -801,6 +1055,19 @@ public class TurbinePullService
         }
     }
 
+    /**
+     * Open a trace span for the initialization of a tool
+     *
+     * @param data The current RunData or PipelineData object
+     * @param toolData The tool to initialize
+     * @return the span to close when the initialization ends
+     */
+    private static TraceSpan traceTool(Object data, ToolData toolData)
+    {
+        return RequestTrace.open(data instanceof PipelineData ? (PipelineData) data : null,
+                "tool", toolData.toolName);
+    }
+
     /**
      * Refresh a given Tool.
      *
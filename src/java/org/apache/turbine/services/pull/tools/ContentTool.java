@@ -24,8 +24,9 @@ package org.apache.turbine.services.pull.tools;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.turbine.Turbine;
+import org.apache.turbine.annotation.TurbineSharedTool;
 import org.apache.turbine.pipeline.PipelineData;
-import org.apache.turbine.services.pull.ApplicationTool;
+import org.apache.turbine.services.pull.SharedApplicationTool;
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.uri.DataURI;
 
@@ -41,14 +42,18 @@ import org.apache.turbine.util.uri.DataURI;
  *
  * This is an application pull tool for the template system. You should <b>not</b>
  * use it in a normal application!
+ * <p>
+ * As a request tool, it is shared by all requests. Each request gets its
+ * own ContentTool bound to its data.
  *
  * @author <a href="mailto:hps@intermeta.de">Henning P. Schmiedehausen</a>
  * @author <a href="mailto:peter@courcoux.biz">Peter Courcoux</a>
  * @version $Id$
  */
 
+@TurbineSharedTool
 public class ContentTool
-    implements ApplicationTool
+    implements SharedApplicationTool
 {
     /** Prefix for Parameters for this tool */
     public static final String CONTENT_TOOL_PREFIX = "tool.content";
@@ -101,26 +106,12 @@ public class ContentTool
      * constructed with the default constructor (ApplicationTool
      * method).
      *
-     * @param data assumed to be a PipelineData object
+     * @param data assumed to be a PipelineData object, null for the
+     *        shared tool
      */
     @Override
     public void init(Object data)
     {
-        // we just blithely cast to RunData as if another object
-        // or null is passed in we'll throw an appropriate runtime
-        // exception.
-        if (data instanceof PipelineData)
-        {
-            PipelineData pipelineData = (PipelineData) data;
-            RunData runData = (RunData)pipelineData;
-            dataURI = new DataURI(runData);
-        }
-        else
-        {
-            dataURI = new DataURI((RunData) data);
-
-        }
-
         Configuration conf =
                 Turbine.getConfiguration().subset(CONTENT_TOOL_PREFIX);
 
@@ -133,10 +124,48 @@ public class ContentTool
                     CONTENT_TOOL_ENCODING_DEFAULT);
         }
 
+        // we just blithely cast to RunData as if another object
+        // is passed in we'll throw an appropriate runtime exception.
+        if (data != null)
+        {
+            dataURI = newDataURI((RunData) data);
+        }
+    }
+
+    /**
+     * Create a ContentTool for a request with the configuration of this
+     * tool.
+     *
+     * @param pipelineData the data of the current request
+     * @return a ContentTool bound to the request
+     */
+    @Override
+    public Object bind(PipelineData pipelineData)
+    {
+        ContentTool tool = new ContentTool();
+        tool.wantRelative = wantRelative;
+        tool.wantEncoding = wantEncoding;
+        tool.dataURI = newDataURI(pipelineData.getRunData());
+
+        return tool;
+    }
+
+    /**
+     * Create the DataURI translating the URIs of a request.
+     *
+     * @param data the data of the current request
+     * @return the DataURI
+     */
+    private DataURI newDataURI(RunData data)
+    {
+        DataURI uri = new DataURI(data);
+
         if (!wantEncoding)
         {
-            dataURI.clearResponse();
+            uri.clearResponse();
         }
+
+        return uri;
     }
 
     /**
@@ -26,15 +26,18 @@ import java.util.Date;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.turbine.Turbine;
+import org.apache.turbine.annotation.TurbineSharedTool;
 import org.apache.turbine.services.pull.ApplicationTool;
 
 /**
- * This pull tool is used to format date objects into strings.
+ * This pull tool is used to format date objects into strings. It keeps no
+ * request state, so a single instance is shared by all requests.
  *
  * @author <a href="mailto:qmccombs@nequalsone.com">Quinton McCombs</a>
  * @author <a href="mailto:seade@backstagetech.com.au">Scott Eade</a>
  * @version $Id$
  */
+@TurbineSharedTool
 public class DateFormatter
         implements ApplicationTool
 {
@@ -38,11 +38,11 @@ import javax.servlet.http.HttpSession;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.fulcrum.parser.CookieParser;
 import org.apache.fulcrum.parser.ParameterParser;
+import org.apache.fulcrum.parser.ParserService;
+import org.apache.fulcrum.parser.ValueParser;
 import org.apache.fulcrum.security.acl.AccessControlList;
-import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
 import org.apache.turbine.om.security.User;
 import org.apache.turbine.pipeline.DefaultPipelineData;
@@ -52,6 +52,7 @@ import org.apache.turbine.util.FormMessages;
 import org.apache.turbine.util.LocaleUtils;
 import org.apache.turbine.util.ServerData;
 import org.apache.turbine.util.SystemError;
+import org.apache.turbine.util.TurbineRuntimeException;
 import org.apache.turbine.util.template.TemplateInfo;
 
 /**
@@ -150,6 +151,15 @@ public class DefaultTurbineRunData
      */
     private final Map<String, Object> debugVariables = new HashMap<>();
 
+    /** The service providing the parsers on first access */
+    private ParserService parserService;
+
+    /** The class of the parameter parser */
+    private Class<? extends ParameterParser> parameterParserClass;
+
+    /** The class of the cookie parser */
+    private Class<? extends CookieParser> cookieParserClass;
+
     /** Logging */
     private static final Logger log = LogManager.getLogger(DefaultTurbineRunData.class);
 
@@ -202,9 +212,6 @@ public class DefaultTurbineRunData
     public DefaultTurbineRunData()
     {
         super();
-
-        // a map to hold information to be added to pipelineData
-        put(Turbine.class, new HashMap<Class<?>, Object>());
         recycle();
     }
 
@@ -223,8 +230,11 @@ public class DefaultTurbineRunData
     @Override
     public void dispose()
     {
-        // empty pipelinedata map
-        get(Turbine.class).clear();
+        // empty pipelinedata
+        clear();
+        parserService = null;
+        parameterParserClass = null;
+        cookieParserClass = null;
 
         action = null;
         layout = null;
@@ -247,6 +257,99 @@ public class DefaultTurbineRunData
         debugVariables.clear();
     }
 
+    /**
+     * Set the source of the parsers. The parsers are fetched from the
+     * service on first access.
+     *
+     * @param parserService the parser service
+     * @param parameterParserClass the class of the parameter parser
+     * @param cookieParserClass the class of the cookie parser
+     */
+    void setParserSource(ParserService parserService,
+            Class<? extends ParameterParser> parameterParserClass,
+            Class<? extends CookieParser> cookieParserClass)
+    {
+        this.parserService = parserService;
+        this.parameterParserClass = parameterParserClass;
+        this.cookieParserClass = cookieParserClass;
+    }
+
+    /**
+     * Return the parsers used by this request to the parser service.
+     * Parsers which have never been accessed are not created.
+     *
+     * @param service the parser service
+     */
+    void releaseParsers(ParserService service)
+    {
+        ParameterParser parameters = getIfPresent(PARAMETER_PARSER_KEY);
+        CookieParser cookies = getIfPresent(COOKIE_PARSER_KEY);
+
+        if (parameters != null)
+        {
+            service.putParser(parameters);
+            set(PARAMETER_PARSER_KEY, null);
+        }
+
+        if (cookies != null)
+        {
+            service.putParser(cookies);
+            set(COOKIE_PARSER_KEY, null);
+        }
+    }
+
+    /**
+     * Create the parsers, the server data and the locale on first access.
+     *
+     * @see org.apache.turbine.pipeline.DefaultPipelineData#resolve(Key)
+     */
+    @Override
+    protected Object resolve(Key<?> key)
+    {
+        if (key == PARAMETER_PARSER_KEY && parserService != null)
+        {
+            ParameterParser parameters = getParser(parameterParserClass);
+            parameters.setLocale(getLocale());
+            return parameters;
+        }
+
+        if (key == COOKIE_PARSER_KEY && parserService != null)
+        {
+            CookieParser cookies = getParser(cookieParserClass);
+            cookies.setLocale(getLocale());
+            return cookies;
+        }
+
+        if (key == SERVER_DATA_KEY || key == LOCALE_KEY)
+        {
+            HttpServletRequest request = getIfPresent(REQUEST_KEY);
+            if (request != null)
+            {
+                return key == SERVER_DATA_KEY ? new ServerData(request) : request.getLocale();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Fetch a parser from the parser service
+     *
+     * @param parserClass the class of the parser
+     * @return the parser
+     */
+    private <P extends ValueParser> P getParser(Class<P> parserClass)
+    {
+        try
+        {
+            return parserService.getParser(parserClass);
+        }
+        catch (InstantiationException e)
+        {
+            throw new TurbineRuntimeException("Could not create parser " + parserClass.getName(), e);
+        }
+    }
+
     // ***************************************
     // Implementation of the RunData interface
     // ***************************************
@@ -299,7 +402,7 @@ public class DefaultTurbineRunData
     @Override
     public HttpServletRequest getRequest()
     {
-        return get(Turbine.class, HttpServletRequest.class);
+        return get(REQUEST_KEY);
     }
 
     /**
@@ -310,7 +413,7 @@ public class DefaultTurbineRunData
     @Override
     public HttpServletResponse getResponse()
     {
-        return get(Turbine.class, HttpServletResponse.class);
+        return get(RESPONSE_KEY);
     }
 
     /**
@@ -332,7 +435,7 @@ public class DefaultTurbineRunData
     @Override
     public ServletConfig getServletConfig()
     {
-        return get(Turbine.class, ServletConfig.class);
+        return get(SERVLET_CONFIG_KEY);
     }
 
     /**
@@ -343,7 +446,7 @@ public class DefaultTurbineRunData
     @Override
     public ServletContext getServletContext()
     {
-        return get(Turbine.class, ServletContext.class);
+        return get(SERVLET_CONTEXT_KEY);
     }
 
     /**
@@ -355,7 +458,7 @@ public class DefaultTurbineRunData
     public <A extends AccessControlList> A getACL()
     {
         @SuppressWarnings("unchecked")
-        A acl = (A)get(Turbine.class, TurbineAccessControlList.class);
+        A acl = (A)get(ACL_KEY);
         return acl;
     }
 
@@ -370,7 +473,7 @@ public class DefaultTurbineRunData
     @Override
     public void setACL(AccessControlList acl)
     {
-        get(Turbine.class).put(TurbineAccessControlList.class, acl);
+        set(ACL_KEY, acl);
     }
 
     /**
@@ -571,12 +674,12 @@ public class DefaultTurbineRunData
     @Override
     public TemplateInfo getTemplateInfo()
     {
-        TemplateInfo templateInfo = get(Turbine.class, TemplateInfo.class);
+        TemplateInfo templateInfo = get(TEMPLATE_INFO_KEY);
 
         if (templateInfo == null)
         {
             templateInfo = new TemplateInfo(this);
-            get(Turbine.class).put(TemplateInfo.class, templateInfo);
+            set(TEMPLATE_INFO_KEY, templateInfo);
         }
 
         return templateInfo;
@@ -590,7 +693,7 @@ public class DefaultTurbineRunData
     @Override
     public boolean hasMessage()
     {
-        StringBuilder message = get(Turbine.class, StringBuilder.class);
+        StringBuilder message = get(MESSAGE_KEY);
         return message != null && message.length() > 0;
     }
 
@@ -603,7 +706,7 @@ public class DefaultTurbineRunData
     @Override
     public String getMessage()
     {
-        StringBuilder message = get(Turbine.class, StringBuilder.class);
+        StringBuilder message = get(MESSAGE_KEY);
         return message == null ? null : message.toString();
     }
 
@@ -615,7 +718,7 @@ public class DefaultTurbineRunData
     @Override
     public void setMessage(String msg)
     {
-        get(Turbine.class).put(StringBuilder.class, new StringBuilder(msg));
+        set(MESSAGE_KEY, new StringBuilder(msg));
     }
 
     /**
@@ -627,7 +730,7 @@ public class DefaultTurbineRunData
     @Override
     public void addMessage(String msg)
     {
-        StringBuilder message = get(Turbine.class, StringBuilder.class);
+        StringBuilder message = get(MESSAGE_KEY);
         if (message == null)
         {
             setMessage(msg);
@@ -657,7 +760,7 @@ public class DefaultTurbineRunData
     @Override
     public void unsetMessage()
     {
-        get(Turbine.class).remove(StringBuilder.class);
+        set(MESSAGE_KEY, null);
     }
 
     /**
@@ -669,7 +772,7 @@ public class DefaultTurbineRunData
     @Override
     public FormMessages getMessages()
     {
-        FormMessages messages = get(Turbine.class, FormMessages.class);
+        FormMessages messages = get(FORM_MESSAGES_KEY);
         if (messages == null)
         {
             messages = new FormMessages();
@@ -687,7 +790,7 @@ public class DefaultTurbineRunData
     @Override
     public void setMessages(FormMessages msgs)
     {
-        get(Turbine.class).put(FormMessages.class, msgs);
+        set(FORM_MESSAGES_KEY, msgs);
     }
 
     /**
@@ -723,7 +826,7 @@ public class DefaultTurbineRunData
         User user = getUserFromSession();
 
         // TODO: Check if this side effect is reasonable
-        get(Turbine.class).put(User.class, user);
+        set(USER_KEY, user);
 
         return (user != null);
     }
@@ -739,7 +842,7 @@ public class DefaultTurbineRunData
     public <T extends User> T getUser()
     {
         @SuppressWarnings("unchecked")
-        T user = (T)get(Turbine.class, User.class);
+        T user = (T)get(USER_KEY);
         return user;
     }
 
@@ -752,7 +855,7 @@ public class DefaultTurbineRunData
     public void setUser(User user)
     {
         log.debug("user set: {}", user::getName);
-        get(Turbine.class).put(User.class, user);
+        set(USER_KEY, user);
     }
 
     /**
@@ -835,7 +938,7 @@ public class DefaultTurbineRunData
     @Override
     public Locale getLocale()
     {
-        Locale locale = get(Turbine.class, Locale.class);
+        Locale locale = get(LOCALE_KEY);
         if (locale == null)
         {
             locale = LocaleUtils.getDefaultLocale();
@@ -851,11 +954,11 @@ public class DefaultTurbineRunData
     @Override
     public void setLocale(Locale locale)
     {
-        get(Turbine.class).put(Locale.class, locale);
+        set(LOCALE_KEY, locale);
 
-        // propagate the locale to the parsers
-        ParameterParser parameters = get(Turbine.class, ParameterParser.class);
-        CookieParser cookies = get(Turbine.class, CookieParser.class);
+        // propagate the locale to the parsers created so far
+        ParameterParser parameters = getIfPresent(PARAMETER_PARSER_KEY);
+        CookieParser cookies = getIfPresent(COOKIE_PARSER_KEY);
 
         if (parameters != null)
         {
@@ -1133,7 +1236,7 @@ public class DefaultTurbineRunData
     @Override
     public ServerData getServerData()
     {
-        return get(Turbine.class, ServerData.class);
+        return get(SERVER_DATA_KEY);
     }
 
     /**
@@ -1194,7 +1297,7 @@ public class DefaultTurbineRunData
     public void populate()
     {
         User user = getUserFromSession();
-        get(Turbine.class).put(User.class, user);
+        set(USER_KEY, user);
 
         if (user != null)
         {
@@ -1290,7 +1393,7 @@ public class DefaultTurbineRunData
     @Override
     public ParameterParser getParameterParser()
     {
-        return get(Turbine.class, ParameterParser.class);
+        return get(PARAMETER_PARSER_KEY);
     }
 
     /**
@@ -1301,7 +1404,7 @@ public class DefaultTurbineRunData
     @Override
     public CookieParser getCookieParser()
     {
-        return get(Turbine.class, CookieParser.class);
+        return get(COOKIE_PARSER_KEY);
     }
 
     // ********************
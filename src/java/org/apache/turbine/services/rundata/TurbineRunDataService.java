@@ -25,7 +25,6 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletConfig;
-import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -37,7 +36,6 @@ import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.fulcrum.parser.ParserService;
 import org.apache.fulcrum.pool.PoolException;
 import org.apache.fulcrum.pool.PoolService;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineBaseService;
 import org.apache.turbine.services.TurbineServices;
@@ -244,24 +242,38 @@ public class TurbineRunDataService
             Class<?> cookieParserClazz = classCache.computeIfAbsent(cfg[2], this::classForName);
 
             data = (TurbineRunData) pool.getInstance(runDataClazz);
-            @SuppressWarnings("unchecked") // ok
-            ParameterParser pp = parserService.getParser((Class<ParameterParser>)parameterParserClazz);
-            data.get(Turbine.class).put(ParameterParser.class, pp);
 
-            @SuppressWarnings("unchecked") // ok
-            CookieParser cp = parserService.getParser((Class<CookieParser>)cookieParserClazz);
-            data.get(Turbine.class).put(CookieParser.class, cp);
-
-            Locale locale = req.getLocale();
-
-            if (locale == null)
+            if (data instanceof DefaultTurbineRunData)
             {
-                // get the default from the Turbine configuration
-                locale = data.getLocale();
+                // parsers, locale and server data are created on first access
+                ((DefaultTurbineRunData) data).setParserSource(parserService,
+                        parameterParserClazz.asSubclass(ParameterParser.class),
+                        cookieParserClazz.asSubclass(CookieParser.class));
             }
+            else
+            {
+                @SuppressWarnings("unchecked") // ok
+                ParameterParser pp = parserService.getParser((Class<ParameterParser>)parameterParserClazz);
+                data.set(RunData.PARAMETER_PARSER_KEY, pp);
+
+                @SuppressWarnings("unchecked") // ok
+                CookieParser cp = parserService.getParser((Class<CookieParser>)cookieParserClazz);
+                data.set(RunData.COOKIE_PARSER_KEY, cp);
+
+                Locale locale = req.getLocale();
+
+                if (locale == null)
+                {
+                    // get the default from the Turbine configuration
+                    locale = data.getLocale();
+                }
 
-            // set the locale detected and propagate it to the parsers
-            data.setLocale(locale);
+                // set the locale detected and propagate it to the parsers
+                data.setLocale(locale);
+
+                // Set the ServerData.
+                data.set(RunData.SERVER_DATA_KEY, new ServerData(req));
+            }
         }
         catch (PoolException pe)
         {
@@ -273,15 +285,12 @@ public class TurbineRunDataService
         }
 
         // Set the request and response.
-        data.get(Turbine.class).put(HttpServletRequest.class, req);
-        data.get(Turbine.class).put(HttpServletResponse.class, res);
+        data.set(RunData.REQUEST_KEY, req);
+        data.set(RunData.RESPONSE_KEY, res);
 
         // Set the servlet configuration.
-        data.get(Turbine.class).put(ServletConfig.class, config);
-        data.get(Turbine.class).put(ServletContext.class, config.getServletContext());
-
-        // Set the ServerData.
-        data.get(Turbine.class).put(ServerData.class, new ServerData(req));
+        data.set(RunData.SERVLET_CONFIG_KEY, config);
+        data.set(RunData.SERVLET_CONTEXT_KEY, config.getServletContext());
 
         return data;
     }
@@ -295,7 +304,14 @@ public class TurbineRunDataService
     @Override
     public boolean putRunData(RunData data)
     {
-        if (data instanceof TurbineRunData)
+        if (data instanceof DefaultTurbineRunData)
+        {
+            // only the parsers actually used are returned
+            ((DefaultTurbineRunData) data).releaseParsers(parserService);
+
+            return pool.putInstance(data);
+        }
+        else if (data instanceof TurbineRunData)
         {
             parserService.putParser(((TurbineRunData) data).getParameterParser());
             parserService.putParser(((TurbineRunData) data).getCookieParser());
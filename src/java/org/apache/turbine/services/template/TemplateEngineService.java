@@ -51,6 +51,10 @@ public interface TemplateEngineService
     String DEFAULT_SCREEN_TEMPLATE = "default.screen.template";
     /** Configuration key */
     String DEFAULT_NAVIGATION_TEMPLATE = "default.navigation.template";
+    /** Configuration key: keep an in-memory index of the file based templates */
+    String TEMPLATE_INDEX_KEY = "template.index";
+    /** Configuration key: update the template index when templates change */
+    String TEMPLATE_INDEX_WATCH_KEY = "template.index.watch";
 
     /**
      * Return the configuration of the template engine in
@@ -89,4 +93,15 @@ public interface TemplateEngineService
      * @return         Whether the specified template exists.
      */
     boolean templateExists(String template);
+
+    /**
+     * Get the file system paths of the templates of this engine, if
+     * the engine loads its templates from the file system.
+     *
+     * @return the absolute template paths, may be empty
+     */
+    default String[] getTemplatePaths()
+    {
+        return new String[0];
+    }
 }
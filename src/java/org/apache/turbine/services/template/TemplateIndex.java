@@ -0,0 +1,566 @@
+package org.apache.turbine.services.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An in-memory index of the file based template trees of a template
+ * engine service. The trees are scanned once when the index is created,
+ * so checking the existence of a template is a hash lookup instead of
+ * a <code>stat</code> call per template path. Symbolic links are
+ * followed. On file systems which ignore the case of file names, such as
+ * the defaults of Windows and macOS, lookups ignore the case as well.
+ * <p>
+ * If the templates may change at runtime, {@link #watch()} starts a
+ * daemon thread which keeps the index up to date from a
+ * {@link WatchService}.
+ */
+public class TemplateIndex
+    implements Closeable
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(TemplateIndex.class);
+
+    /** The roots of the template trees */
+    private final Path[] roots;
+
+    /** The relative names of all files and directories per root */
+    private final List<Set<String>> entries;
+
+    /** The lower case names per root, for roots on case-insensitive file systems */
+    private final List<Set<String>> foldedEntries;
+
+    /** Whether the file system of a root ignores the case of file names */
+    private final boolean[] caseInsensitive;
+
+    /** The options for walking the template trees */
+    private static final Set<FileVisitOption> WALK_OPTIONS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+
+    /** The watched directories and the index of their root */
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+
+    /** The watch service, if watching */
+    private volatile WatchService watchService;
+
+    /**
+     * Create the index of the given template paths
+     *
+     * @param paths the absolute (file system) template paths
+     */
+    public TemplateIndex(String... paths)
+    {
+        roots = new Path[paths.length];
+        entries = new ArrayList<>(paths.length);
+        foldedEntries = new ArrayList<>(paths.length);
+        caseInsensitive = new boolean[paths.length];
+
+        for (int i = 0; i < paths.length; i++)
+        {
+            roots[i] = Paths.get(paths[i]).toAbsolutePath().normalize();
+            entries.add(ConcurrentHashMap.newKeySet());
+            caseInsensitive[i] = isCaseInsensitive(roots[i]);
+            foldedEntries.add(caseInsensitive[i] ? ConcurrentHashMap.newKeySet() : null);
+            scan(i, roots[i]);
+        }
+    }
+
+    /**
+     * Determine whether a template exists on any of the template paths
+     *
+     * @param template the name of the template, relative to the template paths
+     * @return true if the template exists
+     */
+    public boolean exists(String template)
+    {
+        return indexOf(template) >= 0;
+    }
+
+    /**
+     * Find the first template path containing a template
+     *
+     * @param template the name of the template, relative to the template paths
+     * @return the index of the template path or -1 if the template does not exist
+     */
+    public int indexOf(String template)
+    {
+        String name = normalize(template);
+
+        for (int i = 0; i < roots.length; i++)
+        {
+            boolean found = caseInsensitive[i]
+                    ? foldedEntries.get(i).contains(fold(name))
+                    : entries.get(i).contains(name);
+
+            if (found)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the sorted names of all indexed files and directories of all template paths
+     */
+    public SortedSet<String> getNames()
+    {
+        SortedSet<String> names = new TreeSet<>();
+        entries.forEach(names::addAll);
+        return names;
+    }
+
+    /**
+     * @return the number of indexed files and directories
+     */
+    public int size()
+    {
+        return entries.stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * Start watching the template trees for changes
+     *
+     * @throws IOException if the watch service could not be set up
+     */
+    public synchronized void watch()
+        throws IOException
+    {
+        if (watchService != null)
+        {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+
+        for (int i = 0; i < roots.length; i++)
+        {
+            register(i, roots[i]);
+        }
+
+        Thread watcher = new Thread(this::processEvents, "turbine-template-index");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        log.debug("Watching {} template directories", Integer.valueOf(watchedDirectories.size()));
+    }
+
+    /**
+     * Stop watching the template trees
+     */
+    @Override
+    public synchronized void close()
+    {
+        if (watchService != null)
+        {
+            try
+            {
+                watchService.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Could not close the template watch service", e);
+            }
+
+            watchService = null;
+            watchedDirectories.clear();
+        }
+    }
+
+    /**
+     * Add all files and directories below a path to the index
+     *
+     * @param root the index of the template path
+     * @param start the path to scan
+     */
+    private void scan(int root, Path start)
+    {
+        if (!Files.isDirectory(start))
+        {
+            return;
+        }
+
+        try
+        {
+            Files.walkFileTree(start, WALK_OPTIONS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                {
+                    if (!dir.equals(roots[root]))
+                    {
+                        add(root, nameOf(root, dir));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+                {
+                    add(root, nameOf(root, file));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e)
+                {
+                    if (e instanceof FileSystemLoopException)
+                    {
+                        // the link itself is indexed, its target was already visited
+                        add(root, nameOf(root, file));
+                        log.debug("Not following symbolic link cycle at {}", file);
+                    }
+                    else
+                    {
+                        log.debug("Could not index {}", file, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not index template path {}", start, e);
+        }
+    }
+
+    /**
+     * Register a directory and all its subdirectories with the watch service
+     *
+     * @param root the index of the template path
+     * @param start the directory
+     */
+    private void register(int root, Path start)
+    {
+        WatchService service = watchService;
+
+        if (service == null || !Files.isDirectory(start))
+        {
+            return;
+        }
+
+        try
+        {
+            Files.walkFileTree(start, WALK_OPTIONS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>()
+            {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                    throws IOException
+                {
+                    WatchKey key = dir.register(service,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(key, new WatchedDirectory(root, dir));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e)
+                {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (IOException | ClosedWatchServiceException e)
+        {
+            log.warn("Could not watch template path {}", start, e);
+        }
+    }
+
+    /**
+     * The loop of the watcher thread
+     */
+    private void processEvents()
+    {
+        WatchService service = watchService;
+
+        try
+        {
+            for (;;)
+            {
+                WatchKey key = service.take();
+                WatchedDirectory dir = watchedDirectories.get(key);
+
+                if (dir != null)
+                {
+                    for (WatchEvent<?> event : key.pollEvents())
+                    {
+                        processEvent(dir, event);
+                    }
+                }
+
+                if (!key.reset())
+                {
+                    watchedDirectories.remove(key);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        catch (ClosedWatchServiceException e)
+        {
+            // closed, stop watching
+        }
+    }
+
+    /**
+     * Update the index from a single watch event
+     *
+     * @param dir the directory the event occurred in
+     * @param event the event
+     */
+    private void processEvent(WatchedDirectory dir, WatchEvent<?> event)
+    {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+        {
+            // events were lost, synchronize the whole tree
+            log.debug("Rescanning template path {}", roots[dir.root]);
+            scan(dir.root, roots[dir.root]);
+            List<String> deleted = entries.get(dir.root).stream()
+                    .filter(name -> !Files.exists(roots[dir.root].resolve(name)))
+                    .collect(Collectors.toList());
+            deleted.forEach(name -> remove(dir.root, name));
+            register(dir.root, roots[dir.root]);
+            return;
+        }
+
+        Path path = dir.path.resolve((Path) event.context());
+        String name = nameOf(dir.root, path);
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE)
+        {
+            add(dir.root, name);
+
+            if (Files.isDirectory(path))
+            {
+                scan(dir.root, path);
+                register(dir.root, path);
+            }
+        }
+        else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+        {
+            remove(dir.root, name);
+        }
+    }
+
+    /**
+     * Add a file or directory to the index
+     *
+     * @param root the index of the template path
+     * @param name the relative name
+     */
+    private void add(int root, String name)
+    {
+        entries.get(root).add(name);
+
+        if (caseInsensitive[root])
+        {
+            foldedEntries.get(root).add(fold(name));
+        }
+    }
+
+    /**
+     * Remove a file or directory and everything below it from the index
+     *
+     * @param root the index of the template path
+     * @param name the relative name
+     */
+    private void remove(int root, String name)
+    {
+        String prefix = name + "/";
+        Set<String> names = entries.get(root);
+        names.remove(name);
+        names.removeIf(entry -> entry.startsWith(prefix));
+
+        if (caseInsensitive[root])
+        {
+            String folded = fold(name);
+            String foldedPrefix = folded + "/";
+            Set<String> foldedNames = foldedEntries.get(root);
+            foldedNames.remove(folded);
+            foldedNames.removeIf(entry -> entry.startsWith(foldedPrefix));
+        }
+    }
+
+    /**
+     * Determine whether the file system of a template path ignores the
+     * case of file names, by looking up the first name containing letters
+     * with its case inverted.
+     *
+     * @param root the template path
+     * @return true if the case of file names is ignored
+     */
+    private static boolean isCaseInsensitive(Path root)
+    {
+        if (!Files.isDirectory(root))
+        {
+            return false;
+        }
+
+        try (Stream<Path> children = Files.list(root))
+        {
+            Path probe = Stream.concat(Stream.of(root), children)
+                    .filter(path -> path.getFileName() != null
+                        && !invertCase(path.getFileName().toString()).equals(path.getFileName().toString()))
+                    .findFirst()
+                    .orElse(null);
+
+            if (probe == null)
+            {
+                return false;
+            }
+
+            Path inverted = probe.resolveSibling(invertCase(probe.getFileName().toString()));
+            return Files.exists(inverted) && Files.isSameFile(probe, inverted);
+        }
+        catch (IOException e)
+        {
+            log.debug("Could not determine the case sensitivity of template path {}", root, e);
+            return false;
+        }
+    }
+
+    /**
+     * @param name a file name
+     * @return the name with upper and lower case letters swapped
+     */
+    private static String invertCase(String name)
+    {
+        StringBuilder inverted = new StringBuilder(name.length());
+
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            inverted.append(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+        }
+
+        return inverted.toString();
+    }
+
+    /**
+     * @param name a relative name
+     * @return the name as stored for case-insensitive lookups
+     */
+    private static String fold(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the name of a path relative to its template path
+     *
+     * @param root the index of the template path
+     * @param path the path
+     * @return the relative name with '/' as separator
+     */
+    private String nameOf(int root, Path path)
+    {
+        StringBuilder name = new StringBuilder();
+
+        for (Path element : roots[root].relativize(path))
+        {
+            if (name.length() > 0)
+            {
+                name.append('/');
+            }
+            name.append(element.toString());
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * Normalize a template name to the form used in the index
+     *
+     * @param template the template name
+     * @return the normalized name
+     */
+    private static String normalize(String template)
+    {
+        String name = template.replace('\\', '/');
+
+        if (name.startsWith("/") || name.contains("//") || name.contains("./") || name.endsWith("/"))
+        {
+            StringBuilder normalized = new StringBuilder();
+
+            for (Path element : Paths.get("/", name).normalize())
+            {
+                if (normalized.length() > 0)
+                {
+                    normalized.append('/');
+                }
+                normalized.append(element.toString());
+            }
+
+            name = normalized.toString();
+        }
+
+        return name;
+    }
+
+    /**
+     * A watched directory
+     */
+    private static final class WatchedDirectory
+    {
+        final int root;
+        final Path path;
+
+        WatchedDirectory(int root, Path path)
+        {
+            this.root = root;
+            this.path = path;
+        }
+    }
+}
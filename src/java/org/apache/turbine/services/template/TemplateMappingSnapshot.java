@@ -0,0 +1,233 @@
+package org.apache.turbine.services.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A precomputed table of template mappings, i.e. the results of the
+ * template service mappers for all templates of the template tree.
+ * <p>
+ * The table is stored as a compressed binary file together with a hash
+ * of everything the mappings depend on (template tree, module packages,
+ * mapper and engine configuration). A snapshot whose hash does not match
+ * the current state must not be used.
+ */
+public final class TemplateMappingSnapshot
+{
+    /** File format marker, "TTMS" */
+    private static final int MAGIC = 0x54544d53;
+
+    /** File format version */
+    private static final int VERSION = 1;
+
+    /** The hash of the state the mappings were computed from */
+    private final String hash;
+
+    /** The mappings per mapper key */
+    private final List<Map<String, String>> mappings;
+
+    /**
+     * Create an empty snapshot
+     *
+     * @param hash the hash of the state the mappings are computed from
+     * @param types the number of mappers
+     */
+    public TemplateMappingSnapshot(String hash, int types)
+    {
+        this.hash = hash;
+        this.mappings = new ArrayList<>(types);
+
+        for (int i = 0; i < types; i++)
+        {
+            mappings.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * @return the hash of the state the mappings were computed from
+     */
+    public String getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * Add a mapping
+     *
+     * @param key the mapper key, e.g. {@link TurbineTemplateService#SCREEN_KEY}
+     * @param template the template name
+     * @param name the mapped name
+     */
+    public void put(int key, String template, String name)
+    {
+        mappings.get(key).put(template, name);
+    }
+
+    /**
+     * Get the mappings of a mapper
+     *
+     * @param key the mapper key, e.g. {@link TurbineTemplateService#SCREEN_KEY}
+     * @return the mappings from template name to mapped name
+     */
+    public Map<String, String> getMappings(int key)
+    {
+        return Collections.unmodifiableMap(mappings.get(key));
+    }
+
+    /**
+     * @return the total number of mappings
+     */
+    public int size()
+    {
+        return mappings.stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Read a snapshot file
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file could not be read or has an unknown format
+     */
+    public static TemplateMappingSnapshot read(File file)
+        throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file.toPath())))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Unknown template mapping snapshot format in " + file);
+            }
+
+            String hash = in.readUTF();
+            int types = in.readInt();
+            TemplateMappingSnapshot snapshot = new TemplateMappingSnapshot(hash, types);
+
+            for (int key = 0; key < types; key++)
+            {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++)
+                {
+                    snapshot.put(key, in.readUTF(), in.readUTF());
+                }
+            }
+
+            return snapshot;
+        }
+    }
+
+    /**
+     * Write this snapshot to a file. The file is replaced atomically,
+     * so nodes starting concurrently never read a partial snapshot.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file could not be written
+     */
+    public void write(File file)
+        throws IOException
+    {
+        Path target = file.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp)))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(hash);
+                out.writeInt(mappings.size());
+
+                for (Map<String, String> map : mappings)
+                {
+                    out.writeInt(map.size());
+                    for (Map.Entry<String, String> entry : map.entrySet())
+                    {
+                        out.writeUTF(entry.getKey());
+                        out.writeUTF(entry.getValue());
+                    }
+                }
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Compute the hash of the state the mappings depend on
+     *
+     * @param lines a description of the state, one item per line, in a stable order
+     * @return the hex encoded SHA-256 hash
+     */
+    public static String hash(List<String> lines)
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (String line : lines)
+            {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest())
+            {
+                sb.append(String.format("%02x", Integer.valueOf(b & 0xff)));
+            }
+
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // SHA-256 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+}
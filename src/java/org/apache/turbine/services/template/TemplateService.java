@@ -57,6 +57,15 @@ public interface TemplateService
     /** Default value of the Turbine Module Caching */
     String DEFAULT_EXTENSION_VALUE = "";
 
+    /** Maximum number of template mappings cached by all mappers together */
+    String MAPPER_CACHE_SIZE_KEY = "mapper.cache.size";
+
+    /** Default value for the maximum number of cached template mappings */
+    int MAPPER_CACHE_SIZE_DEFAULT = 1000;
+
+    /** Snapshot file of the precomputed template mappings, relative to the webapp root */
+    String MAPPER_SNAPSHOT_KEY = "mapper.snapshot";
+
     /** Character that separates a Template Name from the Extension */
     char EXTENSION_SEPARATOR = '.';
 
@@ -73,6 +82,19 @@ public interface TemplateService
      */
     boolean isCaching();
 
+    /**
+     * Remove all cached template mappings, e.g. after templates
+     * or modules have been reloaded.
+     */
+    void clearCache();
+
+    /**
+     * Load the precomputed template mappings from the configured
+     * snapshot file, computing and writing them if the snapshot is
+     * missing or outdated. Does nothing if no snapshot is configured.
+     */
+    void loadMappingSnapshot();
+
     /**
      * Get the default template name extension specified
      * in the template service properties.
@@ -22,9 +22,34 @@ package org.apache.turbine.services.template;
 
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.configuration2.Configuration;
 import org.apache.commons.lang3.StringUtils;
@@ -46,6 +71,7 @@ import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineBaseService;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.assemblerbroker.AssemblerBrokerService;
+import org.apache.turbine.services.assemblerbroker.util.ModuleIndex;
 import org.apache.turbine.services.servlet.ServletService;
 import org.apache.turbine.services.template.mapper.BaseTemplateMapper;
 import org.apache.turbine.services.template.mapper.ClassMapper;
@@ -53,7 +79,9 @@ import org.apache.turbine.services.template.mapper.DirectMapper;
 import org.apache.turbine.services.template.mapper.DirectTemplateMapper;
 import org.apache.turbine.services.template.mapper.LayoutTemplateMapper;
 import org.apache.turbine.services.template.mapper.Mapper;
+import org.apache.turbine.services.template.mapper.MapperCache;
 import org.apache.turbine.services.template.mapper.ScreenTemplateMapper;
+import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.uri.URIConstants;
 
 /**
@@ -218,6 +246,12 @@ public class TurbineTemplateService
     /** Number of different Template Types that we know of */
     public static final int TEMPLATE_TYPES = 7;
 
+    /** The names of the mappers, indexed by the _KEY constants */
+    private static final String [] MAPPER_NAMES = new String [] {
+        Page.NAME, Screen.NAME, Layout.NAME, Navigation.NAME,
+        LAYOUT_TEMPLATE_NAME, SCREEN_TEMPLATE_NAME, NAVIGATION_TEMPLATE_NAME
+    };
+
     /** Here we register the mapper objects for our various object types */
     private Mapper [] mapperRegistry = null;
 
@@ -234,6 +268,9 @@ public class TurbineTemplateService
     /** Flag set if cache is to be used. */
     private boolean useCache = false;
 
+    /** The template mapping cache shared by all mappers */
+    private MapperCache mapperCache = null;
+
     /** Default extension for templates. */
     private String defaultExtension;
 
@@ -311,6 +348,314 @@ public class TurbineTemplateService
         return useCache;
     }
 
+    /**
+     * Remove all cached template mappings of all mappers, e.g. after
+     * templates or modules have been reloaded.
+     */
+    @Override
+    public void clearCache()
+    {
+        if (mapperCache != null)
+        {
+            mapperCache.clear();
+        }
+    }
+
+    /**
+     * Load the template mappings from the snapshot file configured as
+     * <code>mapper.snapshot</code> into the mapper caches. If there is no
+     * snapshot or it was computed from a different template tree, set of
+     * module classes or configuration, all templates below the screen and navigation
+     * directories of the template engines are mapped and the snapshot
+     * is written for the next start. A build can create the snapshot by
+     * starting Turbine once, e.g. with
+     * {@link org.apache.turbine.util.TurbineConfig}.
+     */
+    @Override
+    public void loadMappingSnapshot()
+    {
+        String snapshotPath = getConfiguration().getString(TemplateService.MAPPER_SNAPSHOT_KEY);
+
+        if (StringUtils.isEmpty(snapshotPath))
+        {
+            return;
+        }
+
+        if (mapperCache == null)
+        {
+            log.warn("Ignoring template mapping snapshot {}, module caching is disabled", snapshotPath);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        File snapshotFile = new File(Turbine.getRealPath(snapshotPath));
+        Set<String> templates = new TreeSet<>();
+        String hash = getMappingHash(templates);
+
+        if (snapshotFile.isFile())
+        {
+            try
+            {
+                TemplateMappingSnapshot snapshot = TemplateMappingSnapshot.read(snapshotFile);
+
+                if (hash.equals(snapshot.getHash()))
+                {
+                    // keep the configured capacity for mappings not in the snapshot
+                    int maximumSize = mapperCache.getMaximumSize();
+                    if (mapperCache.size() + snapshot.size() > maximumSize)
+                    {
+                        log.info("Growing the mapper cache from {} to {} entries for the template mapping snapshot",
+                                Integer.valueOf(maximumSize), Integer.valueOf(maximumSize + snapshot.size()));
+                        mapperCache.ensureCapacity(maximumSize + snapshot.size());
+                    }
+
+                    for (int i = 0; i < TEMPLATE_TYPES; i++)
+                    {
+                        MapperCache.Region region = mapperCache.getRegion(MAPPER_NAMES[i]);
+                        snapshot.getMappings(i).forEach(region::put);
+                    }
+
+                    log.info("Loaded {} template mappings from {} in {} ms, {} mappings cached",
+                            Integer.valueOf(snapshot.size()), snapshotFile,
+                            Long.valueOf(System.currentTimeMillis() - start),
+                            Integer.valueOf(mapperCache.size()));
+                    return;
+                }
+
+                log.info("Template mapping snapshot {} does not match the template tree", snapshotFile);
+            }
+            catch (IOException e)
+            {
+                log.warn("Could not read template mapping snapshot {}", snapshotFile, e);
+            }
+        }
+
+        TemplateMappingSnapshot snapshot = new TemplateMappingSnapshot(hash, TEMPLATE_TYPES);
+
+        for (String template : templates)
+        {
+            for (int i = 0; i < TEMPLATE_TYPES; i++)
+            {
+                String name = mapperRegistry[i].getMappedName(template);
+
+                if (StringUtils.isNotEmpty(name))
+                {
+                    snapshot.put(i, template, name);
+                }
+            }
+        }
+
+        try
+        {
+            snapshot.write(snapshotFile);
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not write template mapping snapshot {}", snapshotFile, e);
+        }
+
+        log.info("Computed {} template mappings for {} templates in {} ms",
+                Integer.valueOf(snapshot.size()), Integer.valueOf(templates.size()),
+                Long.valueOf(System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Compute the hash of everything the template mappings depend on and
+     * collect the screen and navigation templates of all template engines.
+     *
+     * @param templates the set to add the template names to, in mapper syntax
+     *        (e.g. <code>admin,Index.vm</code>)
+     * @return the hash
+     */
+    private String getMappingHash(Set<String> templates)
+    {
+        List<String> lines = new ArrayList<>();
+
+        Configuration conf = getConfiguration();
+        for (String key : new TreeSet<>(toList(conf.getKeys())))
+        {
+            lines.add("config:" + key + "=" + conf.getList(key));
+        }
+
+        List<Object> packages = Turbine.getConfiguration().getList(TurbineConstants.MODULE_PACKAGES);
+        lines.add("packages:" + packages);
+
+        AssemblerBrokerService ab = (AssemblerBrokerService)TurbineServices.getInstance()
+                .getService(AssemblerBrokerService.SERVICE_NAME);
+        ModuleIndex moduleIndex = ab.getModuleIndex();
+        String [] modulePrefixes = { Page.PREFIX, Screen.PREFIX, Layout.PREFIX, Navigation.PREFIX };
+        Class<?> [] moduleTypes = { Page.class, Screen.class, Layout.class, Navigation.class };
+
+        for (int i = 0; i < moduleTypes.length; i++)
+        {
+            for (String name : moduleIndex.getModuleNames(moduleTypes[i], modulePrefixes[i]))
+            {
+                lines.add("module:" + modulePrefixes[i] + ":" + name);
+            }
+        }
+
+        // module packages not covered by the index are scanned
+        for (Object packageRoot : packages)
+        {
+            if (!moduleIndex.covers(packageRoot.toString()))
+            {
+                for (String prefix : modulePrefixes)
+                {
+                    for (String className : getClassNames(packageRoot.toString() + '.' + prefix))
+                    {
+                        lines.add("class:" + className);
+                    }
+                }
+            }
+        }
+
+        Map<String, TemplateEngineService> engines = new TreeMap<>();
+        templateEngineRegistry.values().forEach(tes -> engines.put(tes.getClass().getName(), tes));
+
+        for (Map.Entry<String, TemplateEngineService> engine : engines.entrySet())
+        {
+            lines.add("engine:" + engine.getKey());
+
+            Hashtable<String, Object> engineConf = engine.getValue().getTemplateEngineServiceConfiguration();
+            for (String key : new TreeSet<>(engineConf.keySet()))
+            {
+                Object value = engineConf.get(key);
+                lines.add("engine:" + key + "=" + (value instanceof String[]
+                        ? String.join(",", (String[]) value) : value));
+            }
+
+            TemplateIndex index = new TemplateIndex(engine.getValue().getTemplatePaths());
+            for (String name : index.getNames())
+            {
+                lines.add("template:" + name);
+
+                // files of the screen and navigation trees handled by this engine
+                if ((name.startsWith(Screen.PREFIX + "/") || name.startsWith(Navigation.PREFIX + "/"))
+                        && name.lastIndexOf(EXTENSION_SEPARATOR) > name.lastIndexOf('/')
+                        && getTemplateEngineService(name) == engine.getValue())
+                {
+                    templates.add(name.substring(name.indexOf('/') + 1)
+                            .replace('/', TEMPLATE_PARTS_SEPARATOR));
+                }
+            }
+        }
+
+        return TemplateMappingSnapshot.hash(lines);
+    }
+
+    /**
+     * Find the classes of a package and its sub-packages on the class
+     * path, in directories and jar files.
+     *
+     * @param packageName the name of the package
+     * @return the sorted class names
+     */
+    private Set<String> getClassNames(String packageName)
+    {
+        Set<String> classNames = new TreeSet<>();
+        String path = packageName.replace('.', '/') + '/';
+
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null)
+        {
+            classLoader = getClass().getClassLoader();
+        }
+
+        try
+        {
+            Enumeration<URL> resources = classLoader.getResources(path);
+
+            while (resources.hasMoreElements())
+            {
+                URL url = resources.nextElement();
+                URLConnection connection = url.openConnection();
+
+                if (connection instanceof JarURLConnection)
+                {
+                    // a private copy of the jar, closing it does not affect the class loader
+                    connection.setUseCaches(false);
+                    try (JarFile jar = ((JarURLConnection) connection).getJarFile())
+                    {
+                        jar.stream()
+                            .map(JarEntry::getName)
+                            .filter(name -> name.startsWith(path) && name.endsWith(".class"))
+                            .forEach(name -> classNames.add(toClassName(name)));
+                    }
+                }
+                else if ("file".equals(url.getProtocol()))
+                {
+                    Path root = Paths.get(url.toURI());
+                    try (Stream<Path> files = Files.walk(root))
+                    {
+                        files.map(file -> root.relativize(file).toString().replace(File.separatorChar, '/'))
+                            .filter(name -> name.endsWith(".class"))
+                            .forEach(name -> classNames.add(toClassName(path + name)));
+                    }
+                }
+            }
+        }
+        catch (IOException | URISyntaxException e)
+        {
+            log.warn("Could not list the classes of package {}", packageName, e);
+        }
+
+        return classNames;
+    }
+
+    /**
+     * @param resourceName the resource name of a class file
+     * @return the class name
+     */
+    private static String toClassName(String resourceName)
+    {
+        return resourceName.substring(0, resourceName.length() - ".class".length()).replace('/', '.');
+    }
+
+    /**
+     * Collect the keys of a configuration
+     *
+     * @param keys the key iterator
+     * @return the list of keys
+     */
+    private static List<String> toList(Iterator<String> keys)
+    {
+        List<String> list = new ArrayList<>();
+        keys.forEachRemaining(list::add);
+        return list;
+    }
+
+    /**
+     * Unregister the management beans of the template mapping cache
+     */
+    @Override
+    public void shutdown()
+    {
+        if (mapperCache != null)
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            for (MapperCache.Region region : mapperCache.getRegions())
+            {
+                try
+                {
+                    ObjectName on = getObjectName(region);
+                    if (server.isRegistered(on))
+                    {
+                        server.unregisterMBean(on);
+                    }
+                }
+                catch (JMException e)
+                {
+                    log.warn("Could not unregister mapper cache {}", region.getName(), e);
+                }
+            }
+
+            mapperCache = null;
+        }
+
+        super.shutdown();
+    }
+
     /**
      * Get the default template name extension specified
      * in the template service properties. If no extension
@@ -504,7 +849,7 @@ public class TurbineTemplateService
     @Override
     public String getDefaultPageName(PipelineData pipelineData)
     {
-        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+        ParameterParser pp = pipelineData.get(RunData.PARAMETER_PARSER_KEY);
         String template = pp.get(URIConstants.CGI_TEMPLATE_PARAM);
         return template != null ? getDefaultPageName(template) : getDefaultPage();
     }
@@ -519,7 +864,7 @@ public class TurbineTemplateService
     @Override
     public String getDefaultLayoutName(PipelineData pipelineData)
     {
-        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+        ParameterParser pp = pipelineData.get(RunData.PARAMETER_PARSER_KEY);
         String template = pp.get(URIConstants.CGI_TEMPLATE_PARAM);
         return template != null ? getDefaultLayoutName(template) : getDefaultLayout();
     }
@@ -717,11 +1062,6 @@ public class TurbineTemplateService
         // out of the Template Service.
         mapperRegistry = new Mapper[TEMPLATE_TYPES];
 
-        String [] mapperNames = new String [] {
-            Page.NAME, Screen.NAME, Layout.NAME, Navigation.NAME,
-            LAYOUT_TEMPLATE_NAME, SCREEN_TEMPLATE_NAME, NAVIGATION_TEMPLATE_NAME
-        };
-
         Class<?> [] mapperKeys = new Class<?> [] {
             Page.class, Screen.class, Layout.class, Navigation.class,
             Layout.class, Screen.class, Navigation.class
@@ -737,16 +1077,21 @@ public class TurbineTemplateService
             DirectTemplateMapper.class.getName()
         };
 
+        if (useCache)
+        {
+            mapperCache = new MapperCache(conf.getInt(TemplateService.MAPPER_CACHE_SIZE_KEY,
+                    TemplateService.MAPPER_CACHE_SIZE_DEFAULT));
+            log.debug("Mapper Cache Size: {}", Integer.valueOf(mapperCache.getMaximumSize()));
+        }
+
         AssemblerBrokerService ab = (AssemblerBrokerService)TurbineServices.getInstance()
                                         .getService(AssemblerBrokerService.SERVICE_NAME);
 
-        int [] mapperCacheSize = new int [mapperKeys.length];
         Loader<? extends Assembler> [] mapperLoader = new Loader<?>[mapperKeys.length];
 
         for (int i = 0; i < mapperKeys.length; i++)
         {
             mapperLoader[i] = ab.getLoader((Class<? extends Assembler>)mapperKeys[i]);
-            mapperCacheSize[i] = (mapperLoader[i] != null) ? mapperLoader[i].getCacheSize() : 0;
         }
 
         // HACK: to achieve the same behavior as before
@@ -776,13 +1121,13 @@ public class TurbineTemplateService
         {
             StringBuilder mapperProperty = new StringBuilder();
             mapperProperty.append("mapper.");
-            mapperProperty.append(mapperNames[i]);
+            mapperProperty.append(MAPPER_NAMES[i]);
             mapperProperty.append(".class");
 
             String mapperClass =
                     conf.getString(mapperProperty.toString(), mapperClasses[i]);
 
-            log.info("Using {} to map {} elements", mapperClass, mapperNames[i]);
+            log.info("Using {} to map {} elements", mapperClass, MAPPER_NAMES[i]);
 
             Mapper tm = null;
 
@@ -797,7 +1142,6 @@ public class TurbineTemplateService
 		    }
 
             tm.setUseCache(useCache);
-            tm.setCacheSize(mapperCacheSize[i]);
             tm.setDefaultProperty(mapperDefaultProperty[i]);
             tm.setSeparator(mapperSeparator[i]);
 
@@ -811,7 +1155,53 @@ public class TurbineTemplateService
                 ((BaseTemplateMapper) tm).setPrefix(mapperPrefix[i]);
             }
 
+            if (mapperCache != null)
+            {
+                MapperCache.Region region = mapperCache.getRegion(MAPPER_NAMES[i]);
+                tm.setTemplateCache(region);
+                registerMBean(region);
+            }
+
             registerMapper(i, tm);
         }
     }
+
+    /**
+     * Register the statistics of a mapper cache region with the
+     * platform MBean server
+     *
+     * @param region the cache region of a mapper
+     */
+    private void registerMBean(MapperCache.Region region)
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = getObjectName(region);
+
+            if (server.isRegistered(on))
+            {
+                server.unregisterMBean(on);
+            }
+
+            server.registerMBean(region, on);
+        }
+        catch (JMException e)
+        {
+            log.warn("Could not register mapper cache {}", region.getName(), e);
+        }
+    }
+
+    /**
+     * Build the JMX name of a mapper cache region
+     *
+     * @param region the cache region of a mapper
+     * @return the object name
+     * @throws JMException if the name is invalid
+     */
+    private static ObjectName getObjectName(MapperCache.Region region) throws JMException
+    {
+        return new ObjectName("org.apache.turbine:type=MapperCache,name="
+                + ObjectName.quote(region.getName()));
+    }
 }
@@ -21,10 +21,9 @@ package org.apache.turbine.services.template.mapper;
  */
 
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.template.TemplateEngineService;
 import org.apache.turbine.services.template.TemplateService;
@@ -39,14 +38,17 @@ import org.apache.turbine.services.template.TemplateService;
 
 public abstract class BaseMapper
 {
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(BaseMapper.class);
+
     /** True if this mapper should cache template -> name mappings */
     private boolean useCache = false;
 
     /** Default cache size. Just a number out of thin air. Will be set at init time */
     private int cacheSize = 5;
 
-    /** The internal template -> name mapping cache */
-    private Map<String, String> templateCache = null;
+    /** The template -> name mapping cache, usually a region of a cache shared by all mappers */
+    private MapperCache.Region templateCache = null;
 
     /** The name of the default property to pull from the Template Engine Service if the default is requested */
     protected String defaultProperty;
@@ -78,11 +80,24 @@ public abstract class BaseMapper
     }
 
     /**
-     * Set the CacheSize value.
+     * Set the CacheSize value. It only applies to a private cache created
+     * by {@link #init()}. A shared cache set with
+     * {@link #setTemplateCache(MapperCache.Region)} is sized by
+     * <code>mapper.cache.size</code> of the template service.
+     *
      * @param cacheSize The new CacheSize value.
+     * @deprecated the mappers of the template service share one cache,
+     * configure its size with <code>mapper.cache.size</code>
      */
+    @Deprecated
     public void setCacheSize(int cacheSize)
     {
+        if (templateCache != null)
+        {
+            log.warn("Ignoring cache size {} of mapper {}, it uses the shared mapper cache, configure {} instead",
+                    Integer.valueOf(cacheSize), getClass().getSimpleName(), TemplateService.MAPPER_CACHE_SIZE_KEY);
+        }
+
         this.cacheSize = cacheSize;
     }
 
@@ -140,14 +155,37 @@ public abstract class BaseMapper
         this.separator = separator;
     }
 
+    /**
+     * Set the cache for template -> name mappings. If no cache is set
+     * before {@link #init()}, the mapper uses a private cache of
+     * CacheSize entries.
+     *
+     * @param templateCache the cache region of this mapper
+     */
+    public void setTemplateCache(MapperCache.Region templateCache)
+    {
+        this.templateCache = templateCache;
+    }
+
     /**
      * Initializes the Mapper. Must be called before the mapper might be used.
      */
     public void init()
     {
-        if (useCache)
+        if (useCache && templateCache == null)
         {
-            templateCache = new HashMap<>(cacheSize);
+            templateCache = new MapperCache(cacheSize).getRegion(getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Remove all cached template -> name mappings of this mapper.
+     */
+    public void clearCache()
+    {
+        if (templateCache != null)
+        {
+            templateCache.clear();
         }
     }
 
@@ -197,9 +235,14 @@ public abstract class BaseMapper
             return null;
         }
 
-        if (useCache && templateCache.containsKey(template))
+        if (useCache)
         {
-            return templateCache.get(template);
+            String cached = templateCache.get(template);
+
+            if (cached != null)
+            {
+                return cached;
+            }
         }
 
         String res = doMapping(template);
@@ -146,9 +146,11 @@ public class ClassMapper
             log.debug("Looking for {}", testName);
             try
             {
-                loader.getAssembler(testName.toString());
-                log.debug("Found it, returning {}", testName);
-                return testName.toString();
+                if (loader.findAssembler(testName.toString()) != null)
+                {
+                    log.debug("Found it, returning {}", testName);
+                    return testName.toString();
+                }
             }
             catch (TurbineException e)
             {
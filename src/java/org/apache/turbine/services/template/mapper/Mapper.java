@@ -44,9 +44,14 @@ public interface Mapper
     int getCacheSize();
 
     /**
-     * Set the CacheSize value.
+     * Set the CacheSize value. Ignored by mappers using the cache shared
+     * by the template service.
+     *
      * @param cacheSize The new CacheSize value.
+     * @deprecated the mappers of the template service share one cache,
+     * configure its size with <code>mapper.cache.size</code>
      */
+    @Deprecated
     void setCacheSize(int cacheSize);
 
     /**
@@ -85,6 +90,25 @@ public interface Mapper
      */
     void setSeparator(char separator);
 
+    /**
+     * Set the cache for template -> name mappings. Must be
+     * called before {@link #init()}. Mappers which do not
+     * cache their mappings may ignore this.
+     *
+     * @param templateCache the cache region of this mapper
+     */
+    default void setTemplateCache(MapperCache.Region templateCache)
+    {
+        // empty
+    }
+
+    /**
+     * Remove all cached template -> name mappings of this mapper.
+     */
+    default void clearCache()
+    {
+        // empty
+    }
 
     /**
      * Returns the default name for the supplied template
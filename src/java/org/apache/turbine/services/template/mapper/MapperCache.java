@@ -0,0 +1,323 @@
+package org.apache.turbine.services.template.mapper;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, thread-safe cache for template to name mappings which is
+ * shared by all mappers of the template service.
+ * <p>
+ * Every mapper owns a {@link Region} of the cache with its own lookup
+ * table and statistics, so lookups never have to build a composite key.
+ * The capacity is shared: all regions compete for the slots of a single
+ * CLOCK ring. Hits raise a small saturating reference counter of the entry
+ * and the clock hand decrements these counters while looking for a victim,
+ * so frequently mapped templates survive bursts of one-off mappings.
+ * Lookups are lock free, insertions and evictions are serialized.
+ */
+public final class MapperCache
+{
+    /** Upper bound of the reference counter of an entry */
+    private static final int MAX_FREQUENCY = 3;
+
+    /** The regions of this cache by mapper name */
+    private final ConcurrentMap<String, Region> regions = new ConcurrentHashMap<>();
+
+    /** Guards the clock ring */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The clock ring of all cached entries, replaced under the lock when the cache grows */
+    private volatile Entry[] ring;
+
+    /** The position of the clock hand */
+    private int hand = 0;
+
+    /**
+     * Create a new cache
+     *
+     * @param maximumSize the maximum number of mappings shared by all regions
+     */
+    public MapperCache(int maximumSize)
+    {
+        this.ring = new Entry[Math.max(1, maximumSize)];
+    }
+
+    /**
+     * Get the region of a mapper, creating it if necessary
+     *
+     * @param name the name of the mapper
+     * @return the region of the mapper
+     */
+    public Region getRegion(String name)
+    {
+        return regions.computeIfAbsent(name, Region::new);
+    }
+
+    /**
+     * @return all regions of this cache
+     */
+    public Collection<Region> getRegions()
+    {
+        return Collections.unmodifiableCollection(regions.values());
+    }
+
+    /**
+     * @return the maximum number of mappings shared by all regions
+     */
+    public int getMaximumSize()
+    {
+        return ring.length;
+    }
+
+    /**
+     * Grow the cache so it can hold at least the given number of
+     * mappings, e.g. before loading a snapshot of precomputed mappings.
+     *
+     * @param minimumSize the minimum number of mappings shared by all regions
+     */
+    public void ensureCapacity(int minimumSize)
+    {
+        lock.lock();
+        try
+        {
+            if (minimumSize > ring.length)
+            {
+                // the clock hand continues in the new, empty slots
+                hand = ring.length;
+                ring = Arrays.copyOf(ring, minimumSize);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of mappings cached in all regions
+     */
+    public int size()
+    {
+        int size = 0;
+
+        for (Region region : regions.values())
+        {
+            size += region.getSize();
+        }
+
+        return size;
+    }
+
+    /**
+     * Remove all cached mappings of all regions, e.g. after the
+     * templates or modules have been reloaded.
+     */
+    public void clear()
+    {
+        lock.lock();
+        try
+        {
+            for (Region region : regions.values())
+            {
+                region.mappings.clear();
+            }
+
+            Arrays.fill(ring, null);
+            hand = 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add an entry to the ring, evicting another entry if the ring is full
+     *
+     * @param entry the new entry
+     */
+    private void add(Entry entry)
+    {
+        lock.lock();
+        try
+        {
+            if (entry.region.mappings.putIfAbsent(entry.template, entry) != null)
+            {
+                return;
+            }
+
+            Entry[] ring = this.ring;
+
+            for (;;)
+            {
+                Entry current = ring[hand];
+                int slot = hand;
+                hand = (hand + 1) % ring.length;
+
+                // empty slot or entry already removed by clearing its region
+                if (current == null || current.region.mappings.get(current.template) != current)
+                {
+                    ring[slot] = entry;
+                    return;
+                }
+
+                if (current.frequency > 0)
+                {
+                    current.frequency--;
+                    continue;
+                }
+
+                current.region.mappings.remove(current.template, current);
+                current.region.evictions.increment();
+                ring[slot] = entry;
+                return;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A cached mapping
+     */
+    private static final class Entry
+    {
+        final Region region;
+        final String template;
+        final String name;
+        volatile int frequency = 0;
+
+        Entry(Region region, String template, String name)
+        {
+            this.region = region;
+            this.template = template;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The part of the cache owned by a single mapper
+     */
+    public final class Region implements MapperCacheMXBean
+    {
+        private final String name;
+        private final ConcurrentMap<String, Entry> mappings = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        private Region(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * @return the name of the mapper owning this region
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Get a cached mapping
+         *
+         * @param template the template name
+         * @return the mapped name or <code>null</code> if not cached
+         */
+        public String get(String template)
+        {
+            Entry entry = mappings.get(template);
+
+            if (entry == null)
+            {
+                misses.increment();
+                return null;
+            }
+
+            if (entry.frequency < MAX_FREQUENCY)
+            {
+                entry.frequency++;
+            }
+
+            hits.increment();
+            return entry.name;
+        }
+
+        /**
+         * Cache a mapping. An existing mapping for the template is kept.
+         *
+         * @param template the template name
+         * @param mappedName the mapped name
+         */
+        public void put(String template, String mappedName)
+        {
+            add(new Entry(this, template, mappedName));
+        }
+
+        @Override
+        public int getSize()
+        {
+            return mappings.size();
+        }
+
+        @Override
+        public int getMaximumSize()
+        {
+            return MapperCache.this.getMaximumSize();
+        }
+
+        @Override
+        public long getHitCount()
+        {
+            return hits.sum();
+        }
+
+        @Override
+        public long getMissCount()
+        {
+            return misses.sum();
+        }
+
+        @Override
+        public long getEvictionCount()
+        {
+            return evictions.sum();
+        }
+
+        @Override
+        public void clear()
+        {
+            // the ring slots are reclaimed lazily by the clock hand
+            mappings.clear();
+        }
+    }
+}
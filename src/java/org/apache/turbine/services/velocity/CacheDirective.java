@@ -0,0 +1,241 @@
+package org.apache.turbine.services.velocity;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.util.template.OutputCache;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.exception.TemplateInitException;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.directive.Directive;
+import org.apache.velocity.runtime.parser.node.Node;
+
+/**
+ * The <code>#cache</code> block directive caches the rendered output of
+ * a template fragment in the {@link OutputCache}. While the fragment is
+ * cached, its body is not evaluated.
+ *
+ * <pre>
+ * #cache("navigation" 300 "locale,skin")
+ *   ...
+ * #end
+ * </pre>
+ *
+ * The first argument is the key of the fragment, the optional second
+ * argument the time to live in seconds (default 60). The optional third
+ * argument is a comma separated list of what the fragment depends on:
+ * <code>locale</code>, <code>skin</code>, <code>roles</code> or the
+ * names of request parameters. Each combination is cached separately.
+ * If the context has no pipeline data to read these from, the body is
+ * rendered without caching.
+ * <p>
+ * All variants of a fragment can be removed from Java code with
+ * <code>OutputCache.getInstance().invalidate(key)</code>.
+ *
+ * @version $Id$
+ */
+public class CacheDirective extends Directive
+{
+    /** The type of the output in the cache key */
+    public static final String TYPE = "fragment";
+
+    /** The default time to live in seconds */
+    public static final int DEFAULT_TTL = 60;
+
+    /**
+     * @see org.apache.velocity.runtime.directive.Directive#getName()
+     */
+    @Override
+    public String getName()
+    {
+        return "cache";
+    }
+
+    /**
+     * @see org.apache.velocity.runtime.directive.Directive#getType()
+     */
+    @Override
+    public int getType()
+    {
+        return BLOCK;
+    }
+
+    /**
+     * Check the number of arguments.
+     *
+     * @see org.apache.velocity.runtime.directive.Directive#init(org.apache.velocity.runtime.RuntimeServices, org.apache.velocity.context.InternalContextAdapter, org.apache.velocity.runtime.parser.node.Node)
+     */
+    @Override
+    public void init(RuntimeServices rs, InternalContextAdapter context, Node node)
+        throws TemplateInitException
+    {
+        super.init(rs, context, node);
+
+        // the last child is the body
+        int args = node.jjtGetNumChildren() - 1;
+        if (args < 1 || args > 3)
+        {
+            throw new TemplateInitException(
+                    "#cache() requires a key and optionally a time to live and a vary list",
+                    node.getTemplateName(), node.getColumn(), node.getLine());
+        }
+    }
+
+    /**
+     * Write the cached fragment or render the body and cache it.
+     *
+     * @see org.apache.velocity.runtime.directive.Directive#render(org.apache.velocity.context.InternalContextAdapter, java.io.Writer, org.apache.velocity.runtime.parser.node.Node)
+     */
+    @Override
+    public boolean render(InternalContextAdapter context, Writer writer, Node node)
+        throws IOException
+    {
+        int args = node.jjtGetNumChildren() - 1;
+        Node body = node.jjtGetChild(args);
+
+        Object key = node.jjtGetChild(0).value(context);
+        if (key == null)
+        {
+            // nothing to cache by
+            return body.render(context, writer);
+        }
+
+        int ttl = DEFAULT_TTL;
+        if (args > 1)
+        {
+            Object value = node.jjtGetChild(1).value(context);
+            if (value instanceof Number)
+            {
+                ttl = ((Number) value).intValue();
+            }
+            else if (value != null)
+            {
+                try
+                {
+                    ttl = Integer.parseInt(value.toString().trim());
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new VelocityException("#cache(" + key + "): invalid time to live '" + value
+                            + "' at " + node.getTemplateName() + "[line " + node.getLine()
+                            + ", column " + node.getColumn() + "]", e);
+                }
+            }
+        }
+
+        String cacheKey = getKey(context, key.toString(),
+                args > 2 ? node.jjtGetChild(2).value(context) : null);
+        if (cacheKey == null)
+        {
+            // the variants cannot be told apart
+            return body.render(context, writer);
+        }
+
+        byte[] content;
+
+        try
+        {
+            content = OutputCache.getInstance().getOrRender(cacheKey, ttl,
+                    new String[] { key.toString() }, () ->
+            {
+                StringWriter fragment = new StringWriter();
+                body.render(context, fragment);
+                return fragment.toString().getBytes(StandardCharsets.UTF_8);
+            });
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new VelocityException("Error rendering #cache(" + key + ")", e);
+        }
+
+        writer.write(new String(content, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Build the cache key of a fragment.
+     *
+     * @param context the Velocity context
+     * @param key the key of the fragment
+     * @param vary the comma separated list of what the fragment depends on
+     * @return the cache key or null if the fragment depends on request
+     * data but the context has no pipeline data
+     */
+    private String getKey(InternalContextAdapter context, String key, Object vary)
+    {
+        Object data = context.get(VelocityService.PIPELINEDATA_KEY);
+        if (!(data instanceof PipelineData))
+        {
+            data = context.get(VelocityService.RUNDATA_KEY);
+        }
+
+        if (vary == null)
+        {
+            return TYPE + '|' + key.length() + ':' + key;
+        }
+
+        if (!(data instanceof PipelineData))
+        {
+            return null;
+        }
+
+        boolean locale = false;
+        boolean skin = false;
+        boolean roles = false;
+        List<String> parameters = new ArrayList<>();
+
+        for (String segment : vary.toString().split(","))
+        {
+            String s = segment.trim();
+
+            if ("locale".equals(s))
+            {
+                locale = true;
+            }
+            else if ("skin".equals(s))
+            {
+                skin = true;
+            }
+            else if ("roles".equals(s))
+            {
+                roles = true;
+            }
+            else if (!s.isEmpty())
+            {
+                parameters.add(s);
+            }
+        }
+
+        return OutputCache.getKey(TYPE, (PipelineData) data,
+                parameters.toArray(new String[0]), locale, skin, roles, key);
+    }
+}
@@ -26,6 +26,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -34,10 +35,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.RequestTrace;
+import org.apache.turbine.pipeline.TraceSpan;
 import org.apache.turbine.services.InitializationException;
 import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.services.pull.PullService;
 import org.apache.turbine.services.template.BaseTemplateEngineService;
+import org.apache.turbine.services.template.TemplateIndex;
 import org.apache.turbine.util.LocaleUtils;
 import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineException;
@@ -91,6 +95,9 @@ public class TurbineVelocityService
     /** The prefix used for URIs which are of type <code>absolute</code>. */
     private static final String ABSOLUTE_PREFIX = "file://";
 
+    /** The path property of the Velocity file resource loader */
+    private static final String FILE_RESOURCE_LOADER_PATH = "file" + RESOURCE_LOADER_PATH;
+
     /** Logging */
     private static final Logger log = LogManager.getLogger(TurbineVelocityService.class);
 
@@ -112,6 +119,12 @@ public class TurbineVelocityService
     /** Internal Reference to the pull Service */
     private PullService pullService = null;
 
+    /** The file system paths of the file resource loader */
+    private final List<String> fileTemplatePaths = new ArrayList<>();
+
+    /** The index of the templates on the file resource loader paths, if enabled */
+    private TemplateIndex templateIndex = null;
+
 
     /**
      * Load all configured components and initialize them. This is
@@ -140,6 +153,21 @@ public class TurbineVelocityService
                 log.debug("Activated Pull Tools");
             }
 
+            // All templates must be loaded from the file resource loader
+            // for the index to be complete, so it has to be enabled explicitly.
+            if (getConfiguration().getBoolean(TEMPLATE_INDEX_KEY, false)
+                    && !fileTemplatePaths.isEmpty())
+            {
+                templateIndex = new TemplateIndex(fileTemplatePaths.toArray(new String[0]));
+
+                if (getConfiguration().getBoolean(TEMPLATE_INDEX_WATCH_KEY, true))
+                {
+                    templateIndex.watch();
+                }
+
+                log.debug("Indexed {} template files and directories", Integer.valueOf(templateIndex.size()));
+            }
+
             // Register with the template service.
             registerConfiguration(VelocityService.VELOCITY_EXTENSION);
 
@@ -179,11 +207,12 @@ public class TurbineVelocityService
     @Override
     public Context getContext()
     {
-        Context globalContext =
-                pullModelActive ? pullService.getGlobalContext() : null;
+        if (pullModelActive)
+        {
+            return pullService.getRequestContext();
+        }
 
-        Context ctx = new VelocityContext(globalContext);
-        return ctx;
+        return new VelocityContext();
     }
 
     /**
@@ -402,7 +431,13 @@ public class TurbineVelocityService
           encoding = defaultOutputEncoding;
         }
 
-		velocity.mergeTemplate(filename, encoding.name(), context, writer);
+        Object pipelineData = context.get(VelocityService.PIPELINEDATA_KEY);
+
+        try (TraceSpan span = RequestTrace.open(pipelineData instanceof PipelineData
+                ? (PipelineData) pipelineData : null, "velocity", filename))
+        {
+            velocity.mergeTemplate(filename, encoding.name(), context, writer);
+        }
     }
 
     /**
@@ -480,6 +515,7 @@ public class TurbineVelocityService
 
         VelocityEngine velocity = new VelocityEngine();
         setVelocityProperties(velocity, conf);
+        velocity.addProperty(RuntimeConstants.CUSTOM_DIRECTIVES, CacheDirective.class.getName());
         velocity.init();
 
         return velocity;
@@ -568,6 +604,11 @@ public class TurbineVelocityService
                     path = Turbine.getRealPath(path.substring(7));
 
                     log.debug("Result (absolute URL Path): {}", path);
+
+                    if (key.equals(FILE_RESOURCE_LOADER_PATH))
+                    {
+                        fileTemplatePaths.add(path);
+                    }
                 }
                 // Test if this might be some sort of URL that we haven't encountered yet.
                 else if(path.indexOf("://") < 0)
@@ -575,6 +616,11 @@ public class TurbineVelocityService
                     path = Turbine.getRealPath(path);
 
                     log.debug("Result (normal fs reference): {}", path);
+
+                    if (key.equals(FILE_RESOURCE_LOADER_PATH))
+                    {
+                        fileTemplatePaths.add(path);
+                    }
                 }
 
                 log.debug("Adding {} -> {}", key, path);
@@ -595,9 +641,41 @@ public class TurbineVelocityService
     @Override
     public boolean templateExists(String template)
     {
+        TemplateIndex index = templateIndex;
+        if (index != null)
+        {
+            return index.exists(template);
+        }
+
         return velocity.resourceExists(template);
     }
 
+    /**
+     * Get the paths of the file resource loader.
+     *
+     * @return the absolute template paths, may be empty
+     */
+    @Override
+    public String[] getTemplatePaths()
+    {
+        return fileTemplatePaths.toArray(new String[0]);
+    }
+
+    /**
+     * Stop watching the template paths.
+     */
+    @Override
+    public void shutdown()
+    {
+        if (templateIndex != null)
+        {
+            templateIndex.close();
+            templateIndex = null;
+        }
+
+        super.shutdown();
+    }
+
     /**
      * Performs post-request actions (releases context
      * tools back to the object pool).
@@ -22,6 +22,7 @@ package org.apache.turbine.util;
 
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class generates a unique 10+ character id.  This is good for
@@ -41,14 +42,17 @@ public class GenerateUniqueId
 {
     /*
      * Create a suitable string for session identification.  Use
-     * synchronized count and time to ensure uniqueness.  Use random
+     * an atomic count and time to ensure uniqueness.  Use random
      * string to ensure the timestamp cannot be guessed by programmed
      * attack.
      *
      * Format of id is <6 chars random><3 chars time><1+ char count>
+     *
+     * The last time value and the session count are packed into one
+     * atomic long (time in the upper, count in the lower 32 bits), so
+     * no lock is needed.
      */
-    static private int session_count = 0;
-    static private long lastTimeVal = 0;
+    static private final AtomicLong timeAndCount = new AtomicLong();
     static private Random randomSource = new java.util.Random();
 
     // MAX_RADIX is 36
@@ -82,7 +86,7 @@ public class GenerateUniqueId
      *
      * @return A String with the new unique id.
      */
-    static synchronized public String getIdentifier()
+    static public String getIdentifier()
     {
         StringBuilder sessionId = new StringBuilder();
 
@@ -118,12 +122,10 @@ public class GenerateUniqueId
 
         // Count sessions only within tics.  So the 'real' session
         // count isn't exposed to the public.
-        if (lastTimeVal != timeVal)
-        {
-            lastTimeVal = timeVal;
-            session_count = 0;
-        }
-        sessionId.append(Long.toString(++session_count,
+        final long tic = timeVal;
+        long state = timeAndCount.updateAndGet(prev ->
+            (prev >>> 32) == tic ? prev + 1 : (tic << 32) | 1);
+        sessionId.append(Long.toString(state & 0xFFFFFFFFL,
                 Character.MAX_RADIX));
 
         return sessionId.toString();
@@ -135,7 +137,7 @@ public class GenerateUniqueId
      * @param jsIdent A String.
      * @return A String with the new unique id.
      */
-    synchronized public String getIdentifier(String jsIdent)
+    public String getIdentifier(String jsIdent)
     {
         if (jsIdent != null && jsIdent.length() > 0)
         {
@@ -26,7 +26,6 @@ import java.util.TimeZone;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.time.FastDateFormat;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.pipeline.PipelineData;
 
 /**
@@ -69,7 +68,7 @@ public class HttpUtils
      */
     public static void setCacheHeaders(PipelineData pipelineData, int expiry)
     {
-        HttpServletResponse response = pipelineData.get(Turbine.class, HttpServletResponse.class);
+        HttpServletResponse response = pipelineData.get(RunData.RESPONSE_KEY);
 
         if (0 == expiry)
         {
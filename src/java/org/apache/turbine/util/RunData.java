@@ -37,6 +37,8 @@ import javax.servlet.http.HttpSession;
 import org.apache.fulcrum.parser.CookieParser;
 import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.fulcrum.security.acl.AccessControlList;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.turbine.Turbine;
 import org.apache.turbine.om.security.User;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.util.template.TemplateInfo;
@@ -57,6 +59,48 @@ import org.apache.turbine.util.template.TemplateInfo;
  */
 public interface RunData extends PipelineData
 {
+    /** Key of the run data itself */
+    Key<RunData> RUNDATA_KEY = Key.of(RunData.class, RunData.class);
+
+    /** Key of the servlet request */
+    Key<HttpServletRequest> REQUEST_KEY = Key.of(Turbine.class, HttpServletRequest.class);
+
+    /** Key of the servlet response */
+    Key<HttpServletResponse> RESPONSE_KEY = Key.of(Turbine.class, HttpServletResponse.class);
+
+    /** Key of the servlet configuration */
+    Key<ServletConfig> SERVLET_CONFIG_KEY = Key.of(Turbine.class, ServletConfig.class);
+
+    /** Key of the servlet context */
+    Key<ServletContext> SERVLET_CONTEXT_KEY = Key.of(Turbine.class, ServletContext.class);
+
+    /** Key of the server data */
+    Key<ServerData> SERVER_DATA_KEY = Key.of(Turbine.class, ServerData.class);
+
+    /** Key of the parameter parser */
+    Key<ParameterParser> PARAMETER_PARSER_KEY = Key.of(Turbine.class, ParameterParser.class);
+
+    /** Key of the cookie parser */
+    Key<CookieParser> COOKIE_PARSER_KEY = Key.of(Turbine.class, CookieParser.class);
+
+    /** Key of the user */
+    Key<User> USER_KEY = Key.of(Turbine.class, User.class);
+
+    /** Key of the access control list */
+    Key<AccessControlList> ACL_KEY = Key.of(Turbine.class, TurbineAccessControlList.class);
+
+    /** Key of the template info */
+    Key<TemplateInfo> TEMPLATE_INFO_KEY = Key.of(Turbine.class, TemplateInfo.class);
+
+    /** Key of the message */
+    Key<StringBuilder> MESSAGE_KEY = Key.of(Turbine.class, StringBuilder.class);
+
+    /** Key of the form messages */
+    Key<FormMessages> FORM_MESSAGES_KEY = Key.of(Turbine.class, FormMessages.class);
+
+    /** Key of the locale */
+    Key<Locale> LOCALE_KEY = Key.of(Turbine.class, Locale.class);
+
     /**
      * Gets the parameters.
      *
@@ -0,0 +1,73 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of {@link ReentrantLock}s selected by the hash code of a key.
+ * Used instead of synchronizing on request-scoped objects like sessions
+ * or users, which would pin the carrier of a virtual thread while the
+ * lock is held.
+ *
+ * <p>Different keys may share a lock, so a lock must only guard short
+ * sections which do not acquire another lock of the same stripe set.</p>
+ */
+public class StripedLock
+{
+    /** The locks */
+    private final ReentrantLock[] locks;
+
+    /** Mask to select a lock, the number of locks is a power of two */
+    private final int mask;
+
+    /**
+     * Constructor
+     *
+     * @param stripes the minimum number of locks, rounded up to a power of two
+     */
+    public StripedLock(int stripes)
+    {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Get the lock for the given key
+     *
+     * @param key the key, must not be null
+     * @return the lock guarding the key
+     */
+    public Lock get(Object key)
+    {
+        int h = key.hashCode();
+        // spread the higher bits, as HashMap does
+        return locks[(h ^ (h >>> 16)) & mask];
+    }
+}
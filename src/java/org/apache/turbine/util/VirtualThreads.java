@@ -0,0 +1,94 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, which are available starting with Java 21.
+ * Turbine is compiled for older Java versions, so the factory method is
+ * looked up reflectively.
+ */
+public final class VirtualThreads
+{
+    /** The factory method of the virtual-thread-per-task executor, if available */
+    private static final Method EXECUTOR_FACTORY = findExecutorFactory();
+
+    /**
+     * Utility class
+     */
+    private VirtualThreads()
+    {
+        // empty
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported()
+    {
+        return EXECUTOR_FACTORY != null;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread for each task
+     *
+     * @return the executor
+     * @throws TurbineException if the running JVM does not support
+     * virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor()
+        throws TurbineException
+    {
+        if (EXECUTOR_FACTORY == null)
+        {
+            throw new TurbineException("Virtual threads require Java 21 or later");
+        }
+
+        try
+        {
+            return (ExecutorService) EXECUTOR_FACTORY.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new TurbineException("Could not create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Look up Executors.newVirtualThreadPerTaskExecutor()
+     *
+     * @return the method or null if not available
+     */
+    private static Method findExecutorFactory()
+    {
+        try
+        {
+            return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.apache.turbine.util.template;
+
+
+import org.apache.logging.log4j.LogManager;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.fulcrum.cache.CachedObject;
+import org.apache.fulcrum.cache.GlobalCacheService;
+import org.apache.fulcrum.cache.ObjectExpiredException;
+import org.apache.turbine.services.TurbineServices;
+
+/**
+ * Stores the output cached by {@link OutputCache} in the Fulcrum
+ * {@link GlobalCacheService}. This is the only class referencing the
+ * optional fulcrum-cache component, so it must only be loaded if the
+ * component is on the class path.
+ */
+final class FulcrumOutputStore
+    implements OutputStore
+{
+    /** The cache service */
+    private final GlobalCacheService cache;
+
+    /**
+     * Constructor
+     *
+     * @param cache the cache service
+     */
+    private FulcrumOutputStore(GlobalCacheService cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Get a store for the cache service
+     *
+     * @return the store
+     * @throws Exception if the cache service is not available
+     */
+    static OutputStore getInstance()
+        throws Exception
+    {
+        return new FulcrumOutputStore(
+                (GlobalCacheService) TurbineServices.getInstance().getService(GlobalCacheService.ROLE));
+    }
+
+    /**
+     * @see org.apache.turbine.util.template.OutputStore#get(java.lang.String)
+     */
+    @Override
+    public byte[] get(String key)
+    {
+        try
+        {
+            CachedObject<byte[]> cached = cache.getObject(key);
+
+            if (cached != null && !cached.isStale())
+            {
+                return cached.getContents();
+            }
+        }
+        catch (ObjectExpiredException e)
+        {
+            // not cached or expired
+        }
+
+        return null;
+    }
+
+    /**
+     * @see org.apache.turbine.util.template.OutputStore#put(java.lang.String, byte[], int)
+     */
+    @Override
+    public void put(String key, byte[] content, int ttl)
+    {
+        cache.addObject(key, new CachedObject<>(content, ttl * 1000L));
+    }
+
+    /**
+     * @see org.apache.turbine.util.template.OutputStore#remove(java.lang.String)
+     */
+    @Override
+    public void remove(String key)
+    {
+        cache.removeObject(key);
+    }
+}
@@ -0,0 +1,594 @@
+package org.apache.turbine.util.template;
+
+
+import org.apache.logging.log4j.LogManager;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.fulcrum.security.entity.Role;
+import org.apache.fulcrum.security.model.turbine.TurbineAccessControlList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.annotation.TurbineOutputCache;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.pull.tools.UITool;
+import org.apache.turbine.util.RunData;
+
+/**
+ * Caches the rendered output of screens and layouts annotated with
+ * {@link TurbineOutputCache} and of template fragments in the Fulcrum
+ * <code>GlobalCacheService</code>.
+ * <p>
+ * The output is stored as UTF-8 encoded bytes with the time to live of
+ * the output. The total number of cached bytes is bounded by
+ * <code>output.cache.size</code>, the least recently used output is
+ * removed first. Output can be invalidated by its tags. Output whose
+ * rendering started before an invalidation is not cached. If several
+ * requests miss the same entry at the same time, only one of them
+ * renders it and the others wait for the result.
+ * <p>
+ * If the optional fulcrum-cache component is not on the class path or no
+ * cache service is available, the output is rendered on every request.
+ */
+public final class OutputCache
+{
+    /** Logging */
+    private static final Logger log = LogManager.getLogger(OutputCache.class);
+
+    /** Prefix of the keys in the global cache */
+    private static final String KEY_PREFIX = "turbine.output.";
+
+    /** Whether the optional fulcrum-cache component is on the class path */
+    private static final boolean CACHE_AVAILABLE = isCacheAvailable();
+
+    /** The single instance of this class. */
+    private static final OutputCache instance = new OutputCache();
+
+    /** Guards the entries, the total size and the generation */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The cached keys in access order, with their size and tags */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** The total size of the cached output */
+    private long totalSize = 0;
+
+    /** Counts the invalidations, output rendered before one is not cached */
+    private long generation = 0;
+
+    /** The keys per tag */
+    private final ConcurrentMap<String, Set<String>> tagIndex = new ConcurrentHashMap<>();
+
+    /** The entries currently being rendered */
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> rendering = new ConcurrentHashMap<>();
+
+    /**
+     * Use getInstance()
+     */
+    private OutputCache()
+    {
+        // empty
+    }
+
+    /**
+     * The method through which this class is accessed.
+     *
+     * @return The single instance of this class.
+     */
+    public static OutputCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Build the cache key of the output of a template from the vary
+     * inputs declared by the annotation.
+     *
+     * @param type the module type, e.g. {@link org.apache.turbine.modules.Screen#NAME}
+     * @param config the output cache annotation
+     * @param pipelineData Turbine information
+     * @param templates the names of the templates the output is rendered from
+     * @return the key
+     */
+    public static String getKey(String type, TurbineOutputCache config,
+            PipelineData pipelineData, String... templates)
+    {
+        return getKey(type, pipelineData, config.parameters(), config.locale(),
+                config.skin(), config.roles(), templates);
+    }
+
+    /**
+     * Build the cache key of output from its vary inputs.
+     *
+     * @param type the kind of output, e.g. {@link org.apache.turbine.modules.Screen#NAME}
+     * @param pipelineData Turbine information
+     * @param parameters the names of the request parameters the output depends on
+     * @param locale whether the output depends on the locale of the request
+     * @param skin whether the output depends on the skin of the user
+     * @param roles whether the output depends on the roles of the user
+     * @param names the names identifying the output, e.g. template names
+     * @return the key
+     */
+    public static String getKey(String type, PipelineData pipelineData, String[] parameters,
+            boolean locale, boolean skin, boolean roles, String... names)
+    {
+        RunData data = pipelineData.getRunData();
+        StringBuilder key = new StringBuilder(type);
+
+        for (String name : names)
+        {
+            append(key, name);
+        }
+
+        for (String parameter : parameters)
+        {
+            String[] values = data.getParameters().getStrings(parameter);
+            append(key, parameter);
+            append(key, values == null ? "" : String.join(",", values));
+        }
+
+        if (locale)
+        {
+            Locale l10n = data.getLocale();
+            append(key, l10n == null ? "" : l10n.toString());
+        }
+
+        if (skin)
+        {
+            User user = data.getUser();
+            Object s = (user == null) ? null : user.getTemp(UITool.SKIN_ATTRIBUTE);
+            append(key, s == null ? "" : s.toString());
+        }
+
+        if (roles)
+        {
+            TurbineAccessControlList<?> acl = data.getACL();
+            Set<String> roleNames = new TreeSet<>();
+
+            if (acl != null)
+            {
+                for (Role role : acl.getRoles())
+                {
+                    roleNames.add(role.getName());
+                }
+            }
+
+            append(key, String.join(",", roleNames));
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Append a length-prefixed value, so that different inputs never
+     * produce the same key.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    private static void append(StringBuilder key, String value)
+    {
+        String v = (value == null) ? "" : value;
+        key.append('|').append(v.length()).append(':').append(v);
+    }
+
+    /**
+     * Get the cached output or render and cache it.
+     *
+     * @param key the key, see {@link #getKey(String, TurbineOutputCache, PipelineData, String...)}
+     * @param config the output cache annotation
+     * @param renderer renders the output if it is not cached
+     * @return the output as UTF-8 encoded bytes
+     * @throws Exception if rendering fails, the output is not cached then
+     */
+    public byte[] getOrRender(String key, TurbineOutputCache config, Callable<byte[]> renderer)
+        throws Exception
+    {
+        return getOrRender(key, config.ttl(), config.tags(), renderer);
+    }
+
+    /**
+     * Get the cached output or render and cache it.
+     *
+     * @param key the key, see {@link #getKey(String, PipelineData, String[], boolean, boolean, boolean, String...)}
+     * @param ttl the time to live of the output in seconds
+     * @param tags the tags of the output
+     * @param renderer renders the output if it is not cached
+     * @return the output as UTF-8 encoded bytes
+     * @throws Exception if rendering fails, the output is not cached then
+     */
+    public byte[] getOrRender(String key, int ttl, String[] tags, Callable<byte[]> renderer)
+        throws Exception
+    {
+        OutputStore cache = getStore();
+
+        if (cache == null)
+        {
+            return renderer.call();
+        }
+
+        byte[] content = get(cache, key);
+        if (content != null)
+        {
+            return content;
+        }
+
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = rendering.putIfAbsent(key, future);
+
+        if (running != null)
+        {
+            try
+            {
+                return running.get();
+            }
+            catch (ExecutionException e)
+            {
+                // rendering failed for the other request, try for this one
+                return renderer.call();
+            }
+        }
+
+        try
+        {
+            long started = getGeneration();
+
+            // another request may have finished just before
+            content = get(cache, key);
+
+            if (content == null)
+            {
+                content = renderer.call();
+                put(cache, key, content, ttl, tags, started);
+            }
+
+            future.complete(content);
+            return content;
+        }
+        catch (Exception e)
+        {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            rendering.remove(key, future);
+        }
+    }
+
+    /**
+     * Remove all cached output with the given tag.
+     *
+     * @param tag the tag, see {@link TurbineOutputCache#tags()}
+     */
+    public void invalidate(String tag)
+    {
+        Set<String> keys;
+
+        lock.lock();
+        try
+        {
+            generation++;
+            keys = tagIndex.remove(tag);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        // later requests must not wait for output rendered before
+        rendering.clear();
+        OutputStore cache = getStore();
+
+        if (keys != null && cache != null)
+        {
+            for (String key : keys)
+            {
+                cache.remove(KEY_PREFIX + key);
+                forget(key);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached output.
+     */
+    public void invalidateAll()
+    {
+        List<String> keys;
+
+        lock.lock();
+        try
+        {
+            generation++;
+            keys = new ArrayList<>(entries.keySet());
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        rendering.clear();
+        OutputStore cache = getStore();
+
+        for (String key : keys)
+        {
+            if (cache != null)
+            {
+                cache.remove(KEY_PREFIX + key);
+            }
+            forget(key);
+        }
+    }
+
+    /**
+     * @return the total number of bytes of the cached output
+     */
+    public long getSize()
+    {
+        lock.lock();
+        try
+        {
+            return totalSize;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current generation
+     */
+    private long getGeneration()
+    {
+        lock.lock();
+        try
+        {
+            return generation;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get cached output
+     *
+     * @param cache the cache store
+     * @param key the key
+     * @return the output or null if not cached or expired
+     */
+    private byte[] get(OutputStore cache, String key)
+    {
+        byte[] content = cache.get(KEY_PREFIX + key);
+
+        if (content != null)
+        {
+            lock.lock();
+            try
+            {
+                // update the access order
+                entries.get(key);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            return content;
+        }
+
+        forget(key);
+        return null;
+    }
+
+    /**
+     * Cache output and remove the least recently used output if the
+     * cache exceeds its maximum size. The output is not cached if the
+     * cache was invalidated while it was rendered.
+     *
+     * @param cache the cache store
+     * @param key the key
+     * @param content the output
+     * @param ttl the time to live of the output in seconds
+     * @param tags the tags of the output
+     * @param started the generation when rendering started
+     */
+    private void put(OutputStore cache, String key, byte[] content, int ttl, String[] tags,
+            long started)
+    {
+        long maximumSize = Turbine.getConfiguration().getLong(TurbineConstants.OUTPUT_CACHE_SIZE_KEY,
+                TurbineConstants.OUTPUT_CACHE_SIZE_DEFAULT);
+
+        if (content.length > maximumSize)
+        {
+            log.debug("Output of {} is too large to be cached", key);
+            return;
+        }
+
+        List<String> evicted = new ArrayList<>();
+
+        lock.lock();
+        try
+        {
+            if (generation != started)
+            {
+                log.debug("Output of {} was invalidated while rendering", key);
+                return;
+            }
+
+            cache.put(KEY_PREFIX + key, content, ttl);
+
+            for (String tag : tags)
+            {
+                tagIndex.computeIfAbsent(tag, t -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+
+            Entry old = entries.put(key, new Entry(content.length, tags));
+            if (old != null)
+            {
+                totalSize -= old.size;
+            }
+            totalSize += content.length;
+
+            for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator();
+                    totalSize > maximumSize && i.hasNext();)
+            {
+                Map.Entry<String, Entry> eldest = i.next();
+                i.remove();
+                totalSize -= eldest.getValue().size;
+                untag(eldest.getKey(), eldest.getValue());
+                evicted.add(eldest.getKey());
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        for (String evictedKey : evicted)
+        {
+            cache.remove(KEY_PREFIX + evictedKey);
+        }
+    }
+
+    /**
+     * Remove a key from the size accounting and the tag index
+     *
+     * @param key the key
+     */
+    private void forget(String key)
+    {
+        lock.lock();
+        try
+        {
+            Entry entry = entries.remove(key);
+
+            if (entry != null)
+            {
+                totalSize -= entry.size;
+                untag(key, entry);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove a key from the tag index
+     *
+     * @param key the key
+     * @param entry the entry of the key
+     */
+    private void untag(String key, Entry entry)
+    {
+        for (String tag : entry.tags)
+        {
+            Set<String> keys = tagIndex.get(tag);
+            if (keys != null)
+            {
+                keys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Get the cache store, if available
+     *
+     * @return the cache store or null
+     */
+    private static OutputStore getStore()
+    {
+        if (!CACHE_AVAILABLE)
+        {
+            return null;
+        }
+
+        try
+        {
+            return FulcrumOutputStore.getInstance();
+        }
+        catch (Exception e)
+        {
+            log.debug("No cache service available, output is not cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * Check if the optional fulcrum-cache component can be loaded. The
+     * Fulcrum classes are only referenced by {@link FulcrumOutputStore},
+     * which is not loaded otherwise.
+     *
+     * @return true if the component is on the class path
+     */
+    private static boolean isCacheAvailable()
+    {
+        try
+        {
+            Class.forName("org.apache.fulcrum.cache.GlobalCacheService", false,
+                    OutputCache.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | NoClassDefFoundError e)
+        {
+            log.info("fulcrum-cache is not available, output is not cached");
+            return false;
+        }
+    }
+
+    /**
+     * The size and the tags of cached output
+     */
+    private static final class Entry
+    {
+        final int size;
+        final String[] tags;
+
+        Entry(int size, String[] tags)
+        {
+            this.size = size;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.apache.turbine.util.template;
+
+
+import org.apache.logging.log4j.LogManager;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The store holding the output cached by {@link OutputCache}.
+ */
+interface OutputStore
+{
+    /**
+     * Get cached output
+     *
+     * @param key the key
+     * @return the output or null if not cached or expired
+     */
+    byte[] get(String key);
+
+    /**
+     * Cache output
+     *
+     * @param key the key
+     * @param content the output
+     * @param ttl the time to live of the output in seconds
+     */
+    void put(String key, byte[] content, int ttl);
+
+    /**
+     * Remove cached output
+     *
+     * @param key the key
+     */
+    void remove(String key);
+}
@@ -23,14 +23,21 @@ import org.apache.logging.log4j.LogManager;
  */
 
 
+import java.io.IOException;
+import java.io.Writer;
+
 import org.apache.logging.log4j.Logger;
 import org.apache.turbine.modules.ScreenLoader;
 import org.apache.turbine.pipeline.PipelineData;
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.Renderable;
 
 /**
  * Returns output of a Screen module.  An instance of this is
  * placed in the Velocity context by the VelocityDirectLayout.  This
  * allows the screen to be executed only at rendering.
+ * When rendered by Velocity, the screen is streamed directly into
+ * the output of the layout instead of being built as a String.
  * Here's how it's used in a template:
  *
  * <p>
@@ -46,7 +53,7 @@ import org.apache.turbine.pipeline.PipelineData;
  * @author <a href="raphael@apache.org">Raphaël Luta</a>
  * @version $Id$
  */
-public class TemplateScreen
+public class TemplateScreen implements Renderable
 {
     /** Logging */
     private static final Logger log = LogManager.getLogger(TemplateScreen.class);
@@ -106,4 +113,32 @@ public class TemplateScreen
 
         return returnValue;
     }
+
+    /**
+     * Renders the screen directly into the output of the layout.
+     *
+     * @param context the Velocity context of the layout
+     * @param writer the output of the layout
+     * @return true, the screen has been rendered
+     * @throws IOException if writing to the output fails
+     */
+    @Override
+    public boolean render(InternalContextAdapter context, Writer writer)
+        throws IOException
+    {
+        try
+        {
+            ScreenLoader.getInstance().eval(pipelineData, this.screen, writer);
+        }
+        catch (IOException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            log.error(e);
+        }
+
+        return true;
+    }
 }
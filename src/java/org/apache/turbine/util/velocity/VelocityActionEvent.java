@@ -22,11 +22,11 @@ package org.apache.turbine.util.velocity;
 
 
 import org.apache.fulcrum.parser.ParameterParser;
-import org.apache.turbine.Turbine;
 import org.apache.turbine.annotation.TurbineService;
 import org.apache.turbine.modules.ActionEvent;
 import org.apache.turbine.pipeline.PipelineData;
 import org.apache.turbine.services.velocity.VelocityService;
+import org.apache.turbine.util.RunData;
 import org.apache.velocity.context.Context;
 
 /**
@@ -82,7 +82,7 @@ public abstract class VelocityActionEvent extends ActionEvent
             initialize();
         }
 
-        ParameterParser pp = pipelineData.get(Turbine.class, ParameterParser.class);
+        ParameterParser pp = pipelineData.get(RunData.PARAMETER_PARSER_KEY);
         Context context = velocity.getContext(pipelineData);
         executeEvents(pp, new Class<?>[]{ PipelineData.class, Context.class },
                 new Object[]{ pipelineData, context });
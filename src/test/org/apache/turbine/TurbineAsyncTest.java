@@ -0,0 +1,168 @@
+package org.apache.turbine;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.turbine.pipeline.ControlledAsyncValve;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Tests the processing of requests in async mode, in particular that a
+ * timeout does not recycle the run data while a valve still uses it.
+ */
+public class TurbineAsyncTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+    private HttpServletRequest request = null;
+    private HttpServletResponse response = null;
+    private AsyncContext asyncContext = null;
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(".",
+                "/conf/test/AsyncTurbineResources.properties");
+        tc.initialize();
+    }
+
+    @BeforeEach
+    public void setUpBefore() throws Exception
+    {
+        ControlledAsyncValve.reset();
+
+        request = getMockRequest();
+        response = mock(HttpServletResponse.class);
+        asyncContext = mock(AsyncContext.class);
+
+        when(request.isAsyncSupported()).thenReturn(true);
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        tc.dispose();
+    }
+
+    private AsyncListener getListener()
+    {
+        ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+        verify(asyncContext).addListener(listener.capture());
+        return listener.getValue();
+    }
+
+    /**
+     * A timeout while the valve is suspended produces the timeout error
+     * response at once, but recycles the run data only when the valve
+     * has completed.
+     */
+    @Test
+    public void testTimeoutWhileSuspended() throws Exception
+    {
+        CompletableFuture<Void> stage = new CompletableFuture<>();
+        ControlledAsyncValve.stage = stage;
+
+        tc.getTurbine().doGet(request, response);
+        RunData data = (RunData) ControlledAsyncValve.pipelineData;
+        verify(asyncContext, never()).complete();
+
+        getListener().onTimeout(mock(AsyncEvent.class));
+
+        verify(asyncContext).complete();
+        assertTrue(data.getStackTraceException() instanceof TimeoutException,
+                "Timeout is reported, not the cancellation");
+
+        stage.complete(null);
+
+        // recycling clears the run data
+        assertNull(data.getStackTraceException(), "Run data is recycled");
+        verify(asyncContext, times(1)).complete();
+    }
+
+    /**
+     * A timeout while the valve is running produces the timeout error
+     * response at once, but recycles the run data only when the valve
+     * has returned.
+     */
+    @Test
+    public void testTimeoutWhileRunning() throws Exception
+    {
+        CountDownLatch proceed = new CountDownLatch(1);
+        ControlledAsyncValve.proceed = proceed;
+
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                tc.getTurbine().doGet(request, response);
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+
+        assertTrue(ControlledAsyncValve.running.await(10, TimeUnit.SECONDS));
+        RunData data = (RunData) ControlledAsyncValve.pipelineData;
+
+        getListener().onTimeout(mock(AsyncEvent.class));
+
+        verify(asyncContext).complete();
+        assertTrue(data.getStackTraceException() instanceof TimeoutException,
+                "Run data is not recycled while the valve is running");
+
+        proceed.countDown();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+
+        assertNull(data.getStackTraceException(), "Run data is recycled");
+        verify(asyncContext, times(1)).complete();
+    }
+}
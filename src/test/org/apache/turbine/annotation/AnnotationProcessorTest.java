@@ -22,6 +22,7 @@ package org.apache.turbine.annotation;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 /*
  * or more contributor license agreements.  See the NOTICE file
@@ -165,6 +166,33 @@ public class AnnotationProcessorTest
 
     }
 
+    @Test
+    public void testProcessFinalField() throws Exception
+    {
+        FinalFieldBean bean = new FinalFieldBean();
+        AnnotationProcessor.process(bean);
+
+        assertEquals("Index.vm", bean.templateHomepage);
+    }
+
+    @Test
+    public void testProcessStaticField() throws Exception
+    {
+        StaticFieldBean.templateHomepage = null;
+        AnnotationProcessor.process(new StaticFieldBean());
+
+        assertEquals("Index.vm", StaticFieldBean.templateHomepage);
+    }
+
+    @Test
+    public void testProcessStaticFinalField()
+    {
+        TurbineException e = assertThrows(TurbineException.class,
+                () -> AnnotationProcessor.process(new StaticFinalFieldBean()));
+
+        assertTrue(e.getCause().getMessage().contains("static final field"));
+    }
+
     @TurbineRequiredRole({"user","admin"})
     public void guardedMethoded() {
         // do nothing
@@ -253,4 +281,22 @@ public class AnnotationProcessorTest
         System.out.println(System.currentTimeMillis() - startTime);
     }
 
+    private static class FinalFieldBean
+    {
+        @TurbineConfiguration("template.homepage")
+        private final String templateHomepage = null;
+    }
+
+    private static class StaticFieldBean
+    {
+        @TurbineConfiguration("template.homepage")
+        private static String templateHomepage;
+    }
+
+    private static class StaticFinalFieldBean
+    {
+        @TurbineConfiguration("template.homepage")
+        private static final String templateHomepage = null;
+    }
+
 }
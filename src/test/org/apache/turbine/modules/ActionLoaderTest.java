@@ -262,6 +262,32 @@ public class ActionLoaderTest extends BaseTestCase
         assertEquals(actionEventCalls + 1, VelocityActionDoesNothing.actionEventCalls);
     }
 
+    /**
+     * This unit test verifies that an event button which names no event
+     * falls back to doPerform and is removed from the parameters.
+     *
+     * @throws Exception
+     *             If something goes wrong with the unit test
+     */
+    @Test
+    public void testUnknownActionEventFallsBackToDoPerform() throws Exception
+    {
+        RunData data = getRunData(request, response, config);
+        PipelineData pipelineData = data;
+        data.setAction("VelocityActionDoesNothing");
+        data.getParameters().add("eventSubmit_doUnknown", "foo");
+
+        int numberOfCalls = VelocityActionDoesNothing.numberOfCalls;
+        int pipelineDataCalls = VelocityActionDoesNothing.pipelineDataCalls;
+        int actionEventCalls = VelocityActionDoesNothing.actionEventCalls;
+        ActionLoader.getInstance().exec(pipelineData, data.getAction());
+
+        assertEquals(numberOfCalls + 1, VelocityActionDoesNothing.numberOfCalls);
+        assertEquals(pipelineDataCalls + 1, VelocityActionDoesNothing.pipelineDataCalls);
+        assertEquals(actionEventCalls, VelocityActionDoesNothing.actionEventCalls);
+        assertFalse(data.getParameters().containsKey("eventSubmit_doUnknown"));
+    }
+
     @Test
     public void testNonexistentActionCausesError() throws Exception
     {
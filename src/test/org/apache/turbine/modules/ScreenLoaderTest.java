@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.turbine.modules;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.modules.screens.TestCachedScreen;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests screens rendered by the streaming layouts.
+ */
+public class ScreenLoaderTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+    private StringWriter output = null;
+    private RunData data = null;
+
+    @BeforeClass
+    public static void init()
+    {
+        tc = new TurbineConfig(
+                ".",
+                "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+        Turbine.getConfiguration().setProperty(TurbineConstants.LAYOUT_STREAMING_KEY, Boolean.TRUE);
+    }
+
+    @Before
+    public void setUpBefore() throws Exception
+    {
+        output = new StringWriter();
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(output));
+
+        data = getRunData(getMockRequest(), response, mock(ServletConfig.class));
+        data.setScreenTemplate("Streamed.vm");
+        data.setLayoutTemplate("Streaming.vm");
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception
+    {
+        if (tc != null)
+        {
+            tc.dispose();
+        }
+    }
+
+    /**
+     * A cached screen writes to the output itself, which must not be
+     * skipped by the direct rendering into the layout.
+     */
+    @Test
+    public void testCachedScreenInDirectLayout() throws Exception
+    {
+        data.setScreen("TestCachedScreen");
+        int numberOfCalls = TestCachedScreen.numberOfCalls;
+
+        LayoutLoader.getInstance().exec(data, "VelocityDirectLayout");
+
+        assertEquals(numberOfCalls + 1, TestCachedScreen.numberOfCalls);
+        assertEquals("[screen]", output.toString());
+    }
+
+    @Test
+    public void testScreenInDirectLayout() throws Exception
+    {
+        data.setScreen("VelocityScreen");
+
+        LayoutLoader.getInstance().exec(data, "VelocityDirectLayout");
+
+        assertEquals("[screen]", output.toString());
+    }
+
+    /**
+     * With layout.streaming the layout is rendered first, so the output
+     * of the cached screen ends up inside of the layout.
+     */
+    @Test
+    public void testStreamingOnlyLayout() throws Exception
+    {
+        data.setScreen("TestCachedScreen");
+        int numberOfCalls = TestCachedScreen.numberOfCalls;
+
+        LayoutLoader.getInstance().exec(data, "VelocityOnlyLayout");
+
+        assertEquals(numberOfCalls + 1, TestCachedScreen.numberOfCalls);
+        assertEquals("[screen]", output.toString());
+    }
+}
@@ -0,0 +1,43 @@
+package org.apache.turbine.modules.actions;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.apache.turbine.modules.AsyncAction;
+import org.apache.turbine.pipeline.PipelineData;
+
+/**
+ * This async action is used to test the ExecuteAsyncActionValve. It
+ * returns a stage which the test completes.
+ */
+public class AsyncActionDoesNothing implements AsyncAction
+{
+    public static int numberOfCalls;
+    public static CompletableFuture<Void> stage = new CompletableFuture<>();
+
+    @Override
+    public CompletionStage<?> doPerformAsync(PipelineData pipelineData) throws Exception
+    {
+        AsyncActionDoesNothing.numberOfCalls++;
+        return stage;
+    }
+}
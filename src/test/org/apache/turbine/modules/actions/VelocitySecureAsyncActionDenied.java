@@ -0,0 +1,60 @@
+package org.apache.turbine.modules.actions;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.CompletionStage;
+
+import org.apache.turbine.modules.AsyncAction;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.velocity.context.Context;
+
+/**
+ * This async action is used to test that secure async actions are
+ * rejected if the user is not authorized.
+ */
+public class VelocitySecureAsyncActionDenied extends VelocitySecureAction
+    implements AsyncAction
+{
+    public static int numberOfCalls;
+    public static int isAuthorizedCalls;
+
+    @Override
+    public CompletionStage<?> doPerformAsync(PipelineData pipelineData) throws Exception
+    {
+        VelocitySecureAsyncActionDenied.numberOfCalls++;
+        return null;
+    }
+
+    @Override
+    public void doPerform(PipelineData pipelineData, Context context) throws Exception
+    {
+        VelocitySecureAsyncActionDenied.numberOfCalls++;
+    }
+
+    /**
+     * @see org.apache.turbine.modules.actions.VelocitySecureAction#isAuthorized(org.apache.turbine.pipeline.PipelineData)
+     */
+    @Override
+    protected boolean isAuthorized(PipelineData pipelineData) throws Exception
+    {
+        VelocitySecureAsyncActionDenied.isAuthorizedCalls++;
+        return false;
+    }
+}
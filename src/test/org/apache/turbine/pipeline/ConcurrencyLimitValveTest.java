@@ -0,0 +1,261 @@
+package org.apache.turbine.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.configuration2.Configuration;
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.om.security.DefaultUserImpl;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests ConcurrencyLimitValve in a pipeline.
+ */
+public class ConcurrencyLimitValveTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+
+    /** Completes the request for the screen "Slow" */
+    private final CompletableFuture<Void> gate = new CompletableFuture<>();
+
+    /** The screens in the order they passed the limiter */
+    private final List<String> admitted = new CopyOnWriteArrayList<>();
+
+    private ConcurrencyLimitValve valve;
+    private Pipeline pipeline;
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(
+                            ".",
+                            "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+    }
+
+    @BeforeEach
+    public void setUpBefore() throws Exception
+    {
+        Configuration conf = conf();
+        conf.setProperty("name", "test");
+        conf.setProperty("limit.initial", 1);
+        conf.setProperty("limit.min", 1);
+        conf.setProperty("limit.max", 1);
+        conf.setProperty("queue.size", 2);
+        conf.setProperty("queue.timeout", 10000);
+        conf.setProperty("retryAfter", "5");
+        conf.setProperty("priorityScreens", "Status");
+
+        valve = new ConcurrencyLimitValve();
+        pipeline = new TurbinePipeline();
+        pipeline.addValve(valve);
+        pipeline.addValve(new AsyncValve()
+        {
+            @Override
+            public CompletionStage<?> invokeAsync(PipelineData pipelineData)
+            {
+                String screen = pipelineData.getRunData().getScreen();
+                admitted.add(screen);
+                return "Slow".equals(screen) ? gate : null;
+            }
+        });
+        pipeline.initialize();
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        pipeline.dispose();
+        conf().clear();
+    }
+
+    private RunData getRunData(String screen, HttpServletResponse response) throws Exception
+    {
+        RunData runData = getRunData(getMockRequest(), response, mock(ServletConfig.class));
+        runData.setScreen(screen);
+        runData.setUser(new DefaultUserImpl(new TurbineUserImpl()));
+        return runData;
+    }
+
+    @Test
+    public void testSlotHeldWhileSuspended() throws Exception
+    {
+        CompletionStage<Void> result = pipeline.invokeAsync(
+                getRunData("Slow", mock(HttpServletResponse.class)), Runnable::run);
+
+        assertFalse(result.toCompletableFuture().isDone());
+        assertEquals(1, valve.getInFlight(), "Suspended request keeps its slot");
+
+        gate.complete(null);
+
+        assertTrue(result.toCompletableFuture().isDone());
+        assertEquals(0, valve.getInFlight());
+        assertEquals(1, valve.getAdmittedCount());
+    }
+
+    /**
+     * A cancelled request releases its slot even if the valve it is
+     * suspended on never completes.
+     */
+    @Test
+    public void testSlotReleasedOnCancel() throws Exception
+    {
+        CompletionStage<Void> result = pipeline.invokeAsync(
+                getRunData("Slow", mock(HttpServletResponse.class)), Runnable::run);
+        assertEquals(1, valve.getInFlight());
+
+        assertTrue(result.toCompletableFuture().cancel(false));
+        assertEquals(0, valve.getInFlight(), "Cancelled request releases its slot");
+
+        // the next request is admitted while the gate is still pending
+        pipeline.invoke(getRunData("Index", mock(HttpServletResponse.class)));
+        assertEquals(List.of("Slow", "Index"), admitted);
+        assertEquals(0, valve.getShedCount());
+
+        // a late completion does not release the slot again
+        gate.complete(null);
+        assertEquals(0, valve.getInFlight());
+        assertEquals(2, valve.getAdmittedCount());
+    }
+
+    @Test
+    public void testRejectedWhenQueueFull() throws Exception
+    {
+        conf().setProperty("queue.size", 0);
+        pipeline.dispose();
+        pipeline.initialize();
+
+        CompletionStage<Void> result = pipeline.invokeAsync(
+                getRunData("Slow", mock(HttpServletResponse.class)), Runnable::run);
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        pipeline.invoke(getRunData("Index", response));
+
+        verify(response).setHeader("Retry-After", "5");
+        verify(response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        assertEquals(1, valve.getShedCount());
+        assertEquals(List.of("Slow"), admitted);
+
+        gate.complete(null);
+        assertTrue(result.toCompletableFuture().isDone());
+    }
+
+    @Test
+    public void testPriorityAdmission() throws Exception
+    {
+        CompletionStage<Void> result = pipeline.invokeAsync(
+                getRunData("Slow", mock(HttpServletResponse.class)), Runnable::run);
+
+        RunData anonymous = getRunData("Index", mock(HttpServletResponse.class));
+        RunData status = getRunData("Status", mock(HttpServletResponse.class));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            Future<?> first = executor.submit(() -> invoke(anonymous));
+            awaitWaiting(1);
+            Future<?> second = executor.submit(() -> invoke(status));
+            awaitWaiting(2);
+
+            gate.complete(null);
+            assertTrue(result.toCompletableFuture().isDone());
+
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of("Slow", "Status", "Index"), admitted);
+        assertEquals(2, valve.getQueuedCount());
+        assertEquals(0, valve.getInFlight());
+        assertEquals(0, valve.getShedCount());
+    }
+
+    @Test
+    public void testDispose() throws Exception
+    {
+        ObjectName on = new ObjectName("org.apache.turbine:type=ConcurrencyLimit,name="
+                + ObjectName.quote("test"));
+
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(on));
+        pipeline.dispose();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(on));
+    }
+
+    private Configuration conf()
+    {
+        return Turbine.getConfiguration().subset(TurbineConstants.PIPELINE_LIMITER_KEY);
+    }
+
+    private Void invoke(RunData data) throws Exception
+    {
+        pipeline.invoke(data);
+        return null;
+    }
+
+    private void awaitWaiting(int count) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (valve.getWaiting() < count && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+
+        assertEquals(count, valve.getWaiting());
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        tc.dispose();
+    }
+}
@@ -0,0 +1,79 @@
+package org.apache.turbine.pipeline;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * <code>AsyncValve</code> whose progress is controlled by a test. It
+ * records the pipeline data, optionally blocks while running and returns
+ * the configured stage to suspend the pipeline.
+ */
+public class ControlledAsyncValve implements AsyncValve
+{
+    /** The pipeline data of the last request */
+    public static volatile PipelineData pipelineData;
+
+    /** Counted down when the valve runs */
+    public static volatile CountDownLatch running;
+
+    /** Awaited by the valve before it returns, if set */
+    public static volatile CountDownLatch proceed;
+
+    /** The stage the valve suspends the pipeline on, if set */
+    public static volatile CompletionStage<?> stage;
+
+    /**
+     * Reset the controls
+     */
+    public static void reset()
+    {
+        pipelineData = null;
+        running = new CountDownLatch(1);
+        proceed = null;
+        stage = null;
+    }
+
+    /**
+     * @see org.apache.turbine.pipeline.AsyncValve#invokeAsync(PipelineData)
+     */
+    @Override
+    public CompletionStage<?> invokeAsync(PipelineData data)
+    {
+        pipelineData = data;
+        running.countDown();
+
+        CountDownLatch latch = proceed;
+        if (latch != null)
+        {
+            try
+            {
+                latch.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return stage;
+    }
+}
@@ -0,0 +1,139 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Vector;
+import java.util.concurrent.CompletionStage;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.apache.turbine.modules.actions.AsyncActionDoesNothing;
+import org.apache.turbine.modules.actions.VelocitySecureAsyncActionDenied;
+import org.apache.turbine.om.security.DefaultUserImpl;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.apache.turbine.util.uri.URIConstants;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests ExecuteAsyncActionValve.
+ */
+public class ExecuteAsyncActionValveTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+    private ServletConfig config = null;
+    private HttpServletRequest request = null;
+    private HttpServletResponse response = null;
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(
+                            ".",
+                            "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+    }
+
+    @BeforeEach
+    public void setUpBefore() throws Exception
+    {
+        config = mock(ServletConfig.class);
+        request = getMockRequest();
+        response = mock(HttpServletResponse.class);
+        ServletOutputStream sos = mock(ServletOutputStream.class);
+
+        when(response.getOutputStream()).thenReturn(sos);
+
+        Vector<String> v = new Vector<>();
+        v.add(URIConstants.CGI_TEMPLATE_PARAM);
+        when(request.getParameterNames()).thenReturn(v.elements());
+
+        when(request.getParameterValues(URIConstants.CGI_TEMPLATE_PARAM)).thenReturn(new String[] { "Index.vm" });
+    }
+
+    private RunData getRunData(Class<?> action) throws Exception
+    {
+        RunData runData = getRunData(request, response, config);
+        runData.setScreenTemplate("ExistPageWithLayout.vm");
+        User tu = new DefaultUserImpl(new TurbineUserImpl());
+        tu.setName("username");
+        tu.setHasLoggedIn(Boolean.TRUE);
+        runData.setAction(action.getSimpleName());
+        runData.setUser(tu);
+
+        return runData;
+    }
+
+    @Test public void testAsyncAction() throws Exception
+    {
+        RunData runData = getRunData(AsyncActionDoesNothing.class);
+
+        Pipeline pipeline = new TurbinePipeline();
+        pipeline.addValve(new ExecuteAsyncActionValve());
+        pipeline.initialize();
+
+        int numberOfCalls = AsyncActionDoesNothing.numberOfCalls;
+        CompletionStage<Void> result = pipeline.invokeAsync(runData, Runnable::run);
+        assertEquals(numberOfCalls + 1, AsyncActionDoesNothing.numberOfCalls, "Assert action was called");
+        assertFalse(runData.hasAction(), "Assert page does not execute the action again");
+        assertFalse(result.toCompletableFuture().isDone());
+
+        AsyncActionDoesNothing.stage.complete(null);
+        assertTrue(result.toCompletableFuture().isDone());
+    }
+
+    @Test public void testUnauthorizedSecureAsyncAction() throws Exception
+    {
+        RunData runData = getRunData(VelocitySecureAsyncActionDenied.class);
+
+        Pipeline pipeline = new TurbinePipeline();
+        pipeline.addValve(new ExecuteAsyncActionValve());
+        pipeline.initialize();
+
+        int numberOfCalls = VelocitySecureAsyncActionDenied.numberOfCalls;
+        int isAuthorizedCalls = VelocitySecureAsyncActionDenied.isAuthorizedCalls;
+        pipeline.invoke(runData);
+        assertEquals(isAuthorizedCalls + 1, VelocitySecureAsyncActionDenied.isAuthorizedCalls, "Assert authorization was called");
+        assertEquals(numberOfCalls, VelocitySecureAsyncActionDenied.numberOfCalls, "Assert action was rejected");
+        assertFalse(runData.hasAction());
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        tc.dispose();
+    }
+}
@@ -0,0 +1,99 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests GradientLimit and the admission of ConcurrencyLimitValve.
+ */
+public class GradientLimitTest
+{
+    @Test
+    public void testGrowsWithStableLatency()
+    {
+        GradientLimit limit = new GradientLimit(10, 1, 100);
+
+        for (int i = 0; i < 100; i++)
+        {
+            limit.onSample(1_000_000L, limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() > 10);
+        assertTrue(limit.getLimit() <= 100);
+    }
+
+    @Test
+    public void testShrinksWithRisingLatency()
+    {
+        GradientLimit limit = new GradientLimit(50, 1, 100);
+
+        for (int i = 0; i < 100; i++)
+        {
+            limit.onSample(1_000_000L, limit.getLimit(), false);
+        }
+
+        int stable = limit.getLimit();
+
+        for (int i = 0; i < 100; i++)
+        {
+            limit.onSample(20_000_000L, limit.getLimit(), false);
+        }
+
+        assertTrue(limit.getLimit() < stable);
+    }
+
+    @Test
+    public void testBackoffOnFailure()
+    {
+        GradientLimit limit = new GradientLimit(10, 5, 100);
+
+        limit.onSample(1_000_000L, 10, true);
+        assertEquals(9, limit.getLimit());
+
+        for (int i = 0; i < 20; i++)
+        {
+            limit.onSample(1_000_000L, 10, true);
+        }
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    public void testAdmission()
+    {
+        ConcurrencyLimitValve valve = new ConcurrencyLimitValve();
+
+        assertEquals(1, valve.acquire(ConcurrencyLimitValve.PRIORITY_ANONYMOUS));
+        assertEquals(2, valve.acquire(ConcurrencyLimitValve.PRIORITY_USER));
+        assertEquals(2, valve.getInFlight());
+
+        valve.release(1_000_000L, 2, false);
+        valve.release(1_000_000L, 1, false);
+
+        assertEquals(0, valve.getInFlight());
+        assertEquals(2, valve.getAdmittedCount());
+        assertEquals(0, valve.getShedCount());
+    }
+}
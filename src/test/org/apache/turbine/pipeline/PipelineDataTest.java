@@ -0,0 +1,107 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.turbine.pipeline.PipelineData.Key;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the typed keys of DefaultPipelineData and the map based API.
+ */
+public class PipelineDataTest
+{
+    private static final Key<String> NAME_KEY = Key.of(PipelineDataTest.class, String.class);
+
+    @Test
+    public void testKeys()
+    {
+        assertSame(NAME_KEY, Key.of(PipelineDataTest.class, String.class));
+        assertSame(NAME_KEY, Key.find(PipelineDataTest.class, String.class));
+        assertNull(Key.find(PipelineDataTest.class, Integer.class));
+    }
+
+    @Test
+    public void testTypedAndMapAccess()
+    {
+        DefaultPipelineData data = new DefaultPipelineData();
+
+        data.set(NAME_KEY, "foo");
+        assertEquals("foo", data.get(NAME_KEY));
+        assertEquals("foo", data.get(PipelineDataTest.class, String.class));
+        assertEquals("foo", data.get(PipelineDataTest.class).get(String.class));
+
+        data.get(PipelineDataTest.class).put(String.class, "bar");
+        assertEquals("bar", data.get(NAME_KEY));
+
+        data.get(PipelineDataTest.class).remove(String.class);
+        assertNull(data.get(NAME_KEY));
+        assertTrue(data.get(PipelineDataTest.class).isEmpty());
+    }
+
+    @Test
+    public void testPutMap()
+    {
+        DefaultPipelineData data = new DefaultPipelineData();
+        data.set(NAME_KEY, "foo");
+
+        Map<Class<?>, Object> map = new HashMap<>();
+        map.put(Long.class, Long.valueOf(42));
+        data.put(PipelineDataTest.class, map);
+
+        // The map replaces all values of the scope
+        assertNull(data.get(NAME_KEY));
+        assertEquals(Long.valueOf(42), data.get(PipelineDataTest.class, Long.class));
+        assertEquals(map, data.get(PipelineDataTest.class));
+
+        data.clear();
+        assertFalse(data.get(PipelineDataTest.class).containsKey(Long.class));
+    }
+
+    @Test
+    public void testKeyCreatedLater()
+    {
+        DefaultPipelineData data = new DefaultPipelineData();
+        Class<?>[] names = { Byte.class, Short.class, Integer.class, Long.class,
+                Float.class, Double.class, Character.class, Boolean.class,
+                Object.class, Number.class, Thread.class, Runnable.class,
+                Class.class, Void.class, Math.class, System.class, Runtime.class };
+
+        for (Class<?> name : names)
+        {
+            Key<Class<?>> key = Key.of(PipelineData.class, name);
+            data.set(key, name);
+        }
+
+        for (Class<?> name : names)
+        {
+            assertSame(name, data.get(PipelineData.class, name));
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.apache.turbine.pipeline;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests PipelineRoute.
+ */
+public class PipelineRouteTest
+{
+    @Test
+    public void testMatchesPath()
+    {
+        PipelineRoute route = new PipelineRoute("json", new TurbinePipeline(),
+                new String[] { "/json", "/api/" }, null);
+
+        assertTrue(route.matchesPath("/json/list"));
+        assertTrue(route.matchesPath("/api/item/1"));
+        assertFalse(route.matchesPath("/api"));
+        assertFalse(route.matchesPath(null));
+        assertFalse(route.hasScreens());
+        assertFalse(route.matchesScreen("JsonScreen"));
+    }
+
+    @Test
+    public void testMatchesScreen()
+    {
+        PipelineRoute route = new PipelineRoute("raw", new TurbinePipeline(),
+                null, new String[] { "JsonScreen" });
+
+        assertTrue(route.hasScreens());
+        assertTrue(route.matchesScreen("JsonScreen"));
+        assertFalse(route.matchesScreen("Index"));
+        assertFalse(route.matchesScreen(null));
+        assertFalse(route.matchesPath("/json"));
+    }
+}
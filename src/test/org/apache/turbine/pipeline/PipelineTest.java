@@ -24,6 +24,13 @@ package org.apache.turbine.pipeline;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.apache.turbine.util.TurbineException;
 
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
@@ -63,6 +70,230 @@ public class PipelineTest
         assertEquals("foobar", writer.toString());
     }
 
+    /**
+     * Tests a pipeline invoked from within a valve of another pipeline
+     * with the same pipeline data.
+     */
+    @Test public void testNestedPipeline() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        Pipeline inner = new TurbinePipeline();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("inner");
+        inner.addValve(valve);
+
+        Pipeline outer = new TurbinePipeline();
+        valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        outer.addValve(valve);
+        outer.addValve((data, context) -> {
+            inner.invoke(data);
+            context.invokeNext(data);
+        });
+        valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("bar");
+        outer.addValve(valve);
+
+        PipelineData pipelineData = new DefaultPipelineData();
+        outer.invoke(pipelineData);
+        assertEquals("fooinnerbar", writer.toString());
+
+        // The same pipeline data can be processed again
+        outer.invoke(pipelineData);
+        assertEquals("fooinnerbarfooinnerbar", writer.toString());
+    }
+
+    /**
+     * Tests a pipeline data implementation other than DefaultPipelineData
+     * continued through the pipeline as valve context.
+     */
+    @Test public void testForeignPipelineData() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        TurbinePipeline pipeline = new TurbinePipeline();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        pipeline.addValve(valve);
+        pipeline.addValve((data, context) -> pipeline.invokeNext(data));
+        valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("bar");
+        pipeline.addValve(valve);
+
+        Map<Class<?>, Map<Class<?>, ? super Object>> map = new HashMap<>();
+        PipelineData pipelineData = new PipelineData()
+        {
+            @Override
+            public void put(Class<?> name, Map<Class<?>, ? super Object> value)
+            {
+                map.put(name, value);
+            }
+
+            @Override
+            public Map<Class<?>, ? super Object> get(Class<?> name)
+            {
+                return map.get(name);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T get(Class<?> key, Class<T> innerKey)
+            {
+                Map<Class<?>, ? super Object> inner = map.get(key);
+                return inner == null ? null : (T) inner.get(innerKey);
+            }
+
+            @Override
+            public void close()
+            {
+                map.clear();
+            }
+        };
+
+        pipeline.invoke(pipelineData);
+        assertEquals("foobar", writer.toString());
+    }
+
+    /**
+     * Tests the per-valve statistics.
+     */
+    @Test public void testValveStatistics() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        TurbinePipeline pipeline = new TurbinePipeline();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        pipeline.addValve(valve);
+        pipeline.addValve((data, context) -> {
+            throw new TurbineException("fail");
+        });
+
+        // Statistics are off by default
+        assertThrows(TurbineException.class, () -> pipeline.invoke(new DefaultPipelineData()));
+        assertEquals(0, pipeline.getValveStatistics().get(0).getInvocationCount());
+
+        pipeline.setStatisticsEnabled(true);
+        assertThrows(TurbineException.class, () -> pipeline.invoke(new DefaultPipelineData()));
+        assertThrows(TurbineException.class, () -> pipeline.invoke(new DefaultPipelineData()));
+
+        List<ValveStatisticsSnapshot> stats = pipeline.getValveStatistics();
+        assertEquals(2, stats.size());
+        assertEquals(SimpleValve.class.getName(), stats.get(0).getValveName());
+        assertEquals(2, stats.get(0).getInvocationCount());
+        assertEquals(0, stats.get(0).getErrorCount(), "Error must be attributed to the throwing valve only");
+        assertEquals(2, stats.get(1).getInvocationCount());
+        assertEquals(2, stats.get(1).getErrorCount());
+        assertTrue(stats.get(0).getP99Time() <= stats.get(0).getMaxTime());
+
+        pipeline.resetStatistics();
+        assertEquals(0, pipeline.getValveStatistics().get(1).getInvocationCount());
+    }
+
+    /**
+     * Tests the span tree of a traced request.
+     */
+    @Test public void testRequestTrace() throws Exception
+    {
+        TurbinePipeline pipeline = new TurbinePipeline();
+        pipeline.setName("traced");
+        TraceSpan[] root = new TraceSpan[1];
+
+        pipeline.addValve((data, context) -> {
+            RequestTrace trace = ((DefaultPipelineData) data).getTrace();
+            root[0] = trace == null ? null : trace.getRoot();
+            try (TraceSpan span = RequestTrace.open(data, "screen", "Index"))
+            {
+                try (TraceSpan inner = RequestTrace.open(data, "velocity", "Index.vm"))
+                {
+                    // nothing to do
+                }
+            }
+            context.invokeNext(data);
+        });
+
+        // Tracing is off by default
+        DefaultPipelineData pipelineData = new DefaultPipelineData();
+        assertEquals(-1, pipeline.getTraceThreshold());
+        pipeline.invoke(pipelineData);
+        assertNull(root[0]);
+
+        pipeline.setTraceThreshold(0);
+        pipeline.invoke(pipelineData);
+        assertNull(pipelineData.getTrace(), "Trace must be detached after the request");
+
+        assertEquals("traced", root[0].getName());
+        assertTrue(root[0].getDuration() >= 0);
+        assertEquals(1, root[0].getChildren().size());
+
+        TraceSpan screen = root[0].getChildren().get(0);
+        assertEquals("screen", screen.getKind());
+        assertEquals("Index", screen.getName());
+        assertEquals("Index.vm", screen.getChildren().get(0).getName());
+        assertTrue(screen.getDuration() <= root[0].getDuration());
+    }
+
+    /**
+     * Tests suspending and resuming the pipeline on an async valve.
+     */
+    @Test public void testAsyncPipeline() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        Pipeline pipeline = new TurbinePipeline();
+        CompletableFuture<String> remote = new CompletableFuture<>();
+
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("foo");
+        pipeline.addValve(valve);
+        pipeline.addValve((AsyncValve) data -> remote.thenAccept(writer::write));
+        valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("bar");
+        pipeline.addValve(valve);
+
+        CompletionStage<Void> result = pipeline.invokeAsync(new DefaultPipelineData(), Runnable::run);
+        assertEquals("foo", writer.toString());
+        assertFalse(result.toCompletableFuture().isDone());
+
+        remote.complete("async");
+        assertTrue(result.toCompletableFuture().isDone());
+        assertEquals("fooasyncbar", writer.toString());
+
+        // Synchronous invocation waits for the valve
+        pipeline.invoke(new DefaultPipelineData());
+        assertEquals("fooasyncbarfooasyncbar", writer.toString());
+    }
+
+    /**
+     * Tests that a cancelled async pipeline does not resume.
+     */
+    @Test public void testAsyncPipelineCancelled() throws Exception
+    {
+        StringWriter writer = new StringWriter();
+        Pipeline pipeline = new TurbinePipeline();
+        CompletableFuture<String> remote = new CompletableFuture<>();
+
+        pipeline.addValve((AsyncValve) data -> remote.thenAccept(writer::write));
+        SimpleValve valve = new SimpleValve();
+        valve.setWriter(writer);
+        valve.setValue("bar");
+        pipeline.addValve(valve);
+
+        CompletionStage<Void> result = pipeline.invokeAsync(new DefaultPipelineData(), Runnable::run);
+        assertTrue(result.toCompletableFuture().cancel(false));
+
+        remote.complete("async");
+        assertEquals("async", writer.toString());
+    }
+
     /**
      * Tests the Pipeline throughput.
      */
@@ -0,0 +1,97 @@
+package org.apache.turbine.services.assemblerbroker;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.apache.turbine.modules.Assembler;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the assembler cache.
+ */
+public class AssemblerCacheTest
+{
+    @Test
+    public void testHitsAndMisses()
+    {
+        AssemblerCache cache = new AssemblerCache(10);
+        Assembler a = new Assembler() {};
+        Assembler b = new Assembler() {};
+
+        assertNull(cache.get("a"));
+        assertSame(a, cache.putIfAbsent("a", a));
+        assertSame(a, cache.putIfAbsent("a", b));
+        assertSame(a, cache.get("a"));
+
+        assertEquals(1, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentEntriesSurvive()
+    {
+        AssemblerCache cache = new AssemblerCache(4);
+
+        for (int i = 0; i < 3; i++)
+        {
+            cache.putIfAbsent("hot" + i, new Assembler() {});
+        }
+
+        for (int i = 0; i < 100; i++)
+        {
+            for (int j = 0; j < 3; j++)
+            {
+                assertNotNull(cache.get("hot" + j));
+            }
+
+            cache.putIfAbsent("random" + i, new Assembler() {});
+        }
+
+        assertEquals(4, cache.getSize());
+        assertEquals(99, cache.getEvictionCount());
+
+        for (int j = 0; j < 3; j++)
+        {
+            assertNotNull(cache.get("hot" + j));
+        }
+    }
+
+    @Test
+    public void testUnbounded()
+    {
+        AssemblerCache cache = new AssemblerCache(4, 0);
+
+        for (int i = 0; i < 100; i++)
+        {
+            cache.putIfAbsent("module" + i, new Assembler() {});
+        }
+
+        assertEquals(100, cache.getSize());
+        assertEquals(0, cache.getMaximumSize());
+        assertEquals(0, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.turbine.services.assemblerbroker.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.apache.turbine.modules.Action;
+import org.apache.turbine.modules.Screen;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests reading the build-time module index.
+ */
+public class ModuleIndexTest
+{
+    @Test
+    public void testRead() throws Exception
+    {
+        ModuleIndex index = ModuleIndex.load(getClass().getClassLoader());
+        assertTrue(index.isEmpty());
+
+        index.read(new StringReader(
+                "# comment\n"
+                + "root com.example.modules\n"
+                + "\n"
+                + "org.apache.turbine.modules.Screen com.example.modules.screens.Index\n"
+                + "org.apache.turbine.modules.Screen com.example.modules.screens.admin.Users\n"
+                + "malformed\n"));
+
+        assertFalse(index.isEmpty());
+        assertTrue(index.covers("com.example.modules"));
+        assertFalse(index.covers("org.apache.turbine.modules"));
+        assertTrue(index.contains(Screen.class, "com.example.modules.screens.Index"));
+        assertFalse(index.contains(Action.class, "com.example.modules.screens.Index"));
+        assertFalse(index.contains(Screen.class, "com.example.modules.screens.Login"));
+
+        assertEquals(new TreeSet<>(Arrays.asList("Index", "admin.Users")),
+                index.getModuleNames(Screen.class, Screen.PREFIX));
+        assertTrue(index.getModuleNames(Action.class, Action.PREFIX).isEmpty());
+    }
+}
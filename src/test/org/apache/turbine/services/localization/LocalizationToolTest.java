@@ -21,6 +21,7 @@ package org.apache.turbine.services.localization;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 
@@ -103,6 +104,21 @@ public class LocalizationToolTest extends BaseTestCase
         assertNull(lt.getLocale());
     }
 
+    @Test
+    public void testBind() throws Exception
+    {
+        LocalizationTool shared = new LocalizationTool();
+        AnnotationProcessor.process(shared);
+        shared.init(null);
+        assertNull(shared.getLocale());
+
+        LocalizationTool bound = (LocalizationTool) shared.bind(getRunData());
+        assertNotSame(shared, bound);
+        assertEquals("US", bound.getLocale().getCountry());
+        assertEquals("value1", bound.get("key1"));
+        assertNull(shared.getLocale());
+    }
+
     private RunData getRunData() throws Exception
     {
         RunDataService rds = (RunDataService) TurbineServices.getInstance().getService(RunDataService.SERVICE_NAME);
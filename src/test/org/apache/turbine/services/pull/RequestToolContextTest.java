@@ -0,0 +1,87 @@
+package org.apache.turbine.services.pull;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.velocity.VelocityContext;
+import org.junit.Test;
+
+/**
+ * Test class for RequestToolContext.
+ */
+public class RequestToolContextTest
+{
+    private final List<String> created = new ArrayList<>();
+
+    private final Object data = new Object();
+
+    private RequestToolContext newContext()
+    {
+        VelocityContext global = new VelocityContext();
+        global.put("ui", "global");
+
+        return new RequestToolContext(global, (name, d) ->
+        {
+            assertSame(data, d);
+            created.add(name);
+            return name + "Tool";
+        }, Set.of("link", "page", "content"));
+    }
+
+    @Test public void testCreatedOnFirstAccess()
+    {
+        RequestToolContext context = newContext();
+        assertNull(context.get("link"));
+
+        context.bind(data);
+        assertTrue(context.containsKey("page"));
+        assertTrue(created.isEmpty());
+
+        assertEquals("linkTool", context.get("link"));
+        assertEquals("linkTool", context.get("link"));
+        assertEquals("global", context.get("ui"));
+        assertEquals(List.of("link"), created);
+    }
+
+    @Test public void testOnlyCreatedToolsReleased()
+    {
+        RequestToolContext context = newContext();
+        context.bind(data);
+
+        context.get("page");
+        context.put("content", "value");
+
+        assertEquals(Map.of("page", "pageTool"), context.unbind());
+        assertFalse(context.containsKey("page"));
+        assertEquals("value", context.get("content"));
+        assertNull(context.get("link"));
+        assertEquals(List.of("page"), created);
+    }
+}
@@ -0,0 +1,189 @@
+package org.apache.turbine.services.pull;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.apache.turbine.Turbine;
+import org.apache.turbine.annotation.TurbineSharedTool;
+import org.apache.turbine.om.security.DefaultUserImpl;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the shared request tools of TurbinePullService.
+ */
+public class TurbinePullServiceTest extends BaseTestCase
+{
+    private static final String TOOL_KEY = PullService.REQUEST_TOOL + ".counting";
+
+    private static final String LAZY_KEY = "services." + PullService.SERVICE_NAME
+            + "." + PullService.TOOLS_REQUEST_LAZY_KEY;
+
+    private static TurbineConfig tc = null;
+
+    private TurbinePullService pullService = null;
+
+    /**
+     * A shared tool counting how often it is bound to a request
+     */
+    @TurbineSharedTool
+    public static class CountingTool implements SharedApplicationTool
+    {
+        static final AtomicInteger binds = new AtomicInteger();
+
+        @Override
+        public void init(Object data)
+        {
+            // empty
+        }
+
+        @Override
+        public void refresh()
+        {
+            // empty
+        }
+
+        @Override
+        public Object bind(PipelineData pipelineData)
+        {
+            binds.incrementAndGet();
+            return pipelineData;
+        }
+    }
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(
+                            ".",
+                            "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+    }
+
+    private TurbinePullService createPullService(boolean lazy) throws Exception
+    {
+        Turbine.getConfiguration().setProperty(TOOL_KEY, CountingTool.class.getName());
+        Turbine.getConfiguration().setProperty(LAZY_KEY, Boolean.valueOf(lazy));
+
+        pullService = new TurbinePullService();
+        pullService.setServiceBroker(TurbineServices.getInstance());
+        pullService.setName(PullService.SERVICE_NAME);
+        pullService.init();
+        return pullService;
+    }
+
+    private RunData getRunData() throws Exception
+    {
+        RunData runData = getRunData(getMockRequest(), mock(HttpServletResponse.class), mock(ServletConfig.class));
+        User user = new DefaultUserImpl(new TurbineUserImpl());
+        user.setName("username");
+        runData.setUser(user);
+        return runData;
+    }
+
+    @Test
+    public void testSharedTools() throws Exception
+    {
+        createPullService(false);
+        int binds = CountingTool.binds.get();
+
+        RunData first = getRunData();
+        Context firstContext = pullService.getRequestContext();
+        pullService.populateContext(firstContext, first);
+        assertEquals(binds + 1, CountingTool.binds.get());
+        assertSame(first, firstContext.get("counting"));
+
+        RunData second = getRunData();
+        Context secondContext = pullService.getRequestContext();
+        pullService.populateContext(secondContext, second);
+        assertSame(second, secondContext.get("counting"));
+
+        // shared, but bound to each request
+        assertNotSame(firstContext.get("l10n"), secondContext.get("l10n"));
+        assertNotSame(firstContext.get("content"), secondContext.get("content"));
+        // shared and not bound
+        assertSame(firstContext.get("dateFormatter"), secondContext.get("dateFormatter"));
+
+        pullService.releaseTools(firstContext);
+        pullService.releaseTools(secondContext);
+    }
+
+    @Test
+    public void testLazySharedTools() throws Exception
+    {
+        createPullService(true);
+        int binds = CountingTool.binds.get();
+
+        RunData runData = getRunData();
+        Context context = pullService.getRequestContext();
+        assertTrue(context instanceof RequestToolContext);
+
+        pullService.populateContext(context, runData);
+        assertTrue(context.containsKey("counting"));
+        assertEquals(binds, CountingTool.binds.get(), "Shared tool must be bound on access");
+
+        assertSame(runData, context.get("counting"));
+        assertSame(runData, context.get("counting"));
+        assertEquals(binds + 1, CountingTool.binds.get());
+
+        pullService.releaseTools(context);
+        assertNull(context.get("counting"));
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        if (pullService != null)
+        {
+            pullService.shutdown();
+            pullService = null;
+        }
+
+        Turbine.getConfiguration().clearProperty(TOOL_KEY);
+        Turbine.getConfiguration().clearProperty(LAZY_KEY);
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        tc.dispose();
+    }
+}
@@ -21,11 +21,22 @@ package org.apache.turbine.services.rundata;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.fulcrum.parser.CookieParser;
+import org.apache.fulcrum.parser.ParameterParser;
 import org.apache.turbine.Turbine;
 import org.apache.turbine.TurbineConstants;
+import org.apache.turbine.services.TurbineServices;
 import org.apache.turbine.test.BaseTestCase;
 import org.apache.turbine.util.LocaleUtils;
+import org.apache.turbine.util.RunData;
 import org.apache.turbine.util.TurbineConfig;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -47,6 +58,27 @@ public class DefaultTurbineRunDataTest extends BaseTestCase
         assertEquals("ISO-8859-1", LocaleUtils.getDefaultCharset().name());
     }
 
+    @Test public void testLazyComponents() throws Exception
+    {
+        RunData data = getRunData(getMockRequest(), mock(HttpServletResponse.class),
+                mock(ServletConfig.class));
+
+        // Iterating the view does not create values
+        assertFalse(data.get(Turbine.class).keySet().contains(ParameterParser.class));
+        assertFalse(data.get(Turbine.class).keySet().contains(CookieParser.class));
+
+        assertNotNull(data.getParameters());
+        assertTrue(data.get(Turbine.class).keySet().contains(ParameterParser.class));
+        assertFalse(data.get(Turbine.class).keySet().contains(CookieParser.class));
+        assertEquals(data.getLocale(), data.getParameters().getLocale());
+        assertNotNull(data.getServerData());
+
+        RunDataService rds = (RunDataService) TurbineServices.getInstance()
+                .getService(RunDataService.SERVICE_NAME);
+        rds.putRunData(data);
+        assertFalse(data.get(Turbine.class).keySet().contains(ParameterParser.class));
+    }
+
     @BeforeClass
     public static void setUp() throws Exception
     {
@@ -0,0 +1,156 @@
+package org.apache.turbine.services.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the in-memory template index.
+ */
+public class TemplateIndexTest
+{
+    @Test
+    public void testExists()
+    {
+        TemplateIndex index = new TemplateIndex("src/templates/test", "src/templates/missing");
+
+        assertTrue(index.exists("screens/ExistPage.vm"));
+        assertTrue(index.exists("screens/existing/Page.vm"));
+        assertTrue(index.exists("/screens//existing/Page.vm"));
+        assertTrue(index.exists("layouts/existing"));
+        assertFalse(index.exists("screens/NoSuchPage.vm"));
+        assertEquals(0, index.indexOf("layouts/ExistPageWithLayout.vm"));
+        assertEquals(-1, index.indexOf("layouts/NoSuchLayout.vm"));
+    }
+
+    @Test
+    public void testSymbolicLinks() throws Exception
+    {
+        Path root = Files.createTempDirectory("templates");
+        Path shared = Files.createTempDirectory("shared");
+
+        try
+        {
+            Files.createFile(shared.resolve("Shared.vm"));
+            Files.createDirectories(root.resolve("screens"));
+
+            try
+            {
+                Files.createSymbolicLink(root.resolve("screens/shared"), shared);
+                // a cycle back to the root
+                Files.createSymbolicLink(shared.resolve("loop"), root);
+            }
+            catch (UnsupportedOperationException | IOException e)
+            {
+                assumeTrue(false, "Symbolic links not supported");
+            }
+
+            TemplateIndex index = new TemplateIndex(root.toString());
+            assertTrue(index.exists("screens/shared/Shared.vm"));
+            assertTrue(index.exists("screens/shared/loop"));
+        }
+        finally
+        {
+            Files.deleteIfExists(shared.resolve("loop"));
+            Files.deleteIfExists(shared.resolve("Shared.vm"));
+            Files.deleteIfExists(shared);
+            Files.deleteIfExists(root.resolve("screens/shared"));
+            Files.deleteIfExists(root.resolve("screens"));
+            Files.deleteIfExists(root);
+        }
+    }
+
+    @Test
+    public void testCase() throws Exception
+    {
+        Path root = Files.createTempDirectory("templates");
+
+        try
+        {
+            Files.createDirectories(root.resolve("screens"));
+            Files.createFile(root.resolve("screens/Page.vm"));
+
+            TemplateIndex index = new TemplateIndex(root.toString());
+            assertTrue(index.exists("screens/Page.vm"));
+
+            // same as the file system
+            assertEquals(Files.exists(root.resolve("SCREENS/page.VM")), index.exists("SCREENS/page.VM"));
+        }
+        finally
+        {
+            Files.deleteIfExists(root.resolve("screens/Page.vm"));
+            Files.deleteIfExists(root.resolve("screens"));
+            Files.deleteIfExists(root);
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception
+    {
+        Path root = Files.createTempDirectory("templates");
+
+        try (TemplateIndex index = new TemplateIndex(root.toString()))
+        {
+            index.watch();
+            assertFalse(index.exists("screens/New.vm"));
+
+            Files.createDirectories(root.resolve("screens"));
+            Files.createFile(root.resolve("screens/New.vm"));
+            assertTrue(await(index, "screens/New.vm", true));
+
+            Files.delete(root.resolve("screens/New.vm"));
+            assertTrue(await(index, "screens/New.vm", false));
+        }
+        finally
+        {
+            Files.deleteIfExists(root.resolve("screens/New.vm"));
+            Files.deleteIfExists(root.resolve("screens"));
+            Files.deleteIfExists(root);
+        }
+    }
+
+    /**
+     * The watch service may deliver events with some delay (polling on some platforms)
+     */
+    private static boolean await(TemplateIndex index, String template, boolean exists)
+        throws InterruptedException
+    {
+        for (int i = 0; i < 300; i++)
+        {
+            if (index.exists(template) == exists)
+            {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+
+        return false;
+    }
+}
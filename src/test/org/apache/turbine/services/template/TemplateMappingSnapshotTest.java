@@ -0,0 +1,70 @@
+package org.apache.turbine.services.template;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests reading and writing template mapping snapshots.
+ */
+public class TemplateMappingSnapshotTest
+{
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        File file = File.createTempFile("mappings", ".snapshot");
+
+        try
+        {
+            TemplateMappingSnapshot snapshot = new TemplateMappingSnapshot("abc", TurbineTemplateService.TEMPLATE_TYPES);
+            snapshot.put(TurbineTemplateService.SCREEN_KEY, "admin,Index.vm", "VelocityScreen");
+            snapshot.put(TurbineTemplateService.LAYOUT_TEMPLATE_KEY, "admin,Index.vm", "admin/Default.vm");
+            snapshot.write(file);
+
+            TemplateMappingSnapshot read = TemplateMappingSnapshot.read(file);
+            assertEquals("abc", read.getHash());
+            assertEquals(2, read.size());
+            assertEquals("VelocityScreen", read.getMappings(TurbineTemplateService.SCREEN_KEY).get("admin,Index.vm"));
+            assertEquals("admin/Default.vm", read.getMappings(TurbineTemplateService.LAYOUT_TEMPLATE_KEY).get("admin,Index.vm"));
+            assertEquals(0, read.getMappings(TurbineTemplateService.PAGE_KEY).size());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testHash()
+    {
+        String hash = TemplateMappingSnapshot.hash(Arrays.asList("template:screens/Index.vm"));
+
+        assertEquals(hash, TemplateMappingSnapshot.hash(Arrays.asList("template:screens/Index.vm")));
+        assertNotEquals(hash, TemplateMappingSnapshot.hash(Arrays.asList("template:screens/Other.vm")));
+        assertEquals(64, hash.length());
+    }
+}
@@ -0,0 +1,129 @@
+package org.apache.turbine.services.template.mapper;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the template mapping cache shared by the mappers.
+ */
+public class MapperCacheTest
+{
+    @Test
+    public void testRegionsAreSeparate()
+    {
+        MapperCache cache = new MapperCache(10);
+        MapperCache.Region screens = cache.getRegion("screen");
+        MapperCache.Region layouts = cache.getRegion("layout");
+
+        screens.put("Index.vm", "screens.Index");
+        layouts.put("Index.vm", "layouts.Default");
+
+        assertEquals("screens.Index", screens.get("Index.vm"));
+        assertEquals("layouts.Default", layouts.get("Index.vm"));
+        assertNull(screens.get("Other.vm"));
+
+        assertEquals(1, screens.getHitCount());
+        assertEquals(1, screens.getMissCount());
+        assertEquals(1, layouts.getHitCount());
+        assertEquals(0, layouts.getMissCount());
+    }
+
+    @Test
+    public void testCapacityIsShared()
+    {
+        MapperCache cache = new MapperCache(4);
+        MapperCache.Region screens = cache.getRegion("screen");
+        MapperCache.Region layouts = cache.getRegion("layout");
+
+        screens.put("A.vm", "A");
+        screens.put("B.vm", "B");
+        layouts.put("A.vm", "A");
+        layouts.put("B.vm", "B");
+
+        // keep the screen mappings hot
+        screens.get("A.vm");
+        screens.get("B.vm");
+
+        layouts.put("C.vm", "C");
+        layouts.put("D.vm", "D");
+
+        assertEquals(2, screens.getSize());
+        assertEquals(2, layouts.getSize());
+        assertEquals(0, screens.getEvictionCount());
+        assertEquals(2, layouts.getEvictionCount());
+        assertEquals("C", layouts.get("C.vm"));
+        assertEquals("D", layouts.get("D.vm"));
+    }
+
+    @Test
+    public void testClear()
+    {
+        MapperCache cache = new MapperCache(2);
+        MapperCache.Region screens = cache.getRegion("screen");
+        MapperCache.Region layouts = cache.getRegion("layout");
+
+        screens.put("A.vm", "A");
+        layouts.put("A.vm", "A");
+
+        screens.clear();
+        assertEquals(0, screens.getSize());
+        assertEquals(1, layouts.getSize());
+
+        // the slot of the cleared entry is reused without eviction
+        screens.put("B.vm", "B");
+        assertEquals(0, layouts.getEvictionCount());
+        assertEquals("A", layouts.get("A.vm"));
+
+        cache.clear();
+        assertEquals(0, screens.getSize());
+        assertEquals(0, layouts.getSize());
+    }
+
+    @Test
+    public void testEnsureCapacity()
+    {
+        MapperCache cache = new MapperCache(2);
+        MapperCache.Region screens = cache.getRegion("screen");
+
+        screens.put("A.vm", "A");
+        screens.put("B.vm", "B");
+
+        cache.ensureCapacity(10);
+        assertEquals(10, cache.getMaximumSize());
+
+        for (int i = 0; i < 8; i++)
+        {
+            screens.put(i + ".vm", String.valueOf(i));
+        }
+
+        assertEquals(10, cache.size());
+        assertEquals(0, screens.getEvictionCount());
+        assertEquals("A", screens.get("A.vm"));
+
+        // never shrinks
+        cache.ensureCapacity(4);
+        assertEquals(10, cache.getMaximumSize());
+    }
+}
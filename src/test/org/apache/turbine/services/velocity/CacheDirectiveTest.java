@@ -0,0 +1,171 @@
+package org.apache.turbine.services.velocity;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.RunData;
+import org.apache.turbine.util.TurbineConfig;
+import org.apache.turbine.util.template.OutputCache;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.app.VelocityEngine;
+import org.apache.velocity.exception.VelocityException;
+import org.apache.velocity.runtime.RuntimeConstants;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the <code>#cache</code> directive.
+ */
+public class CacheDirectiveTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+
+    private static VelocityEngine engine = null;
+
+    private static final String TEMPLATE = "a#cache(\"cached\" 60)$counter.incrementAndGet()#{end}b";
+
+    private static final String VARY_TEMPLATE = "#cache(\"item\" 60 \"id\")$counter.incrementAndGet()#end";
+
+    private String render(VelocityContext context)
+    {
+        return render(context, TEMPLATE);
+    }
+
+    private String render(VelocityContext context, String template)
+    {
+        StringWriter writer = new StringWriter();
+        engine.evaluate(context, writer, "test", template);
+        return writer.toString();
+    }
+
+    private RunData getRunData(String id) throws Exception
+    {
+        HttpServletRequest request = getMockRequest();
+        Vector<String> names = new Vector<>();
+        names.add("id");
+        when(request.getParameterNames()).thenReturn(names.elements());
+        when(request.getParameterValues("id")).thenReturn(new String[] { id });
+
+        return getRunData(request, mock(HttpServletResponse.class), mock(ServletConfig.class));
+    }
+
+    private VelocityContext getContext(AtomicInteger counter, String id) throws Exception
+    {
+        VelocityContext context = new VelocityContext();
+        context.put("counter", counter);
+        context.put(VelocityService.PIPELINEDATA_KEY, getRunData(id));
+        return context;
+    }
+
+    @Test public void testBodySkippedOnHit() throws Exception
+    {
+        AtomicInteger counter = new AtomicInteger();
+        VelocityContext context = new VelocityContext();
+        context.put("counter", counter);
+
+        assertEquals("a1b", render(context));
+        assertEquals("a1b", render(context));
+        assertEquals(1, counter.get());
+
+        OutputCache.getInstance().invalidate("cached");
+        assertEquals("a2b", render(context));
+        assertEquals(2, counter.get());
+    }
+
+    @Test public void testVary() throws Exception
+    {
+        AtomicInteger counter = new AtomicInteger();
+
+        assertEquals("1", render(getContext(counter, "1"), VARY_TEMPLATE));
+        assertEquals("1", render(getContext(counter, "1"), VARY_TEMPLATE));
+        assertEquals("2", render(getContext(counter, "2"), VARY_TEMPLATE));
+        assertEquals("1", render(getContext(counter, "1"), VARY_TEMPLATE));
+        assertEquals(2, counter.get());
+    }
+
+    @Test public void testVaryWithoutPipelineData() throws Exception
+    {
+        AtomicInteger counter = new AtomicInteger();
+        VelocityContext context = new VelocityContext();
+        context.put("counter", counter);
+
+        // the variants cannot be told apart, so nothing is cached
+        assertEquals("1", render(context, VARY_TEMPLATE));
+        assertEquals("2", render(context, VARY_TEMPLATE));
+    }
+
+    @Test(expected = VelocityException.class)
+    public void testInvalidTimeToLive() throws Exception
+    {
+        VelocityContext context = new VelocityContext();
+        context.put("counter", new AtomicInteger());
+
+        render(context, "#cache(\"invalid\" \"soon\")$counter.incrementAndGet()#end");
+    }
+
+    @Test public void testRegisteredWithVelocityService() throws Exception
+    {
+        VelocityService velocityService = (VelocityService) TurbineServices.getInstance()
+                .getService(VelocityService.SERVICE_NAME);
+        AtomicInteger counter = new AtomicInteger();
+        VelocityContext context = new VelocityContext();
+        context.put("counter", counter);
+
+        assertEquals("a1b", velocityService.handleRequest(context, "screens/CachedFragment.vm"));
+        assertEquals("a1b", velocityService.handleRequest(context, "screens/CachedFragment.vm"));
+        assertEquals(1, counter.get());
+    }
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        tc = new TurbineConfig(".", "/conf/test/CompleteTurbineResources.properties");
+        tc.initialize();
+
+        engine = new VelocityEngine();
+        engine.addProperty(RuntimeConstants.CUSTOM_DIRECTIVES, CacheDirective.class.getName());
+        engine.init();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception
+    {
+        OutputCache.getInstance().invalidateAll();
+
+        if (tc != null)
+        {
+            tc.dispose();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.apache.turbine.util;
+
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.fulcrum.security.model.turbine.entity.impl.TurbineUserImpl;
+import org.apache.turbine.om.security.DefaultUserImpl;
+import org.apache.turbine.om.security.User;
+import org.apache.turbine.pipeline.PipelineData;
+import org.apache.turbine.pipeline.Valve;
+import org.apache.turbine.pipeline.ValveContext;
+import org.apache.turbine.services.BaseInitable;
+import org.apache.turbine.services.BaseInitableBroker;
+import org.apache.turbine.services.InitableBroker;
+import org.apache.turbine.services.TurbineServices;
+import org.apache.turbine.services.pull.PullService;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.velocity.VelocityContext;
+import org.apache.velocity.context.Context;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs requests concurrently through the Turbine servlet in async mode.
+ * The pipeline passes the concurrency limit valve and then uses the pull
+ * service and the initable broker. On JVMs with virtual threads the
+ * servlet runs the pipeline on virtual threads and the test verifies
+ * with the JFR event <code>jdk.VirtualThreadPinned</code> that the locks
+ * on these paths do not pin the carrier thread. On older JVMs the same
+ * requests run on the calling platform threads.
+ */
+public class VirtualThreadPinningTest extends BaseTestCase
+{
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private static final int TASKS = 64;
+
+    private static final int SESSIONS = 8;
+
+    private static TurbineConfig tc = null;
+
+    /**
+     * An Initable blocking during its initialization, like a service
+     * doing I/O.
+     */
+    public static class SlowInitable extends BaseInitable
+    {
+        static final AtomicInteger numberOfInits = new AtomicInteger();
+
+        @Override
+        public void init()
+        {
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            numberOfInits.incrementAndGet();
+            setInit(true);
+        }
+    }
+
+    /**
+     * The valve of the test pipeline, it gets an initable, populates a
+     * context with the pull tools and generates an identifier.
+     */
+    public static class PinningValve implements Valve
+    {
+        static final InitableBroker broker = new BaseInitableBroker()
+        {
+            // empty
+        };
+        static final Set<String> ids = ConcurrentHashMap.newKeySet();
+        static final Queue<Context> contexts = new ConcurrentLinkedQueue<>();
+        static volatile User user;
+
+        @Override
+        public void invoke(PipelineData pipelineData, ValveContext context)
+            throws IOException, TurbineException
+        {
+            try
+            {
+                broker.getInitable(SlowInitable.class.getName());
+            }
+            catch (InstantiationException e)
+            {
+                throw new TurbineException(e);
+            }
+
+            pipelineData.getRunData().setUser(user);
+
+            PullService pullService = (PullService) TurbineServices.getInstance()
+                    .getService(PullService.SERVICE_NAME);
+            Context velocityContext = new VelocityContext();
+            pullService.populateContext(velocityContext, pipelineData);
+            contexts.add(velocityContext);
+            ids.add(GenerateUniqueId.getIdentifier());
+
+            context.invokeNext(pipelineData);
+        }
+    }
+
+    @BeforeAll
+    public static void init()
+    {
+        tc = new TurbineConfig(".", VirtualThreads.isSupported()
+                ? "/conf/test/VirtualThreadTurbineResources.properties"
+                : "/conf/test/PinningTurbineResources.properties");
+        tc.initialize();
+    }
+
+    @Test
+    public void testNoPinning() throws Exception
+    {
+        // the session mocks of concurrent requests share this map
+        attributes = new ConcurrentHashMap<>();
+
+        User user = new DefaultUserImpl(new TurbineUserImpl());
+        user.setName("username");
+        PinningValve.user = user;
+
+        // mocks are set up before they are used concurrently
+        CountDownLatch completed = new CountDownLatch(TASKS);
+        List<HttpServletRequest> requests = new ArrayList<>();
+        List<HttpServletResponse> responses = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++)
+        {
+            HttpServletRequest request = getMockRequest();
+            HttpServletResponse response = mock(HttpServletResponse.class);
+            AsyncContext asyncContext = mock(AsyncContext.class);
+
+            when(request.getSession().getId()).thenReturn("session" + (i % SESSIONS));
+            when(request.isAsyncSupported()).thenReturn(true);
+            when(request.startAsync(request, response)).thenReturn(asyncContext);
+            when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+            when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+            doAnswer(invocation ->
+            {
+                completed.countDown();
+                return null;
+            }).when(asyncContext).complete();
+
+            requests.add(request);
+            responses.add(response);
+        }
+
+        boolean virtual = VirtualThreads.isSupported() && isPinnedEventAvailable();
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        Path dump = Files.createTempFile("pinning", ".jfr");
+
+        try (Recording recording = new Recording())
+        {
+            if (virtual)
+            {
+                recording.enable(PINNED_EVENT).withThreshold(Duration.ZERO);
+                recording.start();
+            }
+
+            // the container threads
+            ExecutorService executor = Executors.newFixedThreadPool(SESSIONS);
+            for (int i = 0; i < TASKS; i++)
+            {
+                HttpServletRequest request = requests.get(i);
+                HttpServletResponse response = responses.get(i);
+
+                executor.execute(() ->
+                {
+                    try
+                    {
+                        tc.getTurbine().doGet(request, response);
+                    }
+                    catch (Throwable t)
+                    {
+                        errors.add(t);
+                    }
+                });
+            }
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+            assertTrue(completed.await(1, TimeUnit.MINUTES), "Requests must complete");
+
+            if (virtual)
+            {
+                recording.stop();
+                recording.dump(dump);
+            }
+        }
+
+        try
+        {
+            assertTrue(errors.isEmpty(), "Requests failed: " + errors);
+            assertEquals(1, SlowInitable.numberOfInits.get(), "Initable must be initialized once");
+            assertEquals(TASKS, PinningValve.ids.size(), "Identifiers must be unique");
+            assertEquals(TASKS, PinningValve.contexts.size(), "Requests must pass the concurrency limit");
+            for (Context context : PinningValve.contexts)
+            {
+                assertNotNull(context.get("sessionData"), "Session tool must be in the context");
+            }
+
+            if (virtual)
+            {
+                List<RecordedEvent> pinned = RecordingFile.readAllEvents(dump).stream()
+                        .filter(e -> PINNED_EVENT.equals(e.getEventType().getName()))
+                        .collect(Collectors.toList());
+
+                assertEquals(0, pinned.size(), "Virtual threads were pinned: " + pinned);
+            }
+        }
+        finally
+        {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    /**
+     * @return true if the JVM knows the JFR pinning event
+     */
+    private static boolean isPinnedEventAvailable()
+    {
+        for (EventType type : FlightRecorder.getFlightRecorder().getEventTypes())
+        {
+            if (PINNED_EVENT.equals(type.getName()))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @AfterAll
+    public static void destroy()
+    {
+        tc.dispose();
+    }
+}
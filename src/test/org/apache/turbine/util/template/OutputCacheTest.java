@@ -0,0 +1,157 @@
+package org.apache.turbine.util.template;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.turbine.annotation.TurbineOutputCache;
+import org.apache.turbine.test.BaseTestCase;
+import org.apache.turbine.util.TurbineConfig;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests caching of rendered output in the Fulcrum cache component.
+ */
+public class OutputCacheTest extends BaseTestCase
+{
+    private static TurbineConfig tc = null;
+
+    @TurbineOutputCache( ttl = 60, tags = "news" )
+    private static class CachedScreen
+    {
+        // only carries the annotation
+    }
+
+    private final TurbineOutputCache config = CachedScreen.class.getAnnotation(TurbineOutputCache.class);
+
+    @Test public void testInvalidate() throws Exception
+    {
+        AtomicInteger renders = new AtomicInteger();
+        Callable<byte[]> renderer = () ->
+        {
+            renders.incrementAndGet();
+            return "content".getBytes(StandardCharsets.UTF_8);
+        };
+
+        OutputCache cache = OutputCache.getInstance();
+        assertArrayEquals("content".getBytes(StandardCharsets.UTF_8), cache.getOrRender("invalidate", config, renderer));
+        cache.getOrRender("invalidate", config, renderer);
+        assertEquals(1, renders.get());
+
+        cache.invalidate("news");
+        cache.getOrRender("invalidate", config, renderer);
+        assertEquals(2, renders.get());
+    }
+
+    @Test public void testRenderedOnce() throws Exception
+    {
+        AtomicInteger renders = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<byte[]> renderer = () ->
+        {
+            renders.incrementAndGet();
+            Thread.sleep(500);
+            return "slow".getBytes(StandardCharsets.UTF_8);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<byte[]>> results = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++)
+        {
+            results.add(executor.submit(() ->
+            {
+                start.await();
+                return OutputCache.getInstance().getOrRender("once", config, renderer);
+            }));
+        }
+
+        start.countDown();
+
+        for (Future<byte[]> result : results)
+        {
+            assertArrayEquals("slow".getBytes(StandardCharsets.UTF_8), result.get());
+        }
+
+        executor.shutdown();
+        assertEquals(1, renders.get());
+    }
+
+    @Test public void testInvalidateWhileRendering() throws Exception
+    {
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        Callable<byte[]> stale = () ->
+        {
+            rendering.countDown();
+            proceed.await();
+            return "stale".getBytes(StandardCharsets.UTF_8);
+        };
+        Callable<byte[]> fresh = () -> "fresh".getBytes(StandardCharsets.UTF_8);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<byte[]> result = executor.submit(() -> OutputCache.getInstance().getOrRender("stale", config, stale));
+        rendering.await();
+
+        OutputCache cache = OutputCache.getInstance();
+        cache.invalidate("news");
+
+        // does not wait for the rendering which started before
+        assertArrayEquals("fresh".getBytes(StandardCharsets.UTF_8), cache.getOrRender("stale", config, fresh));
+
+        proceed.countDown();
+        assertArrayEquals("stale".getBytes(StandardCharsets.UTF_8), result.get());
+        executor.shutdown();
+
+        // the stale output did not replace the fresh one
+        assertArrayEquals("fresh".getBytes(StandardCharsets.UTF_8), cache.getOrRender("stale", config, stale));
+    }
+
+    @BeforeClass
+    public static void setUp() throws Exception
+    {
+        tc = new TurbineConfig(".", "/conf/test/TestFulcrumComponents.properties");
+        tc.initialize();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception
+    {
+        OutputCache.getInstance().invalidateAll();
+
+        if (tc != null)
+        {
+            tc.dispose();
+        }
+    }
+}